@@ -110,7 +110,7 @@ public class Main {
 
         // 載入資料
         String dataPath = "data/names.txt";
-        DataLoader loader = new DataLoader(dataPath, vocab);
+        DataLoader loader = DataLoader.cached(dataPath, vocab);
         loader.printStats();
 
         // ========================================
@@ -0,0 +1,460 @@
+package com.micrograd.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * 已編碼語料的二進位快取：第一次讀取文字檔時寫出，之後直接以唯讀方式映射
+ *
+ * 檔案格式（little-endian）：
+ * <pre>
+ * [0, 64)    檔頭：magic、版本、詞彙表雜湊、來源檔大小、修改時間、CRC32C、單字數、token 數
+ * [64, ...)  token 串流，每個 token 一個位元組，所有單字前後相接
+ * 對齊 8     單字索引：每個單字一個 long，為它在 token 串流中的結束位置（不含）
+ * </pre>
+ * 開啟時只讀檔頭：詞彙表雜湊、來源檔大小與修改時間都相符才使用快取，否則重新建立，
+ * 因此不論語料多大，開啟都不需要掃描來源檔；CRC32C 留給 verifySource() 完整比對。
+ * 映射分成每塊最多 2^30 位元組，總大小可以超過 2 GiB；映射在物件被 GC 回收後才解除。
+ *
+ * <pre>
+ * CorpusCache cache = CorpusCache.openOrBuild(source, cacheFile, vocab);
+ * cache.forEachBigram((input, target) -&gt; counts[input][target]++);
+ * </pre>
+ */
+public final class CorpusCache {
+
+    static final int MAGIC = 0x4343474D;  // "MGCC"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+
+    /** 每塊映射 2^30 位元組 */
+    static final int CHUNK_SHIFT = 30;
+
+    /**
+     * 一個 n-gram 的接收者：context 為前 n-1 個 token（重複使用，不要保留）
+     */
+    @FunctionalInterface
+    public interface NGramConsumer {
+        void accept(int[] context, int target);
+    }
+
+    private final int special;
+    private final long wordCount;
+    private final long tokenCount;
+    private final long sourceChecksum;
+    private final ByteBuffer[] tokens;
+    private final LongBuffer[] wordEnds;
+    private final int shift;
+
+    private CorpusCache(Path cache, Header header, Vocabulary vocab, int chunkShift) throws IOException {
+        this.special = vocab.getSpecialTokenIndex();
+        this.wordCount = header.wordCount;
+        this.tokenCount = header.tokenCount;
+        this.sourceChecksum = header.sourceChecksum;
+        this.shift = chunkShift;
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            long indexStart = indexOffset(tokenCount);
+            if (channel.size() < indexStart + wordCount * Long.BYTES) {
+                throw new IOException(cache + " is truncated");
+            }
+            this.tokens = new ByteBuffer[chunkCount(tokenCount, chunkShift)];
+            for (int c = 0; c < tokens.length; c++) {
+                long from = (long) c << chunkShift;
+                tokens[c] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + from,
+                        Math.min(1L << chunkShift, tokenCount - from));
+            }
+            int longShift = chunkShift - 3;
+            this.wordEnds = new LongBuffer[chunkCount(wordCount, longShift)];
+            for (int c = 0; c < wordEnds.length; c++) {
+                long from = (long) c << longShift;
+                wordEnds[c] = channel.map(FileChannel.MapMode.READ_ONLY, indexStart + from * Long.BYTES,
+                                Math.min(1L << longShift, wordCount - from) * Long.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            }
+        }
+    }
+
+    // ==================== 建立與開啟 ====================
+
+    /**
+     * 快取存在且與來源檔、詞彙表相符時直接映射，否則從來源檔重新建立
+     */
+    public static CorpusCache openOrBuild(Path source, Path cache, Vocabulary vocab) throws IOException {
+        if (!isFresh(cache, source, vocab)) {
+            build(source, cache, vocab);
+        }
+        return open(cache, source, vocab);
+    }
+
+    /**
+     * 映射既有的快取；與來源檔或詞彙表不符時丟出 IOException
+     */
+    public static CorpusCache open(Path cache, Path source, Vocabulary vocab) throws IOException {
+        return open(cache, source, vocab, CHUNK_SHIFT);
+    }
+
+    /**
+     * 指定分塊大小（2^chunkShift 位元組），供測試跨塊邊界使用
+     */
+    static CorpusCache open(Path cache, Path source, Vocabulary vocab, int chunkShift) throws IOException {
+        if (chunkShift < 3 || chunkShift > CHUNK_SHIFT) {
+            throw new IllegalArgumentException("Chunk shift must be in [3, " + CHUNK_SHIFT + "]");
+        }
+        Header header = Header.read(cache);
+        if (header == null || !header.matches(source, vocab)) {
+            throw new IOException(cache + " is not a valid cache of " + source);
+        }
+        return new CorpusCache(cache, header, vocab, chunkShift);
+    }
+
+    /**
+     * 快取檔存在、格式正確，且記錄的詞彙表與來源檔大小、修改時間都相符
+     */
+    public static boolean isFresh(Path cache, Path source, Vocabulary vocab) throws IOException {
+        if (!Files.exists(cache)) {
+            return false;
+        }
+        Header header = Header.read(cache);
+        return header != null && header.matches(source, vocab);
+    }
+
+    /**
+     * 以 CorpusReader 串流解碼來源檔並寫出快取（先寫暫存檔再換名，不會留下寫到一半的快取）
+     */
+    public static void build(Path source, Path cache, Vocabulary vocab) throws IOException {
+        if (vocab.size() > 256) {
+            throw new IllegalArgumentException("Vocabulary too large for byte tokens: " + vocab.size());
+        }
+        Path tmp = cache.resolveSibling(cache.getFileName() + ".tmp");
+        Path index = cache.resolveSibling(cache.getFileName() + ".index.tmp");
+        long sourceSize = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        CRC32C crc = new CRC32C();
+        long wordCount = 0;
+        long tokenCount = 0;
+
+        try (CorpusReader reader = new CorpusReader(source, vocab, crc);
+             FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel ends = FileChannel.open(index, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+            ByteBuffer tokenBuf = ByteBuffer.allocate(CorpusReader.BUFFER_SIZE);
+            ByteBuffer endBuf = ByteBuffer.allocate(CorpusReader.BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            out.position(HEADER_BYTES);
+
+            while (reader.nextWord()) {
+                int[] word = reader.word();
+                int length = reader.wordLength();
+                for (int i = 0; i < length; i++) {
+                    if (!tokenBuf.hasRemaining()) {
+                        drain(tokenBuf, out);
+                    }
+                    tokenBuf.put((byte) word[i]);
+                }
+                tokenCount += length;
+                if (endBuf.remaining() < Long.BYTES) {
+                    drain(endBuf, ends);
+                }
+                endBuf.putLong(tokenCount);
+                wordCount++;
+            }
+            drain(tokenBuf, out);
+            drain(endBuf, ends);
+
+            // 索引接在 token 串流之後（對齊 8 位元組）
+            long indexStart = indexOffset(tokenCount);
+            long indexBytes = ends.position();
+            for (long copied = 0; copied < indexBytes; ) {
+                copied += ends.transferTo(copied, indexBytes - copied, out.position(indexStart + copied));
+            }
+
+            Header header = new Header(vocab.fingerprint(), sourceSize, modified, crc.getValue(),
+                    wordCount, tokenCount);
+            ByteBuffer bytes = header.toBytes();
+            while (bytes.hasRemaining()) {
+                out.write(bytes, bytes.position());  // 檔頭在檔案開頭，檔案位置等於緩衝區位置
+            }
+            out.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 重新讀取整個來源檔並比對 CRC32C（開啟時只比對大小與修改時間）
+     */
+    public boolean verifySource(Path source) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate(CorpusReader.BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            while (channel.read(buffer.clear()) >= 0) {
+                crc.update(buffer.flip());
+            }
+        }
+        return crc.getValue() == sourceChecksum;
+    }
+
+    // ==================== 存取 ====================
+
+    public long getWordCount() {
+        return wordCount;
+    }
+
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * bigram 數：每個單字前後加上特殊符號，len 個字元產生 len+1 個 bigram
+     */
+    public long getBigramCount() {
+        return tokenCount + wordCount;
+    }
+
+    /**
+     * token 串流中的第 i 個 token
+     */
+    public int token(long i) {
+        if (i < 0 || i >= tokenCount) {
+            throw new IndexOutOfBoundsException("Token " + i + " out of bounds for " + tokenCount);
+        }
+        return tokenAt(i);
+    }
+
+    /**
+     * 第 w 個單字在 token 串流中的開始位置
+     */
+    public long wordStart(long w) {
+        checkWord(w);
+        return w == 0 ? 0 : wordEnd(w - 1);
+    }
+
+    /**
+     * 第 w 個單字的長度
+     */
+    public int wordLength(long w) {
+        return (int) (wordEnd(w) - wordStart(w));
+    }
+
+    /**
+     * 第 w 個單字的結束位置（不含）
+     */
+    public long wordEnd(long w) {
+        checkWord(w);
+        int longShift = shift - 3;
+        return wordEnds[(int) (w >>> longShift)].get((int) (w & ((1L << longShift) - 1)));
+    }
+
+    // ==================== 走訪 ====================
+
+    /**
+     * 依序送出所有 bigram，與 CorpusReader.forEachBigram 相同
+     */
+    public void forEachBigram(CorpusReader.BigramConsumer consumer) {
+        forEachBigram(0, wordCount, consumer);
+    }
+
+    /**
+     * 只送出第 [fromWord, toWord) 個單字的 bigram，供平行處理時把語料切段
+     */
+    public void forEachBigram(long fromWord, long toWord, CorpusReader.BigramConsumer consumer) {
+        if (fromWord < 0 || toWord > wordCount || fromWord > toWord) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Word range [%d, %d) out of bounds for %d", fromWord, toWord, wordCount));
+        }
+        if (fromWord == toWord) {
+            return;
+        }
+        long start = wordStart(fromWord);
+        long end = wordEnd(toWord - 1);
+        byte[] scratch = new byte[(int) Math.min(CorpusReader.BUFFER_SIZE, Math.max(1, end - start))];
+        int prev = special;
+        long w = fromWord;
+        long nextEnd = wordEnd(w);
+
+        // 每次把一段 token 整批複製到 heap 上再走訪
+        for (long pos = start; pos < end; ) {
+            ByteBuffer chunk = tokens[(int) (pos >>> shift)];
+            int from = (int) (pos & ((1L << shift) - 1));
+            int length = (int) Math.min(Math.min(scratch.length, chunk.limit() - from), end - pos);
+            chunk.get(from, scratch, 0, length);
+            for (int k = 0; k < length; k++) {
+                while (pos + k == nextEnd) {
+                    consumer.accept(prev, special);
+                    prev = special;
+                    nextEnd = ++w < toWord ? wordEnd(w) : Long.MAX_VALUE;
+                }
+                int token = scratch[k] & 0xFF;
+                consumer.accept(prev, token);
+                prev = token;
+            }
+            pos += length;
+        }
+        for (; w < toWord; w++) {
+            consumer.accept(prev, special);
+            prev = special;
+        }
+    }
+
+    /**
+     * 依序送出所有 n-gram：每個單字前面補 n-1 個特殊符號、後面補一個，
+     * len 個字元產生 len+1 個 n-gram（前 n-1 個 token 為 context，最後一個為 target）
+     */
+    public void forEachNGram(int n, NGramConsumer consumer) {
+        if (n < 2) {
+            throw new IllegalArgumentException("n must be at least 2: " + n);
+        }
+        int[] context = new int[n - 1];
+        Arrays.fill(context, special);
+        long w = 0;
+        long nextEnd = wordCount > 0 ? wordEnd(0) : Long.MAX_VALUE;
+
+        for (int c = 0; c < tokens.length; c++) {
+            ByteBuffer chunk = tokens[c];
+            long base = (long) c << shift;
+            int length = chunk.limit();
+            for (int k = 0; k < length; k++) {
+                while (base + k == nextEnd) {
+                    consumer.accept(context, special);
+                    Arrays.fill(context, special);
+                    nextEnd = ++w < wordCount ? wordEnd(w) : Long.MAX_VALUE;
+                }
+                int token = chunk.get(k) & 0xFF;
+                consumer.accept(context, token);
+                System.arraycopy(context, 1, context, 0, context.length - 1);
+                context[context.length - 1] = token;
+            }
+        }
+        // 最後一個單字（以及結尾的空單字）的結束符號
+        for (; w < wordCount; w++) {
+            consumer.accept(context, special);
+            Arrays.fill(context, special);
+        }
+    }
+
+    /**
+     * 把 token 與單字結束位置複製到 heap 上（DataLoader 使用，總數必須小於 2^31）
+     */
+    void copyTo(IntList tokenList, IntList endList) {
+        if (tokenCount > Integer.MAX_VALUE - 8 || wordCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Corpus is too large to copy onto the heap: "
+                    + tokenCount + " tokens");
+        }
+        tokenList.ensureCapacity(tokenList.size() + (int) tokenCount);
+        byte[] scratch = new byte[(int) Math.min(CorpusReader.BUFFER_SIZE, Math.max(1, tokenCount))];
+        int[] decoded = new int[scratch.length];
+        for (ByteBuffer chunk : tokens) {
+            for (int from = 0; from < chunk.limit(); from += scratch.length) {
+                int length = Math.min(scratch.length, chunk.limit() - from);
+                chunk.get(from, scratch, 0, length);
+                for (int i = 0; i < length; i++) {
+                    decoded[i] = scratch[i] & 0xFF;
+                }
+                tokenList.addAll(decoded, 0, length);
+            }
+        }
+        endList.ensureCapacity(endList.size() + (int) wordCount);
+        for (long w = 0; w < wordCount; w++) {
+            endList.add((int) wordEnd(w));
+        }
+    }
+
+    // ==================== 輔助方法 ====================
+
+    private int tokenAt(long i) {
+        return tokens[(int) (i >>> shift)].get((int) (i & ((1L << shift) - 1))) & 0xFF;
+    }
+
+    private void checkWord(long w) {
+        if (w < 0 || w >= wordCount) {
+            throw new IndexOutOfBoundsException("Word " + w + " out of bounds for " + wordCount);
+        }
+    }
+
+    private static long indexOffset(long tokenCount) {
+        return (HEADER_BYTES + tokenCount + 7) & ~7L;
+    }
+
+    private static int chunkCount(long size, int chunkShift) {
+        return (int) ((size + (1L << chunkShift) - 1) >>> chunkShift);
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 快取檔頭
+     */
+    private static final class Header {
+        final long vocabHash;
+        final long sourceSize;
+        final long sourceModified;
+        final long sourceChecksum;
+        final long wordCount;
+        final long tokenCount;
+
+        Header(long vocabHash, long sourceSize, long sourceModified, long sourceChecksum,
+               long wordCount, long tokenCount) {
+            this.vocabHash = vocabHash;
+            this.sourceSize = sourceSize;
+            this.sourceModified = sourceModified;
+            this.sourceChecksum = sourceChecksum;
+            this.wordCount = wordCount;
+            this.tokenCount = tokenCount;
+        }
+
+        /**
+         * 讀取檔頭；不是快取檔（magic、版本不符或太短）時回傳 null
+         */
+        static Header read(Path cache) throws IOException {
+            ByteBuffer bytes = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes) < 0) {
+                        break;
+                    }
+                }
+            }
+            if (bytes.hasRemaining()) {
+                return null;
+            }
+            bytes.flip();
+            if (bytes.getInt() != MAGIC || bytes.getInt() != VERSION) {
+                return null;
+            }
+            return new Header(bytes.getLong(), bytes.getLong(), bytes.getLong(), bytes.getLong(),
+                    bytes.getLong(), bytes.getLong());
+        }
+
+        boolean matches(Path source, Vocabulary vocab) throws IOException {
+            return vocabHash == vocab.fingerprint()
+                    && sourceSize == Files.size(source)
+                    && sourceModified == Files.getLastModifiedTime(source).toMillis();
+        }
+
+        ByteBuffer toBytes() {
+            ByteBuffer bytes = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.putInt(MAGIC).putInt(VERSION)
+                    .putLong(vocabHash).putLong(sourceSize).putLong(sourceModified).putLong(sourceChecksum)
+                    .putLong(wordCount).putLong(tokenCount);
+            return bytes.clear();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.micrograd.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+/**
+ * 串流讀取語料：每行一個單字，直接把位元組解碼成 token 索引
+ *
+ * 以大塊緩衝區從 FileChannel 讀取，查表把每個位元組轉成詞彙表索引，
+ * 不建立 String、不裝箱，任何時候只保留目前這一行，因此可以逐一走訪任意大的檔案。
+ * 每行的規則與 DataLoader 原本的 trim + toLowerCase 相同：
+ * 去掉前後的空白（≤ 0x20 的位元組）、大寫轉小寫，空行與含有詞彙表以外字元的行略過。
+ * 只處理 ASCII，非 ASCII 的位元組一律視為詞彙表以外的字元；'\n'、'\r' 都是行尾。
+ *
+ * <pre>
+ * try (CorpusReader reader = new CorpusReader(path, vocab)) {
+ *     while (reader.nextWord()) {
+ *         int[] tokens = reader.word();   // 前 wordLength() 個有效
+ *     }
+ * }
+ * </pre>
+ */
+public final class CorpusReader implements AutoCloseable {
+
+    /** 每次從檔案讀取的位元組數 */
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private static final int INVALID = -1;
+
+    /**
+     * 一個 bigram（輸入、目標索引）的接收者
+     */
+    @FunctionalInterface
+    public interface BigramConsumer {
+        void accept(int input, int target);
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int[] lookup = new int[256];
+    private final int special;
+    private final Checksum checksum;
+
+    private int[] word = new int[32];
+    private int length;
+    private boolean eof;
+
+    public CorpusReader(Path file, Vocabulary vocab) throws IOException {
+        this(file, vocab, BUFFER_SIZE, null);
+    }
+
+    /**
+     * @param checksum 讀到的每個位元組都會餵給它（可為 null），讀完後即為整個檔案的檢查碼
+     */
+    public CorpusReader(Path file, Vocabulary vocab, Checksum checksum) throws IOException {
+        this(file, vocab, BUFFER_SIZE, checksum);
+    }
+
+    /**
+     * 指定緩衝區大小，供測試跨越緩衝區邊界使用
+     */
+    CorpusReader(Path file, Vocabulary vocab, int bufferSize) throws IOException {
+        this(file, vocab, bufferSize, null);
+    }
+
+    CorpusReader(Path file, Vocabulary vocab, int bufferSize, Checksum checksum) throws IOException {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.special = vocab.getSpecialTokenIndex();
+        this.checksum = checksum;
+        Arrays.fill(lookup, INVALID);
+        for (int b = 0; b < 128; b++) {
+            char c = Character.toLowerCase((char) b);
+            if (vocab.contains(c)) {
+                lookup[b] = vocab.encode(c);
+            }
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip();  // 一開始沒有資料
+    }
+
+    /**
+     * 讀到下一個有效的單字
+     *
+     * @return false 表示檔案已經讀完
+     */
+    public boolean nextWord() throws IOException {
+        length = 0;
+        boolean valid = true;
+        boolean gap = false;  // 字元之後出現過空白：若後面還有字元，代表單字中間有空白
+        while (true) {
+            if (!buffer.hasRemaining() && !fill()) {
+                // 最後一行沒有換行
+                return valid && length > 0;
+            }
+            byte[] bytes = buffer.array();
+            int pos = buffer.position();
+            int limit = buffer.limit();
+            while (pos < limit) {
+                int b = bytes[pos++] & 0xFF;
+                if (b == '\n' || b == '\r') {
+                    if (valid && length > 0) {
+                        buffer.position(pos);
+                        return true;
+                    }
+                    length = 0;
+                    valid = true;
+                    gap = false;
+                } else if (b <= ' ') {
+                    gap = length > 0;
+                } else if (valid) {
+                    int token = lookup[b];
+                    if (token == INVALID || gap) {
+                        valid = false;
+                    } else {
+                        if (length == word.length) {
+                            word = Arrays.copyOf(word, length * 2);
+                        }
+                        word[length++] = token;
+                    }
+                }
+            }
+            buffer.position(pos);
+        }
+    }
+
+    /**
+     * 目前單字的 token 索引（不含開始/結束符號）；陣列重複使用，只有前 wordLength() 個有效
+     */
+    public int[] word() {
+        return word;
+    }
+
+    public int wordLength() {
+        return length;
+    }
+
+    /**
+     * 走訪剩下的所有單字，每個單字前後加上特殊符號後送出它的 bigram
+     *
+     * @return 送出的 bigram 數
+     */
+    public long forEachBigram(BigramConsumer consumer) throws IOException {
+        long count = 0;
+        while (nextWord()) {
+            int prev = special;
+            for (int i = 0; i < length; i++) {
+                consumer.accept(prev, word[i]);
+                prev = word[i];
+            }
+            consumer.accept(prev, special);
+            count += length + 1;
+        }
+        return count;
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        buffer.clear();
+        int n;
+        do {
+            n = channel.read(buffer);
+        } while (n == 0);
+        buffer.flip();
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        if (checksum != null) {
+            checksum.update(buffer.array(), 0, n);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
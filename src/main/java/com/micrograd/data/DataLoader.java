@@ -1,57 +1,94 @@
 package com.micrograd.data;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.FileSystemException;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.Random;
 
 /**
  * 資料載入器
  * 讀取 names.txt 並提取 bigram 資料
+ *
+ * 檔案以 CorpusReader 串流解碼，所有單字的 token 串接存放在一個 int 陣列中，
+ * 不為每個單字建立 String；getWords() 需要時才解碼。
+ * 只需要走訪一次而不必保留語料時，直接使用 CorpusReader；重複執行時用 cached() 透過 CorpusCache 載入。
  */
 public class DataLoader {
 
-    private final List<String> words;
+    /** 二進位快取檔的副檔名 */
+    public static final String CACHE_SUFFIX = ".cache";
+
     private final Vocabulary vocab;
+    private final IntList tokens = new IntList();    // 所有單字的 token 串接
+    private final IntList wordEnds = new IntList();  // 第 i 個單字在 tokens 中的結束位置
+    private List<String> words;
 
     public DataLoader(String filepath, Vocabulary vocab) throws IOException {
         this.vocab = vocab;
-        this.words = loadWords(filepath);
-    }
-
-    private List<String> loadWords(String filepath) throws IOException {
-        List<String> result = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim().toLowerCase();
-                if (!line.isEmpty() && isValidWord(line)) {
-                    result.add(line);
-                }
+        try (CorpusReader reader = new CorpusReader(Path.of(filepath), vocab)) {
+            while (reader.nextWord()) {
+                tokens.addAll(reader.word(), 0, reader.wordLength());
+                wordEnds.add(tokens.size());
             }
         }
+    }
 
-        return result;
+    private DataLoader(CorpusCache cache, Vocabulary vocab) {
+        this.vocab = vocab;
+        cache.copyTo(tokens, wordEnds);
     }
 
     /**
-     * 檢查單字是否只包含有效字元（a-z）
+     * 透過二進位快取載入：快取（filepath + ".cache"）過期或不存在時先從文字檔建立，
+     * 之後的執行直接映射快取，不再解析文字；快取無法寫入時退回直接讀取文字檔
      */
-    private boolean isValidWord(String word) {
-        for (char c : word.toCharArray()) {
-            if (!vocab.contains(c) && c != Vocabulary.SPECIAL_TOKEN) {
-                return false;
-            }
+    public static DataLoader cached(String filepath, Vocabulary vocab) throws IOException {
+        Path source = Path.of(filepath);
+        CorpusCache cache;
+        try {
+            cache = CorpusCache.openOrBuild(source, Path.of(filepath + CACHE_SUFFIX), vocab);
+        } catch (FileSystemException e) {
+            return new DataLoader(filepath, vocab);
         }
-        return true;
+        return new DataLoader(cache, vocab);
+    }
+
+    private int wordStart(int i) {
+        return i == 0 ? 0 : wordEnds.get(i - 1);
+    }
+
+    private int wordLength(int i) {
+        return wordEnds.get(i) - wordStart(i);
     }
 
     /**
-     * 取得所有單字
+     * 取得所有單字（第一次呼叫時才從 token 解碼，唯讀）
      */
     public List<String> getWords() {
+        if (words == null) {
+            words = new AbstractList<>() {
+                private final String[] cache = new String[wordEnds.size()];
+
+                @Override
+                public String get(int i) {
+                    if (cache[i] == null) {
+                        StringBuilder sb = new StringBuilder(wordLength(i));
+                        for (int k = wordStart(i); k < wordEnds.get(i); k++) {
+                            sb.append(vocab.decode(tokens.get(k)));
+                        }
+                        cache[i] = sb.toString();
+                    }
+                    return cache[i];
+                }
+
+                @Override
+                public int size() {
+                    return cache.length;
+                }
+            };
+        }
         return words;
     }
 
@@ -59,47 +96,62 @@ public class DataLoader {
      * 取得單字數量
      */
     public int getWordCount() {
-        return words.size();
+        return wordEnds.size();
     }
 
     /**
      * 提取所有 bigram（輸入-目標對）
      * 回傳 int[2][]，其中 [0] 是輸入索引，[1] 是目標索引
+     * 每個單字前後加上開始和結束符號：len 個字元產生 len+1 個 bigram
      */
     public int[][] getBigrams() {
-        List<Integer> inputs = new ArrayList<>();
-        List<Integer> targets = new ArrayList<>();
-
-        for (String word : words) {
-            // 加上開始和結束符號
-            String padded = Vocabulary.SPECIAL_TOKEN + word + Vocabulary.SPECIAL_TOKEN;
-
-            for (int i = 0; i < padded.length() - 1; i++) {
-                char ch1 = padded.charAt(i);
-                char ch2 = padded.charAt(i + 1);
-                inputs.add(vocab.encode(ch1));
-                targets.add(vocab.encode(ch2));
-            }
-        }
+        return getNGrams(2);
+    }
 
-        int[][] result = new int[2][inputs.size()];
-        for (int i = 0; i < inputs.size(); i++) {
-            result[0][i] = inputs.get(i);
-            result[1][i] = targets.get(i);
+    /**
+     * 提取所有 n-gram：回傳 int[n][]，[0..n-2] 是 context（由舊到新），[n-1] 是目標
+     * 每個單字前面補 n-1 個開始符號、後面補一個結束符號，len 個字元產生 len+1 個 n-gram
+     */
+    public int[][] getNGrams(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be positive: " + n);
+        }
+        int special = vocab.getSpecialTokenIndex();
+        int[] t = tokens.array();
+        int[][] result = new int[n][getBigramCount()];
+        int[] targets = result[n - 1];
+
+        int k = 0;
+        int start = 0;
+        for (int w = 0; w < wordEnds.size(); w++) {
+            int end = wordEnds.get(w);
+            for (int i = start; i <= end; i++) {
+                // 第 c 個 context 是目標往前第 n-1-c 個 token，超出單字開頭時是開始符號
+                for (int c = 0; c < n - 1; c++) {
+                    int j = i - (n - 1 - c);
+                    result[c][k] = j >= start ? t[j] : special;
+                }
+                targets[k++] = i < end ? t[i] : special;
+            }
+            start = end;
         }
 
         return result;
     }
 
+    /**
+     * 以小批次走訪所有 bigram，每個 epoch 以 rng 重新洗牌（null 則依原順序）
+     * 每批為 int[2][]：[0] 是輸入索引，[1] 是目標索引
+     */
+    public MiniBatchIterator miniBatches(int batchSize, Random rng, boolean dropLast) {
+        return new MiniBatchIterator(getBigrams(), batchSize, rng, dropLast);
+    }
+
     /**
      * 取得 bigram 數量
      */
     public int getBigramCount() {
-        int count = 0;
-        for (String word : words) {
-            count += word.length() + 1;  // 每個字有 len+1 個 bigram
-        }
-        return count;
+        return tokens.size() + wordEnds.size();  // 每個字有 len+1 個 bigram
     }
 
     /**
@@ -107,23 +159,23 @@ public class DataLoader {
      */
     public void printStats() {
         System.out.println("=== 資料統計 ===");
-        System.out.println("單字數量: " + words.size());
+        System.out.println("單字數量: " + getWordCount());
         System.out.println("Bigram 數量: " + getBigramCount());
 
         // 找最短和最長的單字
         int minLen = Integer.MAX_VALUE;
         int maxLen = 0;
-        for (String word : words) {
-            minLen = Math.min(minLen, word.length());
-            maxLen = Math.max(maxLen, word.length());
+        for (int i = 0; i < wordEnds.size(); i++) {
+            minLen = Math.min(minLen, wordLength(i));
+            maxLen = Math.max(maxLen, wordLength(i));
         }
         System.out.println("最短單字長度: " + minLen);
         System.out.println("最長單字長度: " + maxLen);
 
         // 印出前幾個單字
         System.out.println("前 10 個單字: ");
-        for (int i = 0; i < Math.min(10, words.size()); i++) {
-            System.out.println("  " + words.get(i));
+        for (int i = 0; i < Math.min(10, getWordCount()); i++) {
+            System.out.println("  " + getWords().get(i));
         }
     }
 
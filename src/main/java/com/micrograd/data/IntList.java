@@ -0,0 +1,92 @@
+package com.micrograd.data;
+
+import java.util.Arrays;
+
+/**
+ * 可成長的 int 陣列（不裝箱的 List&lt;Integer&gt;）
+ * 容量不足時加倍，add 攤銷 O(1)；讀取直接存取底層陣列
+ */
+public final class IntList {
+
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private int[] data;
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+        }
+        this.data = new int[initialCapacity];
+    }
+
+    public void add(int value) {
+        if (size == data.length) {
+            grow(size + 1);
+        }
+        data[size++] = value;
+    }
+
+    /**
+     * 附加 values[from..from+length)
+     */
+    public void addAll(int[] values, int from, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(values, from, data, size, length);
+        size += length;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return data[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            grow(capacity);
+        }
+    }
+
+    /**
+     * 複製成剛好 size 長度的陣列
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    /**
+     * 底層陣列（不複製，長度可能大於 size），供同套件的迴圈直接讀取
+     */
+    int[] array() {
+        return data;
+    }
+
+    private void grow(int minCapacity) {
+        if (minCapacity < 0) {
+            throw new OutOfMemoryError("IntList too large");
+        }
+        int doubled = data.length < 8 ? 16 : data.length << 1;
+        if (doubled < 0 || doubled > MAX_CAPACITY) {
+            doubled = MAX_CAPACITY;
+        }
+        data = Arrays.copyOf(data, Math.max(minCapacity, doubled));
+    }
+}
@@ -0,0 +1,131 @@
+package com.micrograd.data;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * 小批次迭代器：把等長的 int 欄位（例如 bigram 的輸入與目標）切成固定大小的批次
+ *
+ * 每個 epoch 以給定的 Random 洗牌一次（同一個種子得到同一串批次），
+ * 批次內容寫進預先配置的陣列，整個訓練過程不再配置記憶體：
+ * next() 回傳的 int[][] 與其中的陣列會被下一次 next() 覆寫。
+ * 最後一個不足 batchSize 的批次使用另一組同樣重複使用的短陣列，
+ * 因此每個回傳的陣列長度都剛好等於該批次的樣本數；dropLast = true 時直接略過這一批。
+ *
+ * <pre>
+ * MiniBatchIterator batches = loader.miniBatches(32, new Random(42), false);
+ * for (int epoch = 0; epoch &lt; epochs; epoch++) {
+ *     batches.nextEpoch();
+ *     while (batches.hasNext()) {
+ *         int[][] batch = batches.next();   // batch[0] 輸入、batch[1] 目標
+ *     }
+ * }
+ * </pre>
+ */
+public final class MiniBatchIterator implements Iterator<int[][]> {
+
+    private final int[][] columns;
+    private final int batchSize;
+    private final Random rng;
+    private final boolean dropLast;
+
+    private final int[] order;
+    private final int[][] full;
+    private final int[][] tail;
+    private int position;
+
+    /**
+     * @param columns   等長的欄位，批次中第 c 個陣列取自 columns[c]
+     * @param rng       每個 epoch 洗牌用；null 表示依原順序
+     * @param dropLast  略過最後一個不足 batchSize 的批次
+     */
+    public MiniBatchIterator(int[][] columns, int batchSize, Random rng, boolean dropLast) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("At least one column is required");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        int n = columns[0].length;
+        for (int[] column : columns) {
+            if (column.length != n) {
+                throw new IllegalArgumentException(
+                        String.format("Column lengths differ: %d vs %d", column.length, n));
+            }
+        }
+        this.columns = columns;
+        this.batchSize = batchSize;
+        this.rng = rng;
+        this.dropLast = dropLast;
+
+        this.order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        this.full = new int[columns.length][Math.min(batchSize, n)];
+        this.tail = new int[columns.length][n % batchSize];
+        this.position = n;  // 呼叫 nextEpoch() 之前沒有批次
+    }
+
+    /**
+     * 開始新的 epoch：重新洗牌（Fisher–Yates），從第一批開始
+     */
+    public void nextEpoch() {
+        if (rng != null) {
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = rng.nextInt(i + 1);
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+        }
+        position = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        int remaining = order.length - position;
+        return dropLast ? remaining >= batchSize : remaining > 0;
+    }
+
+    /**
+     * 下一個批次；回傳的陣列會被下一次呼叫覆寫
+     */
+    @Override
+    public int[][] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int size = Math.min(batchSize, order.length - position);
+        int[][] batch = size == full[0].length ? full : tail;
+        for (int c = 0; c < columns.length; c++) {
+            int[] src = columns[c];
+            int[] dst = batch[c];
+            for (int i = 0; i < size; i++) {
+                dst[i] = src[order[position + i]];
+            }
+        }
+        position += size;
+        return batch;
+    }
+
+    /**
+     * 每個 epoch 的批次數
+     */
+    public int batchesPerEpoch() {
+        int n = order.length;
+        return dropLast ? n / batchSize : (n + batchSize - 1) / batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 樣本總數
+     */
+    public int size() {
+        return order.length;
+    }
+}
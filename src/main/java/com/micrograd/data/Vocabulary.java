@@ -82,6 +82,18 @@ public class Vocabulary {
         return stoi.get(SPECIAL_TOKEN);
     }
 
+    /**
+     * 詞彙表的 64 位元 FNV-1a 雜湊（依索引順序的所有字元）
+     * 寫入快取、計數檔等二進位檔案，讀取時用來確認是同一個詞彙表
+     */
+    public long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < size(); i++) {
+            hash = (hash ^ decode(i)) * 0x100000001b3L;
+        }
+        return (hash ^ size()) * 0x100000001b3L;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,234 @@
+package com.micrograd.engine;
+
+import java.util.*;
+
+/**
+ * 凍結的計算圖：trace 一次，重播多次
+ *
+ * 固定架構的模型（例如 MLP）每一步都建出相同拓撲的計算圖，只有葉節點的值不同。
+ * compile() 把計算圖的拓撲順序、輸入位置與參數位置凍結成原始型別陣列，
+ * 之後 forward / backward 只是純算術迴圈，不再建立任何 Value 節點。
+ *
+ * - 輸入（inputs）：由呼叫端在 forward(double...) 時提供新值
+ * - 參數：其他所有葉節點，每次 forward 時從原本的 Value 讀取目前的值，
+ *   backward 時把梯度累加回去，因此一般的 SGD 更新迴圈照常可用
+ *
+ * 呼叫 generateBytecode() 可再把程式產生成直線型 bytecode（見 KernelGenerator），
+ * 產生失敗（例如計算圖超出 class file 上限）時自動保持直譯重播。
+ */
+public final class CompiledGraph {
+
+    private final byte[] op;
+    private final int[] lhs;
+    private final int[] rhs;
+    private final double[] arg;
+    private final int[] pool;
+    private final double[] data;
+    private final double[] grad;
+    private final int root;
+
+    private final int[] inputSlots;
+    private final Value[] params;
+    private final int[] paramSlots;
+
+    private KernelGenerator.Kernel kernel;
+
+    private CompiledGraph(int size, int poolSize, int root, int numInputs, int numParams) {
+        this.op = new byte[size];
+        this.lhs = new int[size];
+        this.rhs = new int[size];
+        this.arg = new double[size];
+        this.pool = new int[poolSize];
+        this.data = new double[size];
+        this.grad = new double[size];
+        this.root = root;
+        this.inputSlots = new int[numInputs];
+        this.params = new Value[numParams];
+        this.paramSlots = new int[numParams];
+    }
+
+    // ==================== 編譯 ====================
+
+    /**
+     * 凍結以 output 為根的計算圖
+     *
+     * @param output 計算圖的輸出（通常是 loss）
+     * @param inputs 每次 forward 時由呼叫端提供值的葉節點
+     */
+    public static CompiledGraph compile(Value output, List<Value> inputs) {
+        if (output.onTape) {
+            throw new IllegalArgumentException("Cannot compile a value recorded on a Tape");
+        }
+
+        List<Value> topo = Value.topologicalOrder(output);
+        Map<Value, Integer> slots = new IdentityHashMap<>();
+        for (int i = 0; i < topo.size(); i++) {
+            Value v = topo.get(i);
+            if (v.code == Tape.LEAF && v.operands.length > 0) {
+                throw new IllegalArgumentException("Unsupported op in compiled graph: " + v.getOp());
+            }
+            slots.put(v, i);
+        }
+
+        Map<Value, Integer> inputIndex = new IdentityHashMap<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            Value in = inputs.get(i);
+            if (!slots.containsKey(in)) {
+                throw new IllegalArgumentException("Input " + i + " is not part of the graph");
+            }
+            if (in.operands.length > 0) {
+                throw new IllegalArgumentException("Input " + i + " is not a leaf");
+            }
+            Integer previous = inputIndex.put(in, i);
+            if (previous != null) {
+                throw new IllegalArgumentException("Input " + i + " duplicates input " + previous);
+            }
+        }
+
+        int numParams = 0;
+        int poolSize = 0;
+        for (Value v : topo) {
+            if (v.operands.length == 0 && !inputIndex.containsKey(v)) {
+                numParams++;
+            }
+            if (isNary(v.code)) {
+                poolSize += v.operands.length;
+            }
+        }
+
+        CompiledGraph g = new CompiledGraph(topo.size(), poolSize, slots.get(output), inputs.size(), numParams);
+        int p = 0;
+        int offset = 0;
+        for (int i = 0; i < topo.size(); i++) {
+            Value v = topo.get(i);
+            Value[] operands = v.operands;
+            g.op[i] = v.code;
+            g.arg[i] = v.arg;
+            if (isNary(v.code)) {
+                g.lhs[i] = offset;
+                g.rhs[i] = operands.length;
+                for (Value operand : operands) {
+                    g.pool[offset++] = slots.get(operand);
+                }
+            } else {
+                g.lhs[i] = operands.length > 0 ? slots.get(operands[0]) : -1;
+                g.rhs[i] = operands.length > 1 ? slots.get(operands[1]) : -1;
+            }
+            g.data[i] = v.getData();
+
+            if (operands.length == 0) {
+                Integer in = inputIndex.get(v);
+                if (in != null) {
+                    g.inputSlots[in] = i;
+                } else {
+                    g.params[p] = v;
+                    g.paramSlots[p] = i;
+                    p++;
+                }
+            }
+        }
+        return g;
+    }
+
+    private static boolean isNary(byte code) {
+        return code == Tape.SUM || code == Tape.DOT;
+    }
+
+    /**
+     * 產生直線型 bytecode kernel 取代直譯重播
+     *
+     * @return 是否成功；失敗時繼續使用直譯路徑
+     */
+    public boolean generateBytecode() {
+        if (kernel == null) {
+            kernel = KernelGenerator.generate(op, lhs, rhs, arg, pool, root);
+        }
+        return kernel != null;
+    }
+
+    public boolean isBytecodeGenerated() {
+        return kernel != null;
+    }
+
+    /** 最大的 chunk 的 bytecode 大小，尚未產生時為 0 */
+    int largestChunkBytes() {
+        return kernel == null ? 0 : kernel.largestChunk;
+    }
+
+    // ==================== 執行 ====================
+
+    /**
+     * 以新的輸入值重新計算整張圖，參數值從原本的 Value 讀取
+     *
+     * @return 輸出節點的值
+     */
+    public double forward(double... inputs) {
+        if (inputs.length != inputSlots.length) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %d inputs, got %d", inputSlots.length, inputs.length));
+        }
+        for (int i = 0; i < inputs.length; i++) {
+            data[inputSlots[i]] = inputs[i];
+        }
+        for (int i = 0; i < params.length; i++) {
+            data[paramSlots[i]] = params[i].getData();
+        }
+        if (kernel != null) {
+            try {
+                kernel.forward.invokeExact(data);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Generated kernel failed", e);
+            }
+        } else {
+            Tape.forward(op, lhs, rhs, arg, pool, data, 0, root + 1);
+        }
+        return data[root];
+    }
+
+    /**
+     * 反向傳播，參數梯度累加回原本的 Value（與 Value.backward() 相同語意）
+     */
+    public void backward() {
+        Arrays.fill(grad, 0.0);
+        grad[root] = 1.0;
+        if (kernel != null) {
+            try {
+                kernel.backward.invokeExact(data, grad);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Generated kernel failed", e);
+            }
+        } else {
+            Tape.backward(op, lhs, rhs, arg, pool, data, grad, root);
+        }
+
+        for (int i = 0; i < params.length; i++) {
+            Value p = params[i];
+            p.setGrad(p.getGrad() + grad[paramSlots[i]]);
+        }
+    }
+
+    // ==================== Getter ====================
+
+    public double getOutput() {
+        return data[root];
+    }
+
+    /**
+     * 取得最近一次 backward 中第 i 個輸入的梯度
+     */
+    public double getInputGrad(int i) {
+        return grad[inputSlots[i]];
+    }
+
+    public int numInputs() {
+        return inputSlots.length;
+    }
+
+    public int numParameters() {
+        return params.length;
+    }
+
+    public int size() {
+        return op.length;
+    }
+}
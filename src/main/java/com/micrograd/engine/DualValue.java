@@ -0,0 +1,114 @@
+package com.micrograd.engine;
+
+/**
+ * 前向模式自動微分：對偶數 data + tangent·ε（ε² = 0）
+ *
+ * 每個運算同時算出值與沿某個方向的導數（Jacobian-vector product），
+ * 不建立計算圖、不需要反向傳播，記憶體用量與計算圖大小無關。
+ * 適合輸入少、輸出多的情況，例如單一輸入特徵對所有輸出的敏感度。
+ *
+ * <pre>
+ * DualValue x = DualValue.variable(2.0);   // dx/dx = 1
+ * DualValue y = x.mul(x).add(x.tanh());
+ * y.getTangent();                          // dy/dx
+ * </pre>
+ */
+public final class DualValue {
+
+    private final double data;
+    private final double tangent;
+
+    public DualValue(double data, double tangent) {
+        this.data = data;
+        this.tangent = tangent;
+    }
+
+    /**
+     * 求導的變數（tangent = 1）
+     */
+    public static DualValue variable(double data) {
+        return new DualValue(data, 1.0);
+    }
+
+    /**
+     * 常數（tangent = 0）
+     */
+    public static DualValue constant(double data) {
+        return new DualValue(data, 0.0);
+    }
+
+    // === 基本運算 ===
+
+    public DualValue add(DualValue other) {
+        return new DualValue(data + other.data, tangent + other.tangent);
+    }
+
+    public DualValue add(double other) {
+        return new DualValue(data + other, tangent);
+    }
+
+    public DualValue mul(DualValue other) {
+        return new DualValue(data * other.data, tangent * other.data + data * other.tangent);
+    }
+
+    public DualValue mul(double other) {
+        return new DualValue(data * other, tangent * other);
+    }
+
+    public DualValue pow(double n) {
+        return new DualValue(Math.pow(data, n), n * Math.pow(data, n - 1) * tangent);
+    }
+
+    // === 激活函數 ===
+
+    public DualValue tanh() {
+        double t = Math.tanh(data);
+        return new DualValue(t, (1 - t * t) * tangent);
+    }
+
+    public DualValue relu() {
+        return data > 0 ? this : new DualValue(0.0, 0.0);
+    }
+
+    public DualValue exp() {
+        double t = Math.exp(data);
+        return new DualValue(t, t * tangent);
+    }
+
+    // === 便利運算 ===
+
+    public DualValue neg() {
+        return mul(-1.0);
+    }
+
+    public DualValue sub(DualValue other) {
+        return new DualValue(data - other.data, tangent - other.tangent);
+    }
+
+    public DualValue sub(double other) {
+        return add(-other);
+    }
+
+    public DualValue div(DualValue other) {
+        return mul(other.pow(-1));
+    }
+
+    public DualValue div(double other) {
+        return mul(1.0 / other);
+    }
+
+    // === Getter ===
+
+    public double getData() {
+        return data;
+    }
+
+    public double getTangent() {
+        return tangent;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DualValue(data=%.4f, tangent=%.4f)", data, tangent);
+    }
+}
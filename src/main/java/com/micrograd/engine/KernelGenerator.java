@@ -0,0 +1,660 @@
+package com.micrograd.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 把凍結的計算圖產生成直線型（straight-line）bytecode
+ *
+ * 產生的 hidden class 只有靜態方法：
+ * - forward(double[] data)：依拓撲順序重新計算所有節點值
+ * - backward(double[] data, double[] grad)：反向累加梯度
+ *
+ * 每個節點展開成固定索引的陣列算術，沒有分支、沒有虛擬呼叫，JIT 可以直接做暫存器配置。
+ * HotSpot 不會編譯超過 8000 bytes 的方法，所以程式碼會切成多個小 chunk，
+ * 再由 forward / backward 依序呼叫；若超過 class file 的上限則回傳 null，
+ * 由 CompiledGraph 退回直譯重播。
+ *
+ * 大型計算圖會產生數百個 chunk，JIT 編譯它們的時間遠超過直譯重播省下的時間，
+ * 所以工作量（節點數 + n 元運算元個數）超過 MAX_WORK 的計算圖一律交給直譯路徑；
+ * 單一 n 元節點的運算元超過 MAX_FANIN 時，展開後的程式碼會超出 chunk 大小，也交給直譯路徑。
+ * 每個節點先以最壞情況估計展開的大小，放不下時換新的 chunk，chunk 不會超過 CHUNK_BYTES。
+ *
+ * backward 與 Tape.backward 的直譯迴圈逐位元相同：梯度為 0 的節點整個略過，
+ * ReLU 的係數是 (out > 0 ? 1 : 0)，資料含 Inf / NaN 時兩者結果一致。
+ */
+final class KernelGenerator {
+
+    // 保持每個 chunk 在 HotSpot 的 HugeMethodLimit (8000 bytes) 以下
+    private static final int CHUNK_BYTES = 7000;
+    private static final int MAX_CHUNKS = 1500;
+    private static final int MAX_WORK = 16_384;
+    private static final int MAX_FANIN = 256;
+    private static final int MAX_CONSTANTS = 65535;
+    private static final int MAX_STACK = 16;
+
+    // 每個節點展開後的最壞大小（見 forwardBytes / backwardBytes）
+    private static final int FORWARD_NODE_BYTES = 24;
+    private static final int FORWARD_OPERAND_BYTES = 11;
+    private static final int BACKWARD_NODE_BYTES = 16;
+    private static final int BACKWARD_OPERAND_BYTES = 27;
+
+    private static final String CLASS_NAME = "com/micrograd/engine/GeneratedKernel";
+
+    // === JVM opcode ===
+    private static final int ICONST_0 = 0x03;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC2_W = 0x14;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int DALOAD = 0x31;
+    private static final int DSTORE = 0x39;
+    private static final int DASTORE = 0x52;
+    private static final int DUP2 = 0x5c;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DCMPL = 0x97;
+    private static final int IFEQ = 0x99;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int WIDE = 0xc4;
+
+    private static final String FORWARD_DESC = "([D)V";
+    private static final String BACKWARD_DESC = "([D[D)V";
+
+    /**
+     * 產生的 kernel：兩個指向 hidden class 靜態方法的 handle
+     */
+    static final class Kernel {
+        final MethodHandle forward;
+        final MethodHandle backward;
+        final int chunks;
+        // 最大的 chunk 的 bytecode 大小
+        final int largestChunk;
+
+        Kernel(MethodHandle forward, MethodHandle backward, int chunks, int largestChunk) {
+            this.forward = forward;
+            this.backward = backward;
+            this.chunks = chunks;
+            this.largestChunk = largestChunk;
+        }
+    }
+
+    private KernelGenerator() {
+    }
+
+    /**
+     * 為 [0, root] 的程式產生 kernel；超出工作量或 class file 限制時回傳 null
+     */
+    static Kernel generate(byte[] op, int[] lhs, int[] rhs, double[] arg, int[] pool, int root) {
+        int work = 0;
+        for (int i = 0; i <= root; i++) {
+            boolean nary = op[i] == Tape.SUM || op[i] == Tape.DOT;
+            if (nary && rhs[i] > MAX_FANIN) {
+                return null;
+            }
+            work += nary ? rhs[i] : 1;
+        }
+        if (work > MAX_WORK) {
+            return null;
+        }
+        ClassBuilder cls = new ClassBuilder();
+        int[] cache = new int[root + 1];
+        int[] stamp = new int[root + 1];
+
+        // forward chunk：節點值在 chunk 內快取於區域變數
+        int forwardChunks = 0;
+        int largestChunk = 0;
+        int i = 0;
+        while (i <= root) {
+            Code code = new Code(cls, 1);
+            int epoch = forwardChunks + 1;
+            while (i <= root && (code.size() == 0
+                    || code.size() + forwardBytes(op[i], rhs[i]) <= CHUNK_BYTES)) {
+                emitForward(code, i, op[i], lhs[i], rhs[i], arg[i], pool, cache, stamp, epoch);
+                i++;
+            }
+            code.op(RETURN);
+            largestChunk = Math.max(largestChunk, code.size());
+            cls.method("forward" + forwardChunks, FORWARD_DESC, code);
+            forwardChunks++;
+        }
+
+        // backward chunk：由 root 往回
+        int backwardChunks = 0;
+        i = root;
+        while (i >= 0) {
+            Code code = new Code(cls, 2);
+            int gi = code.newLocal();
+            while (i >= 0 && (code.size() == 0
+                    || code.size() + backwardBytes(op[i], rhs[i]) <= CHUNK_BYTES)) {
+                emitBackward(code, gi, i, op[i], lhs[i], rhs[i], arg[i], pool);
+                i--;
+            }
+            code.op(RETURN);
+            largestChunk = Math.max(largestChunk, code.size());
+            cls.method("backward" + backwardChunks, BACKWARD_DESC, code);
+            backwardChunks++;
+        }
+
+        if (forwardChunks > MAX_CHUNKS || backwardChunks > MAX_CHUNKS) {
+            return null;
+        }
+        cls.method("forward", FORWARD_DESC, dispatcher("forward", FORWARD_DESC, forwardChunks, 1, cls));
+        cls.method("backward", BACKWARD_DESC, dispatcher("backward", BACKWARD_DESC, backwardChunks, 2, cls));
+
+        if (cls.constantCount() > MAX_CONSTANTS) {
+            return null;
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClass(cls.toBytes(), true);
+            Class<?> kernel = lookup.lookupClass();
+            MethodHandle forward = lookup.findStatic(kernel, "forward",
+                    MethodType.methodType(void.class, double[].class));
+            MethodHandle backward = lookup.findStatic(kernel, "backward",
+                    MethodType.methodType(void.class, double[].class, double[].class));
+            return new Kernel(forward, backward, forwardChunks + backwardChunks, largestChunk);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static Code dispatcher(String prefix, String desc, int chunks, int params, ClassBuilder cls) {
+        Code code = new Code(cls, params);
+        for (int c = 0; c < chunks; c++) {
+            code.op(ALOAD_0);
+            if (params == 2) {
+                code.op(ALOAD_1);
+            }
+            code.op(INVOKESTATIC);
+            code.u2(cls.methodRef(CLASS_NAME, prefix + c, desc));
+        }
+        code.op(RETURN);
+        return code;
+    }
+
+    // ==================== 大小估計 ====================
+
+    /** 運算元（n 元節點為 rhs 個）的個數 */
+    private static int operandCount(byte kind, int b) {
+        switch (kind) {
+            case Tape.LEAF:
+                return 0;
+            case Tape.ADD:
+            case Tape.MUL:
+                return 2;
+            case Tape.SUM:
+            case Tape.DOT:
+                return b;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * forward 展開的上限：每個運算元最多一次 load（含 wide DSTORE）加一個運算，
+     * 再加上常數 / Math 呼叫與寫回 data
+     */
+    private static int forwardBytes(byte kind, int b) {
+        return kind == Tape.LEAF ? 0 : FORWARD_NODE_BYTES + FORWARD_OPERAND_BYTES * operandCount(kind, b);
+    }
+
+    /**
+     * backward 展開的上限：讀取 g 與略過 0 的判斷，加上每個運算元一次 accumulate（最大的係數是 pow）
+     */
+    private static int backwardBytes(byte kind, int b) {
+        return kind == Tape.LEAF ? 0 : BACKWARD_NODE_BYTES + BACKWARD_OPERAND_BYTES * operandCount(kind, b);
+    }
+
+    // ==================== Forward ====================
+
+    private static void emitForward(Code code, int i, byte kind, int a, int b, double n, int[] pool,
+                                    int[] cache, int[] stamp, int epoch) {
+        switch (kind) {
+            case Tape.ADD:
+                load(code, a, cache, stamp, epoch);
+                load(code, b, cache, stamp, epoch);
+                code.op(DADD);
+                break;
+            case Tape.MUL:
+                load(code, a, cache, stamp, epoch);
+                load(code, b, cache, stamp, epoch);
+                code.op(DMUL);
+                break;
+            case Tape.POW:
+                load(code, a, cache, stamp, epoch);
+                code.ldc(n);
+                code.invokeMath("pow", "(DD)D");
+                break;
+            case Tape.TANH:
+                // 與 Value.tanh() 相同，使用 Math.tanh
+                load(code, a, cache, stamp, epoch);
+                code.invokeMath("tanh", "(D)D");
+                break;
+            case Tape.RELU:
+                code.op(DCONST_0);
+                load(code, a, cache, stamp, epoch);
+                code.invokeMath("max", "(DD)D");
+                break;
+            case Tape.EXP:
+                load(code, a, cache, stamp, epoch);
+                code.invokeMath("exp", "(D)D");
+                break;
+            case Tape.ADD_CONST:
+                load(code, a, cache, stamp, epoch);
+                code.ldc(n);
+                code.op(DADD);
+                break;
+            case Tape.MUL_CONST:
+                load(code, a, cache, stamp, epoch);
+                code.ldc(n);
+                code.op(DMUL);
+                break;
+            case Tape.SUM:
+                code.op(DCONST_0);
+                for (int k = 0; k < b; k++) {
+                    load(code, pool[a + k], cache, stamp, epoch);
+                    code.op(DADD);
+                }
+                break;
+            case Tape.DOT:
+                int half = b / 2;
+                code.op(DCONST_0);
+                for (int k = 0; k < half; k++) {
+                    load(code, pool[a + k], cache, stamp, epoch);
+                    load(code, pool[a + half + k], cache, stamp, epoch);
+                    code.op(DMUL);
+                    code.op(DADD);
+                }
+                break;
+            default:
+                // 葉節點：值由呼叫端寫入
+                return;
+        }
+        int local = code.newLocal();
+        code.local(DSTORE, local);
+        code.op(ALOAD_0);
+        code.index(i);
+        code.local(DLOAD, local);
+        code.op(DASTORE);
+        cache[i] = local;
+        stamp[i] = epoch;
+    }
+
+    private static void load(Code code, int slot, int[] cache, int[] stamp, int epoch) {
+        if (stamp[slot] == epoch) {
+            code.local(DLOAD, cache[slot]);
+            return;
+        }
+        int local = code.newLocal();
+        code.op(ALOAD_0);
+        code.index(slot);
+        code.op(DALOAD);
+        code.op(DUP2);
+        code.local(DSTORE, local);
+        cache[slot] = local;
+        stamp[slot] = epoch;
+    }
+
+    // ==================== Backward ====================
+
+    private static void emitBackward(Code code, int gi, int i, byte kind, int a, int b, double n,
+                                     int[] pool) {
+        if (kind == Tape.LEAF) {
+            return;
+        }
+        // g = grad[i]；g == 0 時略過整個節點（與直譯迴圈相同，0·Inf 不會產生 NaN）
+        code.op(ALOAD_1);
+        code.index(i);
+        code.op(DALOAD);
+        code.op(DUP2);
+        code.local(DSTORE, gi);
+        code.op(DCONST_0);
+        code.op(DCMPL);
+        int skip = code.branch(IFEQ);
+
+        switch (kind) {
+            case Tape.ADD:
+                accumulate(code, gi, a, null);
+                accumulate(code, gi, b, null);
+                break;
+            case Tape.MUL:
+                accumulate(code, gi, a, () -> data(code, b));
+                accumulate(code, gi, b, () -> data(code, a));
+                break;
+            case Tape.POW:
+                accumulate(code, gi, a, () -> {
+                    code.ldc(n);
+                    data(code, a);
+                    code.ldc(n - 1);
+                    code.invokeMath("pow", "(DD)D");
+                    code.op(DMUL);
+                });
+                break;
+            case Tape.TANH:
+                accumulate(code, gi, a, () -> {
+                    code.op(DCONST_1);
+                    data(code, i);
+                    data(code, i);
+                    code.op(DMUL);
+                    code.op(DSUB);
+                });
+                break;
+            case Tape.RELU:
+                // (out > 0 ? 1 : 0)：Math.signum 在 out 為 NaN 時會得到 NaN
+                accumulate(code, gi, a, () -> {
+                    data(code, i);
+                    code.op(INVOKESTATIC);
+                    code.u2(code.cls.methodRef("com/micrograd/engine/KernelGenerator", "reluGrad", "(D)D"));
+                });
+                break;
+            case Tape.EXP:
+                accumulate(code, gi, a, () -> data(code, i));
+                break;
+            case Tape.ADD_CONST:
+                accumulate(code, gi, a, null);
+                break;
+            case Tape.MUL_CONST:
+                accumulate(code, gi, a, () -> code.ldc(n));
+                break;
+            case Tape.SUM:
+                for (int k = 0; k < b; k++) {
+                    accumulate(code, gi, pool[a + k], null);
+                }
+                break;
+            case Tape.DOT:
+                int half = b / 2;
+                for (int k = 0; k < half; k++) {
+                    int w = pool[a + k];
+                    int x = pool[a + half + k];
+                    accumulate(code, gi, w, () -> data(code, x));
+                    accumulate(code, gi, x, () -> data(code, w));
+                }
+                break;
+            default:
+                break;
+        }
+        code.label(skip);
+    }
+
+    /**
+     * ReLU 的局部梯度，由產生的 backward 呼叫
+     */
+    static double reluGrad(double out) {
+        return out > 0 ? 1.0 : 0.0;
+    }
+
+    /**
+     * grad[target] += coef * gi；coef 為 null 時代表係數 1
+     */
+    private static void accumulate(Code code, int gi, int target, Runnable coef) {
+        code.op(ALOAD_1);
+        code.index(target);
+        code.op(DUP2);
+        code.op(DALOAD);
+        if (coef != null) {
+            coef.run();
+            code.local(DLOAD, gi);
+            code.op(DMUL);
+        } else {
+            code.local(DLOAD, gi);
+        }
+        code.op(DADD);
+        code.op(DASTORE);
+    }
+
+    private static void data(Code code, int slot) {
+        code.op(ALOAD_0);
+        code.index(slot);
+        code.op(DALOAD);
+    }
+
+    // ==================== Class file 組裝 ====================
+
+    /**
+     * 單一方法的 bytecode 緩衝區
+     */
+    private static final class Code {
+        private final Bytes out = new Bytes();
+        private final ClassBuilder cls;
+        private int maxLocals;
+        // 分支目標的位置（遞增），每個位置一個 same_frame
+        private final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        private int frameCount;
+        private int lastFrame = -1;
+
+        Code(ClassBuilder cls, int params) {
+            this.cls = cls;
+            this.maxLocals = params;
+        }
+
+        int size() {
+            return out.size();
+        }
+
+        int newLocal() {
+            int local = maxLocals;
+            maxLocals += 2;
+            return local;
+        }
+
+        void op(int opcode) {
+            out.write(opcode);
+        }
+
+        void u2(int value) {
+            out.write(value >>> 8);
+            out.write(value);
+        }
+
+        void local(int opcode, int local) {
+            if (local > 255) {
+                out.write(WIDE);
+                out.write(opcode);
+                u2(local);
+            } else {
+                out.write(opcode);
+                out.write(local);
+            }
+        }
+
+        /**
+         * 節點與 pool 的索引：generate() 只接受工作量不超過 MAX_WORK 的計算圖，一定放得進 SIPUSH
+         */
+        void index(int value) {
+            if (value <= 5) {
+                out.write(ICONST_0 + value);
+            } else if (value <= Byte.MAX_VALUE) {
+                out.write(BIPUSH);
+                out.write(value);
+            } else if (value <= Short.MAX_VALUE) {
+                out.write(SIPUSH);
+                u2(value);
+            } else {
+                throw new IllegalStateException("Index exceeds MAX_WORK: " + value);
+            }
+        }
+
+        /**
+         * 寫入分支指令，回傳之後給 label() 補上位移的位置；分支時運算元堆疊必須是空的
+         */
+        int branch(int opcode) {
+            int at = out.size();
+            out.write(opcode);
+            u2(0);
+            return at;
+        }
+
+        /**
+         * 分支目標設在目前位置，並記錄 StackMapTable 的 same_frame（區域變數只有參數、堆疊為空）
+         */
+        void label(int branch) {
+            int target = out.size();
+            out.patch(branch + 1, target - branch);
+            int delta = lastFrame < 0 ? target : target - lastFrame - 1;
+            if (delta <= 63) {
+                frames.write(delta);  // same_frame
+            } else {
+                frames.write(251);  // same_frame_extended
+                frames.write(delta >>> 8);
+                frames.write(delta);
+            }
+            lastFrame = target;
+            frameCount++;
+        }
+
+        void ldc(double value) {
+            out.write(LDC2_W);
+            u2(cls.doubleConstant(value));
+        }
+
+        void invokeMath(String name, String desc) {
+            out.write(INVOKESTATIC);
+            u2(cls.methodRef("java/lang/Math", name, desc));
+        }
+    }
+
+    /** 可以回頭修改分支位移的位元組緩衝區 */
+    private static final class Bytes extends ByteArrayOutputStream {
+        void patch(int at, int value) {
+            buf[at] = (byte) (value >>> 8);
+            buf[at + 1] = (byte) value;
+        }
+    }
+
+    /**
+     * 最小化的 class file 組裝器：常數池 + 靜態方法
+     */
+    private static final class ClassBuilder {
+        private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        private final DataOutputStream poolOut = new DataOutputStream(pool);
+        private final Map<String, Integer> constants = new HashMap<>();
+        private int nextConstant = 1;
+
+        private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+        private final DataOutputStream methodsOut = new DataOutputStream(methods);
+        private int methodCount;
+
+        int constantCount() {
+            return nextConstant;
+        }
+
+        int utf8(String s) {
+            return constant("U" + s, 1, 1, out -> out.writeUTF(s));
+        }
+
+        int classRef(String name) {
+            int nameIndex = utf8(name);
+            return constant("C" + name, 7, 1, out -> out.writeShort(nameIndex));
+        }
+
+        int doubleConstant(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            return constant("D" + bits, 6, 2, out -> out.writeLong(bits));
+        }
+
+        int methodRef(String owner, String name, String desc) {
+            int ownerIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descIndex = utf8(desc);
+            int nat = constant("N" + name + desc, 12, 1, out -> {
+                out.writeShort(nameIndex);
+                out.writeShort(descIndex);
+            });
+            return constant("M" + owner + "." + name + desc, 10, 1, out -> {
+                out.writeShort(ownerIndex);
+                out.writeShort(nat);
+            });
+        }
+
+        private interface Writer {
+            void write(DataOutputStream out) throws IOException;
+        }
+
+        private int constant(String key, int tag, int width, Writer writer) {
+            Integer existing = constants.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            int index = nextConstant;
+            try {
+                poolOut.writeByte(tag);
+                writer.write(poolOut);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            nextConstant += width;
+            constants.put(key, index);
+            return index;
+        }
+
+        void method(String name, String desc, Code code) {
+            byte[] bytes = code.out.toByteArray();
+            byte[] frames = code.frames.toByteArray();
+            int stackMapLength = code.frameCount == 0 ? 0 : 8 + frames.length;
+            try {
+                methodsOut.writeShort(0x0009);  // ACC_PUBLIC | ACC_STATIC
+                methodsOut.writeShort(utf8(name));
+                methodsOut.writeShort(utf8(desc));
+                methodsOut.writeShort(1);
+                methodsOut.writeShort(utf8("Code"));
+                methodsOut.writeInt(12 + bytes.length + stackMapLength);
+                methodsOut.writeShort(MAX_STACK);
+                methodsOut.writeShort(code.maxLocals);
+                methodsOut.writeInt(bytes.length);
+                methodsOut.write(bytes);
+                methodsOut.writeShort(0);  // exception table
+                if (code.frameCount == 0) {
+                    methodsOut.writeShort(0);  // attributes
+                } else {
+                    methodsOut.writeShort(1);
+                    methodsOut.writeShort(utf8("StackMapTable"));
+                    methodsOut.writeInt(2 + frames.length);
+                    methodsOut.writeShort(code.frameCount);
+                    methodsOut.write(frames);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            methodCount++;
+        }
+
+        byte[] toBytes() {
+            int thisClass = classRef(CLASS_NAME);
+            int superClass = classRef("java/lang/Object");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(61);  // Java 17
+                out.writeShort(nextConstant);
+                out.write(pool.toByteArray());
+                out.writeShort(0x0030);  // ACC_FINAL | ACC_SUPER
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(0);  // interfaces
+                out.writeShort(0);  // fields
+                out.writeShort(methodCount);
+                out.write(methods.toByteArray());
+                out.writeShort(0);  // attributes
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
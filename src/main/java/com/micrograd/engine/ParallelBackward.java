@@ -0,0 +1,228 @@
+package com.micrograd.engine;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 分層平行的反向傳播
+ *
+ * 每個節點的層級 = 從 root 出發的最長路徑長度，因此同一層的節點互不依賴，
+ * 而且所有父節點都在較前面的層級。逐層交給 ForkJoinPool 處理時，
+ * 每個節點從父節點「拉」回自己的梯度（CSR 格式的父節點邊），只寫入自己的 grad，
+ * 共用的參數不需要鎖、原子操作或每個 worker 的梯度緩衝區，結果也與執行緒數無關。
+ */
+final class ParallelBackward {
+
+    /** 節點數低於此值時平行化的成本高於收益，由呼叫端改用序列版 */
+    static final int MIN_NODES = 4096;
+
+    /** 每個平行任務至少處理的節點數 */
+    private static final int GRAIN = 128;
+
+    private final Value[] nodes;
+    private int[] parentStart;
+    // 父節點邊：高 32 位元為父節點位置，低 32 位元為自己在父節點運算元中的位置
+    private long[] parents;
+    private int[] levelStart;
+    private int[] byLevel;
+    private int maxLevel;
+
+    // position 被其他執行緒的走訪覆寫時才建立的備援索引
+    private Map<Value, Integer> fallback;
+
+    private ParallelBackward(Value[] nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * @return false 表示只有單一執行緒、計算圖太小或含有無法平行化的自訂運算，沒有做任何事
+     */
+    static boolean run(Value root, ForkJoinPool pool) {
+        if (pool.getParallelism() < 2) {
+            return false;
+        }
+        ParallelBackward pb = prepare(root);
+        if (pb == null) {
+            return false;
+        }
+        pb.execute(root, pool);
+        return true;
+    }
+
+    /**
+     * 建立層級與父節點邊；計算圖太小或含自訂運算時回傳 null
+     */
+    static ParallelBackward prepare(Value root) {
+        Value[] nodes = Value.topologicalArray(root);
+        int n = nodes.length;
+        if (n < MIN_NODES) {
+            return null;
+        }
+        ParallelBackward pb = new ParallelBackward(nodes);
+
+        // 節點 i 的運算元位置在 operandIndex[operandStart[i]..operandStart[i+1])
+        int[] operandStart = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            Value v = nodes[i];
+            if (v.code == Tape.LEAF && v.operands.length > 0) {
+                return null;
+            }
+            operandStart[i + 1] = operandStart[i] + v.operands.length;
+        }
+        int edges = operandStart[n];
+        int[] operandIndex = new int[edges];
+
+        // 由 root 往回走：走到節點 i 時它的父節點都已處理完，level[i] 已是最終值
+        // 運算元的位置只查一次，之後都讀 operandIndex，兩次查詢之間 position 被改寫也不會前後不一致
+        int[] level = new int[n];
+        int[] parentStart = new int[n + 1];
+        int maxLevel = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            int next = level[i] + 1;
+            maxLevel = Math.max(maxLevel, level[i]);
+            int e = operandStart[i];
+            for (Value c : nodes[i].operands) {
+                int j = pb.indexOf(c);
+                operandIndex[e++] = j;
+                if (level[j] < next) {
+                    level[j] = next;
+                }
+                parentStart[j + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            parentStart[i + 1] += parentStart[i];
+        }
+
+        // 父節點邊：一個運算元位置一條邊，a * a 這類重複運算元會有兩條
+        long[] parents = new long[edges];
+        int[] cursor = Arrays.copyOf(parentStart, n);
+        for (int i = 0; i < n; i++) {
+            for (int e = operandStart[i], k = 0; e < operandStart[i + 1]; e++, k++) {
+                parents[cursor[operandIndex[e]]++] = (long) i << 32 | k;
+            }
+        }
+
+        // 依層級分桶（counting sort）
+        int[] levelStart = new int[maxLevel + 2];
+        for (int i = 0; i < n; i++) {
+            levelStart[level[i] + 1]++;
+        }
+        for (int l = 0; l <= maxLevel; l++) {
+            levelStart[l + 1] += levelStart[l];
+        }
+        int[] byLevel = new int[n];
+        int[] fill = Arrays.copyOf(levelStart, maxLevel + 1);
+        for (int i = 0; i < n; i++) {
+            byLevel[fill[level[i]]++] = i;
+        }
+
+        pb.parentStart = parentStart;
+        pb.parents = parents;
+        pb.levelStart = levelStart;
+        pb.byLevel = byLevel;
+        pb.maxLevel = maxLevel;
+        return pb;
+    }
+
+    void execute(Value root, ForkJoinPool pool) {
+        root.setGrad(1.0);
+        // 第 0 層只有 root
+        for (int l = 1; l <= maxLevel; l++) {
+            int from = levelStart[l];
+            int to = levelStart[l + 1];
+            if (to - from <= GRAIN) {
+                pull(byLevel, from, to);
+            } else {
+                pool.invoke(new LevelTask(byLevel, from, to));
+            }
+        }
+    }
+
+    /**
+     * 節點在 nodes 中的位置：走訪時寫入的 position 只要核對相符就能直接使用，
+     * 共用參數的計算圖在其他執行緒上同時走訪、覆寫了 position 時才改查備援索引
+     */
+    private int indexOf(Value v) {
+        int p = v.position;
+        if (p < nodes.length && nodes[p] == v) {
+            return p;
+        }
+        if (fallback == null) {
+            fallback = new IdentityHashMap<>(2 * nodes.length);
+            for (int i = 0; i < nodes.length; i++) {
+                fallback.put(nodes[i], i);
+            }
+        }
+        return fallback.get(v);
+    }
+
+    private void pull(int[] order, int from, int to) {
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            double g = 0.0;
+            for (int e = parentStart[i], end = parentStart[i + 1]; e < end; e++) {
+                long edge = parents[e];
+                Value p = nodes[(int) (edge >>> 32)];
+                g += localGrad(p, (int) edge) * p.getGrad();
+            }
+            Value v = nodes[i];
+            v.setGrad(v.getGrad() + g);
+        }
+    }
+
+    /**
+     * ∂p / ∂(p 的第 k 個運算元)，與 Tape.backward 的公式相同
+     */
+    private static double localGrad(Value p, int k) {
+        switch (p.code) {
+            case Tape.ADD:
+            case Tape.ADD_CONST:
+            case Tape.SUM:
+                return 1.0;
+            case Tape.MUL:
+                return p.operands[1 - k].getData();
+            case Tape.MUL_CONST:
+                return p.arg;
+            case Tape.POW:
+                return p.arg * Math.pow(p.operands[0].getData(), p.arg - 1);
+            case Tape.TANH:
+                double t = p.getData();
+                return 1 - t * t;
+            case Tape.RELU:
+                return p.getData() > 0 ? 1.0 : 0.0;
+            case Tape.EXP:
+                return p.getData();
+            case Tape.DOT:
+                int n = p.operands.length / 2;
+                return k < n ? p.operands[n + k].getData() : p.operands[k - n].getData();
+            default:
+                throw new IllegalStateException("Unsupported op: " + p.code);
+        }
+    }
+
+    private final class LevelTask extends RecursiveAction {
+        private final int[] order;
+        private final int from;
+        private final int to;
+
+        LevelTask(int[] order, int from, int to) {
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GRAIN) {
+                pull(order, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new LevelTask(order, from, mid), new LevelTask(order, mid, to));
+        }
+    }
+}
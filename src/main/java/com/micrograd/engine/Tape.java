@@ -0,0 +1,504 @@
+package com.micrograd.engine;
+
+import java.util.Arrays;
+
+/**
+ * 陣列式計算帶（Tape）
+ *
+ * 以 struct-of-arrays 的原始型別緩衝區記錄運算（opcode、運算元索引、data、grad），
+ * 反向傳播只是一個由後往前的緊密迴圈，不需要每個節點一個 HashSet 與 Runnable。
+ *
+ * 使用方式：在 record() 範圍內，所有 Value 運算都會寫入這條 tape，
+ * 因此 Neuron / Layer / MLP 不需修改即可在 tape 上執行：
+ * <pre>
+ * try (Tape tape = Tape.record()) {
+ *     Value loss = ...;       // 一般的 Value 運算
+ *     loss.backward();        // 反向迴圈，梯度累加回參數的 Value
+ * }
+ * </pre>
+ *
+ * 注意：tape 上的節點在 clear() 之後即失效；tape 不是執行緒安全的。
+ */
+public final class Tape implements AutoCloseable {
+
+    // ==================== Opcode ====================
+
+    static final byte LEAF = 0;
+    static final byte ADD = 1;
+    static final byte MUL = 2;
+    static final byte POW = 3;
+    static final byte TANH = 4;
+    static final byte RELU = 5;
+    static final byte EXP = 6;
+    // n 元運算：lhs 為 pool 中的起點，rhs 為運算元個數（DOT 為 2n）
+    static final byte SUM = 7;
+    static final byte DOT = 8;
+    // 常數運算元：常數存在 arg，只有 lhs 是真正的運算元
+    static final byte ADD_CONST = 9;
+    static final byte MUL_CONST = 10;
+
+    private static final ThreadLocal<Tape> ACTIVE = new ThreadLocal<>();
+
+    private byte[] op;
+    private int[] lhs;
+    private int[] rhs;
+    private double[] arg;
+    private double[] data;
+    private double[] grad;
+    private int size;
+
+    // n 元運算的運算元索引
+    private int[] pool;
+    private int poolSize;
+
+    // 每個位置對應的 Value（運算結果或註冊的葉節點），供 getPrev / 拓撲排序還原計算圖
+    private Value[] nodes;
+
+    // 由外部 Value（參數、常數）註冊進來的葉節點
+    private Value[] leaves;
+    private int[] leafSlots;
+    private int leafCount;
+
+    private Tape previous;
+    private boolean recording;
+
+    public Tape() {
+        this(1024);
+    }
+
+    public Tape(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        this.op = new byte[capacity];
+        this.lhs = new int[capacity];
+        this.rhs = new int[capacity];
+        this.arg = new double[capacity];
+        this.data = new double[capacity];
+        this.grad = new double[capacity];
+        this.pool = new int[capacity];
+        this.nodes = new Value[capacity];
+        this.leaves = new Value[64];
+        this.leafSlots = new int[64];
+    }
+
+    // ==================== 記錄範圍 ====================
+
+    /**
+     * 建立新的 tape 並在目前執行緒上開始記錄
+     */
+    public static Tape record() {
+        return new Tape().begin();
+    }
+
+    /**
+     * 在目前執行緒上開始記錄（可重複使用同一條 tape）
+     */
+    public Tape begin() {
+        if (recording) {
+            throw new IllegalStateException("Tape is already recording");
+        }
+        previous = ACTIVE.get();
+        ACTIVE.set(this);
+        recording = true;
+        return this;
+    }
+
+    /**
+     * 停止記錄並恢復外層的 tape（如果有）
+     */
+    @Override
+    public void close() {
+        if (!recording) {
+            return;
+        }
+        if (previous != null) {
+            ACTIVE.set(previous);
+        } else {
+            ACTIVE.remove();
+        }
+        previous = null;
+        recording = false;
+    }
+
+    /**
+     * 清空 tape 以便下一步重複使用緩衝區
+     * 之前由這條 tape 產生的 Value 全部失效
+     */
+    public void clear() {
+        for (int i = 0; i < leafCount; i++) {
+            if (leaves[i].tape == this) {  // 之後可能已註冊到別的 tape
+                leaves[i].tape = null;
+            }
+            leaves[i] = null;
+        }
+        Arrays.fill(nodes, 0, size, null);
+        leafCount = 0;
+        size = 0;
+        poolSize = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 決定運算要記錄到哪條 tape：
+     * 目前啟用的 tape 優先，否則沿用運算元所在的 tape
+     */
+    static Tape of(Value a) {
+        Tape active = ACTIVE.get();
+        if (active != null) {
+            return active;
+        }
+        return a.onTape ? a.tape : null;
+    }
+
+    static Tape of(Value a, Value b) {
+        Tape active = ACTIVE.get();
+        if (active != null) {
+            return active;
+        }
+        if (a.onTape) {
+            return a.tape;
+        }
+        return b.onTape ? b.tape : null;
+    }
+
+    static Tape of(Value[] values) {
+        Tape active = ACTIVE.get();
+        if (active != null) {
+            return active;
+        }
+        for (Value v : values) {
+            if (v.onTape) {
+                return v.tape;
+            }
+        }
+        return null;
+    }
+
+    // ==================== 記錄運算 ====================
+
+    Value add(Value a, Value b) {
+        int i = slotOf(a);
+        int j = slotOf(b);
+        return push(ADD, i, j, 0.0, data[i] + data[j]);
+    }
+
+    Value mul(Value a, Value b) {
+        int i = slotOf(a);
+        int j = slotOf(b);
+        return push(MUL, i, j, 0.0, data[i] * data[j]);
+    }
+
+    Value addConst(Value a, double c) {
+        int i = slotOf(a);
+        return push(ADD_CONST, i, -1, c, data[i] + c);
+    }
+
+    Value mulConst(Value a, double c) {
+        int i = slotOf(a);
+        return push(MUL_CONST, i, -1, c, data[i] * c);
+    }
+
+    Value pow(Value a, double n) {
+        int i = slotOf(a);
+        return push(POW, i, -1, n, Math.pow(data[i], n));
+    }
+
+    Value tanh(Value a) {
+        int i = slotOf(a);
+        return push(TANH, i, -1, 0.0, Math.tanh(data[i]));
+    }
+
+    Value relu(Value a) {
+        int i = slotOf(a);
+        return push(RELU, i, -1, 0.0, Math.max(0, data[i]));
+    }
+
+    Value exp(Value a) {
+        int i = slotOf(a);
+        return push(EXP, i, -1, 0.0, Math.exp(data[i]));
+    }
+
+    Value sum(Value[] values) {
+        int offset = operands(values);
+        double s = 0.0;
+        for (int k = 0; k < values.length; k++) {
+            s += data[pool[offset + k]];
+        }
+        return push(SUM, offset, values.length, 0.0, s);
+    }
+
+    Value dot(Value[] values) {
+        int offset = operands(values);
+        int n = values.length / 2;
+        double s = 0.0;
+        for (int k = 0; k < n; k++) {
+            s += data[pool[offset + k]] * data[pool[offset + n + k]];
+        }
+        return push(DOT, offset, values.length, 0.0, s);
+    }
+
+    private int operands(Value[] values) {
+        if (poolSize + values.length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + values.length));
+        }
+        int offset = poolSize;
+        for (Value v : values) {
+            // slotOf 可能擴充 tape，但不會動到 pool
+            pool[poolSize++] = slotOf(v);
+        }
+        return offset;
+    }
+
+    /**
+     * 取得 Value 在 tape 上的位置；外部 Value 第一次出現時註冊為葉節點
+     * 已註冊的葉節點每次都重新讀取 data，沒有 clear() 就重複使用 tape 時不會拿到舊值
+     */
+    private int slotOf(Value v) {
+        if (v.tape == this) {
+            if (!v.onTape) {
+                data[v.slot] = v.getData();
+            }
+            return v.slot;
+        }
+        if (v.onTape) {
+            throw new IllegalArgumentException("Value belongs to a different tape");
+        }
+        int slot = append(LEAF, -1, -1, 0.0, v.getData());
+        if (leafCount == leaves.length) {
+            leaves = Arrays.copyOf(leaves, leafCount * 2);
+            leafSlots = Arrays.copyOf(leafSlots, leafCount * 2);
+        }
+        leaves[leafCount] = v;
+        leafSlots[leafCount] = slot;
+        leafCount++;
+        nodes[slot] = v;
+        v.tape = this;
+        v.slot = slot;
+        return slot;
+    }
+
+    private Value push(byte code, int a, int b, double n, double value) {
+        int slot = append(code, a, b, n, value);
+        Value v = new Value(this, slot);
+        nodes[slot] = v;
+        return v;
+    }
+
+    private int append(byte code, int a, int b, double n, double value) {
+        if (size == op.length) {
+            grow();
+        }
+        int slot = size++;
+        op[slot] = code;
+        lhs[slot] = a;
+        rhs[slot] = b;
+        arg[slot] = n;
+        data[slot] = value;
+        grad[slot] = 0.0;
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = op.length * 2;
+        op = Arrays.copyOf(op, capacity);
+        lhs = Arrays.copyOf(lhs, capacity);
+        rhs = Arrays.copyOf(rhs, capacity);
+        arg = Arrays.copyOf(arg, capacity);
+        data = Arrays.copyOf(data, capacity);
+        grad = Arrays.copyOf(grad, capacity);
+        nodes = Arrays.copyOf(nodes, capacity);
+    }
+
+    // ==================== 反向傳播 ====================
+
+    /**
+     * 從 root 反向掃過 tape，最後把葉節點梯度累加回原本的 Value
+     */
+    void backward(int root) {
+        Arrays.fill(grad, 0, root + 1, 0.0);
+        grad[root] = 1.0;
+        backward(op, lhs, rhs, arg, pool, data, grad, root);
+
+        for (int k = 0; k < leafCount; k++) {
+            int slot = leafSlots[k];
+            if (slot <= root) {
+                Value leaf = leaves[k];
+                leaf.setGrad(leaf.getGrad() + grad[slot]);
+            }
+        }
+    }
+
+    // ==================== 共用的重播核心 ====================
+
+    /**
+     * 依 tape 順序重新計算 [from, to) 的節點值（葉節點保持不變）
+     * CompiledGraph 以此重播凍結的計算圖
+     */
+    static void forward(byte[] op, int[] lhs, int[] rhs, double[] arg, int[] pool,
+                        double[] data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int a = lhs[i];
+            switch (op[i]) {
+                case ADD:
+                    data[i] = data[a] + data[rhs[i]];
+                    break;
+                case MUL:
+                    data[i] = data[a] * data[rhs[i]];
+                    break;
+                case POW:
+                    data[i] = Math.pow(data[a], arg[i]);
+                    break;
+                case TANH:
+                    data[i] = Math.tanh(data[a]);
+                    break;
+                case RELU:
+                    data[i] = Math.max(0, data[a]);
+                    break;
+                case EXP:
+                    data[i] = Math.exp(data[a]);
+                    break;
+                case ADD_CONST:
+                    data[i] = data[a] + arg[i];
+                    break;
+                case MUL_CONST:
+                    data[i] = data[a] * arg[i];
+                    break;
+                case SUM:
+                    double s = 0.0;
+                    for (int k = a, end = a + rhs[i]; k < end; k++) {
+                        s += data[pool[k]];
+                    }
+                    data[i] = s;
+                    break;
+                case DOT:
+                    int n = rhs[i] / 2;
+                    double d = 0.0;
+                    for (int k = a, end = a + n; k < end; k++) {
+                        d += data[pool[k]] * data[pool[k + n]];
+                    }
+                    data[i] = d;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 由 root 往回的反向迴圈：grad[root] 需由呼叫端設好
+     */
+    static void backward(byte[] op, int[] lhs, int[] rhs, double[] arg, int[] pool,
+                         double[] data, double[] grad, int root) {
+        for (int i = root; i >= 0; i--) {
+            double g = grad[i];
+            if (g == 0.0) {
+                continue;
+            }
+            int a = lhs[i];
+            switch (op[i]) {
+                case ADD:
+                    grad[a] += g;
+                    grad[rhs[i]] += g;
+                    break;
+                case MUL:
+                    int b = rhs[i];
+                    grad[a] += data[b] * g;
+                    grad[b] += data[a] * g;
+                    break;
+                case POW:
+                    grad[a] += arg[i] * Math.pow(data[a], arg[i] - 1) * g;
+                    break;
+                case TANH:
+                    grad[a] += (1 - data[i] * data[i]) * g;
+                    break;
+                case RELU:
+                    grad[a] += (data[i] > 0 ? 1.0 : 0.0) * g;
+                    break;
+                case EXP:
+                    grad[a] += data[i] * g;
+                    break;
+                case ADD_CONST:
+                    grad[a] += g;
+                    break;
+                case MUL_CONST:
+                    grad[a] += arg[i] * g;
+                    break;
+                case SUM:
+                    for (int k = a, end = a + rhs[i]; k < end; k++) {
+                        grad[pool[k]] += g;
+                    }
+                    break;
+                case DOT:
+                    int n = rhs[i] / 2;
+                    for (int k = a, end = a + n; k < end; k++) {
+                        int w = pool[k];
+                        int x = pool[k + n];
+                        grad[w] += data[x] * g;
+                        grad[x] += data[w] * g;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // ==================== 節點存取 ====================
+
+    double data(int slot) {
+        return data[slot];
+    }
+
+    void setData(int slot, double value) {
+        data[slot] = value;
+    }
+
+    double grad(int slot) {
+        return grad[slot];
+    }
+
+    void setGrad(int slot, double value) {
+        grad[slot] = value;
+    }
+
+    /**
+     * slot 的有序運算元（保留重複，例如 a * a）
+     */
+    Value[] operands(int slot) {
+        int a = lhs[slot];
+        switch (op[slot]) {
+            case LEAF:
+                return new Value[0];
+            case ADD:
+            case MUL:
+                return new Value[]{nodes[a], nodes[rhs[slot]]};
+            case SUM:
+            case DOT:
+                Value[] result = new Value[rhs[slot]];
+                for (int k = 0; k < result.length; k++) {
+                    result[k] = nodes[pool[a + k]];
+                }
+                return result;
+            default:
+                return new Value[]{nodes[a]};
+        }
+    }
+
+    String opName(int slot) {
+        switch (op[slot]) {
+            case ADD: return "+";
+            case MUL: return "*";
+            case POW: return "**" + arg[slot];
+            case TANH: return "tanh";
+            case RELU: return "ReLU";
+            case EXP: return "exp";
+            case ADD_CONST: return "+" + arg[slot];
+            case MUL_CONST: return "*" + arg[slot];
+            case SUM: return "sum";
+            case DOT: return "dot";
+            default: return "";
+        }
+    }
+}
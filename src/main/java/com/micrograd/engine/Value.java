@@ -1,46 +1,88 @@
 package com.micrograd.engine;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Value {
 
     private double data;
     private double grad;
-    private final Set<Value> prev;
     private final String op;
     private String label;
     private Runnable backward;
 
+    // Tape 模式：onTape 表示 data/grad 存在 tape 的陣列裡；
+    // 否則 tape/slot 只是此葉節點在某條 tape 上的註冊位置
+    Tape tape;
+    int slot;
+    final boolean onTape;
+
+    // 運算種類與有序運算元（保留重複，例如 a * a），供 CompiledGraph 凍結計算圖
+    byte code = Tape.LEAF;
+    double arg;
+    final Value[] operands;
+
+    // 拓撲排序用的拜訪標記：等於目前的 epoch 代表本次走訪已經看過
+    // epoch 用 long 且從 1 開始，不會繞回 0（新節點的初始值）或先前用過的值
+    private long visited;
+    // 最近一次走訪中的後序位置；共用節點可能被其他執行緒的走訪覆寫，使用前要以走訪結果核對
+    int position;
+
+    private static final Value[] NO_OPERANDS = new Value[0];
+    private static final AtomicLong EPOCH = new AtomicLong();
+    private static final ThreadLocal<Traversal> TRAVERSAL = ThreadLocal.withInitial(Traversal::new);
+    private static final ThreadLocal<int[]> NO_GRAD_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
     // === 建構子 ===
 
     public Value(double data) {
-        this(data, Collections.emptySet(), "");
+        this(data, "", Tape.LEAF, 0.0, NO_OPERANDS);
     }
 
     public Value(double data, Set<Value> children, String op) {
+        this(data, op, Tape.LEAF, 0.0, children.toArray(NO_OPERANDS));
+    }
+
+    private Value(double data, String op, byte code, double arg, Value... operands) {
         this.data = data;
         this.grad = 0.0;
-        this.prev = new HashSet<>(children);  // 使用 HashSet
         this.op = op;
+        this.code = code;
+        this.arg = arg;
+        this.operands = operands;
         this.label = "";
         this.backward = () -> {};
+        this.onTape = false;
     }
 
-    // === 輔助方法：建立子節點集合（允許重複）===
-
-    private static Set<Value> childrenOf(Value... values) {
-        Set<Value> set = new HashSet<>();
-        Collections.addAll(set, values);
-        return set;
+    /**
+     * Tape 節點：只保存位置，不建立子節點集合與 backward 閉包
+     */
+    Value(Tape tape, int slot) {
+        this.operands = NO_OPERANDS;
+        this.op = null;
+        this.label = "";
+        this.tape = tape;
+        this.slot = slot;
+        this.onTape = true;
     }
 
     // === 基本運算 ===
 
     public Value add(Value other) {
+        if (noGradActive()) {
+            return new Value(this.getData() + other.getData());
+        }
+        Tape tp = Tape.of(this, other);
+        if (tp != null) {
+            return tp.add(this, other);
+        }
+
         Value out = new Value(
                 this.data + other.data,
-                childrenOf(this, other),  // ✅ 允許 this == other
-                "+"
+                "+", Tape.ADD, 0.0,
+                this, other  // ✅ 允許 this == other
         );
 
         // 保存 this 和 other 的引用供 backward 使用
@@ -54,15 +96,47 @@ public class Value {
         return out;
     }
 
+    /**
+     * 加上常數：常數直接存在節點上，不建立葉節點
+     * 加 0 也建立新節點，運算結果永遠不是運算元本身（之後修改結果不會改到運算元）
+     */
     public Value add(double other) {
-        return this.add(new Value(other));
+        if (noGradActive()) {
+            return new Value(this.getData() + other);
+        }
+        Tape tp = Tape.of(this);
+        if (tp != null) {
+            return tp.addConst(this, other);
+        }
+
+        Value out = new Value(
+                this.data + other,
+                "+" + other, Tape.ADD_CONST, other,
+                this
+        );
+
+        Value self = this;
+
+        out.backward = () -> {
+            self.grad += out.grad;
+        };
+
+        return out;
     }
 
     public Value mul(Value other) {
+        if (noGradActive()) {
+            return new Value(this.getData() * other.getData());
+        }
+        Tape tp = Tape.of(this, other);
+        if (tp != null) {
+            return tp.mul(this, other);
+        }
+
         Value out = new Value(
                 this.data * other.data,
-                childrenOf(this, other),  // ✅ 允許 this == other
-                "*"
+                "*", Tape.MUL, 0.0,
+                this, other  // ✅ 允許 this == other
         );
 
         Value self = this;
@@ -75,15 +149,46 @@ public class Value {
         return out;
     }
 
+    /**
+     * 乘上常數：常數直接存在節點上，不建立葉節點；乘 1 同樣建立新節點
+     */
     public Value mul(double other) {
-        return this.mul(new Value(other));
+        if (noGradActive()) {
+            return new Value(this.getData() * other);
+        }
+        Tape tp = Tape.of(this);
+        if (tp != null) {
+            return tp.mulConst(this, other);
+        }
+
+        Value out = new Value(
+                this.data * other,
+                "*" + other, Tape.MUL_CONST, other,
+                this
+        );
+
+        Value self = this;
+
+        out.backward = () -> {
+            self.grad += other * out.grad;
+        };
+
+        return out;
     }
 
     public Value pow(double n) {
+        if (noGradActive()) {
+            return new Value(Math.pow(this.getData(), n));
+        }
+        Tape tp = Tape.of(this);
+        if (tp != null) {
+            return tp.pow(this, n);
+        }
+
         Value out = new Value(
                 Math.pow(this.data, n),
-                childrenOf(this),
-                "**" + n
+                "**" + n, Tape.POW, n,
+                this
         );
 
         Value self = this;
@@ -98,10 +203,17 @@ public class Value {
     // === 激活函數 ===
 
     public Value tanh() {
-        double x = this.data;
-        double t = (Math.exp(2 * x) - 1) / (Math.exp(2 * x) + 1);
+        if (noGradActive()) {
+            return new Value(Math.tanh(this.getData()));
+        }
+        Tape tp = Tape.of(this);
+        if (tp != null) {
+            return tp.tanh(this);
+        }
 
-        Value out = new Value(t, childrenOf(this), "tanh");
+        double t = Math.tanh(this.data);
+
+        Value out = new Value(t, "tanh", Tape.TANH, 0.0, this);
 
         Value self = this;
 
@@ -113,10 +225,18 @@ public class Value {
     }
 
     public Value relu() {
+        if (noGradActive()) {
+            return new Value(Math.max(0, this.getData()));
+        }
+        Tape tp = Tape.of(this);
+        if (tp != null) {
+            return tp.relu(this);
+        }
+
         Value out = new Value(
                 Math.max(0, this.data),
-                childrenOf(this),
-                "ReLU"
+                "ReLU", Tape.RELU, 0.0,
+                this
         );
 
         Value self = this;
@@ -129,9 +249,17 @@ public class Value {
     }
 
     public Value exp() {
+        if (noGradActive()) {
+            return new Value(Math.exp(this.getData()));
+        }
+        Tape tp = Tape.of(this);
+        if (tp != null) {
+            return tp.exp(this);
+        }
+
         double t = Math.exp(this.data);
 
-        Value out = new Value(t, childrenOf(this), "exp");
+        Value out = new Value(t, "exp", Tape.EXP, 0.0, this);
 
         Value self = this;
 
@@ -142,6 +270,141 @@ public class Value {
         return out;
     }
 
+    // === 融合運算 ===
+
+    /**
+     * n 元加總：單一節點，反向傳播一個迴圈把梯度分給所有輸入
+     * 空的輸入回傳常數 0（沒有運算元的節點會被 CompiledGraph 當成參數）
+     */
+    public static Value sum(List<Value> values) {
+        if (values.isEmpty()) {
+            return new Value(0.0);
+        }
+        Value[] operands = values.toArray(NO_OPERANDS);
+        if (noGradActive()) {
+            double s = 0.0;
+            for (Value v : operands) {
+                s += v.getData();
+            }
+            return new Value(s);
+        }
+        Tape tp = Tape.of(operands);
+        if (tp != null) {
+            return tp.sum(operands);
+        }
+
+        double s = 0.0;
+        for (Value v : operands) {
+            s += v.data;
+        }
+
+        Value out = new Value(s, "sum", Tape.SUM, 0.0, operands);
+
+        out.backward = () -> {
+            for (Value v : operands) {
+                v.grad += out.grad;
+            }
+        };
+
+        return out;
+    }
+
+    /**
+     * 內積 w · x：取代 2·n 個 mul / add 節點的單一節點
+     * 運算元依序存放為 [w0..wn-1, x0..xn-1]；空的輸入與 sum 相同，回傳常數 0
+     */
+    public static Value dot(List<Value> w, List<Value> x) {
+        int n = w.size();
+        if (x.size() != n) {
+            throw new IllegalArgumentException(
+                    String.format("Size mismatch: %d vs %d", n, x.size()));
+        }
+        if (n == 0) {
+            return new Value(0.0);
+        }
+        Value[] operands = new Value[2 * n];
+        for (int i = 0; i < n; i++) {
+            operands[i] = w.get(i);
+            operands[n + i] = x.get(i);
+        }
+        if (noGradActive()) {
+            double s = 0.0;
+            for (int i = 0; i < n; i++) {
+                s += operands[i].getData() * operands[n + i].getData();
+            }
+            return new Value(s);
+        }
+        Tape tp = Tape.of(operands);
+        if (tp != null) {
+            return tp.dot(operands);
+        }
+
+        double s = 0.0;
+        for (int i = 0; i < n; i++) {
+            s += operands[i].data * operands[n + i].data;
+        }
+
+        Value out = new Value(s, "dot", Tape.DOT, 0.0, operands);
+
+        out.backward = () -> {
+            double g = out.grad;
+            for (int i = 0; i < n; i++) {
+                Value wi = operands[i];
+                Value xi = operands[n + i];
+                wi.grad += xi.data * g;
+                xi.grad += wi.data * g;
+            }
+        };
+
+        return out;
+    }
+
+    // === No-grad 模式 ===
+
+    /**
+     * 進入 no-grad 區塊（try-with-resources），區塊內的運算只計算數值：
+     * 結果是沒有子節點、沒有 backward 閉包的葉節點，也不會記錄到 Tape 上
+     *
+     * <pre>
+     * try (Value.NoGrad ignored = Value.noGrad()) {
+     *     Value y = mlp.forwardSingle(x);
+     * }
+     * </pre>
+     */
+    public static NoGrad noGrad() {
+        NO_GRAD_DEPTH.get()[0]++;
+        return new NoGrad();
+    }
+
+    /**
+     * 目前執行緒是否會建立計算圖
+     */
+    public static boolean isGradEnabled() {
+        return !noGradActive();
+    }
+
+    private static boolean noGradActive() {
+        return NO_GRAD_DEPTH.get()[0] > 0;
+    }
+
+    /**
+     * no-grad 區塊的範圍，可巢狀使用，重複 close 不會有影響
+     */
+    public static final class NoGrad implements AutoCloseable {
+        private boolean closed;
+
+        private NoGrad() {
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                NO_GRAD_DEPTH.get()[0]--;
+            }
+        }
+    }
+
     // === 便利運算 ===
 
     public Value neg() {
@@ -166,53 +429,170 @@ public class Value {
 
     // === 反向傳播 ===
 
+    /**
+     * 反向傳播，梯度累加到計算圖中每個節點
+     * 不支援在不同執行緒上同時對共用節點的計算圖呼叫 backward（拜訪標記與梯度都不是同步的）
+     */
     public void backward() {
-        List<Value> topo = new ArrayList<>();
-        Set<Value> visited = new HashSet<>();
-        buildTopo(this, topo, visited);
+        if (onTape) {
+            tape.backward(slot);
+            return;
+        }
 
-        this.grad = 1.0;
+        Traversal t = TRAVERSAL.get();
+        t.run(this);
+        try {
+            this.grad = 1.0;
+            for (int i = t.size - 1; i >= 0; i--) {
+                t.order[i].backward.run();
+            }
+        } finally {
+            t.release();
+        }
+    }
 
-        Collections.reverse(topo);
-        for (Value v : topo) {
-            v.backward.run();
+    /**
+     * 分層平行反向傳播（見 ParallelBackward），梯度與 backward() 相同
+     * 單執行緒的 pool、小型計算圖或含自訂運算（以 children 建構子建立）的圖退回序列版 backward()
+     */
+    public void backwardParallel(ForkJoinPool pool) {
+        if (onTape || !ParallelBackward.run(this, pool)) {
+            backward();
         }
     }
 
-    private void buildTopo(Value v, List<Value> topo, Set<Value> visited) {
-        if (!visited.contains(v)) {
-            visited.add(v);
-            for (Value child : v.prev) {
-                buildTopo(child, topo, visited);
+    public void backwardParallel() {
+        backwardParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 回傳以 root 為根的拓撲排序（子節點在前、root 在最後）
+     * 使用迭代式 DFS，任意深度的計算圖都不會 StackOverflow
+     */
+    public static List<Value> topologicalOrder(Value root) {
+        Traversal t = TRAVERSAL.get();
+        t.run(root);
+        try {
+            return new ArrayList<>(Arrays.asList(t.order).subList(0, t.size));
+        } finally {
+            t.release();
+        }
+    }
+
+    /**
+     * 與 topologicalOrder 相同，回傳陣列；每個節點的 position 設為它在陣列中的位置
+     */
+    static Value[] topologicalArray(Value root) {
+        Traversal t = TRAVERSAL.get();
+        t.run(root);
+        try {
+            return Arrays.copyOf(t.order, t.size);
+        } finally {
+            t.release();
+        }
+    }
+
+    /**
+     * 每個執行緒共用的走訪緩衝區：顯式堆疊 + 後序輸出
+     * 以 epoch 標記取代 HashSet，走訪本身不配置記憶體（緩衝區不足時才擴充）
+     */
+    private static final class Traversal {
+        Value[] order = new Value[256];
+        Value[] stack = new Value[256];
+        Value[][] children = new Value[256][];
+        int[] next = new int[256];
+        int size;
+
+        void run(Value root) {
+            long epoch = EPOCH.incrementAndGet();
+            int top = 0;
+            size = 0;
+            root.visited = epoch;
+            stack[0] = root;
+            children[0] = root.children();
+            next[0] = 0;
+
+            while (top >= 0) {
+                Value v = stack[top];
+                Value[] operands = children[top];
+                int i = next[top];
+                if (i < operands.length) {
+                    next[top] = i + 1;
+                    Value child = operands[i];
+                    if (child.visited != epoch) {
+                        child.visited = epoch;
+                        if (++top == stack.length) {
+                            stack = Arrays.copyOf(stack, top * 2);
+                            children = Arrays.copyOf(children, top * 2);
+                            next = Arrays.copyOf(next, top * 2);
+                        }
+                        stack[top] = child;
+                        children[top] = child.children();
+                        next[top] = 0;
+                    }
+                } else {
+                    children[top] = null;
+                    stack[top--] = null;
+                    if (size == order.length) {
+                        order = Arrays.copyOf(order, size * 2);
+                    }
+                    v.position = size;
+                    order[size++] = v;
+                }
             }
-            topo.add(v);
+        }
+
+        /**
+         * 釋放對計算圖的參照，避免執行緒長期持有整張圖
+         */
+        void release() {
+            Arrays.fill(order, 0, size, null);
+            size = 0;
         }
     }
 
     // === Getter / Setter ===
 
     public double getData() {
-        return data;
+        return onTape ? tape.data(slot) : data;
     }
 
     public void setData(double data) {
-        this.data = data;
+        if (onTape) {
+            tape.setData(slot, data);
+        } else {
+            this.data = data;
+        }
     }
 
     public double getGrad() {
-        return grad;
+        return onTape ? tape.grad(slot) : grad;
     }
 
     public void setGrad(double grad) {
-        this.grad = grad;
+        if (onTape) {
+            tape.setGrad(slot, grad);
+        } else {
+            this.grad = grad;
+        }
     }
 
+    /**
+     * 直接的運算元；tape 上的節點由 tape 的運算元索引還原（clear() 之後失效）
+     */
     public Set<Value> getPrev() {
-        return prev;
+        return new LinkedHashSet<>(Arrays.asList(children()));
+    }
+
+    /**
+     * 有序的運算元（保留重複）：一般節點是 operands，tape 上的節點向 tape 查詢
+     */
+    private Value[] children() {
+        return onTape ? tape.operands(slot) : operands;
     }
 
     public String getOp() {
-        return op;
+        return onTape ? tape.opName(slot) : op;
     }
 
     public String getLabel() {
@@ -225,6 +605,6 @@ public class Value {
 
     @Override
     public String toString() {
-        return String.format("Value(data=%.4f, grad=%.4f)", data, grad);
+        return String.format("Value(data=%.4f, grad=%.4f)", getData(), getGrad());
     }
 }
\ No newline at end of file
@@ -1,15 +1,23 @@
 package com.micrograd.model;
 
+import com.micrograd.data.CorpusCache;
 import com.micrograd.data.Vocabulary;
 import com.micrograd.tensor.Tensor;
 import com.micrograd.tensor.TensorOps;
 import com.micrograd.util.RandomUtils;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Bigram 語言模型 - 計數方法
  * 透過統計 bigram 出現次數來建立機率分佈
+ *
+ * 計數改變時只把受影響的列標記為 dirty，等到 getProbs、loss、sample 等需要機率時
+ * 才重新正規化這些列；update / observe 加入少量新資料時不會重算整個機率矩陣。
  */
 public class BigramCounter implements LanguageModel {
 
@@ -17,6 +25,8 @@ public class BigramCounter implements LanguageModel {
     private final Tensor counts;    // 27×27 計數矩陣
     private Tensor probs;           // 27×27 機率矩陣
     private final double smoothing; // Laplace smoothing
+    private final boolean[] dirty;  // 計數改變、機率尚未重算的列
+    private boolean anyDirty;
 
     public BigramCounter(Vocabulary vocab) {
         this(vocab, 1.0);  // 預設 smoothing = 1
@@ -26,27 +36,122 @@ public class BigramCounter implements LanguageModel {
         this.vocab = vocab;
         this.counts = Tensor.zeros(vocab.size(), vocab.size());
         this.smoothing = smoothing;
+        this.dirty = new boolean[vocab.size()];
+        Arrays.fill(dirty, true);
+        this.anyDirty = true;
     }
 
     @Override
     public void train(int[][] bigrams) {
-        int[] inputs = bigrams[0];
-        int[] targets = bigrams[1];
+        train(bigrams, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 在指定的 pool 上平行統計（見 BigramCounts），結果與執行緒數無關
+     */
+    public void train(int[][] bigrams, ForkJoinPool pool) {
+        addCounts(BigramCounts.count(bigrams[0], bigrams[1], vocab.size(), pool));
+    }
+
+    /**
+     * 直接從映射的語料快取統計，不需要先展開成 bigram 陣列
+     */
+    public void train(CorpusCache cache, ForkJoinPool pool) {
+        addCounts(BigramCounts.count(cache, vocab.size(), pool));
+    }
 
-        // 統計計數
+    /**
+     * 加總一組已統計好的 shard（見 CountShard），不需要重新讀取原始文字
+     */
+    public void train(Collection<CountShard> shards) {
+        addCounts(CountShard.merge(shards, vocab));
+    }
+
+    /**
+     * 加入一批新的 bigram：只增加計數並標記受影響的列，機率在下次使用時才重算
+     * 先檢查所有索引，有任何一個超出詞彙表時丟出例外，計數不變
+     */
+    public void update(int[] inputs, int[] targets) {
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException(
+                    String.format("Inputs and targets differ in length: %d vs %d", inputs.length, targets.length));
+        }
+        int v = vocab.size();
         for (int i = 0; i < inputs.length; i++) {
-            int ix1 = inputs[i];
-            int ix2 = targets[i];
-            counts.increment(ix1, ix2, 1.0);
+            if (inputs[i] < 0 || inputs[i] >= v || targets[i] < 0 || targets[i] >= v) {
+                throw new IndexOutOfBoundsException(
+                        String.format("Bigram (%d, %d) out of bounds for vocabulary size %d",
+                                inputs[i], targets[i], v));
+            }
         }
+        for (int i = 0; i < inputs.length; i++) {
+            counts.increment(inputs[i], targets[i], 1.0);
+            dirty[inputs[i]] = true;
+            anyDirty = true;
+        }
+    }
+
+    /**
+     * 加入一個新的單字（前後加上特殊符號後的所有 bigram）
+     * 規則與 DataLoader 相同：去掉前後空白、轉小寫，空白的單字直接略過；
+     * 含有詞彙表以外的字元時丟出例外，計數不變
+     */
+    public void observe(String word) {
+        String w = word.trim().toLowerCase(Locale.ROOT);
+        if (w.isEmpty()) {
+            return;
+        }
+        int special = vocab.getSpecialTokenIndex();
+        int[] inputs = new int[w.length() + 1];
+        int[] targets = new int[w.length() + 1];
+        inputs[0] = special;
+        for (int i = 0; i < w.length(); i++) {
+            int idx = vocab.encode(w.charAt(i));
+            targets[i] = idx;
+            inputs[i + 1] = idx;
+        }
+        targets[w.length()] = special;
+        update(inputs, targets);
+    }
+
+    private void addCounts(long[] bigramCounts) {
+        int v = vocab.size();
+        for (int i = 0; i < v; i++) {
+            for (int j = 0; j < v; j++) {
+                long c = bigramCounts[i * v + j];
+                if (c != 0) {
+                    counts.increment(i, j, c);
+                    dirty[i] = true;
+                    anyDirty = true;
+                }
+            }
+        }
+    }
 
-        // 加上 smoothing 並正規化
-        Tensor smoothedCounts = counts.add(smoothing);
-        probs = TensorOps.normalizeRows(smoothedCounts);
+    /**
+     * 重新正規化 dirty 的列：probs[i] = (counts[i] + smoothing) / 列總和
+     */
+    private void normalizeDirtyRows() {
+        if (!anyDirty) {
+            return;
+        }
+        if (probs == null) {
+            probs = new Tensor(counts.getRows(), counts.getCols());
+        }
+        for (int i = 0; i < dirty.length; i++) {
+            if (dirty[i]) {
+                Tensor row = probs.sliceRows(i, i + 1);
+                counts.sliceRows(i, i + 1).add(smoothing, row);
+                TensorOps.normalizeRows(row, row);
+                dirty[i] = false;
+            }
+        }
+        anyDirty = false;
     }
 
     @Override
     public double loss(int[][] bigrams) {
+        normalizeDirtyRows();
         int[] inputs = bigrams[0];
         int[] targets = bigrams[1];
 
@@ -65,6 +170,7 @@ public class BigramCounter implements LanguageModel {
 
     @Override
     public String sample(Random rng) {
+        normalizeDirtyRows();
         StringBuilder result = new StringBuilder();
         int idx = 0;  // 從特殊符號 '.' 開始
 
@@ -103,6 +209,7 @@ public class BigramCounter implements LanguageModel {
      * 取得機率矩陣
      */
     public Tensor getProbs() {
+        normalizeDirtyRows();
         return probs;
     }
 
@@ -111,7 +218,7 @@ public class BigramCounter implements LanguageModel {
      */
     public void printTopNext(char c, int topK) {
         int idx = vocab.encode(c);
-        Tensor prob = probs.getRow(idx);
+        Tensor prob = getProbs().getRow(idx);
 
         System.out.printf("'%c' 之後最可能的 %d 個字元:\n", c, topK);
 
@@ -140,7 +247,7 @@ public class BigramCounter implements LanguageModel {
      */
     public boolean checkNormalization() {
         for (int i = 0; i < vocab.size(); i++) {
-            double rowSum = probs.getRow(i).sum();
+            double rowSum = getProbs().getRow(i).sum();
             if (Math.abs(rowSum - 1.0) > 1e-6) {
                 System.err.printf("Row %d sum = %.6f (expected 1.0)\n", i, rowSum);
                 return false;
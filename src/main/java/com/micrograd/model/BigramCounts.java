@@ -0,0 +1,144 @@
+package com.micrograd.model;
+
+import com.micrograd.data.CorpusCache;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 平行統計 bigram 次數
+ *
+ * 把語料切成固定份數，每份在 ForkJoinPool 上累加到自己的 long[V·V]（不共用記憶體、不需要同步），
+ * 最後依份的順序合併。計數是整數加法，結果與執行緒數、排程都無關。
+ * 結果以 row-major 存放：第 (input, target) 個計數在 input·V + target。
+ */
+public final class BigramCounts {
+
+    /** bigram 數少於這個值時直接在呼叫端的執行緒上統計 */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /** 每份至少的 bigram 數 */
+    static final int MIN_CHUNK = 1 << 14;
+
+    private BigramCounts() {
+    }
+
+    /**
+     * 統計 (inputs[i], targets[i]) 的次數（使用 common pool）
+     */
+    public static long[] count(int[] inputs, int[] targets, int vocabSize) {
+        return count(inputs, targets, vocabSize, ForkJoinPool.commonPool());
+    }
+
+    public static long[] count(int[] inputs, int[] targets, int vocabSize, ForkJoinPool pool) {
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException(
+                    String.format("Inputs and targets differ in length: %d vs %d", inputs.length, targets.length));
+        }
+        int n = inputs.length;
+        int parts = parts(n, pool);
+        long[][] partial = new long[parts][];
+        Chunk chunk = (t, local) -> {
+            int from = (int) ((long) n * t / parts);
+            int to = (int) ((long) n * (t + 1) / parts);
+            for (int i = from; i < to; i++) {
+                local[index(inputs[i], targets[i], vocabSize)]++;
+            }
+        };
+        return run(chunk, partial, vocabSize, pool);
+    }
+
+    /**
+     * 直接在映射的語料快取上統計所有 bigram，以單字為界切份（使用 common pool）
+     */
+    public static long[] count(CorpusCache cache, int vocabSize) {
+        return count(cache, vocabSize, ForkJoinPool.commonPool());
+    }
+
+    public static long[] count(CorpusCache cache, int vocabSize, ForkJoinPool pool) {
+        long words = cache.getWordCount();
+        int parts = (int) Math.min(parts(cache.getBigramCount(), pool), Math.max(1, words));
+        long[][] partial = new long[parts][];
+        Chunk chunk = (t, local) -> cache.forEachBigram(words * t / parts, words * (t + 1) / parts,
+                (input, target) -> local[index(input, target, vocabSize)]++);
+        return run(chunk, partial, vocabSize, pool);
+    }
+
+    // ==================== 輔助方法 ====================
+
+    /**
+     * 把第 t 份的計數累加到 local
+     */
+    @FunctionalInterface
+    private interface Chunk {
+        void count(int t, long[] local);
+    }
+
+    private static long[] run(Chunk chunk, long[][] partial, int vocabSize, ForkJoinPool pool) {
+        int cells = Math.multiplyExact(vocabSize, vocabSize);
+        if (partial.length == 1) {
+            long[] counts = new long[cells];
+            chunk.count(0, counts);
+            return counts;
+        }
+        pool.invoke(new CountTask(chunk, partial, cells, 0, partial.length));
+
+        // 依固定順序合併
+        long[] counts = partial[0];
+        for (int t = 1; t < partial.length; t++) {
+            long[] local = partial[t];
+            for (int c = 0; c < cells; c++) {
+                counts[c] += local[c];
+            }
+        }
+        return counts;
+    }
+
+    private static int parts(long n, ForkJoinPool pool) {
+        int parallelism = pool.getParallelism();
+        if (n < PARALLEL_THRESHOLD || parallelism < 2) {
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(4L * parallelism, n / MIN_CHUNK));
+    }
+
+    private static int index(int input, int target, int vocabSize) {
+        if (input < 0 || input >= vocabSize || target < 0 || target >= vocabSize) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Bigram (%d, %d) out of bounds for vocabulary size %d", input, target, vocabSize));
+        }
+        return input * vocabSize + target;
+    }
+
+    /**
+     * 第 t 份的結果寫入 partial[t]
+     */
+    private static final class CountTask extends RecursiveAction {
+        private final Chunk chunk;
+        private final long[][] partial;
+        private final int cells;
+        private final int t0;
+        private final int t1;
+
+        CountTask(Chunk chunk, long[][] partial, int cells, int t0, int t1) {
+            this.chunk = chunk;
+            this.partial = partial;
+            this.cells = cells;
+            this.t0 = t0;
+            this.t1 = t1;
+        }
+
+        @Override
+        protected void compute() {
+            if (t1 - t0 > 1) {
+                int mid = (t0 + t1) >>> 1;
+                invokeAll(new CountTask(chunk, partial, cells, t0, mid),
+                        new CountTask(chunk, partial, cells, mid, t1));
+                return;
+            }
+            long[] local = new long[cells];
+            chunk.count(t0, local);
+            partial[t0] = local;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.micrograd.model;
 
+import com.micrograd.data.MiniBatchIterator;
 import com.micrograd.data.Vocabulary;
+import com.micrograd.tensor.FloatTensor;
 import com.micrograd.tensor.Tensor;
 import com.micrograd.tensor.TensorOps;
+import com.micrograd.tensor.TensorValue;
 import com.micrograd.util.RandomUtils;
 
 import java.util.ArrayList;
@@ -12,95 +15,138 @@ import java.util.Random;
 /**
  * Bigram 語言模型 - 神經網路方法
  * 使用梯度下降學習機率分佈
+ *
+ * float32 = true 時權重與所有中間張量改用 FloatTensor（記憶體與頻寬減半），
+ * softmax、損失與矩陣乘法仍以 double 累加。
  */
 public class BigramNeuralNet implements LanguageModel {
 
     private final Vocabulary vocab;
-    private final Tensor W;           // 權重矩陣 27×27
+    private final Tensor W;           // 權重矩陣 27×27（float32 時為 null）
+    private final FloatTensor W32;    // float32 權重矩陣（否則為 null）
     private final double learningRate;
     private final int epochs;
     private final Random initRng;
 
     public BigramNeuralNet(Vocabulary vocab, double learningRate, int epochs, Random rng) {
+        this(vocab, learningRate, epochs, rng, false);
+    }
+
+    /**
+     * @param float32 以 float 儲存權重並訓練
+     */
+    public BigramNeuralNet(Vocabulary vocab, double learningRate, int epochs, Random rng, boolean float32) {
         this.vocab = vocab;
         this.learningRate = learningRate;
         this.epochs = epochs;
         this.initRng = rng;
 
-        // 初始化權重（隨機）
-        this.W = Tensor.randn(vocab.size(), vocab.size(), rng);
+        // 初始化權重（隨機，兩種精度使用同一串亂數）
+        if (float32) {
+            this.W = null;
+            this.W32 = FloatTensor.randn(vocab.size(), vocab.size(), rng);
+        } else {
+            this.W = Tensor.randn(vocab.size(), vocab.size(), rng);
+            this.W32 = null;
+        }
     }
 
     public BigramNeuralNet(Vocabulary vocab) {
         this(vocab, 50.0, 100, new Random(42));
     }
 
+    /**
+     * 全批次梯度下降：每個 epoch 以全部樣本更新一次權重
+     */
     @Override
     public void train(int[][] bigrams) {
-        int[] inputs = bigrams[0];
-        int[] targets = bigrams[1];
-        int n = inputs.length;
+        train(bigrams, Math.max(1, bigrams[0].length), null);
+    }
+
+    /**
+     * 小批次 SGD：每個 epoch 以 shuffleRng 洗牌後逐批更新權重
+     * 每一步只處理 batchSize×27 的 logits，工作集留在快取中；語料很大時通常幾個 epoch 就收斂
+     *
+     * @param shuffleRng 洗牌用的亂數（null 表示依原順序）
+     */
+    public void train(int[][] bigrams, int batchSize, Random shuffleRng) {
+        MiniBatchIterator batches = new MiniBatchIterator(bigrams, batchSize, shuffleRng, false);
 
         System.out.println("開始訓練神經網路...");
-        System.out.println("樣本數量: " + n);
+        System.out.println("樣本數量: " + batches.size());
+        System.out.println("批次大小: " + batches.getBatchSize() + "（每個 epoch " + batches.batchesPerEpoch() + " 批）");
         System.out.println("學習率: " + learningRate);
         System.out.println("訓練輪數: " + epochs);
+        System.out.println("精度: " + (isFloat32() ? "float32" : "float64"));
 
+        Step step = isFloat32() ? float32Step(batches) : float64Step();
         for (int epoch = 0; epoch < epochs; epoch++) {
-            // ===== 前向傳播 =====
-
-            // 1. One-hot 編碼輸入
-            Tensor xenc = TensorOps.oneHotBatch(inputs, vocab.size());  // n×27
-
-            // 2. 計算 logits = xenc @ W
-            Tensor logits = xenc.matmul(W);  // n×27
-
-            // 3. Softmax 得到機率
-            Tensor probs = TensorOps.softmax(logits);  // n×27
-
-            // 4. 計算損失
-            double loss = TensorOps.negativeLogLikelihood(probs, targets);
-
-            // ===== 反向傳播 =====
-
-            // 計算梯度: dL/dlogits = probs - one_hot(targets)
-            Tensor dlogits = probs.copy();
-            for (int i = 0; i < n; i++) {
-                int targetIdx = targets[i];
-                dlogits.set(i, targetIdx, dlogits.get(i, targetIdx) - 1.0);
-            }
-            // 平均梯度
-            dlogits = dlogits.div(n);
-
-            // dL/dW = xenc.T @ dlogits
-            Tensor dW = xenc.transpose().matmul(dlogits);
-
-            // ===== 更新權重 =====
-            for (int i = 0; i < vocab.size(); i++) {
-                for (int j = 0; j < vocab.size(); j++) {
-                    double oldW = W.get(i, j);
-                    double grad = dW.get(i, j);
-                    W.set(i, j, oldW - learningRate * grad);
-                }
+            batches.nextEpoch();
+            double totalLoss = 0;
+            while (batches.hasNext()) {
+                int[][] batch = batches.next();
+                totalLoss += step.run(batch) * batch[0].length;
             }
 
-            // 印出進度
+            // 印出進度（各批更新前損失的平均）
             if (epoch % 10 == 0 || epoch == epochs - 1) {
-                System.out.printf("Epoch %3d | Loss: %.4f\n", epoch, loss);
+                System.out.printf("Epoch %3d | Loss: %.4f\n", epoch, totalLoss / batches.size());
             }
         }
     }
 
+    /** 一個小批次的前向、反向與更新，回傳更新前的平均損失 */
+    private interface Step {
+        double run(int[][] batch);
+    }
+
+    /**
+     * float64：梯度由 TensorValue 自動計算
+     */
+    private Step float64Step() {
+        TensorValue w = new TensorValue(W);  // 與 W 共用資料，更新 W 即更新參數
+        return batch -> {
+            // logits = one_hot(inputs) @ W 就是 W 的第 inputs[i] 列，直接查表（b×27）
+            // → softmax 與平均負對數似然合併計算（前向時一併算好 dL/dlogits）
+            TensorValue loss = w.gatherRows(batch[0]).crossEntropy(batch[1]);
+            w.zeroGrad();
+            loss.backward();
+            W.subInPlace(w.getGrad().mulInPlace(learningRate));
+            return loss.item();
+        };
+    }
+
+    /**
+     * float32：TensorValue 只支援 double，直接呼叫它在反向傳播時使用的同一組運算
+     * （gatherRows → crossEntropyWithLogits 的 dlogits → scatterAddRows），中間張量整個訓練重複使用
+     */
+    private Step float32Step(MiniBatchIterator batches) {
+        int v = vocab.size();
+        FloatTensor logits = new FloatTensor(Math.min(batches.getBatchSize(), batches.size()), v);
+        FloatTensor dW = new FloatTensor(v, v);
+        return batch -> {
+            // logits → dlogits（原地）；最後一個較短的批次使用前 b 列
+            FloatTensor l = logits.sliceRows(0, batch[0].length);
+            W32.gatherRows(batch[0], l);
+            double loss = TensorOps.crossEntropyWithLogits(l, batch[1], l);
+            dW.fill(0.0).scatterAddRows(batch[0], l);
+            W32.subInPlace(dW.mulInPlace(learningRate));
+            return loss;
+        };
+    }
+
     @Override
     public double loss(int[][] bigrams) {
         int[] inputs = bigrams[0];
         int[] targets = bigrams[1];
 
-        Tensor xenc = TensorOps.oneHotBatch(inputs, vocab.size());
-        Tensor logits = xenc.matmul(W);
-        Tensor probs = TensorOps.softmax(logits);
+        if (isFloat32()) {
+            return TensorOps.crossEntropyWithLogits(W32.gatherRows(inputs), targets);
+        }
+
+        Tensor logits = W.gatherRows(inputs);  // 等同 one_hot(inputs) @ W
 
-        return TensorOps.negativeLogLikelihood(probs, targets);
+        return TensorOps.crossEntropyWithLogits(logits, targets);
     }
 
     @Override
@@ -109,15 +155,17 @@ public class BigramNeuralNet implements LanguageModel {
         int idx = 0;  // 從特殊符號 '.' 開始
 
         while (true) {
-            // One-hot 編碼當前字元
-            Tensor xenc = Tensor.oneHot(idx, vocab.size());  // 1×27
-
-            // 計算 logits 和機率
-            Tensor logits = xenc.matmul(W);  // 1×27
-            Tensor prob = TensorOps.softmax(logits);  // 1×27
-
-            // 根據機率採樣下一個字元
-            idx = RandomUtils.multinomial(prob, rng);
+            // one-hot · W 就是 W 的第 idx 列（view）
+            if (isFloat32()) {
+                idx = RandomUtils.multinomial(TensorOps.softmax(W32.getRow(idx)), rng);
+            } else {
+                // 計算 logits 和機率
+                Tensor logits = W.getRow(idx);  // 1×27
+                Tensor prob = TensorOps.softmax(logits);  // 1×27
+
+                // 根據機率採樣下一個字元
+                idx = RandomUtils.multinomial(prob, rng);
+            }
 
             // 如果是結束符號，停止
             if (idx == 0) {
@@ -133,29 +181,29 @@ public class BigramNeuralNet implements LanguageModel {
 
     @Override
     public String getName() {
-        return "BigramNeuralNet (lr=" + learningRate + ", epochs=" + epochs + ")";
+        return "BigramNeuralNet (lr=" + learningRate + ", epochs=" + epochs
+                + (isFloat32() ? ", float32" : "") + ")";
+    }
+
+    /**
+     * 權重是否以 float 儲存
+     */
+    public boolean isFloat32() {
+        return W32 != null;
     }
 
     /**
-     * 取得權重矩陣
+     * 取得權重矩陣（float32 時為轉成 double 的副本）
      */
     public Tensor getWeights() {
-        return W;
+        return isFloat32() ? W32.toTensor() : W;
     }
 
     /**
      * 取得機率矩陣（將權重轉換為機率）
      */
     public Tensor getProbs() {
-        Tensor probs = Tensor.zeros(vocab.size(), vocab.size());
-        for (int i = 0; i < vocab.size(); i++) {
-            Tensor row = W.getRow(i);
-            Tensor probRow = TensorOps.softmax(row);
-            for (int j = 0; j < vocab.size(); j++) {
-                probs.set(i, j, probRow.get(0, j));
-            }
-        }
-        return probs;
+        return isFloat32() ? TensorOps.softmax(W32).toTensor() : TensorOps.softmax(W);
     }
 
     public List<String> sample(Random rng, int nSamples) {
@@ -0,0 +1,269 @@
+package com.micrograd.model;
+
+import com.micrograd.data.CorpusReader;
+import com.micrograd.data.Vocabulary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * 一個語料檔的 bigram 計數，可以存成二進位檔再合併
+ *
+ * 每個輸入檔各自統計成一個 shard（可以在不同的 JVM 上進行），
+ * 之後 merge() 把任意一組 shard 加總，交給 BigramCounter.train(shards)，不需要再讀原始文字。
+ * 來源檔改變時只需要重新統計它自己的 shard（見 update()）。
+ *
+ * 檔案格式（little-endian）：
+ * <pre>
+ * int magic, int 版本, long 詞彙表指紋, int 詞彙表大小,
+ * long 來源檔大小, long 修改時間, long 來源檔 CRC32C, long 單字數, long bigram 數,
+ * int 名稱長度 + UTF-8 來源名稱,
+ * long[V·V] 計數（row-major）,
+ * long 以上所有位元組的 CRC32C
+ * </pre>
+ */
+public final class CountShard {
+
+    static final int MAGIC = 0x4853474D;  // "MGSH"
+    static final int VERSION = 1;
+
+    private final String source;
+    private final long vocabFingerprint;
+    private final int vocabSize;
+    private final long sourceSize;
+    private final long sourceModified;
+    private final long sourceChecksum;
+    private final long wordCount;
+    private final long bigramCount;
+    private final long[] counts;
+
+    private CountShard(String source, long vocabFingerprint, int vocabSize, long sourceSize,
+                       long sourceModified, long sourceChecksum, long wordCount, long bigramCount,
+                       long[] counts) {
+        this.source = source;
+        this.vocabFingerprint = vocabFingerprint;
+        this.vocabSize = vocabSize;
+        this.sourceSize = sourceSize;
+        this.sourceModified = sourceModified;
+        this.sourceChecksum = sourceChecksum;
+        this.wordCount = wordCount;
+        this.bigramCount = bigramCount;
+        this.counts = counts;
+    }
+
+    // ==================== 統計 ====================
+
+    /**
+     * 串流讀取來源檔並統計 bigram
+     */
+    public static CountShard count(Path source, Vocabulary vocab) throws IOException {
+        int v = vocab.size();
+        int special = vocab.getSpecialTokenIndex();
+        long[] counts = new long[v * v];
+        long sourceSize = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        CRC32C crc = new CRC32C();
+        long words = 0;
+        long bigrams = 0;
+
+        try (CorpusReader reader = new CorpusReader(source, vocab, crc)) {
+            while (reader.nextWord()) {
+                int[] word = reader.word();
+                int length = reader.wordLength();
+                int prev = special;
+                for (int i = 0; i < length; i++) {
+                    counts[prev * v + word[i]]++;
+                    prev = word[i];
+                }
+                counts[prev * v + special]++;
+                bigrams += length + 1;
+                words++;
+            }
+        }
+        return new CountShard(source.toString(), vocab.fingerprint(), v, sourceSize, modified,
+                crc.getValue(), words, bigrams, counts);
+    }
+
+    /**
+     * shard 檔存在且與來源檔相符時直接讀取，否則重新統計並寫出
+     */
+    public static CountShard update(Path source, Path shardFile, Vocabulary vocab) throws IOException {
+        if (Files.exists(shardFile)) {
+            try {
+                CountShard shard = read(shardFile, vocab);
+                if (shard.isUpToDate(source)) {
+                    return shard;
+                }
+            } catch (IOException e) {
+                // 損壞或舊格式的 shard：重新統計
+            }
+        }
+        CountShard shard = count(source, vocab);
+        shard.write(shardFile);
+        return shard;
+    }
+
+    /**
+     * 來源檔的大小與修改時間和統計時相同（不重新讀取內容）
+     */
+    public boolean isUpToDate(Path source) throws IOException {
+        return Files.exists(source)
+                && Files.size(source) == sourceSize
+                && Files.getLastModifiedTime(source).toMillis() == sourceModified;
+    }
+
+    // ==================== 合併 ====================
+
+    /**
+     * 把一組 shard 的計數加總（row-major 的 long[V·V]）
+     * 詞彙表必須相同，同一個來源不能出現兩次
+     */
+    public static long[] merge(Collection<CountShard> shards, Vocabulary vocab) {
+        int v = vocab.size();
+        long[] total = new long[v * v];
+        Set<String> sources = new HashSet<>();
+        for (CountShard shard : shards) {
+            if (shard.vocabFingerprint != vocab.fingerprint() || shard.vocabSize != v) {
+                throw new IllegalArgumentException("Shard for " + shard.source + " uses a different vocabulary");
+            }
+            if (!sources.add(shard.source)) {
+                throw new IllegalArgumentException("Duplicate shard for " + shard.source);
+            }
+            for (int c = 0; c < total.length; c++) {
+                total[c] += shard.counts[c];
+            }
+        }
+        return total;
+    }
+
+    // ==================== 讀寫 ====================
+
+    /**
+     * 寫出 shard（先寫暫存檔再換名）
+     */
+    public void write(Path file) throws IOException {
+        byte[] name = source.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer bytes = ByteBuffer.allocate(headerBytes(name.length) + counts.length * Long.BYTES + Long.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        bytes.putInt(MAGIC).putInt(VERSION).putLong(vocabFingerprint).putInt(vocabSize)
+                .putLong(sourceSize).putLong(sourceModified).putLong(sourceChecksum)
+                .putLong(wordCount).putLong(bigramCount)
+                .putInt(name.length).put(name);
+        for (long c : counts) {
+            bytes.putLong(c);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.array(), 0, bytes.position());
+        bytes.putLong(crc.getValue());
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, bytes.array());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 讀取 shard；格式、檢查碼或詞彙表不符時丟出 IOException
+     */
+    public static CountShard read(Path file, Vocabulary vocab) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer bytes = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.length < headerBytes(0) + Long.BYTES
+                || bytes.getInt() != MAGIC || bytes.getInt() != VERSION) {
+            throw new IOException(file + " is not a count shard");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(data, 0, data.length - Long.BYTES);
+        if (crc.getValue() != bytes.getLong(data.length - Long.BYTES)) {
+            throw new IOException(file + " is corrupted (checksum mismatch)");
+        }
+
+        long fingerprint = bytes.getLong();
+        int v = bytes.getInt();
+        if (fingerprint != vocab.fingerprint() || v != vocab.size()) {
+            throw new IOException(file + " was counted with a different vocabulary");
+        }
+        long sourceSize = bytes.getLong();
+        long modified = bytes.getLong();
+        long checksum = bytes.getLong();
+        long words = bytes.getLong();
+        long bigrams = bytes.getLong();
+        int nameLength = bytes.getInt();
+        if (nameLength < 0 || data.length != headerBytes(nameLength) + v * v * Long.BYTES + Long.BYTES) {
+            throw new IOException(file + " has an unexpected length");
+        }
+        byte[] name = new byte[nameLength];
+        bytes.get(name);
+        long[] counts = new long[v * v];
+        bytes.asLongBuffer().get(counts);
+        return new CountShard(new String(name, StandardCharsets.UTF_8), fingerprint, v,
+                sourceSize, modified, checksum, words, bigrams, counts);
+    }
+
+    // ==================== 存取 ====================
+
+    /**
+     * 來源檔的路徑（統計時給定的形式）
+     */
+    public String getSource() {
+        return source;
+    }
+
+    public long getSourceSize() {
+        return sourceSize;
+    }
+
+    /**
+     * 統計時來源檔的修改時間（epoch 毫秒）
+     */
+    public long getSourceModified() {
+        return sourceModified;
+    }
+
+    /**
+     * 來源檔內容的 CRC32C
+     */
+    public long getSourceChecksum() {
+        return sourceChecksum;
+    }
+
+    public long getWordCount() {
+        return wordCount;
+    }
+
+    public long getBigramCount() {
+        return bigramCount;
+    }
+
+    public long count(int input, int target) {
+        if (input < 0 || input >= vocabSize || target < 0 || target >= vocabSize) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Bigram (%d, %d) out of bounds for vocabulary size %d", input, target, vocabSize));
+        }
+        return counts[input * vocabSize + target];
+    }
+
+    /**
+     * 計數的副本（row-major 的 long[V·V]）
+     */
+    public long[] getCounts() {
+        return counts.clone();
+    }
+
+    private static int headerBytes(int nameLength) {
+        return 2 * Integer.BYTES + Long.BYTES + Integer.BYTES + 5 * Long.BYTES + Integer.BYTES + nameLength;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CountShard [%s, %d words, %d bigrams]", source, wordCount, bigramCount);
+    }
+}
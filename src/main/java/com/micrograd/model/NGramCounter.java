@@ -0,0 +1,384 @@
+package com.micrograd.model;
+
+import com.micrograd.data.CorpusCache;
+import com.micrograd.data.Vocabulary;
+import com.micrograd.tensor.Tensor;
+import com.micrograd.util.RandomUtils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * N-gram 語言模型 - 稀疏計數方法
+ * 以前 n-1 個字元預測下一個字元，只記錄實際出現過的 context
+ *
+ * 稠密的計數表需要 27^(n-1) 列，n ≥ 5 就放不下；這裡把 context 壓成一個 long
+ * （每個 token 5 個位元，加上長度），放在 open addressing 的 long → int 雜湊表中，
+ * 每個 context 只保存它出現過的後繼字元與次數。
+ *
+ * 機率以 Witten–Bell 插值往較短的 context 退讓（backoff）：
+ * P(w | h) = (c(h, w) + T(h) · P(w | h')) / (c(h) + T(h))
+ * 其中 h' 是 h 去掉最舊的一個字元、T(h) 是 h 之後出現過的不同字元數；
+ * h 沒出現過時直接使用 P(w | h')。最短的空 context 使用 add-smoothing 的字元頻率。
+ *
+ * train / loss 的資料為 int[n][]：前 n-1 列是 context（由舊到新），最後一列是目標，
+ * 可由 DataLoader.getNGrams(n) 產生；n = 2 時就是 getBigrams() 的格式。
+ */
+public class NGramCounter implements LanguageModel {
+
+    /** 每個 token 使用的位元數（詞彙表最多 32 個字元） */
+    static final int BITS = 5;
+
+    /** context 最多 11 個 token：55 個位元 + 4 個位元的長度，key 恆為非負 */
+    public static final int MAX_ORDER = 12;
+
+    private final Vocabulary vocab;
+    private final int order;
+    private final double smoothing;
+    private final Contexts contexts = new Contexts();
+
+    public NGramCounter(Vocabulary vocab, int order) {
+        this(vocab, order, 1.0);
+    }
+
+    public NGramCounter(Vocabulary vocab, int order, double smoothing) {
+        if (order < 1 || order > MAX_ORDER) {
+            throw new IllegalArgumentException("Order must be in [1, " + MAX_ORDER + "]: " + order);
+        }
+        if (vocab.size() > 1 << BITS) {
+            throw new IllegalArgumentException("Vocabulary too large for packed contexts: " + vocab.size());
+        }
+        this.vocab = vocab;
+        this.order = order;
+        this.smoothing = smoothing;
+    }
+
+    // ==================== 訓練 ====================
+
+    /**
+     * 統計 n-gram：ngrams[0..n-2] 為 context（由舊到新），ngrams[n-1] 為目標
+     * 每個 n-gram 同時計入長度 0 到 n-1 的所有 context 後綴，供 backoff 使用
+     */
+    @Override
+    public void train(int[][] ngrams) {
+        int n = checkNGrams(ngrams);
+        int[] context = new int[order - 1];
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < context.length; k++) {
+                context[k] = ngrams[k][i];
+            }
+            add(context, ngrams[order - 1][i]);
+        }
+    }
+
+    /**
+     * 直接在映射的語料快取上統計（見 CorpusCache.forEachNGram）
+     */
+    public void train(CorpusCache cache) {
+        if (order == 1) {
+            int[] empty = new int[0];
+            cache.forEachBigram((input, target) -> add(empty, target));
+        } else {
+            cache.forEachNGram(order, this::add);
+        }
+    }
+
+    private void add(int[] context, int target) {
+        checkToken(target);
+        long packed = 0;
+        for (int k = 0; ; k++) {
+            contexts.increment(key(k, packed), target);
+            if (k == context.length) {
+                break;
+            }
+            int token = context[context.length - 1 - k];
+            checkToken(token);
+            packed |= (long) token << (BITS * k);
+        }
+    }
+
+    // ==================== 機率 ====================
+
+    /**
+     * P(target | context)，context 為 n-1 個 token（由舊到新）
+     */
+    public double prob(int[] context, int target) {
+        checkContext(context);
+        checkToken(target);
+        int v = vocab.size();
+        int e = contexts.find(key(0, 0));
+        double c = e < 0 ? 0 : contexts.totals[e];
+        double p = ((e < 0 ? 0 : contexts.count(e, target)) + smoothing) / (c + smoothing * v);
+
+        long packed = 0;
+        for (int k = 1; k < order; k++) {
+            packed |= (long) context[context.length - k] << (BITS * (k - 1));
+            e = contexts.find(key(k, packed));
+            if (e < 0) {
+                break;  // 更長的 context 也不會出現過
+            }
+            double total = contexts.totals[e];
+            int distinct = contexts.sizes[e];
+            p = (contexts.count(e, target) + distinct * p) / (total + distinct);
+        }
+        return p;
+    }
+
+    /**
+     * 給定 context 之後每個字元的機率（長度為詞彙表大小，總和為 1）
+     */
+    public double[] distribution(int[] context) {
+        checkContext(context);
+        int v = vocab.size();
+        double[] dist = new double[v];
+        int e = contexts.find(key(0, 0));
+        double c = e < 0 ? 0 : contexts.totals[e];
+        Arrays.fill(dist, smoothing / (c + smoothing * v));
+        if (e >= 0) {
+            scatter(e, 1.0 / (c + smoothing * v), dist);
+        }
+
+        long packed = 0;
+        for (int k = 1; k < order; k++) {
+            packed |= (long) context[context.length - k] << (BITS * (k - 1));
+            e = contexts.find(key(k, packed));
+            if (e < 0) {
+                break;
+            }
+            double total = contexts.totals[e];
+            int distinct = contexts.sizes[e];
+            double keep = distinct / (total + distinct);
+            for (int w = 0; w < v; w++) {
+                dist[w] *= keep;
+            }
+            scatter(e, 1.0 / (total + distinct), dist);
+        }
+        return dist;
+    }
+
+    /** dist[後繼字元] += scale · 次數 */
+    private void scatter(int e, double scale, double[] dist) {
+        byte[] tokens = contexts.successors[e];
+        long[] counts = contexts.counts[e];
+        for (int s = 0; s < contexts.sizes[e]; s++) {
+            dist[tokens[s]] += scale * counts[s];
+        }
+    }
+
+    @Override
+    public double loss(int[][] ngrams) {
+        int n = checkNGrams(ngrams);
+        int[] context = new int[order - 1];
+        double totalLoss = 0;
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < context.length; k++) {
+                context[k] = ngrams[k][i];
+            }
+            totalLoss += -Math.log(prob(context, ngrams[order - 1][i]));
+        }
+        return totalLoss / n;
+    }
+
+    @Override
+    public String sample(Random rng) {
+        StringBuilder result = new StringBuilder();
+        int special = vocab.getSpecialTokenIndex();
+        int[] context = new int[order - 1];
+        Arrays.fill(context, special);  // 從 n-1 個特殊符號開始
+
+        while (true) {
+            double[] dist = distribution(context);
+            int idx = RandomUtils.multinomial(new Tensor(1, dist.length, dist), rng);
+            if (idx == special) {
+                break;
+            }
+            result.append(vocab.decode(idx));
+            if (context.length > 0) {
+                System.arraycopy(context, 1, context, 0, context.length - 1);
+                context[context.length - 1] = idx;
+            }
+        }
+
+        return result.toString();
+    }
+
+    @Override
+    public String getName() {
+        return "NGramCounter (n=" + order + ", smoothing=" + smoothing + ")";
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * 出現過的 context 數（包含所有較短的後綴與空 context）
+     */
+    public int getContextCount() {
+        return contexts.size;
+    }
+
+    // ==================== 輔助方法 ====================
+
+    /**
+     * context 的 key：低 55 位元為 token（最新的在最低位），其上 4 個位元為長度
+     */
+    private static long key(int length, long packed) {
+        return ((long) length << (BITS * (MAX_ORDER - 1))) | packed;
+    }
+
+    private int checkNGrams(int[][] ngrams) {
+        if (ngrams.length != order) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %d rows (n-1 context rows and targets), got %d", order, ngrams.length));
+        }
+        int n = ngrams[0].length;
+        for (int[] row : ngrams) {
+            if (row.length != n) {
+                throw new IllegalArgumentException(
+                        String.format("N-gram rows differ in length: %d vs %d", row.length, n));
+            }
+        }
+        return n;
+    }
+
+    private void checkContext(int[] context) {
+        if (context.length != order - 1) {
+            throw new IllegalArgumentException(
+                    String.format("Context must have %d tokens, got %d", order - 1, context.length));
+        }
+        for (int token : context) {
+            checkToken(token);
+        }
+    }
+
+    private void checkToken(int token) {
+        if (token < 0 || token >= vocab.size()) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Token %d out of bounds for vocabulary size %d", token, vocab.size()));
+        }
+    }
+
+    /**
+     * context → 後繼字元計數的 open addressing 雜湊表（線性探測，負載不超過 1/2）
+     * 第 e 個 context 的後繼字元存在 successors[e][0..sizes[e])，次數在 counts[e]
+     */
+    private static final class Contexts {
+        private static final long EMPTY = -1L;
+
+        private long[] keys = new long[16];
+        private int[] slots = new int[16];
+        private int mask = 15;
+
+        long[] totals = new long[8];
+        int[] sizes = new int[8];
+        byte[][] successors = new byte[8][];
+        long[][] counts = new long[8][];
+        int size;
+
+        Contexts() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        /**
+         * key 對應的 context 編號，不存在時回傳 -1
+         */
+        int find(long key) {
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return slots[i];
+                }
+                if (keys[i] == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void increment(long key, int token) {
+            int i = hash(key) & mask;
+            while (keys[i] != key && keys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            int e;
+            if (keys[i] == key) {
+                e = slots[i];
+            } else {
+                e = newContext();
+                keys[i] = key;
+                slots[i] = e;
+                if (2 * size > keys.length) {
+                    rehash();
+                }
+            }
+            totals[e]++;
+
+            byte[] tokens = successors[e];
+            int n = sizes[e];
+            for (int s = 0; s < n; s++) {
+                if (tokens[s] == token) {
+                    counts[e][s]++;
+                    return;
+                }
+            }
+            if (n == tokens.length) {
+                successors[e] = tokens = Arrays.copyOf(tokens, 2 * n);
+                counts[e] = Arrays.copyOf(counts[e], 2 * n);
+            }
+            tokens[n] = (byte) token;
+            counts[e][n] = 1;
+            sizes[e] = n + 1;
+        }
+
+        long count(int e, int token) {
+            byte[] tokens = successors[e];
+            for (int s = 0; s < sizes[e]; s++) {
+                if (tokens[s] == token) {
+                    return counts[e][s];
+                }
+            }
+            return 0;
+        }
+
+        private int newContext() {
+            if (size == totals.length) {
+                int capacity = 2 * size;
+                totals = Arrays.copyOf(totals, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                successors = Arrays.copyOf(successors, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            successors[size] = new byte[2];
+            counts[size] = new long[2];
+            return size++;
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldSlots = slots;
+            keys = new long[oldKeys.length * 2];
+            slots = new int[oldKeys.length * 2];
+            mask = keys.length - 1;
+            Arrays.fill(keys, EMPTY);
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != EMPTY) {
+                    int i = hash(oldKeys[j]) & mask;
+                    while (keys[i] != EMPTY) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    slots[i] = oldSlots[j];
+                }
+            }
+        }
+
+        /** 64 位元混合（MurmurHash3 finalizer），讓相近的 key 分散到不同位置 */
+        private static int hash(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            key *= 0xc4ceb9fe1a85ec53L;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.micrograd.nn;
 
+import com.micrograd.engine.DualValue;
 import com.micrograd.engine.Value;
 import java.util.*;
 
@@ -30,6 +31,22 @@ public class Layer implements Module {
         return out;
     }
 
+    public double[] predict(double[] x) {
+        double[] out = new double[neurons.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = neurons.get(i).predict(x);
+        }
+        return out;
+    }
+
+    public DualValue[] forwardDual(DualValue[] x) {
+        DualValue[] out = new DualValue[neurons.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = neurons.get(i).forwardDual(x);
+        }
+        return out;
+    }
+
     @Override
     public List<Value> parameters() {
         List<Value> params = new ArrayList<>();
@@ -1,5 +1,7 @@
 package com.micrograd.nn;
 
+import com.micrograd.data.MiniBatchIterator;
+import com.micrograd.engine.DualValue;
 import com.micrograd.engine.Value;
 import java.util.*;
 
@@ -30,6 +32,103 @@ public class MLP implements Module {
         return forward(x).get(0);
     }
 
+    /**
+     * 推論專用的原始型別路徑：不建立計算圖，每層只配置一個輸出陣列
+     */
+    public double[] predict(double[] x) {
+        for (Layer layer : layers) {
+            x = layer.predict(x);
+        }
+        return x;
+    }
+
+    public DualValue[] forwardDual(DualValue[] x) {
+        for (Layer layer : layers) {
+            x = layer.forwardDual(x);
+        }
+        return x;
+    }
+
+    /**
+     * Jacobian-vector product：在 x 處沿方向 v 的輸出導數，不建立計算圖
+     *
+     * @return 每個輸出的 J·v
+     */
+    public double[] jvp(double[] x, double[] v) {
+        if (x.length != v.length) {
+            throw new IllegalArgumentException(
+                    String.format("Size mismatch: %d vs %d", x.length, v.length));
+        }
+        DualValue[] in = new DualValue[x.length];
+        for (int i = 0; i < x.length; i++) {
+            in[i] = new DualValue(x[i], v[i]);
+        }
+        DualValue[] out = forwardDual(in);
+        double[] tangents = new double[out.length];
+        for (int i = 0; i < out.length; i++) {
+            tangents[i] = out[i].getTangent();
+        }
+        return tangents;
+    }
+
+    /**
+     * 小批次 SGD（均方誤差）：每個 epoch 以 rng 洗牌，每批建立一張計算圖、反向傳播後更新一次參數
+     *
+     * @param ys  每筆樣本的目標輸出（長度與輸出層相同）
+     * @param rng 洗牌用的亂數（null 表示依原順序）
+     * @return 每個 epoch 的平均損失（各批更新前的損失以樣本數加權）
+     */
+    public double[] fit(double[][] xs, double[][] ys, int epochs, int batchSize, double learningRate, Random rng) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException(
+                    String.format("Size mismatch: %d inputs vs %d targets", xs.length, ys.length));
+        }
+        int[] index = new int[xs.length];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = i;
+        }
+        MiniBatchIterator batches = new MiniBatchIterator(new int[][]{index}, batchSize, rng, false);
+        List<Value> params = parameters();
+        double[] history = new double[epochs];
+
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            batches.nextEpoch();
+            double total = 0;
+            while (batches.hasNext()) {
+                int[] batch = batches.next()[0];
+                List<Value> terms = new ArrayList<>();
+                for (int i : batch) {
+                    List<Value> out = forward(toValues(xs[i]));
+                    if (out.size() != ys[i].length) {
+                        throw new IllegalArgumentException(
+                                String.format("Target %d has %d values, model outputs %d", i, ys[i].length, out.size()));
+                    }
+                    for (int k = 0; k < out.size(); k++) {
+                        terms.add(out.get(k).sub(ys[i][k]).pow(2));
+                    }
+                }
+                Value loss = Value.sum(terms).div(batch.length);
+
+                zeroGrad();
+                loss.backward();
+                for (Value p : params) {
+                    p.setData(p.getData() - learningRate * p.getGrad());
+                }
+                total += loss.getData() * batch.length;
+            }
+            history[epoch] = total / xs.length;
+        }
+        return history;
+    }
+
+    private static List<Value> toValues(double[] x) {
+        List<Value> values = new ArrayList<>(x.length);
+        for (double v : x) {
+            values.add(new Value(v));
+        }
+        return values;
+    }
+
     @Override
     public List<Value> parameters() {
         List<Value> params = new ArrayList<>();
@@ -1,5 +1,6 @@
 package com.micrograd.nn;
 
+import com.micrograd.engine.DualValue;
 import com.micrograd.engine.Value;
 import java.util.*;
 
@@ -27,14 +28,45 @@ public class Neuron implements Module {
     }
 
     public Value forward(List<Value> x) {
-        // w · x + b
-        Value act = b;
-        for (int i = 0; i < w.size(); i++) {
-            act = act.add(w.get(i).mul(x.get(i)));
-        }
+        // w · x + b：融合的 dot 節點取代 2·nin 個 mul / add 節點
+        Value act = Value.dot(w, x).add(b);
         return nonlin ? act.tanh() : act;
     }
 
+    /**
+     * 純數值推論：直接讀取參數值，不建立任何 Value
+     */
+    public double predict(double[] x) {
+        if (x.length != w.size()) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %d inputs, got %d", w.size(), x.length));
+        }
+        double act = b.getData();
+        for (int i = 0; i < x.length; i++) {
+            act += w.get(i).getData() * x[i];
+        }
+        return nonlin ? Math.tanh(act) : act;
+    }
+
+    /**
+     * 前向模式：參數視為常數，只對輸入的 tangent 求方向導數
+     */
+    public DualValue forwardDual(DualValue[] x) {
+        if (x.length != w.size()) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %d inputs, got %d", w.size(), x.length));
+        }
+        double act = b.getData();
+        double tangent = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            double wi = w.get(i).getData();
+            act += wi * x[i].getData();
+            tangent += wi * x[i].getTangent();
+        }
+        DualValue out = new DualValue(act, tangent);
+        return nonlin ? out.tanh() : out;
+    }
+
     @Override
     public List<Value> parameters() {
         List<Value> params = new ArrayList<>(w);
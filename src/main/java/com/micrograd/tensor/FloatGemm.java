@@ -0,0 +1,119 @@
+package com.micrograd.tensor;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * float 儲存的矩陣乘法 C = A·B，以 double 累加後才寫回 float
+ *
+ * 與 Gemm 相同的讀取方式，但累加器是 double：
+ * - 一般情況逐列計算：C 的一列先累加到長度 n 的 double 暫存，i-k-j 循序讀取 A 的列與 B 的列
+ * - Aᵀ（例如 xencᵀ·dlogits）時改成 k-i-j，累加到 m×n 的 double 暫存，讓 A 的讀取維持循序
+ * - 與 Gemm 相同，B 全部是有限值時才略過 A 中的 0，平行排程也相同（見 GemmTasks）
+ * B 必須是 row-major（呼叫端負責把其他排列複製成連續的）。
+ */
+final class FloatGemm {
+
+    private static final TensorKernels K = TensorKernels.get();
+
+    // A(i, q) = ta ? a[ao + q·lda + i] : a[ao + i·lda + q]
+    private final float[] a;
+    private final int ao;
+    private final int lda;
+    private final boolean ta;
+    // B(q, j) = b[bo + q·ldb + j]
+    private final float[] b;
+    private final int bo;
+    private final int ldb;
+    private final int m;
+    private final int k;
+    private final int n;
+    // A(i, q) == 0 時可略過 B 的第 q 列（B 全部是有限值）
+    private final boolean skipZeros;
+
+    FloatGemm(float[] a, int ao, int lda, boolean ta,
+              float[] b, int bo, int ldb,
+              int m, int k, int n) {
+        this.a = a;
+        this.ao = ao;
+        this.lda = lda;
+        this.ta = ta;
+        this.b = b;
+        this.bo = bo;
+        this.ldb = ldb;
+        this.m = m;
+        this.k = k;
+        this.n = n;
+        this.skipZeros = allFinite(b, bo, ldb, k, n);
+    }
+
+    private static boolean allFinite(float[] x, int xo, int ld, int rows, int cols) {
+        for (int r = 0; r < rows; r++) {
+            for (int j = xo + r * ld, end = j + cols; j < end; j++) {
+                if (!Float.isFinite(x[j])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 寫入（覆蓋）從 c[co] 開始連續存放的 C
+     */
+    void run(float[] c, int co, ForkJoinPool pool) {
+        boolean parallel = GemmTasks.worthParallel(m, k, n, pool);
+        if (ta) {
+            double[] acc = new double[m * n];
+            if (parallel && k >= 2 * Gemm.KC) {
+                GemmTasks.splitK(pool, k, m * n, this::accumulateTransposedA, acc, 0);
+            } else {
+                accumulateTransposedA(acc, 0, k);
+            }
+            for (int i = 0; i < m * n; i++) {
+                c[co + i] = (float) acc[i];
+            }
+        } else if (parallel && m >= 2 * GemmTasks.ROW_BLOCK) {
+            GemmTasks.rows(pool, m, (i0, i1) -> rows(c, co, i0, i1));
+        } else {
+            rows(c, co, 0, m);
+        }
+    }
+
+    /**
+     * C[i0..i1) = A[i0..i1, :) · B，一次一列
+     */
+    private void rows(float[] c, int co, int i0, int i1) {
+        double[] acc = new double[n];
+        for (int i = i0; i < i1; i++) {
+            Arrays.fill(acc, 0.0);
+            int ai = ao + i * lda;
+            for (int q = 0; q < k; q++) {
+                float aiq = a[ai + q];
+                if (aiq != 0.0f || !skipZeros) {
+                    K.axpy(aiq, b, bo + q * ldb, acc, 0, n);
+                }
+            }
+            int ci = co + i * n;
+            for (int j = 0; j < n; j++) {
+                c[ci + j] = (float) acc[j];
+            }
+        }
+    }
+
+    /**
+     * acc += Aᵀ[:, p0..p1) · B[p0..p1, :)，Aᵀ 的第 q 列（A 的第 q 欄）循序讀取
+     */
+    private void accumulateTransposedA(double[] acc, int p0, int p1) {
+        for (int q = p0; q < p1; q++) {
+            int aq = ao + q * lda;
+            int bq = bo + q * ldb;
+            for (int i = 0; i < m; i++) {
+                float aiq = a[aq + i];
+                if (aiq != 0.0f || !skipZeros) {
+                    K.axpy(aiq, b, bq, acc, i * n, n);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package com.micrograd.tensor;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 以 float 儲存的 2D 張量，API 與 Tensor 相同
+ *
+ * 記憶體用量與頻寬是 Tensor 的一半，SIMD 一次處理的元素數是兩倍；
+ * 機率表、權重與激活值用 float 的精度就足夠。
+ * element-wise 運算以 float 計算，歸約（sum、matmul、softmax、NLL）一律以 double 累加，
+ * get 回傳 double、set 收到的 double 會先轉成 float 再存入。
+ * 與 Tensor 互轉用 from(Tensor) / toTensor()。
+ *
+ * 元素 (i, j) 位於 data[offset + i·rowStride + j·colStride]；形狀、view 與 element-wise 的分派
+ * 與 Tensor 共用 StridedTensor，這裡只有 float 儲存與對應的 kernel。
+ */
+public class FloatTensor extends StridedTensor<FloatTensor> {
+
+    private final float[] data;
+
+    private static final TensorKernels K = TensorKernels.get();
+
+    // ==================== 建構子 ====================
+
+    public FloatTensor(int rows, int cols) {
+        this(rows, cols, new float[rows * cols], 0, cols, 1);
+    }
+
+    public FloatTensor(int rows, int cols, float[] data) {
+        super(rows, cols, 0, cols, 1);
+        if (data.length != rows * cols) {
+            throw new IllegalArgumentException(
+                    String.format("Data length %d doesn't match shape [%d, %d]",
+                            data.length, rows, cols));
+        }
+        this.data = data.clone();
+    }
+
+    /**
+     * View：共用 data，不複製
+     */
+    private FloatTensor(int rows, int cols, float[] data, int offset, int rowStride, int colStride) {
+        super(rows, cols, offset, rowStride, colStride);
+        this.data = data;
+    }
+
+    @Override
+    FloatTensor view(int rows, int cols, int offset, int rowStride, int colStride) {
+        return new FloatTensor(rows, cols, data, offset, rowStride, colStride);
+    }
+
+    @Override
+    FloatTensor allocate(int rows, int cols) {
+        return new FloatTensor(rows, cols);
+    }
+
+    // ==================== 靜態工廠方法 ====================
+
+    /**
+     * 建立全零張量
+     */
+    public static FloatTensor zeros(int rows, int cols) {
+        return new FloatTensor(rows, cols);
+    }
+
+    /**
+     * 建立全一張量
+     */
+    public static FloatTensor ones(int rows, int cols) {
+        FloatTensor t = new FloatTensor(rows, cols);
+        Arrays.fill(t.data, 1.0f);
+        return t;
+    }
+
+    /**
+     * 建立隨機張量（標準常態分佈）
+     * 與 Tensor.randn 使用同一串亂數，只差在捨入到 float
+     */
+    public static FloatTensor randn(int rows, int cols, Random rng) {
+        FloatTensor t = new FloatTensor(rows, cols);
+        for (int i = 0; i < t.data.length; i++) {
+            t.data[i] = (float) rng.nextGaussian();
+        }
+        return t;
+    }
+
+    /**
+     * 建立隨機張量（均勻分佈 [0, 1)）
+     */
+    public static FloatTensor rand(int rows, int cols, Random rng) {
+        FloatTensor t = new FloatTensor(rows, cols);
+        for (int i = 0; i < t.data.length; i++) {
+            t.data[i] = rng.nextFloat();
+        }
+        return t;
+    }
+
+    /**
+     * 從 2D 陣列建立張量
+     */
+    public static FloatTensor fromArray(double[][] arr) {
+        int rows = arr.length;
+        int cols = arr[0].length;
+        FloatTensor t = new FloatTensor(rows, cols);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                t.set(i, j, arr[i][j]);
+            }
+        }
+        return t;
+    }
+
+    /**
+     * 建立 one-hot 向量（1×cols 的列向量）
+     */
+    public static FloatTensor oneHot(int index, int size) {
+        FloatTensor t = new FloatTensor(1, size);
+        t.set(0, index, 1.0);
+        return t;
+    }
+
+    /**
+     * 將 Tensor 轉成 float 儲存（捨入到最接近的 float）
+     */
+    public static FloatTensor from(Tensor t) {
+        int rows = t.getRows();
+        int cols = t.getCols();
+        FloatTensor result = new FloatTensor(rows, cols);
+        Tensor src = t.isRowMajor() ? t : t.copy();
+        double[] buf = src.buffer();
+        for (int i = 0; i < rows; i++) {
+            int si = src.rowOffset(i);
+            int di = i * cols;
+            for (int j = 0; j < cols; j++) {
+                result.data[di + j] = (float) buf[si + j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 轉成 double 儲存的 Tensor（精確，不會損失精度）
+     */
+    public Tensor toTensor() {
+        return new Tensor(rows, cols, toDoubleArray());
+    }
+
+    // ==================== 索引操作 ====================
+
+    public double get(int row, int col) {
+        return data[index(row, col)];
+    }
+
+    public void set(int row, int col, double value) {
+        data[index(row, col)] = (float) value;
+    }
+
+    public void increment(int row, int col, double value) {
+        data[index(row, col)] += (float) value;
+    }
+
+    // ==================== 列索引（embedding）====================
+
+    /**
+     * out 第 i 列 = this 第 idx[i] 列；out 必須是 idx.length×cols，不可與 this 共用資料
+     */
+    public FloatTensor gatherRows(int[] idx, FloatTensor out) {
+        if (out.rows != idx.length || out.cols != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Output shape [%d,%d] doesn't match [%d,%d]",
+                            out.rows, out.cols, idx.length, cols));
+        }
+        if (out.data == data) {
+            throw new IllegalArgumentException("gatherRows output must not alias its input");
+        }
+        FloatTensor src = isRowMajor() ? this : copy();
+        if (!out.isRowMajor()) {
+            return out.copyFrom(src.gatherRows(idx));
+        }
+        for (int i = 0; i < idx.length; i++) {
+            System.arraycopy(src.data, src.rowOffset(checkRow(idx[i])), out.data, out.rowOffset(i), cols);
+        }
+        return out;
+    }
+
+    /**
+     * this 第 idx[i] 列 += src 第 i 列（gatherRows 的反向）
+     * 重複的索引先以 double 累加，每列最後只捨入一次；沒有出現的列不會被讀寫
+     */
+    public FloatTensor scatterAddRows(int[] idx, FloatTensor src) {
+        if (src.rows != idx.length || src.cols != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Source shape [%d,%d] doesn't match [%d,%d]",
+                            src.rows, src.cols, idx.length, cols));
+        }
+        // 每個出現的列分配一段 double 暫存
+        int[] slot = new int[rows];
+        Arrays.fill(slot, -1);
+        int distinct = 0;
+        for (int r : idx) {
+            if (slot[checkRow(r)] < 0) {
+                slot[r] = distinct++;
+            }
+        }
+        double[] acc = new double[distinct * cols];
+        FloatTensor s = src.contiguous();
+        for (int i = 0; i < idx.length; i++) {
+            K.axpy(1.0, s.data, s.rowOffset(i), acc, slot[idx[i]] * cols, cols);
+        }
+        for (int r = 0; r < rows; r++) {
+            if (slot[r] >= 0) {
+                int a = slot[r] * cols;
+                for (int j = 0; j < cols; j++) {
+                    int k = index(r, j);
+                    data[k] = (float) (data[k] + acc[a + j]);
+                }
+            }
+        }
+        return this;
+    }
+
+    // ==================== 形狀操作 ====================
+
+    /**
+     * 複製張量（結果一定是連續的 row-major）
+     */
+    public FloatTensor copy() {
+        FloatTensor result = new FloatTensor(rows, cols);
+        if (isContiguous()) {
+            System.arraycopy(data, offset, result.data, 0, size());
+        } else if (colStride == 1) {
+            for (int i = 0; i < rows; i++) {
+                System.arraycopy(data, offset + i * rowStride, result.data, i * cols, cols);
+            }
+        } else {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    result.data[i * cols + j] = data[index(i, j)];
+                }
+            }
+        }
+        return result;
+    }
+
+    // ==================== 數學運算（寫入 out）====================
+
+    public FloatTensor add(FloatTensor other, FloatTensor out) {
+        checkSameShape(other);
+        return binary(K::add, this, other, out);
+    }
+
+    public FloatTensor add(double scalar, FloatTensor out) {
+        return scalar(K::add, this, (float) scalar, out);
+    }
+
+    public FloatTensor sub(FloatTensor other, FloatTensor out) {
+        checkSameShape(other);
+        return binary(K::sub, this, other, out);
+    }
+
+    public FloatTensor mul(FloatTensor other, FloatTensor out) {
+        checkSameShape(other);
+        return binary(K::mul, this, other, out);
+    }
+
+    public FloatTensor mul(double scalar, FloatTensor out) {
+        return scalar(K::mul, this, (float) scalar, out);
+    }
+
+    public FloatTensor div(FloatTensor other, FloatTensor out) {
+        checkSameShape(other);
+        return binary(K::div, this, other, out);
+    }
+
+    public FloatTensor exp(FloatTensor out) {
+        return unary(K::exp, this, out);
+    }
+
+    public FloatTensor log(FloatTensor out) {
+        return unary(K::log, this, out);
+    }
+
+    /**
+     * out = this @ other，以 double 累加（見 FloatGemm）；out 不可與輸入共用資料
+     */
+    public FloatTensor matmul(FloatTensor other, FloatTensor out) {
+        if (this.cols != other.rows) {
+            throw new IllegalArgumentException(
+                    String.format("Cannot multiply [%d,%d] with [%d,%d]",
+                            rows, cols, other.rows, other.cols));
+        }
+        if (out.rows != this.rows || out.cols != other.cols) {
+            throw new IllegalArgumentException(
+                    String.format("Output shape [%d,%d] doesn't match [%d,%d]",
+                            out.rows, out.cols, this.rows, other.cols));
+        }
+        if (out.data == this.data || out.data == other.data) {
+            throw new IllegalArgumentException("matmul output must not alias its inputs");
+        }
+
+        FloatTensor a = this;
+        boolean ta = !a.isRowMajor();
+        if (ta && !a.isColMajor()) {
+            a = a.copy();
+            ta = false;
+        }
+        FloatTensor b = other.isRowMajor() ? other : other.copy();
+
+        FloatTensor c = out.isContiguous() ? out : new FloatTensor(out.rows, out.cols);
+        new FloatGemm(a.data, a.offset, ta ? a.colStride : a.rowStride, ta,
+                b.data, b.offset, b.rowStride,
+                this.rows, this.cols, other.cols)
+                .run(c.data, c.offset, ForkJoinPool.commonPool());
+        if (c != out) {
+            out.copyFrom(c);
+        }
+        return out;
+    }
+
+    // ==================== 填值 / 複製 ====================
+
+    /**
+     * 所有元素設為 value
+     */
+    public FloatTensor fill(double value) {
+        float v = (float) value;
+        if (isContiguous()) {
+            Arrays.fill(data, offset, offset + size(), v);
+        } else {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    data[index(i, j)] = v;
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 從同形狀的張量複製內容
+     */
+    public FloatTensor copyFrom(FloatTensor src) {
+        checkSameShape(src);
+        if (isRowMajor() && src.isRowMajor()) {
+            for (int i = 0; i < rows; i++) {
+                System.arraycopy(src.data, src.rowOffset(i), data, rowOffset(i), cols);
+            }
+        } else {
+            FloatTensor tmp = src.data == data ? src.copy() : src;
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    data[index(i, j)] = tmp.data[tmp.index(i, j)];
+                }
+            }
+        }
+        return this;
+    }
+
+    // ==================== 聚合運算（double 累加）====================
+
+    /**
+     * 所有元素的總和
+     */
+    public double sum() {
+        if (isContiguous()) {
+            return K.sum(data, offset, size());
+        }
+        double sum = 0;
+        for (int i = 0; i < rows; i++) {
+            sum += rowSum(i);
+        }
+        return sum;
+    }
+
+    /**
+     * 沿著指定軸加總
+     * axis=0: 沿著列加總，結果為 1×cols
+     * axis=1: 沿著欄加總，結果為 rows×1
+     */
+    public FloatTensor sum(int axis) {
+        if (axis == 0) {
+            FloatTensor a = isRowMajor() ? this : copy();
+            double[] acc = new double[cols];
+            for (int i = 0; i < rows; i++) {
+                K.axpy(1.0, a.data, a.rowOffset(i), acc, 0, cols);
+            }
+            FloatTensor result = new FloatTensor(1, cols);
+            for (int j = 0; j < cols; j++) {
+                result.data[j] = (float) acc[j];
+            }
+            return result;
+        } else if (axis == 1) {
+            FloatTensor result = new FloatTensor(rows, 1);
+            for (int i = 0; i < rows; i++) {
+                result.data[i] = (float) rowSum(i);
+            }
+            return result;
+        } else {
+            throw new IllegalArgumentException("Axis must be 0 or 1");
+        }
+    }
+
+    private double rowSum(int row) {
+        if (isRowMajor()) {
+            return K.sum(data, rowOffset(row), cols);
+        }
+        double sum = 0;
+        for (int j = 0; j < cols; j++) {
+            sum += data[index(row, j)];
+        }
+        return sum;
+    }
+
+    // ==================== 輔助方法 ====================
+
+    private interface BinaryKernel {
+        void apply(float[] a, int ao, float[] b, int bo, float[] out, int oo, int n);
+    }
+
+    private interface ScalarKernel {
+        void apply(float[] a, int ao, float s, float[] out, int oo, int n);
+    }
+
+    private interface UnaryKernel {
+        void apply(float[] a, int ao, float[] out, int oo, int n);
+    }
+
+    private static FloatTensor binary(BinaryKernel op, FloatTensor a, FloatTensor b, FloatTensor out) {
+        return elementwise((x, xo, y, yo, o, oo, n) -> op.apply(x.data, xo, y.data, yo, o.data, oo, n), a, b, out);
+    }
+
+    private static FloatTensor scalar(ScalarKernel op, FloatTensor a, float s, FloatTensor out) {
+        return elementwise((x, xo, y, yo, o, oo, n) -> op.apply(x.data, xo, s, o.data, oo, n), a, a, out);
+    }
+
+    private static FloatTensor unary(UnaryKernel op, FloatTensor a, FloatTensor out) {
+        return elementwise((x, xo, y, yo, o, oo, n) -> op.apply(x.data, xo, o.data, oo, n), a, a, out);
+    }
+
+    /**
+     * 內部陣列（不複製），供同套件的運算直接使用；列的起點見 rowOffset()
+     */
+    float[] buffer() {
+        return data;
+    }
+
+    /**
+     * 轉換為原始陣列（row-major 副本）
+     */
+    public float[] toArray() {
+        return isContiguous() ? Arrays.copyOfRange(data, offset, offset + size()) : copy().data;
+    }
+
+    /**
+     * 轉換為 double 陣列（row-major 副本）
+     */
+    public double[] toDoubleArray() {
+        double[] result = new double[size()];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                result[i * cols + j] = data[index(i, j)];
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,198 @@
+package com.micrograd.tensor;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 分塊矩陣乘法 C += A·B（A 為 m×k、B 為 k×n，C 為連續的 row-major m×n）
+ *
+ * A、B 可以是任意 leading dimension 的 row-major，或是轉置的 view（column-major）：
+ * - 把 B 切成 KC×NC 的 panel 並複製成連續記憶體，整個 panel 留在 L2 中給所有列重複使用
+ * - 最內層是 i-k-j 順序：A 的一個元素乘上 B panel 的一整列累加到 C 的一列，全部循序存取
+ * - Aᵀ 時改成 k-i-j 順序，讓 A 的讀取也是循序的；Bᵀ 時 C 的每個元素是兩個連續片段的內積
+ * - B 全部是有限值時，A 中的 0 直接略過，one-hot 輸入（BigramNeuralNet）只需做 1/vocab 的運算；
+ *   B 含有 Inf / NaN 時不略過，0·Inf、0·NaN 照樣得到 NaN，發散的權重不會被藏起來
+ * - 運算量超過門檻時在 ForkJoinPool（預設 common pool）上平行：列數夠多就切列區塊，
+ *   否則（例如 xencᵀ·dlogits 這種 m 小、k 很大的情況）切 k，各自累加到私有的 C 再合併（見 GemmTasks）
+ */
+final class Gemm {
+
+    private static final TensorKernels K = TensorKernels.get();
+
+    static final int KC = 128;
+    static final int NC = 256;
+
+    /** m·k·n 低於此值時維持單執行緒 */
+    static final long PARALLEL_WORK = 1L << 20;
+
+    // A(i, q) = ta ? a[ao + q·lda + i] : a[ao + i·lda + q]
+    private final double[] a;
+    private final int ao;
+    private final int lda;
+    private final boolean ta;
+    // B(q, j) = tb ? b[bo + j·ldb + q] : b[bo + q·ldb + j]
+    private final double[] b;
+    private final int bo;
+    private final int ldb;
+    private final boolean tb;
+    private final int m;
+    private final int k;
+    private final int n;
+    // A(i, q) == 0 時可略過 B 的第 q 列（B 全部是有限值）
+    private final boolean skipZeros;
+
+    Gemm(double[] a, int ao, int lda, boolean ta,
+         double[] b, int bo, int ldb, boolean tb,
+         int m, int k, int n) {
+        if (ta && tb) {
+            throw new IllegalArgumentException("At most one operand may be transposed");
+        }
+        this.a = a;
+        this.ao = ao;
+        this.lda = lda;
+        this.ta = ta;
+        this.b = b;
+        this.bo = bo;
+        this.ldb = ldb;
+        this.tb = tb;
+        this.m = m;
+        this.k = k;
+        this.n = n;
+        this.skipZeros = !tb && allFinite(b, bo, ldb, k, n);
+    }
+
+    /**
+     * row-major 的 rows×cols 區塊 x[xo + r·ld + j] 是否全部是有限值
+     */
+    private static boolean allFinite(double[] x, int xo, int ld, int rows, int cols) {
+        for (int r = 0; r < rows; r++) {
+            for (int j = xo + r * ld, end = j + cols; j < end; j++) {
+                if (!Double.isFinite(x[j])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 連續 row-major 的 C += A·B
+     */
+    static void multiply(double[] a, double[] b, double[] c, int m, int k, int n) {
+        multiply(a, b, c, m, k, n, ForkJoinPool.commonPool());
+    }
+
+    static void multiply(double[] a, double[] b, double[] c, int m, int k, int n, ForkJoinPool pool) {
+        new Gemm(a, 0, k, false, b, 0, n, false, m, k, n).run(c, pool);
+    }
+
+    void run(double[] c, ForkJoinPool pool) {
+        run(c, 0, pool);
+    }
+
+    /**
+     * C 從 c[co] 開始連續存放
+     */
+    void run(double[] c, int co, ForkJoinPool pool) {
+        if (!GemmTasks.worthParallel(m, k, n, pool)) {
+            compute(c, co, 0, m, 0, k);
+        } else if (m >= 2 * GemmTasks.ROW_BLOCK) {
+            GemmTasks.rows(pool, m, (i0, i1) -> compute(c, co, i0, i1, 0, k));
+        } else {
+            GemmTasks.splitK(pool, k, m * n, (acc, p0, p1) -> compute(acc, 0, 0, m, p0, p1), c, co);
+        }
+    }
+
+    /**
+     * C[i0..i1) += A[i0..i1, p0..p1) · B[p0..p1, :)
+     */
+    void compute(double[] c, int co, int i0, int i1, int p0, int p1) {
+        if (tb) {
+            computeTransposedB(c, co, i0, i1, p0, p1);
+            return;
+        }
+
+        // B 只有一個 panel 寬時直接使用原本的列，不需要複製
+        double[] pack = n > NC ? new double[KC * NC] : null;
+        for (int j0 = 0; j0 < n; j0 += NC) {
+            int nc = Math.min(NC, n - j0);
+            for (int q0 = p0; q0 < p1; q0 += KC) {
+                int kc = Math.min(KC, p1 - q0);
+
+                double[] panel;
+                int panelOffset;
+                int panelStride;
+                if (pack == null) {
+                    panel = b;
+                    panelOffset = bo + q0 * ldb;
+                    panelStride = ldb;
+                } else {
+                    for (int q = 0; q < kc; q++) {
+                        System.arraycopy(b, bo + (q0 + q) * ldb + j0, pack, q * nc, nc);
+                    }
+                    panel = pack;
+                    panelOffset = 0;
+                    panelStride = nc;
+                }
+
+                if (ta) {
+                    panelTransposedA(c, co + j0, i0, i1, q0, kc, nc, panel, panelOffset, panelStride);
+                } else {
+                    panel(c, co + j0, i0, i1, q0, kc, nc, panel, panelOffset, panelStride);
+                }
+            }
+        }
+    }
+
+    /**
+     * i-k-j：A 的第 i 列循序讀取
+     */
+    private void panel(double[] c, int co, int i0, int i1, int q0, int kc, int nc,
+                       double[] panel, int panelOffset, int panelStride) {
+        for (int i = i0; i < i1; i++) {
+            int ai = ao + i * lda + q0;
+            int ci = co + i * n;
+            for (int q = 0; q < kc; q++) {
+                double aiq = a[ai + q];
+                if (aiq != 0.0 || !skipZeros) {
+                    K.axpy(aiq, panel, panelOffset + q * panelStride, c, ci, nc);
+                }
+            }
+        }
+    }
+
+    /**
+     * k-i-j：Aᵀ 的第 q 列（A 的第 q 欄）循序讀取
+     */
+    private void panelTransposedA(double[] c, int co, int i0, int i1, int q0, int kc, int nc,
+                                  double[] panel, int panelOffset, int panelStride) {
+        for (int q = 0; q < kc; q++) {
+            int aq = ao + (q0 + q) * lda;
+            int bq = panelOffset + q * panelStride;
+            for (int i = i0; i < i1; i++) {
+                double aiq = a[aq + i];
+                if (aiq != 0.0 || !skipZeros) {
+                    K.axpy(aiq, panel, bq, c, co + i * n, nc);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bᵀ：C(i, j) += A 第 i 列 · B 第 j 欄，兩者在記憶體中都是連續的
+     */
+    private void computeTransposedB(double[] c, int co, int i0, int i1, int p0, int p1) {
+        for (int j0 = 0; j0 < n; j0 += NC) {
+            int j1 = Math.min(n, j0 + NC);
+            for (int q0 = p0; q0 < p1; q0 += KC) {
+                int kc = Math.min(KC, p1 - q0);
+                for (int i = i0; i < i1; i++) {
+                    int ai = ao + i * lda + q0;
+                    int ci = co + i * n;
+                    for (int j = j0; j < j1; j++) {
+                        c[ci + j] += K.dot(a, ai, b, bo + j * ldb + q0, kc);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.micrograd.tensor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Gemm 與 FloatGemm 共用的平行排程：切列區塊，或切 k 各自累加到私有的 double 暫存再依序合併
+ * 實際的乘加（double / float 儲存）由呼叫端以 lambda 提供
+ */
+final class GemmTasks {
+
+    private static final TensorKernels K = TensorKernels.get();
+
+    /** 每個平行任務至少處理的列數 */
+    static final int ROW_BLOCK = 64;
+
+    private GemmTasks() {
+    }
+
+    /** C 的 [i0, i1) 列 */
+    interface RowRange {
+        void compute(int i0, int i1);
+    }
+
+    /** acc（連續 m×n）+= A[:, p0..p1) · B[p0..p1, :) */
+    interface KRange {
+        void accumulate(double[] acc, int p0, int p1);
+    }
+
+    /**
+     * m·k·n 夠大且 pool 有多個執行緒時才值得平行
+     */
+    static boolean worthParallel(int m, int k, int n, ForkJoinPool pool) {
+        return (long) m * k * n >= Gemm.PARALLEL_WORK && pool.getParallelism() >= 2;
+    }
+
+    /**
+     * 把 [0, m) 列切成區塊在 pool 上計算；m 至少要有 2·ROW_BLOCK
+     */
+    static void rows(ForkJoinPool pool, int m, RowRange body) {
+        int chunk = Math.max(ROW_BLOCK, m / (4 * pool.getParallelism()));
+        pool.invoke(new RowTask(body, 0, m, chunk));
+    }
+
+    /**
+     * 把 [0, k) 切成最多 2·parallelism 份（每份至少 KC），各自累加到私有的 size 個 double，
+     * 再依固定順序加到 acc[ao..ao+size)，結果與執行緒排程無關
+     */
+    static void splitK(ForkJoinPool pool, int k, int size, KRange body, double[] acc, int ao) {
+        int parts = Math.max(1, Math.min(2 * pool.getParallelism(), k / Gemm.KC));
+        double[][] partial = new double[parts][];
+        pool.invoke(new KTask(body, k, size, partial, 0, parts));
+        for (double[] local : partial) {
+            K.add(acc, ao, local, 0, acc, ao, size);
+        }
+    }
+
+    private static final class RowTask extends RecursiveAction {
+        private final RowRange body;
+        private final int i0;
+        private final int i1;
+        private final int chunk;
+
+        RowTask(RowRange body, int i0, int i1, int chunk) {
+            this.body = body;
+            this.i0 = i0;
+            this.i1 = i1;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (i1 - i0 <= chunk) {
+                body.compute(i0, i1);
+                return;
+            }
+            int mid = (i0 + i1) >>> 1;
+            invokeAll(new RowTask(body, i0, mid, chunk), new RowTask(body, mid, i1, chunk));
+        }
+    }
+
+    /**
+     * 第 t 份負責 k 的 [k·t/parts, k·(t+1)/parts)，結果寫入 partial[t]
+     */
+    private static final class KTask extends RecursiveAction {
+        private final KRange body;
+        private final int k;
+        private final int size;
+        private final double[][] partial;
+        private final int t0;
+        private final int t1;
+
+        KTask(KRange body, int k, int size, double[][] partial, int t0, int t1) {
+            this.body = body;
+            this.k = k;
+            this.size = size;
+            this.partial = partial;
+            this.t0 = t0;
+            this.t1 = t1;
+        }
+
+        @Override
+        protected void compute() {
+            if (t1 - t0 > 1) {
+                int mid = (t0 + t1) >>> 1;
+                invokeAll(new KTask(body, k, size, partial, t0, mid), new KTask(body, k, size, partial, mid, t1));
+                return;
+            }
+            int parts = partial.length;
+            int from = (int) ((long) k * t0 / parts);
+            int to = (int) ((long) k * (t0 + 1) / parts);
+            double[] local = new double[size];
+            body.accumulate(local, from, to);
+            partial[t0] = local;
+        }
+    }
+}
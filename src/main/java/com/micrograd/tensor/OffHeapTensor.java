@@ -0,0 +1,496 @@
+package com.micrograd.tensor;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 存放在 Java heap 之外的 2D 張量（row-major，由 TensorArena 配置或映射檔案）
+ *
+ * 元素 (i, j) 位於第 i·cols + j 個 double，以 long 計算，
+ * 分散在每塊 2^chunkShift 個 double 的 DoubleBuffer 中，總元素數可以超過 2^31。
+ * 適合放大型的計數表與 embedding 表：不佔 heap、不增加 GC 負擔，映射的檔案可以直接重新開啟。
+ * 運算時逐塊複製到 heap 上的暫存，再交給與 Tensor 相同的 kernel 與 Gemm；
+ * 結果（sum(axis)、matmul、getRow、gatherRows）是一般的 Tensor，逐列運算（softmax、normalizeRows）
+ * 則由 TensorOps 寫回堆積外。
+ * 每個批次操作只向 arena 登記一次存取；純量 get / set / increment 每次都要登記，
+ * 大量累加請用 increment(int[], int[], double)。
+ */
+public final class OffHeapTensor {
+
+    /** 逐塊運算時每塊最多複製的元素數 */
+    private static final int BLOCK = 1 << 16;
+
+    private static final TensorKernels K = TensorKernels.get();
+
+    private final TensorArena arena;
+    private final int rows;
+    private final int cols;
+    private final DoubleBuffer[] chunks;
+    private final int shift;
+    private final long mask;
+
+    OffHeapTensor(TensorArena arena, int rows, int cols, DoubleBuffer[] chunks, int shift) {
+        this.arena = arena;
+        this.rows = rows;
+        this.cols = cols;
+        this.chunks = chunks;
+        this.shift = shift;
+        this.mask = (1L << shift) - 1;
+    }
+
+    // ==================== 索引操作 ====================
+
+    private long index(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Index [%d, %d] out of bounds for [%d,%d]", row, col, rows, cols));
+        }
+        return (long) row * cols + col;
+    }
+
+    public double get(int row, int col) {
+        long i = index(row, col);
+        arena.acquire();
+        try {
+            return chunks[(int) (i >>> shift)].get((int) (i & mask));
+        } finally {
+            arena.release();
+        }
+    }
+
+    public void set(int row, int col, double value) {
+        long i = index(row, col);
+        arena.acquire();
+        try {
+            chunks[(int) (i >>> shift)].put((int) (i & mask), value);
+        } finally {
+            arena.release();
+        }
+    }
+
+    public void increment(int row, int col, double value) {
+        long i = index(row, col);
+        arena.acquire();
+        try {
+            DoubleBuffer chunk = chunks[(int) (i >>> shift)];
+            int k = (int) (i & mask);
+            chunk.put(k, chunk.get(k) + value);
+        } finally {
+            arena.release();
+        }
+    }
+
+    /**
+     * 批次累加：第 n 個位置 (rowIdx[n], colIdx[n]) += value，重複的位置會累加
+     * 先檢查所有索引，越界時不會修改任何元素
+     */
+    public void increment(int[] rowIdx, int[] colIdx, double value) {
+        if (rowIdx.length != colIdx.length) {
+            throw new IllegalArgumentException(
+                    String.format("Index length mismatch: %d vs %d", rowIdx.length, colIdx.length));
+        }
+        for (int n = 0; n < rowIdx.length; n++) {
+            index(rowIdx[n], colIdx[n]);
+        }
+        arena.acquire();
+        try {
+            for (int n = 0; n < rowIdx.length; n++) {
+                long i = (long) rowIdx[n] * cols + colIdx[n];
+                DoubleBuffer chunk = chunks[(int) (i >>> shift)];
+                int k = (int) (i & mask);
+                chunk.put(k, chunk.get(k) + value);
+            }
+        } finally {
+            arena.release();
+        }
+    }
+
+    /**
+     * 取得某一列（1×cols 的 heap 副本）
+     */
+    public Tensor getRow(int row) {
+        Tensor result = new Tensor(1, cols);
+        long from = index(row, 0);
+        arena.acquire();
+        try {
+            read(from, result.buffer(), 0, cols);
+        } finally {
+            arena.release();
+        }
+        return result;
+    }
+
+    /**
+     * 以 1×cols 的張量覆寫某一列
+     */
+    public void setRow(int row, Tensor values) {
+        if (values.getRows() != 1 || values.getCols() != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Row shape [%d,%d] doesn't match [1,%d]",
+                            values.getRows(), values.getCols(), cols));
+        }
+        Tensor src = values.contiguous();
+        long from = index(row, 0);
+        arena.acquire();
+        try {
+            write(from, src.buffer(), src.rowOffset(0), cols);
+        } finally {
+            arena.release();
+        }
+    }
+
+    // ==================== 列索引（embedding）====================
+
+    /**
+     * 依索引取出多列：結果第 i 列 = this 第 idx[i] 列（idx.length×cols 的 heap 張量）
+     */
+    public Tensor gatherRows(int[] idx) {
+        for (int row : idx) {
+            checkRow(row);
+        }
+        Tensor result = new Tensor(idx.length, cols);
+        arena.acquire();
+        try {
+            for (int i = 0; i < idx.length; i++) {
+                read((long) idx[i] * cols, result.buffer(), result.rowOffset(i), cols);
+            }
+        } finally {
+            arena.release();
+        }
+        return result;
+    }
+
+    /**
+     * this 第 idx[i] 列 += src 第 i 列（gatherRows 的反向），重複的索引會累加
+     */
+    public OffHeapTensor scatterAddRows(int[] idx, Tensor src) {
+        if (src.getRows() != idx.length || src.getCols() != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Source shape [%d,%d] doesn't match [%d,%d]",
+                            src.getRows(), src.getCols(), idx.length, cols));
+        }
+        for (int row : idx) {
+            checkRow(row);
+        }
+        Tensor s = src.contiguous();
+        double[] scratch = new double[cols];
+        arena.acquire();
+        try {
+            for (int i = 0; i < idx.length; i++) {
+                long from = (long) idx[i] * cols;
+                read(from, scratch, 0, cols);
+                K.add(scratch, 0, s.buffer(), s.rowOffset(i), scratch, 0, cols);
+                write(from, scratch, 0, cols);
+            }
+        } finally {
+            arena.release();
+        }
+        return this;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Row %d out of bounds for [%d,%d]", row, rows, cols));
+        }
+    }
+
+    // ==================== 形狀操作 ====================
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int[] shape() {
+        return new int[]{rows, cols};
+    }
+
+    public long size() {
+        return (long) rows * cols;
+    }
+
+    /**
+     * 複製到 heap 上的 Tensor（元素數必須小於 2^31）
+     */
+    public Tensor toTensor() {
+        if (size() > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException(
+                    String.format("[%d,%d] is too large for an on-heap Tensor", rows, cols));
+        }
+        Tensor result = new Tensor(rows, cols);
+        arena.acquire();
+        try {
+            read(0, result.buffer(), 0, (int) size());
+        } finally {
+            arena.release();
+        }
+        return result;
+    }
+
+    /**
+     * 從同形狀的 Tensor 複製內容
+     */
+    public OffHeapTensor copyFrom(Tensor src) {
+        if (src.getRows() != rows || src.getCols() != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Shape mismatch: [%d,%d] vs [%d,%d]",
+                            rows, cols, src.getRows(), src.getCols()));
+        }
+        Tensor s = src.isRowMajor() ? src : src.copy();
+        arena.acquire();
+        try {
+            for (int i = 0; i < rows; i++) {
+                write((long) i * cols, s.buffer(), s.rowOffset(i), cols);
+            }
+        } finally {
+            arena.release();
+        }
+        return this;
+    }
+
+    /**
+     * 所有元素設為 value
+     */
+    public OffHeapTensor fill(double value) {
+        double[] scratch = new double[(int) Math.min(BLOCK, size())];
+        Arrays.fill(scratch, value);
+        arena.acquire();
+        try {
+            for (long from = 0; from < size(); from += scratch.length) {
+                write(from, scratch, 0, (int) Math.min(scratch.length, size() - from));
+            }
+        } finally {
+            arena.release();
+        }
+        return this;
+    }
+
+    // ==================== 逐元素 / 逐列運算 ====================
+
+    public OffHeapTensor addInPlace(double scalar) {
+        return mapRows(this, (a, ao, out, oo, n) -> K.add(a, ao, scalar, out, oo, n));
+    }
+
+    public OffHeapTensor mulInPlace(double scalar) {
+        return mapRows(this, (a, ao, out, oo, n) -> K.mul(a, ao, scalar, out, oo, n));
+    }
+
+    interface RowKernel {
+        void apply(double[] a, int ao, double[] out, int oo, int n);
+    }
+
+    /**
+     * out 的每一列 = op(this 的同一列)，out 可以是 this 本身（見 TensorOps.softmax / normalizeRows）
+     * 逐段複製到 heap 上運算再寫回，兩個張量各登記一次存取
+     */
+    OffHeapTensor mapRows(OffHeapTensor out, RowKernel op) {
+        if (out.rows != rows || out.cols != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Output shape [%d,%d] doesn't match [%d,%d]",
+                            out.rows, out.cols, rows, cols));
+        }
+        int blockRows = blockRows();
+        double[] scratch = new double[blockRows * cols];
+        arena.acquire();
+        try {
+            out.arena.acquire();
+            try {
+                for (int r0 = 0; r0 < rows; r0 += blockRows) {
+                    int r1 = Math.min(rows, r0 + blockRows);
+                    int len = (r1 - r0) * cols;
+                    read((long) r0 * cols, scratch, 0, len);
+                    for (int si = 0; si < len; si += cols) {
+                        op.apply(scratch, si, scratch, si, cols);
+                    }
+                    out.write((long) r0 * cols, scratch, 0, len);
+                }
+            } finally {
+                out.arena.release();
+            }
+        } finally {
+            arena.release();
+        }
+        return out;
+    }
+
+    // ==================== 聚合運算 ====================
+
+    /**
+     * 所有元素的總和
+     */
+    public double sum() {
+        double[] scratch = new double[(int) Math.min(BLOCK, size())];
+        double sum = 0;
+        arena.acquire();
+        try {
+            for (long from = 0; from < size(); from += scratch.length) {
+                int len = (int) Math.min(scratch.length, size() - from);
+                read(from, scratch, 0, len);
+                sum += K.sum(scratch, 0, len);
+            }
+        } finally {
+            arena.release();
+        }
+        return sum;
+    }
+
+    /**
+     * 沿著指定軸加總
+     * axis=0: 沿著列加總，結果為 1×cols
+     * axis=1: 沿著欄加總，結果為 rows×1
+     */
+    public Tensor sum(int axis) {
+        if (axis != 0 && axis != 1) {
+            throw new IllegalArgumentException("Axis must be 0 or 1");
+        }
+        Tensor result = axis == 0 ? new Tensor(1, cols) : new Tensor(rows, 1);
+        double[] out = result.buffer();
+        int blockRows = blockRows();
+        double[] scratch = new double[blockRows * cols];
+        arena.acquire();
+        try {
+            for (int r0 = 0; r0 < rows; r0 += blockRows) {
+                int r1 = Math.min(rows, r0 + blockRows);
+                read((long) r0 * cols, scratch, 0, (r1 - r0) * cols);
+                for (int i = r0; i < r1; i++) {
+                    int si = (i - r0) * cols;
+                    if (axis == 0) {
+                        K.add(out, 0, scratch, si, out, 0, cols);
+                    } else {
+                        out[i] = K.sum(scratch, si, cols);
+                    }
+                }
+            }
+        } finally {
+            arena.release();
+        }
+        return result;
+    }
+
+    /**
+     * 所有元素的平均
+     */
+    public double mean() {
+        return sum() / size();
+    }
+
+    // ==================== 矩陣乘法 ====================
+
+    /**
+     * this @ other，結果放在 heap 上
+     */
+    public Tensor matmul(Tensor other) {
+        return matmul(other, new Tensor(rows, other.getCols()));
+    }
+
+    /**
+     * out = this @ other：每次把一段列複製到 heap 上，交給 Gemm（分塊、可平行）
+     */
+    public Tensor matmul(Tensor other, Tensor out) {
+        if (cols != other.getRows()) {
+            throw new IllegalArgumentException(
+                    String.format("Cannot multiply [%d,%d] with [%d,%d]",
+                            rows, cols, other.getRows(), other.getCols()));
+        }
+        int n = other.getCols();
+        if (out.getRows() != rows || out.getCols() != n) {
+            throw new IllegalArgumentException(
+                    String.format("Output shape [%d,%d] doesn't match [%d,%d]",
+                            out.getRows(), out.getCols(), rows, n));
+        }
+
+        Tensor b = other.contiguous();
+        Tensor c = out.isContiguous() ? out : new Tensor(rows, n);
+        c.fill(0.0);
+        int blockRows = blockRows();
+        double[] scratch = new double[blockRows * cols];
+        arena.acquire();
+        try {
+            for (int r0 = 0; r0 < rows; r0 += blockRows) {
+                int r1 = Math.min(rows, r0 + blockRows);
+                read((long) r0 * cols, scratch, 0, (r1 - r0) * cols);
+                new Gemm(scratch, 0, cols, false, b.buffer(), b.rowOffset(0), n, false, r1 - r0, cols, n)
+                        .run(c.buffer(), c.rowOffset(r0), ForkJoinPool.commonPool());
+            }
+        } finally {
+            arena.release();
+        }
+        if (c != out) {
+            out.copyFrom(c);
+        }
+        return out;
+    }
+
+    /**
+     * left @ this，結果放在 heap 上：每段列是 B 的一段 k，C += left[:, r0..r1) · this[r0..r1, :)
+     */
+    public Tensor leftMatmul(Tensor left) {
+        if (left.getCols() != rows) {
+            throw new IllegalArgumentException(
+                    String.format("Cannot multiply [%d,%d] with [%d,%d]",
+                            left.getRows(), left.getCols(), rows, cols));
+        }
+        int m = left.getRows();
+        Tensor a = left.contiguous();
+        Tensor c = new Tensor(m, cols);
+        int blockRows = blockRows();
+        double[] scratch = new double[blockRows * cols];
+        arena.acquire();
+        try {
+            for (int r0 = 0; r0 < rows; r0 += blockRows) {
+                int r1 = Math.min(rows, r0 + blockRows);
+                read((long) r0 * cols, scratch, 0, (r1 - r0) * cols);
+                new Gemm(a.buffer(), a.rowOffset(0) + r0, rows, false, scratch, 0, cols, false, m, r1 - r0, cols)
+                        .run(c.buffer(), c.rowOffset(0), ForkJoinPool.commonPool());
+            }
+        } finally {
+            arena.release();
+        }
+        return c;
+    }
+
+    // ==================== 輔助方法 ====================
+
+    /** 每次複製到 heap 的列數（至少一列） */
+    private int blockRows() {
+        return Math.max(1, Math.min(rows, BLOCK / Math.max(1, cols)));
+    }
+
+    /**
+     * dst[off..off+len) = 第 from 個元素開始的 len 個元素（可以跨塊）
+     * read / write 只能在 arena.acquire() 與 release() 之間呼叫
+     */
+    private void read(long from, double[] dst, int off, int len) {
+        while (len > 0) {
+            DoubleBuffer chunk = chunks[(int) (from >>> shift)];
+            int k = (int) (from & mask);
+            int n = Math.min(len, chunk.capacity() - k);
+            chunk.get(k, dst, off, n);
+            from += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void write(long from, double[] src, int off, int len) {
+        while (len > 0) {
+            DoubleBuffer chunk = chunks[(int) (from >>> shift)];
+            int k = (int) (from & mask);
+            int n = Math.min(len, chunk.capacity() - k);
+            chunk.put(k, src, off, n);
+            from += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OffHeapTensor [%d, %d]%s", rows, cols, arena.isClosed() ? " (closed)" : "");
+    }
+}
@@ -0,0 +1,451 @@
+package com.micrograd.tensor;
+
+/**
+ * Tensor 與 FloatTensor 共用的 2D strided 版面
+ *
+ * 元素 (i, j) 位於 buffer[offset + i·rowStride + j·colStride]。
+ * 這裡只處理形狀、view、索引檢查，以及 element-wise 運算依版面（連續 / row-major / 其他）的分派；
+ * 儲存陣列、kernel 與矩陣乘法由子類別提供，T 是子類別本身。
+ */
+abstract class StridedTensor<T extends StridedTensor<T>> {
+
+    final int rows;
+    final int cols;
+    final int offset;
+    final int rowStride;
+    final int colStride;
+
+    StridedTensor(int rows, int cols, int offset, int rowStride, int colStride) {
+        this.rows = rows;
+        this.cols = cols;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.colStride = colStride;
+    }
+
+    // ==================== 儲存相關（子類別實作）====================
+
+    /** 共用同一個儲存陣列的 view */
+    abstract T view(int rows, int cols, int offset, int rowStride, int colStride);
+
+    /** 全零、連續的新張量 */
+    abstract T allocate(int rows, int cols);
+
+    @SuppressWarnings("unchecked")
+    private T self() {
+        return (T) this;
+    }
+
+    public abstract double get(int row, int col);
+
+    public abstract void set(int row, int col, double value);
+
+    public abstract void increment(int row, int col, double value);
+
+    /**
+     * 複製張量（結果一定是連續的 row-major）
+     */
+    public abstract T copy();
+
+    /**
+     * 從同形狀的張量複製內容
+     */
+    public abstract T copyFrom(T src);
+
+    /**
+     * 所有元素設為 value
+     */
+    public abstract T fill(double value);
+
+    /**
+     * 所有元素的總和
+     */
+    public abstract double sum();
+
+    // ==================== 索引操作 ====================
+
+    final int index(int row, int col) {
+        return offset + row * rowStride + col * colStride;
+    }
+
+    /** 第 row 列第一個元素的位置 */
+    final int rowOffset(int row) {
+        return offset + row * rowStride;
+    }
+
+    /**
+     * 取得某一列（1×cols 的 view）
+     */
+    public T getRow(int row) {
+        return slice(row, row + 1, 0, cols);
+    }
+
+    /**
+     * 取得某一欄（rows×1 的 view）
+     */
+    public T getCol(int col) {
+        return slice(0, rows, col, col + 1);
+    }
+
+    /**
+     * 取得 [rowFrom, rowTo) 列（view）
+     */
+    public T sliceRows(int rowFrom, int rowTo) {
+        return slice(rowFrom, rowTo, 0, cols);
+    }
+
+    /**
+     * 取得 [rowFrom, rowTo) × [colFrom, colTo) 的子矩陣（view）
+     */
+    public T slice(int rowFrom, int rowTo, int colFrom, int colTo) {
+        if (rowFrom < 0 || rowTo > rows || rowFrom > rowTo
+                || colFrom < 0 || colTo > cols || colFrom > colTo) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Slice [%d:%d, %d:%d] out of bounds for [%d,%d]",
+                            rowFrom, rowTo, colFrom, colTo, rows, cols));
+        }
+        return view(rowTo - rowFrom, colTo - colFrom, index(rowFrom, colFrom), rowStride, colStride);
+    }
+
+    /**
+     * 依索引取出多列：結果第 i 列 = this 第 idx[i] 列（idx.length×cols 的新張量）
+     * 等同 oneHot(idx) @ this，但只需複製 O(idx.length·cols) 個元素
+     */
+    public T gatherRows(int[] idx) {
+        return gatherRows(idx, allocate(idx.length, cols));
+    }
+
+    /**
+     * out 第 i 列 = this 第 idx[i] 列；out 必須是 idx.length×cols，不可與 this 共用資料
+     */
+    public abstract T gatherRows(int[] idx, T out);
+
+    /**
+     * this 第 idx[i] 列 += src 第 i 列（gatherRows 的反向）
+     * 重複的索引會累加，沒有出現的列不會被讀寫
+     */
+    public abstract T scatterAddRows(int[] idx, T src);
+
+    final int checkRow(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Row %d out of bounds for [%d,%d]", row, rows, cols));
+        }
+        return row;
+    }
+
+    // ==================== 形狀操作 ====================
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int[] shape() {
+        return new int[]{rows, cols};
+    }
+
+    public int size() {
+        return rows * cols;
+    }
+
+    /**
+     * 元素是否以 row-major 連續存放在 buffer[offset, offset + size())
+     */
+    public boolean isContiguous() {
+        return (cols == 1 || colStride == 1) && (rows == 1 || rowStride == cols);
+    }
+
+    /**
+     * 連續時回傳自己，否則回傳連續的副本
+     */
+    public T contiguous() {
+        return isContiguous() ? self() : copy();
+    }
+
+    /**
+     * 轉置（view：交換 rowStride 與 colStride）
+     */
+    public T transpose() {
+        return view(cols, rows, offset, colStride, rowStride);
+    }
+
+    /** 每列內元素連續，可用 rowStride 當 leading dimension */
+    boolean isRowMajor() {
+        return cols == 1 || colStride == 1;
+    }
+
+    /** 每欄內元素連續（例如轉置的 view），可用 colStride 當 leading dimension */
+    boolean isColMajor() {
+        return rows == 1 || rowStride == 1;
+    }
+
+    // ==================== 數學運算（回傳新張量）====================
+
+    /**
+     * 加法（元素對元素）
+     */
+    public T add(T other) {
+        return add(other, allocate(rows, cols));
+    }
+
+    /**
+     * 加上純量
+     */
+    public T add(double scalar) {
+        return add(scalar, allocate(rows, cols));
+    }
+
+    /**
+     * 減法（元素對元素）
+     */
+    public T sub(T other) {
+        return sub(other, allocate(rows, cols));
+    }
+
+    /**
+     * 乘法（元素對元素）
+     */
+    public T mul(T other) {
+        return mul(other, allocate(rows, cols));
+    }
+
+    /**
+     * 乘上純量
+     */
+    public T mul(double scalar) {
+        return mul(scalar, allocate(rows, cols));
+    }
+
+    /**
+     * 除法（元素對元素）
+     */
+    public T div(T other) {
+        return div(other, allocate(rows, cols));
+    }
+
+    /**
+     * 除以純量
+     */
+    public T div(double scalar) {
+        return mul(1.0 / scalar);
+    }
+
+    /**
+     * 矩陣乘法（分塊、大矩陣時多執行緒）
+     * 轉置的 view（例如 x.transpose().matmul(y)）直接以轉置方式讀取，不會先複製
+     */
+    public T matmul(T other) {
+        return matmul(other, allocate(rows, other.cols));
+    }
+
+    /**
+     * 指數（e^x）
+     */
+    public T exp() {
+        return exp(allocate(rows, cols));
+    }
+
+    /**
+     * 自然對數
+     */
+    public T log() {
+        return log(allocate(rows, cols));
+    }
+
+    /**
+     * 負號
+     */
+    public T neg() {
+        return mul(-1);
+    }
+
+    // ==================== 數學運算（寫入 out）====================
+    //
+    // out 必須與結果同形狀，可以是 this / other 本身（matmul 除外）或任意 view；
+    // 預先配置好 out 的迴圈每一步都不需要配置記憶體。回傳 out 方便串接。
+
+    public abstract T add(T other, T out);
+
+    public abstract T add(double scalar, T out);
+
+    public abstract T sub(T other, T out);
+
+    public abstract T mul(T other, T out);
+
+    public abstract T mul(double scalar, T out);
+
+    public abstract T div(T other, T out);
+
+    public T div(double scalar, T out) {
+        return mul(1.0 / scalar, out);
+    }
+
+    public abstract T exp(T out);
+
+    public abstract T log(T out);
+
+    public T neg(T out) {
+        return mul(-1.0, out);
+    }
+
+    /**
+     * out = this @ other；out 不可與輸入共用資料
+     */
+    public abstract T matmul(T other, T out);
+
+    // ==================== 原地運算 ====================
+
+    public T addInPlace(T other) {
+        return add(other, self());
+    }
+
+    public T addInPlace(double scalar) {
+        return add(scalar, self());
+    }
+
+    public T subInPlace(T other) {
+        return sub(other, self());
+    }
+
+    public T mulInPlace(T other) {
+        return mul(other, self());
+    }
+
+    public T mulInPlace(double scalar) {
+        return mul(scalar, self());
+    }
+
+    public T divInPlace(T other) {
+        return div(other, self());
+    }
+
+    public T divInPlace(double scalar) {
+        return div(scalar, self());
+    }
+
+    public T expInPlace() {
+        return exp(self());
+    }
+
+    public T logInPlace() {
+        return log(self());
+    }
+
+    public T negInPlace() {
+        return neg(self());
+    }
+
+    // ==================== 聚合運算 ====================
+
+    /**
+     * 所有元素的平均
+     */
+    public double mean() {
+        return sum() / size();
+    }
+
+    /**
+     * 找最大值的索引（用於 1D 或單列張量）
+     */
+    public int argmax() {
+        int maxIdx = 0;
+        double maxVal = get(0, 0);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                double v = get(i, j);
+                if (v > maxVal) {
+                    maxVal = v;
+                    maxIdx = i * cols + j;
+                }
+            }
+        }
+        return maxIdx;
+    }
+
+    // ==================== Element-wise 分派 ====================
+
+    /** 對齊的三段：out[oo..oo+n) = op(a[ao..], b[bo..])，陣列由子類別從張量取出 */
+    interface Segment<T> {
+        void apply(T a, int ao, T b, int bo, T out, int oo, int n);
+    }
+
+    /**
+     * 全部連續時一次處理整塊，全部 row-major 時逐列處理，
+     * 其他排列（例如寫入轉置的 view）先算到暫存再寫回，因此 out 與輸入重疊也安全
+     * 單一輸入的運算（純量、unary）傳入 b == a
+     */
+    static <T extends StridedTensor<T>> T elementwise(Segment<T> op, T a, T b, T out) {
+        a.checkOutShape(out);
+        if (a.isContiguous() && b.isContiguous() && out.isContiguous()) {
+            op.apply(a, a.offset, b, b.offset, out, out.offset, out.size());
+        } else if (a.isRowMajor() && b.isRowMajor() && out.isRowMajor()) {
+            for (int i = 0; i < out.rows; i++) {
+                op.apply(a, a.rowOffset(i), b, b.rowOffset(i), out, out.rowOffset(i), out.cols);
+            }
+        } else {
+            T ca = a.contiguous();
+            T cb = b == a ? ca : b.contiguous();
+            T tmp = out.allocate(out.rows, out.cols);
+            op.apply(ca, ca.offset, cb, cb.offset, tmp, 0, tmp.size());
+            out.copyFrom(tmp);
+        }
+        return out;
+    }
+
+    // ==================== 輔助方法 ====================
+
+    void checkOutShape(StridedTensor<?> out) {
+        if (out.rows != rows || out.cols != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Output shape [%d,%d] doesn't match [%d,%d]",
+                            out.rows, out.cols, rows, cols));
+        }
+    }
+
+    void checkSameShape(StridedTensor<?> other) {
+        if (this.rows != other.rows || this.cols != other.cols) {
+            throw new IllegalArgumentException(
+                    String.format("Shape mismatch: [%d,%d] vs [%d,%d]",
+                            rows, cols, other.rows, other.cols));
+        }
+    }
+
+    /**
+     * 轉換為 2D 陣列
+     */
+    public double[][] to2DArray() {
+        double[][] result = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                result[i][j] = get(i, j);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s [%d, %d]:\n", getClass().getSimpleName(), rows, cols));
+        for (int i = 0; i < rows; i++) {
+            sb.append("[");
+            for (int j = 0; j < cols; j++) {
+                sb.append(String.format("%8.4f", get(i, j)));
+                if (j < cols - 1) sb.append(", ");
+            }
+            sb.append("]\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 簡短的字串表示（只顯示形狀和部分資料）
+     */
+    public String toShortString() {
+        return String.format("%s [%d, %d], sum=%.4f", getClass().getSimpleName(), rows, cols, sum());
+    }
+}
@@ -2,36 +2,57 @@ package com.micrograd.tensor;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 2D 張量（矩陣）
  * 用於儲存計數、機率、權重等
+ *
+ * 元素 (i, j) 位於 data[offset + i·rowStride + j·colStride]。
+ * getRow / getCol / slice / transpose 回傳共用同一個陣列的 view（O(1)，不複製），
+ * 透過 view 寫入會改到原本的張量；需要獨立的副本時用 copy()。
+ * 形狀、view 與 element-wise 的分派見 StridedTensor，這裡只有 double 儲存與對應的 kernel。
  */
-public class Tensor {
+public class Tensor extends StridedTensor<Tensor> {
 
-    private final int rows;
-    private final int cols;
-    private final double[] data;  // row-major 儲存
+    private final double[] data;
+
+    private static final TensorKernels K = TensorKernels.get();
 
     // ==================== 建構子 ====================
 
     public Tensor(int rows, int cols) {
-        this.rows = rows;
-        this.cols = cols;
-        this.data = new double[rows * cols];
+        this(rows, cols, new double[rows * cols], 0, cols, 1);
     }
 
     public Tensor(int rows, int cols, double[] data) {
+        super(rows, cols, 0, cols, 1);
         if (data.length != rows * cols) {
             throw new IllegalArgumentException(
                     String.format("Data length %d doesn't match shape [%d, %d]",
                             data.length, rows, cols));
         }
-        this.rows = rows;
-        this.cols = cols;
         this.data = data.clone();
     }
 
+    /**
+     * View：共用 data，不複製
+     */
+    private Tensor(int rows, int cols, double[] data, int offset, int rowStride, int colStride) {
+        super(rows, cols, offset, rowStride, colStride);
+        this.data = data;
+    }
+
+    @Override
+    Tensor view(int rows, int cols, int offset, int rowStride, int colStride) {
+        return new Tensor(rows, cols, data, offset, rowStride, colStride);
+    }
+
+    @Override
+    Tensor allocate(int rows, int cols) {
+        return new Tensor(rows, cols);
+    }
+
     // ==================== 靜態工廠方法 ====================
 
     /**
@@ -98,10 +119,6 @@ public class Tensor {
 
     // ==================== 索引操作 ====================
 
-    private int index(int row, int col) {
-        return row * cols + col;
-    }
-
     public double get(int row, int col) {
         return data[index(row, col)];
     }
@@ -114,163 +131,215 @@ public class Tensor {
         data[index(row, col)] += value;
     }
 
+    // ==================== 列索引（embedding）====================
+
     /**
-     * 取得某一列（回傳新的 1×cols 張量）
+     * out 第 i 列 = this 第 idx[i] 列；out 必須是 idx.length×cols，不可與 this 共用資料
      */
-    public Tensor getRow(int row) {
-        Tensor result = new Tensor(1, cols);
-        System.arraycopy(data, row * cols, result.data, 0, cols);
-        return result;
+    public Tensor gatherRows(int[] idx, Tensor out) {
+        if (out.rows != idx.length || out.cols != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Output shape [%d,%d] doesn't match [%d,%d]",
+                            out.rows, out.cols, idx.length, cols));
+        }
+        if (out.data == data) {
+            throw new IllegalArgumentException("gatherRows output must not alias its input");
+        }
+        Tensor src = isRowMajor() ? this : copy();
+        if (!out.isRowMajor()) {
+            return out.copyFrom(src.gatherRows(idx));
+        }
+        for (int i = 0; i < idx.length; i++) {
+            System.arraycopy(src.data, src.rowOffset(checkRow(idx[i])), out.data, out.rowOffset(i), cols);
+        }
+        return out;
     }
 
     /**
-     * 取得某一欄（回傳新的 rows×1 張量）
+     * this 第 idx[i] 列 += src 第 i 列（gatherRows 的反向）
+     * 重複的索引會累加，沒有出現的列不會被讀寫
      */
-    public Tensor getCol(int col) {
-        Tensor result = new Tensor(rows, 1);
-        for (int i = 0; i < rows; i++) {
-            result.set(i, 0, get(i, col));
+    public Tensor scatterAddRows(int[] idx, Tensor src) {
+        if (src.rows != idx.length || src.cols != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Source shape [%d,%d] doesn't match [%d,%d]",
+                            src.rows, src.cols, idx.length, cols));
         }
-        return result;
+        Tensor s = src.data == data ? src.copy() : src.contiguous();
+        if (isRowMajor()) {
+            for (int i = 0; i < idx.length; i++) {
+                int r = rowOffset(checkRow(idx[i]));
+                K.add(data, r, s.data, s.rowOffset(i), data, r, cols);
+            }
+        } else {
+            for (int i = 0; i < idx.length; i++) {
+                int row = checkRow(idx[i]);
+                for (int j = 0; j < cols; j++) {
+                    data[index(row, j)] += s.data[s.rowOffset(i) + j];
+                }
+            }
+        }
+        return this;
     }
 
     // ==================== 形狀操作 ====================
 
-    public int getRows() {
-        return rows;
+    /**
+     * 複製張量（結果一定是連續的 row-major）
+     */
+    public Tensor copy() {
+        Tensor result = new Tensor(rows, cols);
+        if (isContiguous()) {
+            System.arraycopy(data, offset, result.data, 0, size());
+        } else if (colStride == 1) {
+            for (int i = 0; i < rows; i++) {
+                System.arraycopy(data, offset + i * rowStride, result.data, i * cols, cols);
+            }
+        } else {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    result.data[i * cols + j] = get(i, j);
+                }
+            }
+        }
+        return result;
     }
 
-    public int getCols() {
-        return cols;
-    }
+    // ==================== 數學運算（寫入 out）====================
 
-    public int[] shape() {
-        return new int[]{rows, cols};
+    public Tensor add(Tensor other, Tensor out) {
+        checkSameShape(other);
+        return binary(K::add, this, other, out);
     }
 
-    public int size() {
-        return data.length;
+    public Tensor add(double scalar, Tensor out) {
+        return scalar(K::add, this, scalar, out);
     }
 
-    /**
-     * 複製張量
-     */
-    public Tensor copy() {
-        return new Tensor(rows, cols, data);
+    public Tensor sub(Tensor other, Tensor out) {
+        checkSameShape(other);
+        return binary(K::sub, this, other, out);
     }
 
-    // ==================== 數學運算（回傳新張量）====================
-
-    /**
-     * 加法（元素對元素）
-     */
-    public Tensor add(Tensor other) {
+    public Tensor mul(Tensor other, Tensor out) {
         checkSameShape(other);
-        Tensor result = new Tensor(rows, cols);
-        for (int i = 0; i < data.length; i++) {
-            result.data[i] = this.data[i] + other.data[i];
-        }
-        return result;
+        return binary(K::mul, this, other, out);
     }
 
-    /**
-     * 加上純量
-     */
-    public Tensor add(double scalar) {
-        Tensor result = new Tensor(rows, cols);
-        for (int i = 0; i < data.length; i++) {
-            result.data[i] = this.data[i] + scalar;
-        }
-        return result;
+    public Tensor mul(double scalar, Tensor out) {
+        return scalar(K::mul, this, scalar, out);
     }
 
-    /**
-     * 減法（元素對元素）
-     */
-    public Tensor sub(Tensor other) {
+    public Tensor div(Tensor other, Tensor out) {
         checkSameShape(other);
-        Tensor result = new Tensor(rows, cols);
-        for (int i = 0; i < data.length; i++) {
-            result.data[i] = this.data[i] - other.data[i];
-        }
-        return result;
+        return binary(K::div, this, other, out);
     }
 
-    /**
-     * 乘法（元素對元素）
-     */
-    public Tensor mul(Tensor other) {
-        checkSameShape(other);
-        Tensor result = new Tensor(rows, cols);
-        for (int i = 0; i < data.length; i++) {
-            result.data[i] = this.data[i] * other.data[i];
-        }
-        return result;
+    public Tensor exp(Tensor out) {
+        return unary(K::exp, this, out);
     }
 
-    /**
-     * 乘上純量
-     */
-    public Tensor mul(double scalar) {
-        Tensor result = new Tensor(rows, cols);
-        for (int i = 0; i < data.length; i++) {
-            result.data[i] = this.data[i] * scalar;
-        }
-        return result;
+    public Tensor log(Tensor out) {
+        return unary(K::log, this, out);
     }
 
     /**
-     * 除法（元素對元素）
+     * out = this @ other（分塊、大矩陣時多執行緒，見 Gemm）；out 不可與輸入共用資料
      */
-    public Tensor div(Tensor other) {
-        checkSameShape(other);
-        Tensor result = new Tensor(rows, cols);
-        for (int i = 0; i < data.length; i++) {
-            result.data[i] = this.data[i] / other.data[i];
-        }
-        return result;
+    public Tensor matmul(Tensor other, Tensor out) {
+        return gemm(other, out, false);
     }
 
     /**
-     * 除以純量
+     * out += this @ other（反向傳播累加梯度用）；out 不可與輸入共用資料
      */
-    public Tensor div(double scalar) {
-        return mul(1.0 / scalar);
+    Tensor matmulAdd(Tensor other, Tensor out) {
+        return gemm(other, out, true);
     }
 
-    /**
-     * 矩陣乘法
-     */
-    public Tensor matmul(Tensor other) {
+    private Tensor gemm(Tensor other, Tensor out, boolean accumulate) {
         if (this.cols != other.rows) {
             throw new IllegalArgumentException(
                     String.format("Cannot multiply [%d,%d] with [%d,%d]",
                             rows, cols, other.rows, other.cols));
         }
-        Tensor result = new Tensor(this.rows, other.cols);
-        for (int i = 0; i < this.rows; i++) {
-            for (int j = 0; j < other.cols; j++) {
-                double sum = 0;
-                for (int k = 0; k < this.cols; k++) {
-                    sum += this.get(i, k) * other.get(k, j);
+        if (out.rows != this.rows || out.cols != other.cols) {
+            throw new IllegalArgumentException(
+                    String.format("Output shape [%d,%d] doesn't match [%d,%d]",
+                            out.rows, out.cols, this.rows, other.cols));
+        }
+        if (out.data == this.data || out.data == other.data) {
+            throw new IllegalArgumentException("matmul output must not alias its inputs");
+        }
+
+        Tensor a = this;
+        Tensor b = other;
+        boolean ta = !a.isRowMajor();
+        boolean tb = !b.isRowMajor();
+        if (tb && !b.isColMajor()) {
+            b = b.copy();
+            tb = false;
+        }
+        if (ta && (tb || !a.isColMajor())) {
+            a = a.copy();
+            ta = false;
+        }
+
+        // Gemm 累加到連續的 C
+        Tensor c = out.isContiguous() ? out : new Tensor(out.rows, out.cols);
+        if (c == out && !accumulate) {
+            c.fill(0.0);
+        }
+        new Gemm(a.data, a.offset, ta ? a.colStride : a.rowStride, ta,
+                b.data, b.offset, tb ? b.colStride : b.rowStride, tb,
+                this.rows, this.cols, other.cols)
+                .run(c.data, c.offset, ForkJoinPool.commonPool());
+        if (c != out) {
+            if (accumulate) {
+                out.addInPlace(c);
+            } else {
+                out.copyFrom(c);
+            }
+        }
+        return out;
+    }
+
+    // ==================== 填值 / 複製 ====================
+
+    /**
+     * 所有元素設為 value
+     */
+    public Tensor fill(double value) {
+        if (isContiguous()) {
+            Arrays.fill(data, offset, offset + size(), value);
+        } else {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    data[index(i, j)] = value;
                 }
-                result.set(i, j, sum);
             }
         }
-        return result;
+        return this;
     }
 
     /**
-     * 轉置
+     * 從同形狀的張量複製內容
      */
-    public Tensor transpose() {
-        Tensor result = new Tensor(cols, rows);
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                result.set(j, i, get(i, j));
+    public Tensor copyFrom(Tensor src) {
+        checkSameShape(src);
+        if (isRowMajor() && src.isRowMajor()) {
+            for (int i = 0; i < rows; i++) {
+                System.arraycopy(src.data, src.rowOffset(i), data, rowOffset(i), cols);
+            }
+        } else {
+            Tensor tmp = src.data == data ? src.copy() : src;
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    data[index(i, j)] = tmp.get(i, j);
+                }
             }
         }
-        return result;
+        return this;
     }
 
     // ==================== 聚合運算 ====================
@@ -279,9 +348,12 @@ public class Tensor {
      * 所有元素的總和
      */
     public double sum() {
+        if (isContiguous()) {
+            return K.sum(data, offset, size());
+        }
         double sum = 0;
-        for (double v : data) {
-            sum += v;
+        for (int i = 0; i < rows; i++) {
+            sum += rowSum(i);
         }
         return sum;
     }
@@ -293,23 +365,17 @@ public class Tensor {
      */
     public Tensor sum(int axis) {
         if (axis == 0) {
+            // 逐列累加，循序存取記憶體
+            Tensor a = isRowMajor() ? this : copy();
             Tensor result = new Tensor(1, cols);
-            for (int j = 0; j < cols; j++) {
-                double sum = 0;
-                for (int i = 0; i < rows; i++) {
-                    sum += get(i, j);
-                }
-                result.set(0, j, sum);
+            for (int i = 0; i < rows; i++) {
+                K.add(result.data, 0, a.data, a.offset + i * a.rowStride, result.data, 0, cols);
             }
             return result;
         } else if (axis == 1) {
             Tensor result = new Tensor(rows, 1);
             for (int i = 0; i < rows; i++) {
-                double sum = 0;
-                for (int j = 0; j < cols; j++) {
-                    sum += get(i, j);
-                }
-                result.set(i, 0, sum);
+                result.data[i] = rowSum(i);
             }
             return result;
         } else {
@@ -317,57 +383,15 @@ public class Tensor {
         }
     }
 
-    /**
-     * 所有元素的平均
-     */
-    public double mean() {
-        return sum() / data.length;
-    }
-
-    /**
-     * 找最大值的索引（用於 1D 或單列張量）
-     */
-    public int argmax() {
-        int maxIdx = 0;
-        double maxVal = data[0];
-        for (int i = 1; i < data.length; i++) {
-            if (data[i] > maxVal) {
-                maxVal = data[i];
-                maxIdx = i;
-            }
-        }
-        return maxIdx;
-    }
-
-    // ==================== 元素運算 ====================
-
-    /**
-     * 指數（e^x）
-     */
-    public Tensor exp() {
-        Tensor result = new Tensor(rows, cols);
-        for (int i = 0; i < data.length; i++) {
-            result.data[i] = Math.exp(this.data[i]);
+    private double rowSum(int row) {
+        if (isRowMajor()) {
+            return K.sum(data, offset + row * rowStride, cols);
         }
-        return result;
-    }
-
-    /**
-     * 自然對數
-     */
-    public Tensor log() {
-        Tensor result = new Tensor(rows, cols);
-        for (int i = 0; i < data.length; i++) {
-            result.data[i] = Math.log(this.data[i]);
+        double sum = 0;
+        for (int j = 0; j < cols; j++) {
+            sum += get(row, j);
         }
-        return result;
-    }
-
-    /**
-     * 負號
-     */
-    public Tensor neg() {
-        return mul(-1);
+        return sum;
     }
 
     // ==================== 廣播除法 ====================
@@ -382,65 +406,52 @@ public class Tensor {
                     String.format("Divisor shape [%d,%d] incompatible with [%d,%d]",
                             divisor.rows, divisor.cols, rows, cols));
         }
+        Tensor a = contiguous();
         Tensor result = new Tensor(rows, cols);
         for (int i = 0; i < rows; i++) {
-            double d = divisor.get(i, 0);
-            for (int j = 0; j < cols; j++) {
-                result.set(i, j, get(i, j) / d);
-            }
+            K.mul(a.data, a.offset + i * cols, 1.0 / divisor.get(i, 0), result.data, i * cols, cols);
         }
         return result;
     }
 
     // ==================== 輔助方法 ====================
 
-    private void checkSameShape(Tensor other) {
-        if (this.rows != other.rows || this.cols != other.cols) {
-            throw new IllegalArgumentException(
-                    String.format("Shape mismatch: [%d,%d] vs [%d,%d]",
-                            rows, cols, other.rows, other.cols));
-        }
+    /** 逐段套用的 kernel：out[oo..] = op(a[ao..], b[bo..]) */
+    private interface BinaryKernel {
+        void apply(double[] a, int ao, double[] b, int bo, double[] out, int oo, int n);
     }
 
-    /**
-     * 轉換為原始陣列
-     */
-    public double[] toArray() {
-        return data.clone();
+    private interface ScalarKernel {
+        void apply(double[] a, int ao, double s, double[] out, int oo, int n);
     }
 
-    /**
-     * 轉換為 2D 陣列
-     */
-    public double[][] to2DArray() {
-        double[][] result = new double[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                result[i][j] = get(i, j);
-            }
-        }
-        return result;
+    private interface UnaryKernel {
+        void apply(double[] a, int ao, double[] out, int oo, int n);
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(String.format("Tensor [%d, %d]:\n", rows, cols));
-        for (int i = 0; i < rows; i++) {
-            sb.append("[");
-            for (int j = 0; j < cols; j++) {
-                sb.append(String.format("%8.4f", get(i, j)));
-                if (j < cols - 1) sb.append(", ");
-            }
-            sb.append("]\n");
-        }
-        return sb.toString();
+    private static Tensor binary(BinaryKernel op, Tensor a, Tensor b, Tensor out) {
+        return elementwise((x, xo, y, yo, o, oo, n) -> op.apply(x.data, xo, y.data, yo, o.data, oo, n), a, b, out);
+    }
+
+    private static Tensor scalar(ScalarKernel op, Tensor a, double s, Tensor out) {
+        return elementwise((x, xo, y, yo, o, oo, n) -> op.apply(x.data, xo, s, o.data, oo, n), a, a, out);
+    }
+
+    private static Tensor unary(UnaryKernel op, Tensor a, Tensor out) {
+        return elementwise((x, xo, y, yo, o, oo, n) -> op.apply(x.data, xo, o.data, oo, n), a, a, out);
     }
 
     /**
-     * 簡短的字串表示（只顯示形狀和部分資料）
+     * 內部陣列（不複製），供同套件的運算直接使用；列的起點見 rowOffset()
      */
-    public String toShortString() {
-        return String.format("Tensor [%d, %d], sum=%.4f", rows, cols, sum());
+    double[] buffer() {
+        return data;
+    }
+
+    /**
+     * 轉換為原始陣列（row-major 副本）
+     */
+    public double[] toArray() {
+        return isContiguous() ? Arrays.copyOfRange(data, offset, offset + size()) : copy().data;
     }
 }
\ No newline at end of file
@@ -0,0 +1,232 @@
+package com.micrograd.tensor;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 堆積外張量的配置區（arena）
+ *
+ * 所有從同一個 arena 配置或映射的 OffHeapTensor 共用同一個生命週期：
+ * close() 之後記憶體立即釋放、檔案映射立即解除，再存取這些張量會丟出 IllegalStateException。
+ * 資料放在 direct / mapped ByteBuffer 中，不佔 Java heap、GC 不需掃描，
+ * 以 1 GiB 為單位分塊，因此元素數不受 2^31 的陣列上限限制。
+ *
+ * <pre>
+ * try (TensorArena arena = new TensorArena()) {
+ *     OffHeapTensor counts = arena.map(Path.of("counts.bin"), vocab, vocab);
+ *     ...
+ * }
+ * </pre>
+ *
+ * 配置的 direct 記憶體受 -XX:MaxDirectMemorySize 限制（預設與最大 heap 相同），映射檔案則不受限。
+ * 檔案內容為 little-endian 的 row-major double。
+ * 每次存取張量都會登記為進行中；close() 先拒絕新的存取，再等進行中的存取結束才釋放記憶體，
+ * 因此其他執行緒正在運算時 close() 不會造成 use-after-free。
+ * 登記的計數依執行緒分散在不同的 cache line 上，多個執行緒同時做純量存取不會爭用同一個計數器；
+ * 大量存取仍應使用 OffHeapTensor 的批次操作，整個操作只登記一次。
+ */
+public final class TensorArena implements AutoCloseable {
+
+    /** 每塊 2^27 個 double（1 GiB） */
+    static final int CHUNK_SHIFT = 27;
+
+    /** 進行中存取計數的分片數（2 的次方） */
+    private static final int STRIPES = 64;
+    /** 每個分片佔一條 64 byte 的 cache line */
+    private static final int PAD = 16;
+
+    private final int chunkShift;
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private volatile boolean closed;
+    // 進行中的張量存取數，依執行緒分片；close() 等到每個分片都歸零才釋放記憶體
+    private final AtomicIntegerArray inFlight = new AtomicIntegerArray(STRIPES * PAD);
+
+    public TensorArena() {
+        this(CHUNK_SHIFT);
+    }
+
+    /**
+     * 指定分塊大小（2^chunkShift 個 double），供測試跨塊邊界使用
+     */
+    TensorArena(int chunkShift) {
+        if (chunkShift < 1 || chunkShift > CHUNK_SHIFT) {
+            throw new IllegalArgumentException("Chunk shift must be in [1, " + CHUNK_SHIFT + "]");
+        }
+        this.chunkShift = chunkShift;
+    }
+
+    /**
+     * 配置全零的 rows×cols 張量
+     */
+    public synchronized OffHeapTensor allocate(int rows, int cols) {
+        checkOpen();
+        long size = checkShape(rows, cols);
+        DoubleBuffer[] chunks = new DoubleBuffer[chunkCount(size)];
+        for (int c = 0; c < chunks.length; c++) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(chunkLength(size, c) * Double.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffers.add(buffer);
+            chunks[c] = buffer.asDoubleBuffer();
+        }
+        return new OffHeapTensor(this, rows, cols, chunks, chunkShift);
+    }
+
+    /**
+     * 以讀寫方式映射檔案（不存在時建立，太短時延長，新增的部分為 0）
+     * 寫入的內容由作業系統寫回檔案，close() 時會強制寫回
+     */
+    public OffHeapTensor map(Path file, int rows, int cols) throws IOException {
+        return map(file, rows, cols, FileChannel.MapMode.READ_WRITE);
+    }
+
+    /**
+     * 以唯讀方式映射既有的檔案；set 等寫入操作會丟出 ReadOnlyBufferException
+     */
+    public OffHeapTensor mapReadOnly(Path file, int rows, int cols) throws IOException {
+        return map(file, rows, cols, FileChannel.MapMode.READ_ONLY);
+    }
+
+    private synchronized OffHeapTensor map(Path file, int rows, int cols, FileChannel.MapMode mode)
+            throws IOException {
+        checkOpen();
+        long size = checkShape(rows, cols);
+        boolean readOnly = mode == FileChannel.MapMode.READ_ONLY;
+        try (FileChannel channel = readOnly
+                ? FileChannel.open(file, StandardOpenOption.READ)
+                : FileChannel.open(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (readOnly && channel.size() < size * Double.BYTES) {
+                throw new IOException(String.format("%s has %d bytes, [%d,%d] needs %d",
+                        file, channel.size(), rows, cols, size * Double.BYTES));
+            }
+            DoubleBuffer[] chunks = new DoubleBuffer[chunkCount(size)];
+            for (int c = 0; c < chunks.length; c++) {
+                long position = ((long) c << chunkShift) * Double.BYTES;
+                MappedByteBuffer buffer = channel.map(mode, position,
+                        (long) chunkLength(size, c) * Double.BYTES);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffers.add(buffer);
+                chunks[c] = buffer.asDoubleBuffer();
+            }
+            return new OffHeapTensor(this, rows, cols, chunks, chunkShift);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Tensor arena is closed");
+        }
+    }
+
+    /**
+     * 開始一次張量存取，之後必須呼叫 release()；arena 已關閉時丟出 IllegalStateException
+     * 先登記再檢查 closed，與 close() 的先設 closed 再等待配對，兩者不會同時通過
+     * 同一個執行緒的 acquire / release 落在同一個分片，分片的值不會小於其中進行中的存取數
+     */
+    void acquire() {
+        int stripe = stripe();
+        inFlight.incrementAndGet(stripe);
+        if (closed) {
+            inFlight.decrementAndGet(stripe);
+            throw new IllegalStateException("Tensor arena is closed");
+        }
+    }
+
+    void release() {
+        inFlight.decrementAndGet(stripe());
+    }
+
+    private static int stripe() {
+        int h = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        return (h >>> (Integer.SIZE - Integer.numberOfTrailingZeros(STRIPES))) * PAD;
+    }
+
+    /**
+     * 等進行中的存取結束後，釋放所有配置的記憶體並解除映射（映射的檔案先寫回）；重複呼叫沒有作用
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (int stripe = 0; stripe < STRIPES * PAD; stripe += PAD) {
+            while (inFlight.get(stripe) != 0) {
+                Thread.yield();
+            }
+        }
+        for (ByteBuffer buffer : buffers) {
+            if (buffer instanceof MappedByteBuffer && !buffer.isReadOnly()) {
+                ((MappedByteBuffer) buffer).force();
+            }
+            free(buffer);
+        }
+        buffers.clear();
+    }
+
+    private int chunkCount(long size) {
+        return (int) ((size + (1L << chunkShift) - 1) >>> chunkShift);
+    }
+
+    private int chunkLength(long size, int chunk) {
+        return (int) Math.min(1L << chunkShift, size - ((long) chunk << chunkShift));
+    }
+
+    private static long checkShape(int rows, int cols) {
+        if (rows < 0 || cols < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid shape [%d, %d]", rows, cols));
+        }
+        return (long) rows * cols;
+    }
+
+    // ==================== 釋放 direct 記憶體 ====================
+
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method method = null;
+        Object unsafe = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            method = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // 沒有 jdk.unsupported 模組時交給 GC 回收
+        }
+        INVOKE_CLEANER = method;
+        UNSAFE = unsafe;
+    }
+
+    /**
+     * 立即釋放 direct buffer / 解除映射；無法使用 Unsafe 時等 GC 回收
+     */
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // 交給 GC 回收
+        }
+    }
+}
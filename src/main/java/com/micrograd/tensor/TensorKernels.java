@@ -0,0 +1,193 @@
+package com.micrograd.tensor;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Tensor 的底層迴圈（element-wise、歸約、逐列 softmax / 正規化）
+ *
+ * 所有陣列參數都帶起始位置，方便同一組 kernel 用在整個張量或單一列上。
+ * 實作在類別載入時選定一次：執行時有 jdk.incubator.vector 模組
+ * （java --add-modules jdk.incubator.vector）就用 SIMD 版本，否則用純量版本；
+ * 可用 -Dmicrograd.simd=false 強制使用純量版本。
+ *
+ * float[] 版本供 FloatTensor 使用：element-wise 運算以 float 計算，
+ * 歸約（sum、dot、softmax 與正規化的總和）一律以 double 累加。
+ */
+interface TensorKernels {
+
+    // ==================== Element-wise ====================
+
+    void add(double[] a, int ao, double[] b, int bo, double[] out, int oo, int n);
+
+    void sub(double[] a, int ao, double[] b, int bo, double[] out, int oo, int n);
+
+    void mul(double[] a, int ao, double[] b, int bo, double[] out, int oo, int n);
+
+    void div(double[] a, int ao, double[] b, int bo, double[] out, int oo, int n);
+
+    void add(double[] a, int ao, double s, double[] out, int oo, int n);
+
+    void mul(double[] a, int ao, double s, double[] out, int oo, int n);
+
+    void exp(double[] a, int ao, double[] out, int oo, int n);
+
+    /**
+     * y[yo..yo+n) += s · x[xo..xo+n)（GEMM 的最內層迴圈）
+     */
+    void axpy(double s, double[] x, int xo, double[] y, int yo, int n);
+
+    void log(double[] a, int ao, double[] out, int oo, int n);
+
+    // ==================== 歸約 ====================
+
+    double sum(double[] a, int ao, int n);
+
+    double max(double[] a, int ao, int n);
+
+    double dot(double[] a, int ao, double[] b, int bo, int n);
+
+    // ==================== 逐列運算 ====================
+
+    /**
+     * log Σ exp(a[ao..ao+n))，只掃描一次（online softmax 的正規化常數）：
+     * 同時維護目前的最大值 m 與 Σ exp(a − m)，遇到更大的值時把累加值乘上 exp(m_old − m_new)
+     */
+    default double logSumExp(double[] a, int ao, int n) {
+        return onlineLogSumExp(i -> a[ao + i], n);
+    }
+
+    /**
+     * out[oo..oo+n) = softmax(a[ao..ao+n))，先減去最大值以維持數值穩定
+     * 不改成「online logSumExp + exp(a − lse)」的兩次掃描：每個元素要多算一次 exp，
+     * 4096×27、64×4096 與 4×65536 的列上 SIMD 版慢 30–65%、純量版慢 55–70%
+     */
+    default void softmax(double[] a, int ao, double[] out, int oo, int n) {
+        double max = max(a, ao, n);
+        add(a, ao, -max, out, oo, n);
+        exp(out, oo, out, oo, n);
+        mul(out, oo, 1.0 / sum(out, oo, n), out, oo, n);
+    }
+
+    /**
+     * out[oo..oo+n) = a / sum(a)，總和為 0 的列保持全 0
+     *
+     * @return 該列原本的總和
+     */
+    default double normalize(double[] a, int ao, double[] out, int oo, int n) {
+        double s = sum(a, ao, n);
+        if (s == 0.0) {
+            java.util.Arrays.fill(out, oo, oo + n, 0.0);
+        } else {
+            mul(a, ao, 1.0 / s, out, oo, n);
+        }
+        return s;
+    }
+
+    // ==================== float 儲存 ====================
+
+    void add(float[] a, int ao, float[] b, int bo, float[] out, int oo, int n);
+
+    void sub(float[] a, int ao, float[] b, int bo, float[] out, int oo, int n);
+
+    void mul(float[] a, int ao, float[] b, int bo, float[] out, int oo, int n);
+
+    void div(float[] a, int ao, float[] b, int bo, float[] out, int oo, int n);
+
+    void add(float[] a, int ao, float s, float[] out, int oo, int n);
+
+    void mul(float[] a, int ao, float s, float[] out, int oo, int n);
+
+    void exp(float[] a, int ao, float[] out, int oo, int n);
+
+    void log(float[] a, int ao, float[] out, int oo, int n);
+
+    /**
+     * y[yo..yo+n) += s · x[xo..xo+n)，累加到 double（FloatGemm 的最內層迴圈）
+     */
+    void axpy(double s, float[] x, int xo, double[] y, int yo, int n);
+
+    double sum(float[] a, int ao, int n);
+
+    float max(float[] a, int ao, int n);
+
+    double dot(float[] a, int ao, float[] b, int bo, int n);
+
+    /**
+     * float 版 logSumExp，以 double 計算與累加
+     */
+    default double logSumExp(float[] a, int ao, int n) {
+        return onlineLogSumExp(i -> a[ao + i], n);
+    }
+
+    /**
+     * double 與 float 版 logSumExp 共用的單次掃描，x(i) 為第 i 個元素
+     */
+    private static double onlineLogSumExp(IntToDoubleFunction x, int n) {
+        double m = Double.NEGATIVE_INFINITY;
+        double s = 0;
+        for (int i = 0; i < n; i++) {
+            double xi = x.applyAsDouble(i);
+            if (xi > m) {
+                s = s * Math.exp(m - xi) + 1.0;
+                m = xi;
+            } else if (m != Double.NEGATIVE_INFINITY) {
+                s += Math.exp(xi - m);
+            }
+        }
+        return m + Math.log(s);
+    }
+
+    /**
+     * float 版 softmax：指數以 double 計算並累加，寫回時才捨入成 float
+     */
+    default void softmax(float[] a, int ao, float[] out, int oo, int n) {
+        double max = max(a, ao, n);
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            double e = Math.exp(a[ao + i] - max);
+            out[oo + i] = (float) e;
+            sum += e;
+        }
+        mul(out, oo, (float) (1.0 / sum), out, oo, n);
+    }
+
+    /**
+     * float 版正規化，總和以 double 累加
+     */
+    default double normalize(float[] a, int ao, float[] out, int oo, int n) {
+        double s = sum(a, ao, n);
+        if (s == 0.0) {
+            java.util.Arrays.fill(out, oo, oo + n, 0.0f);
+        } else {
+            mul(a, ao, (float) (1.0 / s), out, oo, n);
+        }
+        return s;
+    }
+
+    String name();
+
+    static TensorKernels get() {
+        return Holder.INSTANCE;
+    }
+
+    final class Holder {
+        static final TensorKernels INSTANCE = select();
+
+        private Holder() {
+        }
+
+        private static TensorKernels select() {
+            if (Boolean.parseBoolean(System.getProperty("micrograd.simd", "true"))
+                    && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                try {
+                    // 以反射載入，沒有 incubator 模組時不會連結到 VectorKernels
+                    return (TensorKernels) Class.forName("com.micrograd.tensor.VectorKernels")
+                            .getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    // 退回純量版本
+                }
+            }
+            return new ScalarKernels();
+        }
+    }
+}
@@ -5,6 +5,8 @@ package com.micrograd.tensor;
  */
 public class TensorOps {
 
+    private static final TensorKernels K = TensorKernels.get();
+
     private TensorOps() {
         // 工具類別，不允許實例化
     }
@@ -14,54 +16,184 @@ public class TensorOps {
      * 對每一列獨立做 softmax
      */
     public static Tensor softmax(Tensor logits) {
-        int rows = logits.getRows();
-        int cols = logits.getCols();
-        Tensor result = new Tensor(rows, cols);
+        return softmax(logits, new Tensor(logits.getRows(), logits.getCols()));
+    }
+
+    /**
+     * 逐列 softmax 寫入 out（out 可以是 logits 本身）
+     */
+    public static Tensor softmax(Tensor logits, Tensor out) {
+        // 每一列：減去最大值（數值穩定）→ exp → 除以總和
+        return rowWise(logits, out, K::softmax);
+    }
+
+    /**
+     * 將計數矩陣正規化為機率分佈（每列加總為 1）
+     * smoothing = 0 且從未出現的列保持全 0（合法機率分佈的「退化情況」）
+     */
+    public static Tensor normalizeRows(Tensor counts) {
+        return normalizeRows(counts, new Tensor(counts.getRows(), counts.getCols()));
+    }
 
+    /**
+     * 逐列正規化寫入 out（out 可以是 counts 本身）
+     */
+    public static Tensor normalizeRows(Tensor counts, Tensor out) {
+        return rowWise(counts, out, K::normalize);
+    }
+
+    private interface RowKernel {
+        void apply(double[] a, int ao, double[] out, int oo, int n);
+    }
+
+    private static Tensor rowWise(Tensor in, Tensor out, RowKernel op) {
+        int rows = in.getRows();
+        int cols = in.getCols();
+        if (out.getRows() != rows || out.getCols() != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Output shape [%d,%d] doesn't match [%d,%d]",
+                            out.getRows(), out.getCols(), rows, cols));
+        }
+        Tensor src = in.isRowMajor() ? in : in.copy();
+        Tensor dst = out.isRowMajor() ? out : new Tensor(rows, cols);
         for (int i = 0; i < rows; i++) {
-            // 為了數值穩定性，先減去最大值
-            double maxVal = Double.NEGATIVE_INFINITY;
-            for (int j = 0; j < cols; j++) {
-                maxVal = Math.max(maxVal, logits.get(i, j));
-            }
+            op.apply(src.buffer(), src.rowOffset(i), dst.buffer(), dst.rowOffset(i), cols);
+        }
+        if (dst != out) {
+            out.copyFrom(dst);
+        }
+        return out;
+    }
 
-            // 計算 exp(x - max)
-            double sumExp = 0;
-            for (int j = 0; j < cols; j++) {
-                double expVal = Math.exp(logits.get(i, j) - maxVal);
-                result.set(i, j, expVal);
-                sumExp += expVal;
-            }
+    // ==================== OffHeapTensor ====================
 
-            // 正規化
-            for (int j = 0; j < cols; j++) {
-                result.set(i, j, result.get(i, j) / sumExp);
-            }
+    /**
+     * 堆積外張量的逐列 softmax，寫入 out（out 可以是 logits 本身）
+     */
+    public static OffHeapTensor softmax(OffHeapTensor logits, OffHeapTensor out) {
+        return logits.mapRows(out, K::softmax);
+    }
+
+    /**
+     * 堆積外計數表的逐列正規化，寫入 out（out 可以是 counts 本身）
+     */
+    public static OffHeapTensor normalizeRows(OffHeapTensor counts, OffHeapTensor out) {
+        return counts.mapRows(out, K::normalize);
+    }
+
+    // ==================== FloatTensor（double 累加）====================
+
+    /**
+     * float 版 softmax：每列的總和以 double 累加
+     */
+    public static FloatTensor softmax(FloatTensor logits) {
+        return softmax(logits, new FloatTensor(logits.getRows(), logits.getCols()));
+    }
+
+    public static FloatTensor softmax(FloatTensor logits, FloatTensor out) {
+        return rowWise(logits, out, K::softmax);
+    }
+
+    public static FloatTensor normalizeRows(FloatTensor counts) {
+        return normalizeRows(counts, new FloatTensor(counts.getRows(), counts.getCols()));
+    }
+
+    public static FloatTensor normalizeRows(FloatTensor counts, FloatTensor out) {
+        return rowWise(counts, out, K::normalize);
+    }
+
+    private interface FloatRowKernel {
+        void apply(float[] a, int ao, float[] out, int oo, int n);
+    }
+
+    private static FloatTensor rowWise(FloatTensor in, FloatTensor out, FloatRowKernel op) {
+        int rows = in.getRows();
+        int cols = in.getCols();
+        if (out.getRows() != rows || out.getCols() != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Output shape [%d,%d] doesn't match [%d,%d]",
+                            out.getRows(), out.getCols(), rows, cols));
+        }
+        FloatTensor src = in.isRowMajor() ? in : in.copy();
+        FloatTensor dst = out.isRowMajor() ? out : new FloatTensor(rows, cols);
+        for (int i = 0; i < rows; i++) {
+            op.apply(src.buffer(), src.rowOffset(i), dst.buffer(), dst.rowOffset(i), cols);
+        }
+        if (dst != out) {
+            out.copyFrom(dst);
         }
+        return out;
+    }
 
+    /**
+     * float 版 one-hot 編碼矩陣（n×vocabSize）
+     */
+    public static FloatTensor oneHotBatchFloat(int[] indices, int vocabSize) {
+        int n = indices.length;
+        FloatTensor result = FloatTensor.zeros(n, vocabSize);
+        for (int i = 0; i < n; i++) {
+            result.set(i, indices[i], 1.0);
+        }
         return result;
     }
 
     /**
-     * 將計數矩陣正規化為機率分佈（每列加總為 1）
+     * float 機率的平均負對數似然，以 double 計算與累加
      */
-    public static Tensor normalizeRows(Tensor counts) {
-        Tensor out = Tensor.zeros(counts.getRows(), counts.getCols());
+    public static double negativeLogLikelihood(FloatTensor probs, int[] targets) {
+        double totalLoss = 0;
+        int n = targets.length;
+        for (int i = 0; i < n; i++) {
+            totalLoss += -Math.log(probs.get(i, targets[i]));
+        }
+        return totalLoss / n;
+    }
 
-        for (int i = 0; i < counts.getRows(); i++) {
-            double rowSum = counts.getRow(i).sum();
+    /**
+     * float 版交叉熵：正規化常數與損失以 double 計算，梯度寫回時才捨入成 float
+     */
+    public static double crossEntropyWithLogits(FloatTensor logits, int[] targets) {
+        return crossEntropyWithLogits(logits, targets, null);
+    }
 
-            if (rowSum == 0.0) {
-                // smoothing = 0，且該 row 從未出現
-                // 保持全 0（合法機率分佈的「退化情況」）
-                continue;
+    public static double crossEntropyWithLogits(FloatTensor logits, int[] targets, FloatTensor gradOut) {
+        int rows = logits.getRows();
+        int cols = logits.getCols();
+        checkTargets(rows, cols, targets);
+        FloatTensor src = logits.isRowMajor() ? logits : logits.copy();
+        float[] x = src.buffer();
+        double loss = 0;
+        if (gradOut == null) {
+            for (int i = 0; i < rows; i++) {
+                int xi = src.rowOffset(i);
+                loss += K.logSumExp(x, xi, cols) - x[xi + targets[i]];
             }
+            return loss / rows;
+        }
 
-            for (int j = 0; j < counts.getCols(); j++) {
-                out.set(i, j, counts.get(i, j) / rowSum);
-            }
+        if (gradOut.getRows() != rows || gradOut.getCols() != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Gradient shape [%d,%d] doesn't match [%d,%d]",
+                            gradOut.getRows(), gradOut.getCols(), rows, cols));
         }
-        return out;
+        FloatTensor dst = gradOut.isRowMajor() ? gradOut : new FloatTensor(rows, cols);
+        float[] g = dst.buffer();
+        for (int i = 0; i < rows; i++) {
+            int xi = src.rowOffset(i);
+            int gi = dst.rowOffset(i);
+            double target = x[xi + targets[i]];
+            float max = K.max(x, xi, cols);
+            K.add(x, xi, -max, g, gi, cols);
+            K.exp(g, gi, g, gi, cols);
+            double sum = K.sum(g, gi, cols);
+            loss += max + Math.log(sum) - target;
+            K.mul(g, gi, (float) (1.0 / (sum * rows)), g, gi, cols);
+            g[gi + targets[i]] -= (float) (1.0 / rows);
+        }
+        if (dst != gradOut) {
+            gradOut.copyFrom(dst);
+        }
+        return loss / rows;
     }
 
     /**
@@ -103,6 +235,79 @@ public class TensorOps {
         return -Math.log(prob.get(0, target));
     }
 
+    /**
+     * 由 logits 直接計算平均交叉熵（softmax + 負對數似然合併成一次逐列掃描）
+     * 每列 loss_i = logSumExp(logits_i) − logits_i[target_i]，不需要機率矩陣，也不會對很小的機率取 log
+     */
+    public static double crossEntropyWithLogits(Tensor logits, int[] targets) {
+        return crossEntropyWithLogits(logits, targets, null);
+    }
+
+    /**
+     * 同上，gradOut 不為 null 時同時寫入 dL/dlogits = (softmax − one_hot)/n
+     * gradOut 可以是 logits 本身（原地改寫），梯度沿用計算正規化常數時的 exp，不需要再掃描一次
+     */
+    public static double crossEntropyWithLogits(Tensor logits, int[] targets, Tensor gradOut) {
+        int rows = logits.getRows();
+        int cols = logits.getCols();
+        checkTargets(rows, cols, targets);
+        Tensor src = logits.isRowMajor() ? logits : logits.copy();
+        double[] x = src.buffer();
+        double loss = 0;
+        if (gradOut == null) {
+            for (int i = 0; i < rows; i++) {
+                int xi = src.rowOffset(i);
+                loss += K.logSumExp(x, xi, cols) - x[xi + targets[i]];
+            }
+            return loss / rows;
+        }
+
+        if (gradOut.getRows() != rows || gradOut.getCols() != cols) {
+            throw new IllegalArgumentException(
+                    String.format("Gradient shape [%d,%d] doesn't match [%d,%d]",
+                            gradOut.getRows(), gradOut.getCols(), rows, cols));
+        }
+        Tensor dst = gradOut.isRowMajor() ? gradOut : new Tensor(rows, cols);
+        double[] g = dst.buffer();
+        for (int i = 0; i < rows; i++) {
+            int xi = src.rowOffset(i);
+            int gi = dst.rowOffset(i);
+            double target = x[xi + targets[i]];
+            // exp(x − max) 寫進梯度列，加總得到正規化常數，再縮放成 softmax/n
+            double max = K.max(x, xi, cols);
+            K.add(x, xi, -max, g, gi, cols);
+            K.exp(g, gi, g, gi, cols);
+            double sum = K.sum(g, gi, cols);
+            loss += max + Math.log(sum) - target;
+            K.mul(g, gi, 1.0 / (sum * rows), g, gi, cols);
+            g[gi + targets[i]] -= 1.0 / rows;
+        }
+        if (dst != gradOut) {
+            gradOut.copyFrom(dst);
+        }
+        return loss / rows;
+    }
+
+    private static void checkTargets(int rows, int cols, int[] targets) {
+        if (targets.length != rows) {
+            throw new IllegalArgumentException(
+                    String.format("Targets length %d doesn't match %d rows", targets.length, rows));
+        }
+        for (int t : targets) {
+            if (t < 0 || t >= cols) {
+                throw new IndexOutOfBoundsException(
+                        String.format("Target %d out of bounds for %d classes", t, cols));
+            }
+        }
+    }
+
+    /**
+     * 目前使用的 kernel 實作（"scalar" 或 "vector(...)"）
+     */
+    public static String kernelBackend() {
+        return K.name();
+    }
+
     /**
      * 從機率分佈中取得指定索引的機率
      * probs: 1×vocabSize 的機率向量
@@ -0,0 +1,477 @@
+package com.micrograd.tensor;
+
+import com.micrograd.engine.Value;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 張量層級的自動微分：一個節點是一整個 Tensor
+ *
+ * 與 Value 相同的反向模式，但每個運算記錄的是整個矩陣的 backward，
+ * 梯度直接以 Tensor 的 kernel 與 Gemm 計算（例如 matmul 的梯度是兩次矩陣乘法），
+ * 一個 n×27 的 softmax 只需要一個節點，而不是 n·27 個 Value。
+ *
+ * <pre>
+ * TensorValue w = new TensorValue(weights);
+ * TensorValue loss = w.gatherRows(inputs).softmax().gather(targets).log().mean().neg();
+ * loss.backward();
+ * w.getGrad();   // dL/dW
+ * </pre>
+ *
+ * 不需要梯度的輸入用 constant()；Value.noGrad() 期間的運算也不會記錄計算圖。
+ */
+public class TensorValue {
+
+    private static final TensorKernels K = TensorKernels.get();
+    private static final TensorValue[] NO_OPERANDS = new TensorValue[0];
+
+    private final Tensor data;
+    private Tensor grad;
+    private final String op;
+    private final TensorValue[] operands;
+    private final boolean requiresGrad;
+    private Runnable backward = () -> {};
+
+    // === 建構子 ===
+
+    /**
+     * 需要梯度的葉節點（參數）；data 不複製，更新 data 會反映在之後的運算
+     */
+    public TensorValue(Tensor data) {
+        this(data, "", true, NO_OPERANDS);
+    }
+
+    /**
+     * 不需要梯度的葉節點（輸入資料）
+     */
+    public static TensorValue constant(Tensor data) {
+        return new TensorValue(data, "", false, NO_OPERANDS);
+    }
+
+    private TensorValue(Tensor data, String op, boolean requiresGrad, TensorValue[] operands) {
+        this.data = data;
+        this.op = op;
+        this.requiresGrad = requiresGrad;
+        this.operands = operands;
+    }
+
+    /**
+     * 運算結果：任一運算元需要梯度且不在 no-grad 模式時才記錄運算元
+     */
+    private static TensorValue node(Tensor data, String op, TensorValue... operands) {
+        if (Value.isGradEnabled()) {
+            for (TensorValue v : operands) {
+                if (v.requiresGrad) {
+                    return new TensorValue(data, op, true, operands);
+                }
+            }
+        }
+        return new TensorValue(data, op, false, NO_OPERANDS);
+    }
+
+    // === 基本運算 ===
+
+    /**
+     * 加法；other 可以與 this 同形狀，或是 1×cols（每列都加）、rows×1（每欄都加）
+     */
+    public TensorValue add(TensorValue other) {
+        TensorValue out = node(broadcastAdd(data.copy(), other.data), "+", this, other);
+        out.setBackward(() -> {
+            accumulate(this, out.grad);
+            accumulateReduced(other, out.grad);
+        });
+        return out;
+    }
+
+    public TensorValue add(double other) {
+        TensorValue out = node(data.add(other), "+" + other, this);
+        out.setBackward(() -> accumulate(this, out.grad));
+        return out;
+    }
+
+    public TensorValue sub(TensorValue other) {
+        return add(other.neg());
+    }
+
+    /**
+     * 元素對元素相乘
+     */
+    public TensorValue mul(TensorValue other) {
+        TensorValue out = node(data.mul(other.data), "*", this, other);
+        out.setBackward(() -> {
+            if (this.requiresGrad) {
+                this.addGrad(out.grad.mul(other.data));
+            }
+            if (other.requiresGrad) {
+                other.addGrad(out.grad.mul(this.data));
+            }
+        });
+        return out;
+    }
+
+    public TensorValue mul(double other) {
+        TensorValue out = node(data.mul(other), "*" + other, this);
+        out.setBackward(() -> {
+            if (this.requiresGrad) {
+                this.addGrad(out.grad.mulInPlace(other));
+            }
+        });
+        return out;
+    }
+
+    public TensorValue div(double other) {
+        return mul(1.0 / other);
+    }
+
+    public TensorValue neg() {
+        return mul(-1.0);
+    }
+
+    /**
+     * 矩陣乘法：dA += dC·Bᵀ、dB += Aᵀ·dC（轉置以 view 讀取，直接累加到梯度）
+     */
+    public TensorValue matmul(TensorValue other) {
+        TensorValue out = node(data.matmul(other.data), "@", this, other);
+        out.setBackward(() -> {
+            if (this.requiresGrad) {
+                out.grad.matmulAdd(other.data.transpose(), this.gradBuffer());
+            }
+            if (other.requiresGrad) {
+                this.data.transpose().matmulAdd(out.grad, other.gradBuffer());
+            }
+        });
+        return out;
+    }
+
+    // === 元素運算 ===
+
+    public TensorValue exp() {
+        TensorValue out = node(data.exp(), "exp", this);
+        out.setBackward(() -> {
+            if (this.requiresGrad) {
+                this.addGrad(out.grad.mulInPlace(out.data));
+            }
+        });
+        return out;
+    }
+
+    public TensorValue log() {
+        TensorValue out = node(data.log(), "log", this);
+        out.setBackward(() -> {
+            if (this.requiresGrad) {
+                this.addGrad(out.grad.divInPlace(this.data));
+            }
+        });
+        return out;
+    }
+
+    /**
+     * 逐列 softmax：dx = y ⊙ (dy − Σ_j dy_j·y_j)
+     */
+    public TensorValue softmax() {
+        TensorValue out = node(TensorOps.softmax(data), "softmax", this);
+        out.setBackward(() -> {
+            if (!this.requiresGrad) {
+                return;
+            }
+            // 逐列一次完成：列還在快取中時算出 Σ dy·y，並直接把 dy 改寫成 dx
+            Tensor y = out.data.contiguous();
+            Tensor dy = out.grad;
+            int cols = y.getCols();
+            double[] yb = y.buffer();
+            double[] d = dy.buffer();
+            for (int i = 0; i < y.getRows(); i++) {
+                int yo = y.rowOffset(i);
+                int o = dy.rowOffset(i);
+                K.add(d, o, -K.dot(d, o, yb, yo, cols), d, o, cols);
+                K.mul(d, o, yb, yo, d, o, cols);
+            }
+            this.addGrad(dy);
+        });
+        return out;
+    }
+
+    /**
+     * 每列取出一個元素：out[i] = this[i, index[i]]，結果為 rows×1
+     */
+    public TensorValue gather(int[] index) {
+        int rows = data.getRows();
+        if (index.length != rows) {
+            throw new IllegalArgumentException(
+                    String.format("Index length %d doesn't match %d rows", index.length, rows));
+        }
+        Tensor result = new Tensor(rows, 1);
+        for (int i = 0; i < rows; i++) {
+            result.set(i, 0, data.get(i, index[i]));
+        }
+        TensorValue out = node(result, "gather", this);
+        out.setBackward(() -> {
+            if (this.requiresGrad) {
+                Tensor g = this.gradBuffer();
+                for (int i = 0; i < rows; i++) {
+                    g.increment(i, index[i], out.grad.get(i, 0));
+                }
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Embedding 查表：out 第 i 列 = this 第 index[i] 列；
+     * 反向以 scatter-add 累加，只有出現過的列會收到梯度
+     */
+    public TensorValue gatherRows(int[] index) {
+        TensorValue out = node(data.gatherRows(index), "gatherRows", this);
+        out.setBackward(() -> {
+            if (this.requiresGrad) {
+                this.gradBuffer().scatterAddRows(index, out.grad);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * 以 this 為 logits 的平均交叉熵（1×1），等同 softmax().gather(targets).log().mean().neg()
+     * 前向以 TensorOps.crossEntropyWithLogits 一次算出損失與 (softmax − one_hot)/n，
+     * 反向只需乘上上游梯度；不會建立機率矩陣，也不會對很小的機率取 log
+     */
+    public TensorValue crossEntropy(int[] targets) {
+        boolean track = requiresGrad && Value.isGradEnabled();
+        Tensor dlogits = track ? new Tensor(data.getRows(), data.getCols()) : null;
+        double loss = TensorOps.crossEntropyWithLogits(data, targets, dlogits);
+        TensorValue out = node(new Tensor(1, 1, new double[]{loss}), "crossEntropy", this);
+        Tensor[] saved = {dlogits};
+        out.setBackward(() -> {
+            // 第一次 backward 直接交出前向算好的梯度；再次 backward 時重新計算
+            Tensor g = saved[0];
+            saved[0] = null;
+            if (g == null) {
+                g = new Tensor(data.getRows(), data.getCols());
+                TensorOps.crossEntropyWithLogits(data, targets, g);
+            }
+            double scale = out.grad.get(0, 0);
+            this.addGrad(scale == 1.0 ? g : g.mulInPlace(scale));
+        });
+        return out;
+    }
+
+    // === 聚合運算 ===
+
+    /**
+     * 所有元素的總和（1×1）
+     */
+    public TensorValue sum() {
+        TensorValue out = node(new Tensor(1, 1, new double[]{data.sum()}), "sum", this);
+        out.setBackward(() -> {
+            if (this.requiresGrad) {
+                this.gradBuffer().addInPlace(out.grad.get(0, 0));
+            }
+        });
+        return out;
+    }
+
+    /**
+     * 沿著指定軸加總（axis=0 得到 1×cols，axis=1 得到 rows×1）
+     */
+    public TensorValue sum(int axis) {
+        TensorValue out = node(data.sum(axis), "sum" + axis, this);
+        out.setBackward(() -> {
+            if (this.requiresGrad) {
+                broadcastAdd(this.gradBuffer(), out.grad);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * 所有元素的平均（1×1）
+     */
+    public TensorValue mean() {
+        return sum().div(data.size());
+    }
+
+    // === 反向傳播 ===
+
+    /**
+     * 從這個 1×1 的節點反向傳播，梯度累加到每個需要梯度的節點
+     */
+    public void backward() {
+        if (data.getRows() != 1 || data.getCols() != 1) {
+            throw new IllegalStateException(
+                    String.format("backward() requires a 1x1 output, got [%d,%d]",
+                            data.getRows(), data.getCols()));
+        }
+        List<TensorValue> topo = topologicalOrder();
+        gradBuffer().fill(1.0);
+        for (int i = topo.size() - 1; i >= 0; i--) {
+            TensorValue v = topo.get(i);
+            if (v.grad != null && v.operands.length > 0) {
+                v.backward.run();
+                v.grad = null;  // 中間節點的梯度用完即釋放，只有葉節點保留
+            }
+        }
+    }
+
+    /**
+     * 以迭代式 DFS 取得拓撲排序（運算元在前、自己在最後）
+     */
+    private List<TensorValue> topologicalOrder() {
+        List<TensorValue> order = new ArrayList<>();
+        Set<TensorValue> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<TensorValue> stack = new ArrayDeque<>();
+        Deque<Integer> next = new ArrayDeque<>();
+        visited.add(this);
+        stack.push(this);
+        next.push(0);
+        while (!stack.isEmpty()) {
+            TensorValue v = stack.peek();
+            int i = next.pop();
+            if (i < v.operands.length) {
+                next.push(i + 1);
+                TensorValue child = v.operands[i];
+                if (visited.add(child)) {
+                    stack.push(child);
+                    next.push(0);
+                }
+            } else {
+                stack.pop();
+                order.add(v);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * 將梯度歸零（梯度會在多次 backward 之間累加）
+     */
+    public void zeroGrad() {
+        if (grad != null) {
+            grad.fill(0.0);
+        }
+    }
+
+    // === 輔助方法 ===
+
+    /**
+     * 只有需要梯度的節點保存 backward，否則不持有運算元的參照
+     */
+    private void setBackward(Runnable backward) {
+        if (requiresGrad && operands.length > 0) {
+            this.backward = backward;
+        }
+    }
+
+    private Tensor gradBuffer() {
+        if (grad == null) {
+            grad = new Tensor(data.getRows(), data.getCols());
+        }
+        return grad;
+    }
+
+    /**
+     * 累加 backward 中新算出的暫存梯度（或已用完的 out.grad）；
+     * 尚未有梯度時直接沿用，省去配置全 0 的緩衝區再相加
+     */
+    private void addGrad(Tensor g) {
+        if (grad == null && g.isContiguous()) {
+            grad = g;
+        } else {
+            gradBuffer().addInPlace(g);
+        }
+    }
+
+    private static void accumulate(TensorValue v, Tensor g) {
+        if (v.requiresGrad) {
+            v.gradBuffer().addInPlace(g);
+        }
+    }
+
+    /**
+     * 廣播加法的反向：把 g 沿著被廣播的軸加總後再累加
+     */
+    private static void accumulateReduced(TensorValue v, Tensor g) {
+        if (!v.requiresGrad) {
+            return;
+        }
+        int rows = v.data.getRows();
+        int cols = v.data.getCols();
+        if (rows == g.getRows() && cols == g.getCols()) {
+            v.gradBuffer().addInPlace(g);
+        } else if (rows == 1) {
+            v.gradBuffer().addInPlace(g.sum(0));
+        } else {
+            v.gradBuffer().addInPlace(g.sum(1));
+        }
+    }
+
+    /**
+     * target += b，b 與 target 同形狀、或是 1×cols / rows×1 時沿另一軸廣播
+     */
+    private static Tensor broadcastAdd(Tensor target, Tensor b) {
+        int rows = target.getRows();
+        int cols = target.getCols();
+        if (b.getRows() == rows && b.getCols() == cols) {
+            return target.addInPlace(b);
+        }
+        if (!target.isRowMajor()) {
+            return target.copyFrom(broadcastAdd(target.copy(), b));
+        }
+        double[] t = target.buffer();
+        if (b.getRows() == 1 && b.getCols() == cols) {
+            Tensor row = b.contiguous();
+            for (int i = 0; i < rows; i++) {
+                int ti = target.rowOffset(i);
+                K.add(t, ti, row.buffer(), row.rowOffset(0), t, ti, cols);
+            }
+        } else if (b.getRows() == rows && b.getCols() == 1) {
+            for (int i = 0; i < rows; i++) {
+                int ti = target.rowOffset(i);
+                K.add(t, ti, b.get(i, 0), t, ti, cols);
+            }
+        } else {
+            throw new IllegalArgumentException(
+                    String.format("Cannot broadcast [%d,%d] to [%d,%d]",
+                            b.getRows(), b.getCols(), rows, cols));
+        }
+        return target;
+    }
+
+    // === Getter ===
+
+    public Tensor getData() {
+        return data;
+    }
+
+    /**
+     * 目前累加的梯度（尚未計算時為全 0）；backward() 後只有葉節點保留梯度
+     */
+    public Tensor getGrad() {
+        return gradBuffer();
+    }
+
+    /**
+     * 1×1 節點的值
+     */
+    public double item() {
+        return data.get(0, 0);
+    }
+
+    public boolean requiresGrad() {
+        return requiresGrad;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TensorValue(op=%s, shape=[%d, %d])", op, data.getRows(), data.getCols());
+    }
+}
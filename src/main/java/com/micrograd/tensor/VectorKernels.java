@@ -0,0 +1,419 @@
+package com.micrograd.tensor;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD 版本的 TensorKernels（jdk.incubator.vector）
+ *
+ * 主迴圈一次處理 SPECIES.length() 個 double（AVX2 為 4、AVX-512 為 8），
+ * 剩下不足一個向量的尾端用純量迴圈處理。
+ * float[] 的 element-wise 運算一次處理兩倍數量的元素；以 double 累加的歸約
+ * 則讀入半寬的 float 向量，轉成與 SPECIES 同寬的 double 向量後再累加。
+ * 只能經由 TensorKernels.get() 以反射載入，避免沒有 incubator 模組時連結失敗。
+ */
+final class VectorKernels implements TensorKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final int FLOAT_LANES = FLOAT_SPECIES.length();
+    /** 與 SPECIES 同樣 lane 數的 float 向量，轉成 double 後剛好是一個 SPECIES */
+    private static final VectorSpecies<Float> HALF_FLOAT_SPECIES =
+            VectorSpecies.of(float.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+
+    @Override
+    public void add(double[] a, int ao, double[] b, int bo, double[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, ao + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bo + i);
+            va.add(vb).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = a[ao + i] + b[bo + i];
+        }
+    }
+
+    @Override
+    public void sub(double[] a, int ao, double[] b, int bo, double[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, ao + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bo + i);
+            va.sub(vb).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = a[ao + i] - b[bo + i];
+        }
+    }
+
+    @Override
+    public void mul(double[] a, int ao, double[] b, int bo, double[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, ao + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bo + i);
+            va.mul(vb).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = a[ao + i] * b[bo + i];
+        }
+    }
+
+    @Override
+    public void div(double[] a, int ao, double[] b, int bo, double[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, ao + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bo + i);
+            va.div(vb).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = a[ao + i] / b[bo + i];
+        }
+    }
+
+    @Override
+    public void add(double[] a, int ao, double s, double[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, ao + i).add(s).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = a[ao + i] + s;
+        }
+    }
+
+    @Override
+    public void mul(double[] a, int ao, double s, double[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, ao + i).mul(s).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = a[ao + i] * s;
+        }
+    }
+
+    @Override
+    public void exp(double[] a, int ao, double[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, ao + i)
+                    .lanewise(VectorOperators.EXP)
+                    .intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = Math.exp(a[ao + i]);
+        }
+    }
+
+    @Override
+    public void axpy(double s, double[] x, int xo, double[] y, int yo, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, xo + i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, yo + i);
+            // 不用 fma，結果與純量版本逐位元相同
+            vx.mul(s).add(vy).intoArray(y, yo + i);
+        }
+        for (; i < n; i++) {
+            y[yo + i] += s * x[xo + i];
+        }
+    }
+
+    @Override
+    public void log(double[] a, int ao, double[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, ao + i)
+                    .lanewise(VectorOperators.LOG)
+                    .intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = Math.log(a[ao + i]);
+        }
+    }
+
+    @Override
+    public double sum(double[] a, int ao, int n) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            acc = acc.add(DoubleVector.fromArray(SPECIES, a, ao + i));
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += a[ao + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double max(double[] a, int ao, int n) {
+        DoubleVector acc = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            acc = acc.max(DoubleVector.fromArray(SPECIES, a, ao + i));
+        }
+        double max = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < n; i++) {
+            max = Math.max(max, a[ao + i]);
+        }
+        return max;
+    }
+
+    @Override
+    public double dot(double[] a, int ao, double[] b, int bo, int n) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, ao + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bo + i);
+            acc = va.fma(vb, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += a[ao + i] * b[bo + i];
+        }
+        return sum;
+    }
+
+    /**
+     * 向量版改成先取最大值再加總 exp：列通常在 L1 快取中，
+     * 逐 lane 的 online 更新每個元素要多算一次 exp，反而比多掃描一次慢
+     */
+    @Override
+    public double logSumExp(double[] a, int ao, int n) {
+        double max = max(a, ao, n);
+        if (max == Double.NEGATIVE_INFINITY) {
+            return max;
+        }
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            acc = acc.add(DoubleVector.fromArray(SPECIES, a, ao + i).sub(max).lanewise(VectorOperators.EXP));
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += Math.exp(a[ao + i] - max);
+        }
+        return max + Math.log(sum);
+    }
+
+    // ==================== float 儲存 ====================
+
+    @Override
+    public void add(float[] a, int ao, float[] b, int bo, float[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(n); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, ao + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bo + i);
+            va.add(vb).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = a[ao + i] + b[bo + i];
+        }
+    }
+
+    @Override
+    public void sub(float[] a, int ao, float[] b, int bo, float[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(n); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, ao + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bo + i);
+            va.sub(vb).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = a[ao + i] - b[bo + i];
+        }
+    }
+
+    @Override
+    public void mul(float[] a, int ao, float[] b, int bo, float[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(n); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, ao + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bo + i);
+            va.mul(vb).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = a[ao + i] * b[bo + i];
+        }
+    }
+
+    @Override
+    public void div(float[] a, int ao, float[] b, int bo, float[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(n); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, ao + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bo + i);
+            va.div(vb).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = a[ao + i] / b[bo + i];
+        }
+    }
+
+    @Override
+    public void add(float[] a, int ao, float s, float[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(n); i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOAT_SPECIES, a, ao + i).add(s).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = a[ao + i] + s;
+        }
+    }
+
+    @Override
+    public void mul(float[] a, int ao, float s, float[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(n); i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOAT_SPECIES, a, ao + i).mul(s).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = a[ao + i] * s;
+        }
+    }
+
+    @Override
+    public void exp(float[] a, int ao, float[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(n); i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOAT_SPECIES, a, ao + i)
+                    .lanewise(VectorOperators.EXP)
+                    .intoArray(out, oo + i);
+        }
+        // 短列（例如 27 欄）的尾端很長，先用半寬向量再處理一段
+        for (int bound = HALF_FLOAT_SPECIES.loopBound(n); i < bound; i += LANES) {
+            FloatVector.fromArray(HALF_FLOAT_SPECIES, a, ao + i)
+                    .lanewise(VectorOperators.EXP)
+                    .intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = (float) Math.exp(a[ao + i]);
+        }
+    }
+
+    @Override
+    public void log(float[] a, int ao, float[] out, int oo, int n) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(n); i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOAT_SPECIES, a, ao + i)
+                    .lanewise(VectorOperators.LOG)
+                    .intoArray(out, oo + i);
+        }
+        // 短列（例如 27 欄）的尾端很長，先用半寬向量再處理一段
+        for (int bound = HALF_FLOAT_SPECIES.loopBound(n); i < bound; i += LANES) {
+            FloatVector.fromArray(HALF_FLOAT_SPECIES, a, ao + i)
+                    .lanewise(VectorOperators.LOG)
+                    .intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] = (float) Math.log(a[ao + i]);
+        }
+    }
+
+    /** x[xo..xo+LANES) 轉成 double 向量 */
+    private static DoubleVector widen(float[] x, int xo) {
+        return (DoubleVector) FloatVector.fromArray(HALF_FLOAT_SPECIES, x, xo)
+                .convertShape(VectorOperators.F2D, SPECIES, 0);
+    }
+
+    @Override
+    public void softmax(float[] a, int ao, float[] out, int oo, int n) {
+        // 全部用與 SPECIES 同 lane 數的 float 向量，短列（27 欄）的純量尾端最短；
+        // 指數以 float 計算，總和轉成 double 累加
+        float max = max(a, ao, n);
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = HALF_FLOAT_SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            FloatVector e = FloatVector.fromArray(HALF_FLOAT_SPECIES, a, ao + i)
+                    .sub(max)
+                    .lanewise(VectorOperators.EXP);
+            e.intoArray(out, oo + i);
+            acc = acc.add(e.convertShape(VectorOperators.F2D, SPECIES, 0));
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            float e = (float) Math.exp(a[ao + i] - max);
+            out[oo + i] = e;
+            sum += e;
+        }
+
+        float inv = (float) (1.0 / sum);
+        for (i = 0; i < bound; i += LANES) {
+            FloatVector.fromArray(HALF_FLOAT_SPECIES, out, oo + i).mul(inv).intoArray(out, oo + i);
+        }
+        for (; i < n; i++) {
+            out[oo + i] *= inv;
+        }
+    }
+
+    @Override
+    public void axpy(double s, float[] x, int xo, double[] y, int yo, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, yo + i);
+            widen(x, xo + i).mul(s).add(vy).intoArray(y, yo + i);
+        }
+        for (; i < n; i++) {
+            y[yo + i] += s * x[xo + i];
+        }
+    }
+
+    @Override
+    public double sum(float[] a, int ao, int n) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            acc = acc.add(widen(a, ao + i));
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += a[ao + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float max(float[] a, int ao, int n) {
+        FloatVector acc = FloatVector.broadcast(HALF_FLOAT_SPECIES, Float.NEGATIVE_INFINITY);
+        int i = 0;
+        for (int bound = HALF_FLOAT_SPECIES.loopBound(n); i < bound; i += LANES) {
+            acc = acc.max(FloatVector.fromArray(HALF_FLOAT_SPECIES, a, ao + i));
+        }
+        float max = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < n; i++) {
+            max = Math.max(max, a[ao + i]);
+        }
+        return max;
+    }
+
+    @Override
+    public double dot(float[] a, int ao, float[] b, int bo, int n) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += LANES) {
+            // 兩個 float 的乘積在 double 中是精確的，fma 與先乘後加結果相同
+            acc = widen(a, ao + i).fma(widen(b, bo + i), acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += (double) a[ao + i] * b[bo + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "vector(" + SPECIES + ")";
+    }
+}
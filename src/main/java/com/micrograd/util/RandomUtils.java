@@ -1,7 +1,9 @@
 package com.micrograd.util;
 
+import com.micrograd.tensor.FloatTensor;
 import com.micrograd.tensor.Tensor;
 import java.util.Random;
+import java.util.function.IntToDoubleFunction;
 
 /**
  * 隨機數工具類別
@@ -17,34 +19,34 @@ public class RandomUtils {
      * @return 採樣得到的索引
      */
     public static int multinomial(Tensor probs, Random rng) {
+        checkVector(probs.getRows(), probs.getCols());
+        // 直接讀取（getRow 回傳的是 view），不複製成陣列
+        boolean row = probs.getRows() == 1;
+        return sample(i -> row ? probs.get(0, i) : probs.get(i, 0),
+                Math.max(probs.getRows(), probs.getCols()), probs.sum(), rng);
+    }
+
+    /**
+     * 從 float 儲存的機率分佈中採樣（累積機率以 double 計算）
+     */
+    public static int multinomial(FloatTensor probs, Random rng) {
+        checkVector(probs.getRows(), probs.getCols());
+        boolean row = probs.getRows() == 1;
+        return sample(i -> row ? probs.get(0, i) : probs.get(i, 0),
+                Math.max(probs.getRows(), probs.getCols()), probs.sum(), rng);
+    }
+
+    private static void checkVector(int rows, int cols) {
         // 確保是 1D 向量
-        if (probs.getRows() != 1 && probs.getCols() != 1) {
+        if (rows != 1 && cols != 1) {
             throw new IllegalArgumentException(
                     "Probability tensor must be 1D, got shape: [" +
-                            probs.getRows() + ", " + probs.getCols() + "]");
-        }
-
-        // 取得機率數組
-        int n = Math.max(probs.getRows(), probs.getCols());
-        double[] probArray = new double[n];
-
-        if (probs.getRows() == 1) {
-            // 行向量 1×n
-            for (int i = 0; i < n; i++) {
-                probArray[i] = probs.get(0, i);
-            }
-        } else {
-            // 列向量 n×1
-            for (int i = 0; i < n; i++) {
-                probArray[i] = probs.get(i, 0);
-            }
+                            rows + ", " + cols + "]");
         }
+    }
 
+    private static int sample(IntToDoubleFunction prob, int n, double sum, Random rng) {
         // 檢查機率是否正規化（允許一些浮點誤差）
-        double sum = 0;
-        for (double p : probArray) {
-            sum += p;
-        }
         if (Math.abs(sum - 1.0) > 1e-5) {
             throw new IllegalArgumentException(
                     "Probabilities must sum to 1.0, got: " + sum);
@@ -55,7 +57,7 @@ public class RandomUtils {
         double cumulativeProb = 0.0;
 
         for (int i = 0; i < n; i++) {
-            cumulativeProb += probArray[i];
+            cumulativeProb += prob.applyAsDouble(i);
             if (r < cumulativeProb) {
                 return i;
             }
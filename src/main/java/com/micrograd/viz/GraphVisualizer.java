@@ -50,22 +50,17 @@ public class GraphVisualizer {
     // ==================== 核心方法 ====================
 
     /**
-     * 追蹤計算圖：從根節點遞迴收集所有節點和邊
+     * 追蹤計算圖：沿用 Value 的迭代式拓撲排序收集所有節點和邊
      */
     public static GraphData trace(Value root) {
         GraphData data = new GraphData();
-        buildTrace(root, data);
-        return data;
-    }
-
-    private static void buildTrace(Value v, GraphData data) {
-        if (!data.nodes.contains(v)) {
+        for (Value v : Value.topologicalOrder(root)) {
             data.nodes.add(v);
             for (Value child : v.getPrev()) {
                 data.edges.add(new Edge(child, v));
-                buildTrace(child, data);
             }
         }
+        return data;
     }
 
     /**
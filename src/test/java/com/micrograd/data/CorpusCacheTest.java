@@ -0,0 +1,224 @@
+package com.micrograd.data;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CorpusCache 二進位語料快取測試")
+class CorpusCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private Vocabulary vocab;
+    private Path source;
+    private Path cacheFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        vocab = new Vocabulary();
+        source = dir.resolve("names.txt");
+        cacheFile = dir.resolve("names.txt.cache");
+        Files.writeString(source, "emma\nOlivia\n\nava\nbad word\nzoe\nisabella\nx\n", StandardCharsets.US_ASCII);
+    }
+
+    /** 以 CorpusReader 直接從文字檔產生的 bigram */
+    private int[][] streamedBigrams() throws IOException {
+        IntList inputs = new IntList();
+        IntList targets = new IntList();
+        try (CorpusReader reader = new CorpusReader(source, vocab)) {
+            reader.forEachBigram((x, y) -> {
+                inputs.add(x);
+                targets.add(y);
+            });
+        }
+        return new int[][]{inputs.toArray(), targets.toArray()};
+    }
+
+    private static int[][] bigrams(CorpusCache cache) {
+        IntList inputs = new IntList();
+        IntList targets = new IntList();
+        cache.forEachBigram((x, y) -> {
+            inputs.add(x);
+            targets.add(y);
+        });
+        return new int[][]{inputs.toArray(), targets.toArray()};
+    }
+
+    @Nested
+    @DisplayName("建立與開啟")
+    class BuildAndOpen {
+
+        @Test
+        @DisplayName("快取內容與文字檔相同")
+        void testRoundTrip() throws IOException {
+            CorpusCache cache = CorpusCache.openOrBuild(source, cacheFile, vocab);
+            assertEquals(6, cache.getWordCount());
+            assertEquals(4 + 6 + 3 + 3 + 8 + 1, cache.getTokenCount());
+            assertEquals(cache.getTokenCount() + 6, cache.getBigramCount());
+            assertEquals(6, cache.wordLength(1));
+            assertEquals(4, cache.wordStart(1));
+            assertEquals(vocab.encode('o'), cache.token(4));
+
+            int[][] expected = streamedBigrams();
+            int[][] actual = bigrams(cache);
+            assertArrayEquals(expected[0], actual[0]);
+            assertArrayEquals(expected[1], actual[1]);
+            assertTrue(cache.verifySource(source));
+        }
+
+        @Test
+        @DisplayName("跨越映射分塊邊界時結果相同")
+        void testSmallChunks() throws IOException {
+            CorpusCache.build(source, cacheFile, vocab);
+            int[][] expected = streamedBigrams();
+            for (int shift = 3; shift <= 6; shift++) {
+                CorpusCache cache = CorpusCache.open(cacheFile, source, vocab, shift);
+                int[][] actual = bigrams(cache);
+                assertArrayEquals(expected[0], actual[0], "chunkShift = " + shift);
+                assertArrayEquals(expected[1], actual[1], "chunkShift = " + shift);
+                assertEquals(8, cache.wordLength(4));
+            }
+        }
+
+        @Test
+        @DisplayName("分段走訪的 bigram 串起來等於整份語料")
+        void testWordRanges() throws IOException {
+            CorpusCache.build(source, cacheFile, vocab);
+            CorpusCache cache = CorpusCache.open(cacheFile, source, vocab, 3);
+            IntList inputs = new IntList();
+            IntList targets = new IntList();
+            long[] bounds = {0, 1, 1, 4, 6};
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                cache.forEachBigram(bounds[i], bounds[i + 1], (x, y) -> {
+                    inputs.add(x);
+                    targets.add(y);
+                });
+            }
+            int[][] expected = streamedBigrams();
+            assertArrayEquals(expected[0], inputs.toArray());
+            assertArrayEquals(expected[1], targets.toArray());
+            assertThrows(IndexOutOfBoundsException.class, () -> cache.forEachBigram(2, 7, (x, y) -> { }));
+        }
+
+        @Test
+        @DisplayName("空語料")
+        void testEmpty() throws IOException {
+            Files.writeString(source, "\n\n");
+            CorpusCache cache = CorpusCache.openOrBuild(source, cacheFile, vocab);
+            assertEquals(0, cache.getWordCount());
+            assertEquals(0, bigrams(cache)[0].length);
+        }
+
+        @Test
+        @DisplayName("來源檔改變後快取失效並重新建立")
+        void testStaleCache() throws IOException {
+            CorpusCache.build(source, cacheFile, vocab);
+            assertTrue(CorpusCache.isFresh(cacheFile, source, vocab));
+
+            Files.writeString(source, "ann\n");
+            Files.setLastModifiedTime(source, FileTime.fromMillis(0));
+            assertFalse(CorpusCache.isFresh(cacheFile, source, vocab));
+            assertThrows(IOException.class, () -> CorpusCache.open(cacheFile, source, vocab));
+
+            CorpusCache cache = CorpusCache.openOrBuild(source, cacheFile, vocab);
+            assertEquals(1, cache.getWordCount());
+            assertEquals(3, cache.getTokenCount());
+        }
+
+        @Test
+        @DisplayName("不是快取檔或被截斷時拒絕開啟")
+        void testInvalidFile() throws IOException {
+            Files.writeString(cacheFile, "not a cache");
+            assertFalse(CorpusCache.isFresh(cacheFile, source, vocab));
+            assertThrows(IOException.class, () -> CorpusCache.open(cacheFile, source, vocab));
+
+            CorpusCache.build(source, cacheFile, vocab);
+            byte[] bytes = Files.readAllBytes(cacheFile);
+            Files.write(cacheFile, Arrays.copyOf(bytes, bytes.length - 8));
+            assertThrows(IOException.class, () -> CorpusCache.open(cacheFile, source, vocab));
+        }
+
+        @Test
+        @DisplayName("verifySource 比對整個來源檔的檢查碼")
+        void testVerifySource() throws IOException {
+            CorpusCache cache = CorpusCache.openOrBuild(source, cacheFile, vocab);
+            byte[] bytes = Files.readAllBytes(source);
+            bytes[0] = 'E';  // 大小不變的修改
+            FileTime modified = Files.getLastModifiedTime(source);
+            Files.write(source, bytes);
+            Files.setLastModifiedTime(source, modified);
+            assertTrue(CorpusCache.isFresh(cacheFile, source, vocab), "只比對大小與修改時間");
+            assertFalse(cache.verifySource(source));
+        }
+    }
+
+    @Nested
+    @DisplayName("N-gram")
+    class NGrams {
+
+        @Test
+        @DisplayName("trigram 前面補兩個特殊符號")
+        void testTrigrams() throws IOException {
+            Files.writeString(source, "ab\nc\n");
+            CorpusCache cache = CorpusCache.openOrBuild(source, cacheFile, vocab);
+            int s = vocab.getSpecialTokenIndex();
+            int a = vocab.encode('a');
+            int b = vocab.encode('b');
+            int c = vocab.encode('c');
+
+            List<int[]> grams = new ArrayList<>();
+            cache.forEachNGram(3, (context, target) -> grams.add(new int[]{context[0], context[1], target}));
+            int[][] expected = {
+                    {s, s, a}, {s, a, b}, {a, b, s},
+                    {s, s, c}, {s, c, s}
+            };
+            assertEquals(expected.length, grams.size());
+            for (int i = 0; i < expected.length; i++) {
+                assertArrayEquals(expected[i], grams.get(i), "n-gram " + i);
+            }
+            assertThrows(IllegalArgumentException.class, () -> cache.forEachNGram(1, (x, y) -> { }));
+        }
+
+        @Test
+        @DisplayName("DataLoader.getNGrams 與 forEachNGram 一致")
+        void testDataLoaderNGrams() throws IOException {
+            CorpusCache cache = CorpusCache.openOrBuild(source, cacheFile, vocab);
+            int[][] ngrams = new DataLoader(source.toString(), vocab).getNGrams(4);
+            int[] i = {0};
+            cache.forEachNGram(4, (context, target) -> {
+                for (int c = 0; c < 3; c++) {
+                    assertEquals(ngrams[c][i[0]], context[c]);
+                }
+                assertEquals(ngrams[3][i[0]], target);
+                i[0]++;
+            });
+            assertEquals(ngrams[0].length, i[0]);
+        }
+    }
+
+    @Test
+    @DisplayName("DataLoader.cached 與直接讀取文字檔相同，第二次使用快取")
+    void testDataLoaderCached() throws IOException {
+        DataLoader direct = new DataLoader(source.toString(), vocab);
+        DataLoader first = DataLoader.cached(source.toString(), vocab);
+        assertTrue(Files.exists(Path.of(source + DataLoader.CACHE_SUFFIX)));
+        DataLoader second = DataLoader.cached(source.toString(), vocab);
+
+        for (DataLoader loader : new DataLoader[]{first, second}) {
+            assertEquals(direct.getWords(), loader.getWords());
+            assertArrayEquals(direct.getBigrams()[0], loader.getBigrams()[0]);
+            assertArrayEquals(direct.getBigrams()[1], loader.getBigrams()[1]);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.micrograd.data;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CorpusReader 串流讀取測試")
+class CorpusReaderTest {
+
+    @TempDir
+    Path dir;
+
+    private Vocabulary vocab;
+
+    @BeforeEach
+    void setUp() {
+        vocab = new Vocabulary();
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = dir.resolve("corpus.txt");
+        Files.writeString(file, content, StandardCharsets.US_ASCII);
+        return file;
+    }
+
+    /** 以指定的緩衝區大小讀出所有單字 */
+    private List<String> readWords(Path file, int bufferSize) throws IOException {
+        List<String> words = new ArrayList<>();
+        try (CorpusReader reader = new CorpusReader(file, vocab, bufferSize)) {
+            while (reader.nextWord()) {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < reader.wordLength(); i++) {
+                    sb.append(vocab.decode(reader.word()[i]));
+                }
+                words.add(sb.toString());
+            }
+        }
+        return words;
+    }
+
+    /** DataLoader 原本的逐行規則：trim、轉小寫、只保留詞彙表內的字元 */
+    private List<String> readWordsWithStrings(Path file) throws IOException {
+        List<String> words = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim().toLowerCase();
+                if (!line.isEmpty() && line.chars().allMatch(c -> vocab.contains((char) c))) {
+                    words.add(line);
+                }
+            }
+        }
+        return words;
+    }
+
+    @Nested
+    @DisplayName("逐行解碼")
+    class Decoding {
+
+        @Test
+        @DisplayName("trim、轉小寫，略過空行與無效的行")
+        void testLineRules() throws IOException {
+            Path file = write("emma\n  Olivia \n\n\t\nav3\nbad word\nISABELLA\nx.y\n");
+            assertEquals(List.of("emma", "olivia", "isabella", "x.y"), readWords(file, 64));
+        }
+
+        @Test
+        @DisplayName("CRLF 與最後一行沒有換行")
+        void testLineEndings() throws IOException {
+            Path file = write("ava\r\nmia\r\n\r\nzoe");
+            assertEquals(List.of("ava", "mia", "zoe"), readWords(file, 64));
+        }
+
+        @Test
+        @DisplayName("非 ASCII 的位元組視為無效字元")
+        void testNonAscii() throws IOException {
+            Path file = dir.resolve("utf8.txt");
+            Files.writeString(file, "zoë\nann\n", StandardCharsets.UTF_8);
+            assertEquals(List.of("ann"), readWords(file, 64));
+        }
+
+        @Test
+        @DisplayName("空檔案沒有單字")
+        void testEmptyFile() throws IOException {
+            assertTrue(readWords(write(""), 64).isEmpty());
+        }
+
+        @Test
+        @DisplayName("單字跨越緩衝區邊界：各種緩衝區大小結果相同")
+        void testBufferBoundaries() throws IOException {
+            Path file = write(" abigail\nbob\r\n\nCHARLOTTE  \nd e\nelizabethanne\nf");
+            List<String> expected = readWordsWithStrings(file);
+            for (int size = 1; size <= 20; size++) {
+                assertEquals(expected, readWords(file, size), "bufferSize = " + size);
+            }
+        }
+
+        @Test
+        @DisplayName("緩衝區大小必須為正")
+        void testInvalidBufferSize() throws IOException {
+            Path file = write("ann\n");
+            assertThrows(IllegalArgumentException.class, () -> new CorpusReader(file, vocab, 0));
+        }
+    }
+
+    @Nested
+    @DisplayName("Bigram")
+    class Bigrams {
+
+        @Test
+        @DisplayName("forEachBigram 在單字前後加上特殊符號")
+        void testForEachBigram() throws IOException {
+            Path file = write("ab\nc\n");
+            int s = vocab.getSpecialTokenIndex();
+            IntList inputs = new IntList();
+            IntList targets = new IntList();
+            long count;
+            try (CorpusReader reader = new CorpusReader(file, vocab)) {
+                count = reader.forEachBigram((x, y) -> {
+                    inputs.add(x);
+                    targets.add(y);
+                });
+            }
+            int a = vocab.encode('a');
+            int b = vocab.encode('b');
+            int c = vocab.encode('c');
+            assertEquals(5, count);
+            assertArrayEquals(new int[]{s, a, b, s, c}, inputs.toArray());
+            assertArrayEquals(new int[]{a, b, s, c, s}, targets.toArray());
+        }
+
+        @Test
+        @DisplayName("DataLoader 的 bigram 與 forEachBigram 一致")
+        void testDataLoaderMatchesStream() throws IOException {
+            Path file = write("emma\nOlivia\n\nava\nbad word\nzoe\n");
+            DataLoader loader = new DataLoader(file.toString(), vocab);
+            int[][] bigrams = loader.getBigrams();
+            assertEquals(loader.getBigramCount(), bigrams[0].length);
+
+            IntList inputs = new IntList();
+            IntList targets = new IntList();
+            try (CorpusReader reader = new CorpusReader(file, vocab)) {
+                reader.forEachBigram((x, y) -> {
+                    inputs.add(x);
+                    targets.add(y);
+                });
+            }
+            assertArrayEquals(inputs.toArray(), bigrams[0]);
+            assertArrayEquals(targets.toArray(), bigrams[1]);
+            assertEquals(List.of("emma", "olivia", "ava", "zoe"), loader.getWords());
+            assertEquals(4, loader.getWordCount());
+        }
+    }
+
+    @Test
+    @DisplayName("names.txt：與逐行讀取 String 的結果相同")
+    void testNamesFile() throws IOException {
+        Path file = Path.of("data/names.txt");
+        Assumptions.assumeTrue(Files.exists(file), "找不到 data/names.txt");
+
+        List<String> expected = readWordsWithStrings(file);
+        DataLoader loader = new DataLoader(file.toString(), vocab);
+        assertEquals(expected, loader.getWords());
+
+        int chars = expected.stream().mapToInt(String::length).sum();
+        assertEquals(chars + expected.size(), loader.getBigramCount());
+    }
+}
@@ -0,0 +1,45 @@
+package com.micrograd.data;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("IntList 可成長 int 陣列測試")
+class IntListTest {
+
+    @Test
+    @DisplayName("add 超過初始容量時自動成長")
+    void testGrow() {
+        IntList list = new IntList(0);
+        assertTrue(list.isEmpty());
+        for (int i = 0; i < 1000; i++) {
+            list.add(i * 3);
+        }
+        assertEquals(1000, list.size());
+        assertEquals(0, list.get(0));
+        assertEquals(2997, list.get(999));
+        assertEquals(1000, list.toArray().length);
+    }
+
+    @Test
+    @DisplayName("addAll 附加陣列的一段")
+    void testAddAll() {
+        IntList list = new IntList(2);
+        list.add(7);
+        list.addAll(new int[]{1, 2, 3, 4, 5}, 1, 3);
+        assertArrayEquals(new int[]{7, 2, 3, 4}, list.toArray());
+    }
+
+    @Test
+    @DisplayName("get 檢查範圍；clear 之後從頭開始")
+    void testBoundsAndClear() {
+        IntList list = new IntList();
+        list.add(1);
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1));
+        list.clear();
+        assertEquals(0, list.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(0));
+        assertThrows(IllegalArgumentException.class, () -> new IntList(-1));
+    }
+}
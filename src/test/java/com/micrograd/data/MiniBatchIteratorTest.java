@@ -0,0 +1,117 @@
+package com.micrograd.data;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MiniBatchIterator 小批次迭代測試")
+class MiniBatchIteratorTest {
+
+    private static int[][] columns(int n) {
+        int[][] cols = new int[2][n];
+        for (int i = 0; i < n; i++) {
+            cols[0][i] = i;
+            cols[1][i] = 1000 + i;
+        }
+        return cols;
+    }
+
+    /** 走完一個 epoch，回傳每批的第 0 欄 */
+    private static List<int[]> epoch(MiniBatchIterator it) {
+        it.nextEpoch();
+        List<int[]> batches = new ArrayList<>();
+        while (it.hasNext()) {
+            int[][] batch = it.next();
+            for (int i = 0; i < batch[0].length; i++) {
+                assertEquals(batch[0][i] + 1000, batch[1][i], "欄位必須一起洗牌");
+            }
+            batches.add(batch[0].clone());
+        }
+        return batches;
+    }
+
+    @Test
+    @DisplayName("每個 epoch 每個樣本剛好出現一次，最後一批較短")
+    void testCoversAllSamples() {
+        MiniBatchIterator it = new MiniBatchIterator(columns(10), 4, new Random(1), false);
+        assertEquals(3, it.batchesPerEpoch());
+        assertFalse(it.hasNext(), "nextEpoch() 之前沒有批次");
+
+        List<int[]> batches = epoch(it);
+        assertEquals(3, batches.size());
+        assertEquals(4, batches.get(0).length);
+        assertEquals(2, batches.get(2).length);
+        Set<Integer> seen = new HashSet<>();
+        for (int[] b : batches) {
+            for (int v : b) {
+                assertTrue(seen.add(v));
+            }
+        }
+        assertEquals(10, seen.size());
+        assertThrows(NoSuchElementException.class, it::next);
+    }
+
+    @Test
+    @DisplayName("同一個種子得到同一串批次，不同 epoch 順序不同")
+    void testSeededShuffle() {
+        MiniBatchIterator a = new MiniBatchIterator(columns(50), 8, new Random(7), false);
+        MiniBatchIterator b = new MiniBatchIterator(columns(50), 8, new Random(7), false);
+        List<int[]> first = epoch(a);
+        List<int[]> second = epoch(a);
+        List<int[]> other = epoch(b);
+        for (int i = 0; i < first.size(); i++) {
+            assertArrayEquals(first.get(i), other.get(i));
+        }
+        assertFalse(Arrays.equals(first.get(0), second.get(0)));
+
+        // 沒有 rng 時依原順序
+        MiniBatchIterator seq = new MiniBatchIterator(columns(5), 2, null, false);
+        assertArrayEquals(new int[]{0, 1}, epoch(seq).get(0));
+    }
+
+    @Test
+    @DisplayName("dropLast 略過不足的批次；批次陣列重複使用")
+    void testDropLastAndReuse() {
+        MiniBatchIterator it = new MiniBatchIterator(columns(10), 4, new Random(1), true);
+        assertEquals(2, it.batchesPerEpoch());
+        assertEquals(2, epoch(it).size());
+
+        it.nextEpoch();
+        int[][] first = it.next();
+        assertSame(first, it.next());
+
+        assertEquals(0, epoch(new MiniBatchIterator(columns(3), 4, null, true)).size());
+        assertEquals(1, epoch(new MiniBatchIterator(columns(3), 4, null, false)).size());
+    }
+
+    @Test
+    @DisplayName("參數檢查")
+    void testValidation() {
+        assertThrows(IllegalArgumentException.class, () -> new MiniBatchIterator(columns(4), 0, null, false));
+        assertThrows(IllegalArgumentException.class, () -> new MiniBatchIterator(new int[0][], 2, null, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MiniBatchIterator(new int[][]{{1, 2}, {3}}, 2, null, false));
+    }
+
+    @Test
+    @DisplayName("DataLoader.miniBatches 走訪所有 bigram")
+    void testDataLoaderMiniBatches(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("names.txt");
+        Files.writeString(file, "emma\nava\n");
+        DataLoader loader = new DataLoader(file.toString(), new Vocabulary());
+        MiniBatchIterator it = loader.miniBatches(3, null, false);
+        assertEquals(loader.getBigramCount(), it.size());
+
+        it.nextEpoch();
+        int[][] first = it.next();
+        int[][] bigrams = loader.getBigrams();
+        assertArrayEquals(Arrays.copyOf(bigrams[0], 3), first[0]);
+        assertArrayEquals(Arrays.copyOf(bigrams[1], 3), first[1]);
+    }
+}
@@ -81,4 +81,11 @@ class VocabularyTest {
         assertFalse(vocab.contains('A'));
         assertFalse(vocab.contains('1'));
     }
+
+    @Test
+    @DisplayName("相同的詞彙表有相同的指紋")
+    void testFingerprint() {
+        assertEquals(vocab.fingerprint(), new Vocabulary().fingerprint());
+        assertNotEquals(0L, vocab.fingerprint());
+    }
 }
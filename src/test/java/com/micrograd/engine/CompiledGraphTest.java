@@ -0,0 +1,250 @@
+package com.micrograd.engine;
+
+import com.micrograd.nn.MLP;
+import org.junit.jupiter.api.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CompiledGraph 凍結計算圖測試")
+class CompiledGraphTest {
+
+    private static final double TOL = 1e-9;
+
+    @Test
+    @DisplayName("以新輸入重播的結果與重新建圖一致")
+    void testReplayMatchesRebuild() {
+        Value x = new Value(0.0);
+        Value w = new Value(-0.4);
+        Value out = x.mul(w).add(x.pow(2)).tanh().exp();
+        CompiledGraph graph = CompiledGraph.compile(out, List.of(x));
+
+        for (double input : new double[]{0.3, -1.2, 2.5}) {
+            w.setGrad(0.0);
+            double value = graph.forward(input);
+            graph.backward();
+            double compiledGrad = w.getGrad();
+
+            Value x2 = new Value(input);
+            Value w2 = new Value(w.getData());
+            Value expected = x2.mul(w2).add(x2.pow(2)).tanh().exp();
+            expected.backward();
+
+            assertEquals(expected.getData(), value, TOL);
+            assertEquals(w2.getGrad(), compiledGrad, TOL);
+            assertEquals(x2.getGrad(), graph.getInputGrad(0), TOL);
+        }
+    }
+
+    @Test
+    @DisplayName("MLP 訓練：編譯一次、重播多步，與每步重新建圖的結果一致")
+    void testMLPTraining() {
+        double[][] xs = {{2.0, 3.0, -1.0}, {3.0, -1.0, 0.5}, {0.5, 1.0, 1.0}, {1.0, 1.0, -1.0}};
+        double[] ys = {1.0, -1.0, -1.0, 1.0};
+
+        MLP reference = new MLP(Arrays.asList(3, 4, 4, 1), new Random(3));
+        MLP compiled = new MLP(Arrays.asList(3, 4, 4, 1), new Random(3));
+
+        List<Value> inputs = new ArrayList<>();
+        Value lossValue = buildLoss(compiled, xs, ys, inputs);
+        CompiledGraph graph = CompiledGraph.compile(lossValue, inputs);
+        double[] flatInputs = inputs.stream().mapToDouble(Value::getData).toArray();
+
+        for (int step = 0; step < 20; step++) {
+            reference.zeroGrad();
+            Value loss = buildLoss(reference, xs, ys, new ArrayList<>());
+            loss.backward();
+            sgd(reference);
+
+            compiled.zeroGrad();
+            double compiledLoss = graph.forward(flatInputs);
+            graph.backward();
+            sgd(compiled);
+
+            assertEquals(loss.getData(), compiledLoss, TOL);
+        }
+    }
+
+    @Test
+    @DisplayName("產生的 bytecode kernel 與直譯重播結果一致")
+    void testBytecodeMatchesInterpreter() {
+        Value x = new Value(0.0);
+        Value w = new Value(0.8);
+        Value out = x.mul(w).tanh().add(x.relu().pow(3)).exp().add(w.mul(w))
+                .mul(Value.dot(List.of(w, x, w), List.of(x, x, w)))
+                .add(Value.sum(List.of(x, w, x)))
+                .mul(-0.5).add(2.0).neg();
+        CompiledGraph interpreted = CompiledGraph.compile(out, List.of(x));
+        CompiledGraph generated = CompiledGraph.compile(out, List.of(x));
+        assertTrue(generated.generateBytecode());
+
+        for (double input : new double[]{0.3, -1.2, 2.5}) {
+            w.setGrad(0.0);
+            double expected = interpreted.forward(input);
+            interpreted.backward();
+            double expectedGrad = w.getGrad();
+
+            w.setGrad(0.0);
+            assertEquals(expected, generated.forward(input), TOL);
+            generated.backward();
+            assertEquals(expectedGrad, w.getGrad(), TOL);
+            assertEquals(interpreted.getInputGrad(0), generated.getInputGrad(0), TOL);
+        }
+    }
+
+    @Test
+    @DisplayName("直譯與產生的 bytecode 在 tanh 大輸入時都飽和為 1")
+    void testTanhSaturates() {
+        Value x = new Value(0.0);
+        Value out = x.tanh();
+        CompiledGraph interpreted = CompiledGraph.compile(out, List.of(x));
+        CompiledGraph generated = CompiledGraph.compile(out, List.of(x));
+        assertTrue(generated.generateBytecode());
+        assertEquals(1.0, interpreted.forward(400.0), 0.0);
+        assertEquals(1.0, generated.forward(400.0), 0.0);
+        generated.backward();
+        assertEquals(0.0, generated.getInputGrad(0), 0.0);
+    }
+
+    @Test
+    @DisplayName("大型計算圖會切成多個 chunk")
+    void testLargeGraphIsChunked() {
+        List<Value> inputs = new ArrayList<>();
+        Value sum = new Value(0);
+        for (int i = 0; i < 2000; i++) {
+            Value in = new Value(i * 1e-3);
+            inputs.add(in);
+            sum = sum.add(in.mul(in).tanh());
+        }
+        CompiledGraph interpreted = CompiledGraph.compile(sum, inputs);
+        CompiledGraph generated = CompiledGraph.compile(sum, inputs);
+        assertTrue(generated.generateBytecode());
+
+        double[] values = new double[inputs.size()];
+        Arrays.fill(values, 0.25);
+        assertEquals(interpreted.forward(values), generated.forward(values), TOL);
+        interpreted.backward();
+        generated.backward();
+        assertEquals(interpreted.getInputGrad(1999), generated.getInputGrad(1999), TOL);
+    }
+
+    @Test
+    @DisplayName("大扇入的 sum / dot 不會讓 chunk 超過 HugeMethodLimit")
+    void testWideNodesStayUnderMethodLimit() {
+        List<Value> inputs = new ArrayList<>();
+        List<Value> weights = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            inputs.add(new Value(i * 1e-3));
+            weights.add(new Value(1.0 - i * 1e-3));
+        }
+        List<Value> terms = new ArrayList<>();
+        for (int k = 0; k < 8; k++) {
+            // dot 的運算元數是兩倍長度
+            terms.add(Value.dot(weights.subList(0, 128), inputs.subList(0, 128)).add(k).relu());
+            terms.add(Value.sum(inputs).mul(k).tanh());
+        }
+        Value out = Value.sum(terms);
+        CompiledGraph interpreted = CompiledGraph.compile(out, inputs);
+        CompiledGraph generated = CompiledGraph.compile(out, inputs);
+        assertTrue(generated.generateBytecode());
+        assertTrue(generated.largestChunkBytes() < 8000, "chunk: " + generated.largestChunkBytes());
+
+        double[] values = new double[inputs.size()];
+        Arrays.fill(values, 0.01);
+        assertEquals(interpreted.forward(values), generated.forward(values), TOL);
+        interpreted.backward();
+        generated.backward();
+        for (int i = 0; i < inputs.size(); i++) {
+            assertEquals(interpreted.getInputGrad(i), generated.getInputGrad(i), TOL);
+        }
+    }
+
+    @Test
+    @DisplayName("非有限資料上 bytecode 的梯度與直譯相同")
+    void testNonFiniteMatchesInterpreter() {
+        Value x = new Value(0.0);
+        Value y = new Value(0.0);
+        // relu(NaN) 的梯度為 0；y 的梯度為 0 時 x·Inf 不應變成 NaN
+        Value out = x.relu().add(x.mul(y).mul(0.0)).add(y.exp());
+        CompiledGraph interpreted = CompiledGraph.compile(out, List.of(x, y));
+        CompiledGraph generated = CompiledGraph.compile(out, List.of(x, y));
+        assertTrue(generated.generateBytecode());
+
+        double[][] cases = {
+            {Double.NaN, 1.0},
+            {Double.POSITIVE_INFINITY, 2.0},
+            {3.0, Double.POSITIVE_INFINITY},
+            {-1.0, Double.NEGATIVE_INFINITY},
+        };
+        for (double[] in : cases) {
+            assertEquals(interpreted.forward(in), generated.forward(in), 0.0);
+            interpreted.backward();
+            generated.backward();
+            assertEquals(interpreted.getInputGrad(0), generated.getInputGrad(0), 0.0);
+            assertEquals(interpreted.getInputGrad(1), generated.getInputGrad(1), 0.0);
+        }
+    }
+
+    @Test
+    @DisplayName("超大計算圖退回直譯重播")
+    void testHugeGraphFallsBack() {
+        Value x = new Value(0.5);
+        List<Value> terms = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            terms.add(x.mul(new Value(i * 1e-4)).tanh());
+        }
+        // 兩兩相加，讓計算圖寬而淺
+        while (terms.size() > 1) {
+            List<Value> next = new ArrayList<>();
+            for (int i = 0; i + 1 < terms.size(); i += 2) {
+                next.add(terms.get(i).add(terms.get(i + 1)));
+            }
+            if (terms.size() % 2 == 1) {
+                next.add(terms.get(terms.size() - 1));
+            }
+            terms = next;
+        }
+        Value out = terms.get(0);
+        CompiledGraph graph = CompiledGraph.compile(out, List.of(x));
+        assertFalse(graph.generateBytecode());
+        assertEquals(out.getData(), graph.forward(0.5), TOL);
+    }
+
+    @Test
+    @DisplayName("非計算圖中的輸入應拋出例外")
+    void testForeignInput() {
+        Value a = new Value(1.0);
+        Value out = a.mul(a);
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledGraph.compile(out, List.of(new Value(2.0))));
+    }
+
+    @Test
+    @DisplayName("重複的輸入應拋出例外")
+    void testDuplicateInput() {
+        Value a = new Value(1.0);
+        Value b = new Value(2.0);
+        Value out = a.mul(b);
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledGraph.compile(out, List.of(a, b, a)));
+    }
+
+    private static Value buildLoss(MLP mlp, double[][] xs, double[] ys, List<Value> inputs) {
+        Value loss = new Value(0);
+        for (int i = 0; i < xs.length; i++) {
+            List<Value> input = new ArrayList<>();
+            for (double x : xs[i]) {
+                input.add(new Value(x));
+            }
+            inputs.addAll(input);
+            loss = loss.add(mlp.forwardSingle(input).sub(ys[i]).pow(2));
+        }
+        return loss;
+    }
+
+    private static void sgd(MLP mlp) {
+        for (Value p : mlp.parameters()) {
+            p.setData(p.getData() - 0.05 * p.getGrad());
+        }
+    }
+}
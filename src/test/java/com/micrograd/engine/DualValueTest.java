@@ -0,0 +1,74 @@
+package com.micrograd.engine;
+
+import org.junit.jupiter.api.*;
+
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DualValue 前向模式自動微分測試")
+class DualValueTest {
+
+    private static final double TOL = 1e-9;
+
+    @Nested
+    @DisplayName("單一運算的導數")
+    class OpTests {
+
+        @Test
+        @DisplayName("加減乘除")
+        void testArithmetic() {
+            DualValue x = DualValue.variable(3.0);
+            DualValue c = DualValue.constant(2.0);
+
+            assertEquals(1.0, x.add(c).getTangent(), TOL);
+            assertEquals(-1.0, c.sub(x).getTangent(), TOL);
+            assertEquals(2.0, x.mul(c).getTangent(), TOL);
+            assertEquals(6.0, x.mul(x).getTangent(), TOL);
+            assertEquals(-2.0 / 9.0, c.div(x).getTangent(), TOL);
+            assertEquals(-0.5, x.neg().div(2.0).getTangent(), TOL);
+        }
+
+        @Test
+        @DisplayName("pow、exp")
+        void testPowExp() {
+            DualValue x = DualValue.variable(2.0);
+            assertEquals(8.0, x.pow(3).getData(), TOL);
+            assertEquals(12.0, x.pow(3).getTangent(), TOL);
+            assertEquals(Math.exp(2.0), x.exp().getTangent(), TOL);
+        }
+
+        @Test
+        @DisplayName("tanh、ReLU")
+        void testActivations() {
+            DualValue x = DualValue.variable(0.5);
+            double t = Math.tanh(0.5);
+            assertEquals(1 - t * t, x.tanh().getTangent(), TOL);
+            assertEquals(1.0, x.relu().getTangent(), TOL);
+            assertEquals(0.0, DualValue.variable(-0.5).relu().getTangent(), TOL);
+            assertEquals(0.0, DualValue.variable(-0.5).relu().getData(), TOL);
+        }
+    }
+
+    @Test
+    @DisplayName("複合表達式的導數與反向模式一致")
+    void testMatchesReverseMode() {
+        double x0 = 0.7;
+        double y0 = -1.3;
+
+        Value x = new Value(x0);
+        Value y = new Value(y0);
+        Value out = x.mul(y).add(x.pow(2)).tanh().add(y.exp().div(x)).relu();
+        out.backward();
+
+        // ∂out/∂x：x 為變數，y 為常數
+        Function<DualValue, DualValue> fx = dx -> {
+            DualValue dy = DualValue.constant(y0);
+            return dx.mul(dy).add(dx.pow(2)).tanh().add(dy.exp().div(dx)).relu();
+        };
+        DualValue dout = fx.apply(DualValue.variable(x0));
+
+        assertEquals(out.getData(), dout.getData(), TOL);
+        assertEquals(x.getGrad(), dout.getTangent(), 1e-6);
+    }
+}
@@ -0,0 +1,146 @@
+package com.micrograd.engine;
+
+import com.micrograd.nn.MLP;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * 閉包引擎 vs Tape 引擎 vs CompiledGraph（直譯 / bytecode）的效能比較
+ *
+ * 執行方式：
+ * mvn test-compile exec:java -Dexec.mainClass="com.micrograd.engine.TapeBenchmark" -Dexec.classpathScope=test
+ *
+ * 每一步都是完整的 forward + backward + SGD 更新，
+ * 報告 steps/sec 以及每步配置的記憶體量。
+ */
+public class TapeBenchmark {
+
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+
+    public static void main(String[] args) {
+        benchmark(Arrays.asList(3, 4, 4, 1), 4);
+        benchmark(Arrays.asList(16, 32, 32, 1), 32);
+        benchmark(Arrays.asList(16, 64, 64, 1), 256);
+    }
+
+    private static void benchmark(List<Integer> sizes, int batch) {
+        Random rng = new Random(1);
+        int nin = sizes.get(0);
+        double[][] xs = new double[batch][nin];
+        double[] ys = new double[batch];
+        for (int i = 0; i < xs.length; i++) {
+            for (int j = 0; j < nin; j++) {
+                xs[i][j] = rng.nextDouble() * 2 - 1;
+            }
+            ys[i] = rng.nextBoolean() ? 1.0 : -1.0;
+        }
+
+        MLP mlp = new MLP(sizes, new Random(42));
+        System.out.printf("MLP %s, %d 參數, batch=%d%n", sizes, mlp.numParameters(), xs.length);
+
+        run("Value.backward()", mlp, xs, ys, null, false);
+        run("backwardParallel()", mlp, xs, ys, null, true);
+        run("Tape.backward()", mlp, xs, ys, new Tape(1 << 16), false);
+        runCompiled(mlp, xs, ys, false);
+        runCompiled(mlp, xs, ys, true);
+    }
+
+    private static void run(String name, MLP mlp, double[][] xs, double[] ys, Tape tape, boolean parallel) {
+        measure(name, () -> step(mlp, xs, ys, tape, parallel));
+    }
+
+    private static void runCompiled(MLP mlp, double[][] xs, double[] ys, boolean bytecode) {
+        List<Value> inputs = new ArrayList<>();
+        Value loss = new Value(0);
+        for (double[] x : xs) {
+            List<Value> input = new ArrayList<>(x.length);
+            for (double v : x) {
+                input.add(new Value(v));
+            }
+            inputs.addAll(input);
+        }
+        for (int i = 0; i < xs.length; i++) {
+            List<Value> input = inputs.subList(i * xs[i].length, (i + 1) * xs[i].length);
+            loss = loss.add(mlp.forwardSingle(input).sub(ys[i]).pow(2));
+        }
+        CompiledGraph graph = CompiledGraph.compile(loss, inputs);
+        if (bytecode && !graph.generateBytecode()) {
+            System.out.println("bytecode 產生失敗，使用直譯重播");
+        }
+        double[] flat = inputs.stream().mapToDouble(Value::getData).toArray();
+        List<Value> params = mlp.parameters();
+
+        measure(bytecode ? "CompiledGraph+JIT" : "CompiledGraph", () -> {
+            graph.forward(flat);
+            for (Value p : params) {
+                p.setGrad(0.0);
+            }
+            graph.backward();
+            for (Value p : params) {
+                p.setData(p.getData() - 0.01 * p.getGrad());
+            }
+        });
+    }
+
+    private static void measure(String name, Runnable step) {
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) {
+            step.run();
+        }
+
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = bean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        long steps = 0;
+        long elapsed;
+        do {
+            step.run();
+            steps++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+
+        long bytes = bean.getThreadAllocatedBytes(threadId) - bytesBefore;
+        double seconds = elapsed / 1e9;
+
+        System.out.printf("%-20s %10.1f steps/sec  %10.1f KB/step  %8.1f MB/sec%n",
+                name,
+                steps / seconds,
+                bytes / 1024.0 / steps,
+                bytes / 1024.0 / 1024.0 / seconds);
+    }
+
+    private static void step(MLP mlp, double[][] xs, double[] ys, Tape tape, boolean parallel) {
+        if (tape != null) {
+            tape.clear();
+            tape.begin();
+        }
+
+        Value loss = new Value(0);
+        for (int i = 0; i < xs.length; i++) {
+            List<Value> input = new ArrayList<>(xs[i].length);
+            for (double x : xs[i]) {
+                input.add(new Value(x));
+            }
+            loss = loss.add(mlp.forwardSingle(input).sub(ys[i]).pow(2));
+        }
+
+        if (tape != null) {
+            tape.close();
+        }
+
+        mlp.zeroGrad();
+        if (parallel) {
+            loss.backwardParallel();
+        } else {
+            loss.backward();
+        }
+        for (Value p : mlp.parameters()) {
+            p.setData(p.getData() - 0.01 * p.getGrad());
+        }
+    }
+}
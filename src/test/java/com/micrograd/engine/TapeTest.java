@@ -0,0 +1,183 @@
+package com.micrograd.engine;
+
+import com.micrograd.nn.MLP;
+import com.micrograd.viz.GraphVisualizer;
+import org.junit.jupiter.api.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tape 計算帶測試")
+class TapeTest {
+
+    private static final double TOL = 1e-9;
+
+    @Test
+    @DisplayName("梯度與閉包引擎一致")
+    void testMatchesClosureEngine() {
+        // f(a,b,c) = tanh(a * b + c) + exp(a) ** 2 - relu(b) / c
+        double[] closure = gradients(false);
+        double[] taped = gradients(true);
+        assertArrayEquals(closure, taped, TOL);
+    }
+
+    @Test
+    @DisplayName("變數重複使用：a * a")
+    void testSquare() {
+        Value a = new Value(3.0);
+        try (Tape tape = Tape.record()) {
+            Value b = a.mul(a);
+            b.backward();
+            assertEquals(9.0, b.getData(), TOL);
+            assertEquals(1.0, b.getGrad(), TOL);
+        }
+        assertEquals(6.0, a.getGrad(), TOL);
+    }
+
+    @Test
+    @DisplayName("MLP 在 tape 上的梯度與閉包引擎一致")
+    void testMLPOnTape() {
+        MLP mlp = new MLP(Arrays.asList(3, 4, 1), new Random(7));
+        double[] x = {0.5, -1.0, 2.0};
+
+        Value out = mlp.forwardSingle(toValues(x));
+        out.backward();
+        double[] expected = grads(mlp);
+
+        mlp.zeroGrad();
+        try (Tape tape = Tape.record()) {
+            Value taped = mlp.forwardSingle(toValues(x));
+            assertEquals(out.getData(), taped.getData(), TOL);
+            taped.backward();
+        }
+        assertArrayEquals(expected, grads(mlp), TOL);
+    }
+
+    @Test
+    @DisplayName("clear 後可重複使用")
+    void testClearAndReuse() {
+        Value a = new Value(2.0);
+        Tape tape = new Tape();
+        for (int step = 0; step < 3; step++) {
+            tape.begin();
+            a.setGrad(0.0);
+            Value b = a.mul(a).add(a);
+            tape.close();
+            b.backward();
+            assertEquals(5.0, a.getGrad(), TOL);
+            tape.clear();
+        }
+        assertEquals(0, tape.size());
+    }
+
+    @Test
+    @DisplayName("未 clear 就重複使用時讀取參數更新後的值")
+    void testReuseAfterParameterUpdate() {
+        Value w = new Value(2.0);
+        Tape tape = new Tape();
+        tape.begin();
+        assertEquals(6.0, w.mul(3).getData(), TOL);
+        tape.close();
+
+        w.setData(10.0);
+        tape.begin();
+        Value out = w.mul(3);
+        tape.close();
+        assertEquals(30.0, out.getData(), TOL);
+        out.backward();
+        assertEquals(3.0, w.getGrad(), TOL);
+    }
+
+    @Test
+    @DisplayName("clear 不會解除葉節點在另一條 tape 上的註冊")
+    void testClearKeepsOtherTapeLeaf() {
+        Value w = new Value(2.0);
+        Tape first = new Tape();
+        first.begin();
+        w.mul(3);
+        first.close();
+
+        Tape second = new Tape();
+        second.begin();
+        Value out = w.mul(w);
+        second.close();
+        first.clear();
+        assertSame(second, w.tape);
+        out.backward();
+        assertEquals(4.0, w.getGrad(), TOL);
+    }
+
+    @Test
+    @DisplayName("tape 上的節點可以取得運算元，計算圖與閉包引擎相同")
+    void testGetPrev() {
+        Value a = new Value(2.0);
+        Value b = new Value(-1.0);
+        Value out;
+        Value product;
+        try (Tape tape = Tape.record()) {
+            product = a.mul(b);
+            out = Value.sum(List.of(product, a, product.tanh())).add(1.0);
+        }
+        Value sum = out.getPrev().iterator().next();
+        assertEquals(3, sum.getPrev().size());
+        assertTrue(sum.getPrev().contains(product));
+        assertEquals(Set.of(a, b), product.getPrev());
+        assertTrue(a.getPrev().isEmpty());
+
+        Value ref = Value.sum(List.of(a.mul(b), a, a.mul(b).tanh())).add(1.0);
+        List<Value> taped = Value.topologicalOrder(out);
+        List<Value> closure = Value.topologicalOrder(ref);
+        assertEquals(closure.size() - 1, taped.size(), "tape 上 a * b 只記錄一次");
+        assertSame(out, taped.get(taped.size() - 1));
+        assertEquals(6, GraphVisualizer.trace(out).nodes.size());
+    }
+
+    @Test
+    @DisplayName("離開記錄範圍後的運算仍沿用原本的 tape")
+    void testOpsAfterClose() {
+        Value a = new Value(2.0);
+        Value b;
+        try (Tape tape = Tape.record()) {
+            b = a.mul(a);
+        }
+        Value c = b.add(1.0);
+        c.backward();
+        assertEquals(5.0, c.getData(), TOL);
+        assertEquals(4.0, a.getGrad(), TOL);
+    }
+
+    private static double[] gradients(boolean useTape) {
+        Value a = new Value(0.7);
+        Value b = new Value(-1.3);
+        Value c = new Value(2.1);
+        Tape tape = useTape ? Tape.record() : null;
+        Value out = a.mul(b).add(c).tanh()
+                .add(a.exp().pow(2))
+                .sub(b.relu().div(c))
+                .add(Value.dot(List.of(a, b), List.of(c, a)))
+                .mul(Value.sum(List.of(a, b, c, b)))
+                .mul(0.5).sub(3.0).neg();
+        out.backward();
+        if (tape != null) {
+            tape.close();
+        }
+        return new double[]{out.getData(), a.getGrad(), b.getGrad(), c.getGrad()};
+    }
+
+    private static List<Value> toValues(double[] x) {
+        List<Value> values = new ArrayList<>();
+        for (double v : x) {
+            values.add(new Value(v));
+        }
+        return values;
+    }
+
+    private static double[] grads(MLP mlp) {
+        List<Value> params = mlp.parameters();
+        double[] g = new double[params.size()];
+        for (int i = 0; i < g.length; i++) {
+            g[i] = params.get(i).getGrad();
+        }
+        return g;
+    }
+}
@@ -1,6 +1,13 @@
 package com.micrograd.engine;
 
+import com.micrograd.nn.MLP;
 import org.junit.jupiter.api.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("Value 自動微分引擎測試")
@@ -46,6 +53,22 @@ class ValueTest {
             assertEquals(Math.tanh(1.0), b.tanh().getData(), TOL);
         }
 
+        @Test
+        @DisplayName("tanh 大輸入時飽和為 ±1，各種模式與 Math.tanh 一致")
+        void testTanhSaturates() {
+            for (double x : new double[]{400.0, -400.0, 1e308}) {
+                double expected = Math.tanh(x);
+                assertEquals(expected, new Value(x).tanh().getData(), 0.0);
+                try (Tape tape = Tape.record()) {
+                    assertEquals(expected, new Value(x).tanh().getData(), 0.0);
+                }
+                try (Value.NoGrad ignored = Value.noGrad()) {
+                    assertEquals(expected, new Value(x).tanh().getData(), 0.0);
+                }
+                assertEquals(expected, new DualValue(x, 1.0).tanh().getData(), 0.0);
+            }
+        }
+
         @Test
         @DisplayName("ReLU")
         void testRelu() {
@@ -136,6 +159,271 @@ class ValueTest {
         }
     }
 
+    @Nested
+    @DisplayName("融合運算")
+    class FusedOpTests {
+
+        @Test
+        @DisplayName("sum 的值與梯度")
+        void testSum() {
+            Value a = new Value(1.0);
+            Value b = new Value(2.0);
+            Value c = new Value(3.0);
+            Value s = Value.sum(List.of(a, b, c, a));
+            s.backward();
+
+            assertEquals(7.0, s.getData(), TOL);
+            assertEquals(2.0, a.getGrad(), TOL);
+            assertEquals(1.0, b.getGrad(), TOL);
+        }
+
+        @Test
+        @DisplayName("空的 sum / dot 是常數 0 的葉節點，不是沒有運算元的 SUM / DOT 節點")
+        void testEmptySum() {
+            for (Value empty : new Value[]{Value.sum(List.of()), Value.dot(List.of(), List.of())}) {
+                assertEquals(0.0, empty.getData(), 0.0);
+                assertEquals(Tape.LEAF, empty.code);
+            }
+            try (Tape tape = Tape.record()) {
+                assertEquals(0.0, Value.sum(List.of()).getData(), 0.0);
+            }
+
+            Value x = new Value(2.0);
+            Value w = new Value(3.0);
+            Value out = x.mul(w).add(Value.sum(List.of()));
+            CompiledGraph graph = CompiledGraph.compile(out, List.of(x));
+            assertEquals(12.0, graph.forward(4.0), TOL);
+            graph.backward();
+            assertEquals(3.0, graph.getInputGrad(0), TOL);
+        }
+
+        @Test
+        @DisplayName("dot 與 mul / add 鏈結果一致")
+        void testDotMatchesChain() {
+            Value w1 = new Value(0.5);
+            Value w2 = new Value(-2.0);
+            Value x1 = new Value(3.0);
+            Value x2 = new Value(1.5);
+
+            Value dot = Value.dot(List.of(w1, w2), List.of(x1, x2)).tanh();
+            dot.backward();
+            double[] fused = {dot.getData(), w1.getGrad(), w2.getGrad(), x1.getGrad(), x2.getGrad()};
+
+            Value v1 = new Value(0.5);
+            Value v2 = new Value(-2.0);
+            Value y1 = new Value(3.0);
+            Value y2 = new Value(1.5);
+            Value chain = v1.mul(y1).add(v2.mul(y2)).tanh();
+            chain.backward();
+            double[] expected = {chain.getData(), v1.getGrad(), v2.getGrad(), y1.getGrad(), y2.getGrad()};
+
+            assertArrayEquals(expected, fused, TOL);
+        }
+
+        @Test
+        @DisplayName("dot 長度不符應拋出例外")
+        void testDotSizeMismatch() {
+            assertThrows(IllegalArgumentException.class, () ->
+                    Value.dot(List.of(new Value(1.0)), List.of()));
+        }
+    }
+
+    @Nested
+    @DisplayName("常數運算")
+    class ConstantOpTests {
+
+        @Test
+        @DisplayName("常數運算不建立葉節點")
+        void testNoConstantLeaves() {
+            Value a = new Value(2.0);
+            Value out = a.mul(3.0).add(1.0).neg().sub(4.0).div(2.0);
+
+            // a, *3, +1, *-1, +-4, *0.5
+            assertEquals(6, Value.topologicalOrder(out).size());
+            assertEquals(-5.5, out.getData(), TOL);
+
+            out.backward();
+            assertEquals(-1.5, a.getGrad(), TOL);
+        }
+
+        @Test
+        @DisplayName("加 0、乘 1 回傳新節點，不是運算元本身")
+        void testIdentityConstants() {
+            Value a = new Value(2.0);
+            Value[] results = {a.add(0.0), a.sub(0.0), a.mul(1.0), a.div(1.0)};
+            for (Value r : results) {
+                assertNotSame(a, r);
+                assertEquals(2.0, r.getData(), TOL);
+            }
+
+            results[0].setData(5.0);
+            assertEquals(2.0, a.getData(), TOL);
+            Value out = Value.sum(Arrays.asList(results));
+            out.backward();
+            assertEquals(4.0, a.getGrad(), TOL);
+        }
+    }
+
+    @Nested
+    @DisplayName("No-grad 模式")
+    class NoGradTests {
+
+        @Test
+        @DisplayName("區塊內只計算數值，不建立計算圖")
+        void testNoGraph() {
+            Value a = new Value(2.0);
+            Value b = new Value(-3.0);
+            Value out;
+            try (Value.NoGrad ignored = Value.noGrad()) {
+                assertFalse(Value.isGradEnabled());
+                out = a.mul(b).add(1.0).tanh().exp().pow(2)
+                        .add(Value.dot(List.of(a), List.of(b))).relu();
+            }
+            assertTrue(Value.isGradEnabled());
+
+            Value ref = a.mul(b).add(1.0).tanh().exp().pow(2)
+                    .add(Value.dot(List.of(a), List.of(b))).relu();
+            assertEquals(ref.getData(), out.getData(), TOL);
+            assertTrue(out.getPrev().isEmpty());
+            assertEquals(1, Value.topologicalOrder(out).size());
+        }
+
+        @Test
+        @DisplayName("可巢狀使用，重複 close 不影響外層")
+        void testNested() {
+            try (Value.NoGrad outer = Value.noGrad()) {
+                try (Value.NoGrad inner = Value.noGrad()) {
+                    inner.close();
+                }
+                assertFalse(Value.isGradEnabled());
+            }
+            assertTrue(Value.isGradEnabled());
+            assertEquals(2, new Value(1.0).add(new Value(2.0)).getPrev().size());
+        }
+
+        @Test
+        @DisplayName("優先於 Tape 錄製")
+        void testOverridesTape() {
+            Value a = new Value(2.0);
+            try (Tape tape = Tape.record(); Value.NoGrad ignored = Value.noGrad()) {
+                Value out = a.mul(a);
+                assertEquals(4.0, out.getData(), TOL);
+                assertEquals(0, tape.size());
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("平行反向傳播")
+    class ParallelBackwardTests {
+
+        private Value batchLoss(MLP mlp, int batch) {
+            Random rng = new Random(3);
+            List<Value> terms = new ArrayList<>();
+            for (int i = 0; i < batch; i++) {
+                List<Value> x = new ArrayList<>();
+                for (int j = 0; j < 4; j++) {
+                    x.add(new Value(rng.nextDouble() * 2 - 1));
+                }
+                terms.add(mlp.forwardSingle(x).sub(rng.nextBoolean() ? 1.0 : -1.0).pow(2));
+            }
+            return Value.sum(terms).div(batch).relu().exp();
+        }
+
+        @Test
+        @DisplayName("寬計算圖的梯度與序列版一致")
+        void testMatchesSerial() {
+            MLP serial = new MLP(Arrays.asList(4, 16, 16, 1), new Random(42));
+            MLP parallel = new MLP(Arrays.asList(4, 16, 16, 1), new Random(42));
+
+            Value expected = batchLoss(serial, 64);
+            Value actual = batchLoss(parallel, 64);
+            assertTrue(Value.topologicalOrder(actual).size() >= ParallelBackward.MIN_NODES);
+
+            expected.backward();
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                actual.backwardParallel(pool);
+            } finally {
+                pool.shutdown();
+            }
+
+            List<Value> ps = serial.parameters();
+            List<Value> pp = parallel.parameters();
+            for (int i = 0; i < ps.size(); i++) {
+                assertEquals(ps.get(i).getGrad(), pp.get(i).getGrad(), 1e-9);
+            }
+        }
+
+        @Test
+        @DisplayName("共用參數的計算圖同時平行反向傳播，各自輸入的梯度不受影響")
+        void testConcurrentSharedParameters() throws Exception {
+            MLP mlp = new MLP(Arrays.asList(4, 16, 16, 1), new Random(42));
+            List<Value> inputs = new ArrayList<>();
+            Value reference = sharedLoss(mlp, inputs);
+            reference.backward();
+            double[] expected = inputs.stream().mapToDouble(Value::getGrad).toArray();
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            ExecutorService callers = Executors.newFixedThreadPool(2);
+            try {
+                List<Future<double[]>> results = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    results.add(callers.submit(() -> {
+                        List<Value> own = new ArrayList<>();
+                        sharedLoss(mlp, own).backwardParallel(pool);
+                        return own.stream().mapToDouble(Value::getGrad).toArray();
+                    }));
+                }
+                for (Future<double[]> result : results) {
+                    assertArrayEquals(expected, result.get(), 1e-9);
+                }
+            } finally {
+                callers.shutdown();
+                pool.shutdown();
+            }
+        }
+
+        /** 與 batchLoss 相同，但把輸入節點收集到 inputs */
+        private Value sharedLoss(MLP mlp, List<Value> inputs) {
+            Random rng = new Random(3);
+            List<Value> terms = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                List<Value> x = new ArrayList<>();
+                for (int j = 0; j < 4; j++) {
+                    x.add(new Value(rng.nextDouble() * 2 - 1));
+                }
+                inputs.addAll(x);
+                terms.add(mlp.forwardSingle(x).sub(rng.nextBoolean() ? 1.0 : -1.0).pow(2));
+            }
+            return Value.sum(terms).div(64).relu().exp();
+        }
+
+        @Test
+        @DisplayName("小型計算圖與重複運算元退回序列版")
+        void testSmallGraph() {
+            Value a = new Value(3.0);
+            Value b = a.mul(a).add(a);
+            b.backwardParallel();
+            assertEquals(7.0, a.getGrad(), TOL);
+        }
+
+        @Test
+        @DisplayName("含自訂運算的計算圖退回序列版")
+        void testCustomOp() {
+            List<Value> leaves = new ArrayList<>();
+            for (int i = 0; i < ParallelBackward.MIN_NODES; i++) {
+                leaves.add(new Value(i));
+            }
+            Value custom = new Value(1.0, Set.of(leaves.get(0)), "custom");
+            leaves.add(custom);
+            Value out = Value.sum(leaves);
+            out.backwardParallel();
+            assertEquals(1.0, leaves.get(1).getGrad(), TOL);
+            assertEquals(1.0, custom.getGrad(), TOL);
+        }
+    }
+
     @Nested
     @DisplayName("數值梯度檢查")
     class NumericalGradientCheck {
@@ -196,5 +484,30 @@ class ValueTest {
             // dc/da = 4a = 8
             assertEquals(8.0, a.getGrad(), TOL);
         }
+
+        @Test
+        @DisplayName("深層計算圖：反向傳播不會 StackOverflow")
+        void testDeepGraph() {
+            Value a = new Value(1.0);
+            Value out = a;
+            for (int i = 0; i < 200_000; i++) {
+                out = out.add(a);
+            }
+            out.backward();
+
+            assertEquals(200_001.0, out.getData(), TOL);
+            assertEquals(200_001.0, a.getGrad(), TOL);
+        }
+
+        @Test
+        @DisplayName("重複呼叫 backward 時梯度累加")
+        void testRepeatedBackward() {
+            Value a = new Value(2.0);
+            Value b = a.mul(a);
+            b.backward();
+            b.backward();
+
+            assertEquals(8.0, a.getGrad(), TOL);
+        }
     }
-}
\ No newline at end of file
+}
@@ -4,6 +4,7 @@ import com.micrograd.data.Vocabulary;
 import com.micrograd.tensor.Tensor;
 import org.junit.jupiter.api.*;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("BigramCounter 計數模型測試")
@@ -97,4 +98,116 @@ class BigramCounterTest {
         // 未出現的 bigram 機率應為 0
         assertEquals(0.0, probs.get(2, 3), 1e-10);
     }
+
+    @Test
+    @DisplayName("平行訓練與單執行緒結果相同")
+    void testParallelTraining() {
+        Random rng = new Random(3);
+        int n = 200_000;
+        int[][] bigrams = new int[2][n];
+        for (int i = 0; i < n; i++) {
+            bigrams[0][i] = rng.nextInt(vocab.size());
+            bigrams[1][i] = rng.nextInt(vocab.size());
+        }
+
+        BigramCounter parallel = new BigramCounter(vocab, 1.0);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.train(bigrams, pool);
+        } finally {
+            pool.shutdown();
+        }
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            model.train(bigrams, single);
+        } finally {
+            single.shutdown();
+        }
+
+        for (int i = 0; i < vocab.size(); i++) {
+            for (int j = 0; j < vocab.size(); j++) {
+                assertEquals(model.getCounts().get(i, j), parallel.getCounts().get(i, j));
+                assertEquals(model.getProbs().get(i, j), parallel.getProbs().get(i, j));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("增量更新")
+    class IncrementalUpdates {
+
+        @Test
+        @DisplayName("observe 與訓練同一個單字的 bigram 結果相同")
+        void testObserveMatchesTrain() {
+            model.observe(" Emma");
+            BigramCounter trained = new BigramCounter(vocab, 1.0);
+            int e = vocab.encode('e');
+            int m = vocab.encode('m');
+            int a = vocab.encode('a');
+            trained.train(new int[][]{{0, e, m, m, a}, {e, m, m, a, 0}});
+
+            for (int i = 0; i < vocab.size(); i++) {
+                for (int j = 0; j < vocab.size(); j++) {
+                    assertEquals(trained.getProbs().get(i, j), model.getProbs().get(i, j), 1e-12);
+                }
+            }
+            assertTrue(model.checkNormalization());
+        }
+
+        @Test
+        @DisplayName("只重新正規化計數改變的列")
+        void testOnlyDirtyRowsRenormalized() {
+            model.train(new int[][]{{0, 1, 2}, {1, 2, 0}});
+            Tensor probs = model.getProbs();
+            probs.set(5, 5, 42.0);  // 沒有被更新的列不應被重算
+
+            model.update(new int[]{1, 1}, new int[]{3, 3});
+            assertSame(probs, model.getProbs());
+            assertEquals(42.0, probs.get(5, 5));
+            assertEquals(3.0 / 30.0, probs.get(1, 3), 1e-12);  // (2 + 1) / (3 + 27)
+            assertEquals(2.0 / 30.0, probs.get(1, 2), 1e-12);
+        }
+
+        @Test
+        @DisplayName("loss 與機率使用更新後的計數")
+        void testLazyAccess() {
+            int[][] bigrams = {{0, 1}, {1, 0}};
+            model.train(bigrams);
+            double before = model.loss(bigrams);
+            for (int k = 0; k < 10; k++) {
+                model.observe("a");
+            }
+            assertTrue(model.loss(bigrams) < before);
+            assertEquals(12.0 / 38.0, model.getProbs().get(0, 1), 1e-12);  // (11 + 1) / (11 + 27)
+            assertNotNull(model.sample(new Random(0)));
+        }
+
+        @Test
+        @DisplayName("update 有無效的索引時整批不套用，機率不會停在舊值")
+        void testUpdateIsAtomic() {
+            model.getProbs();
+            assertThrows(IndexOutOfBoundsException.class,
+                    () -> model.update(new int[]{1, 99}, new int[]{2, 2}));
+            assertEquals(0.0, model.getCounts().get(1, 2));
+
+            model.update(new int[]{1}, new int[]{2});
+            assertEquals(2.0 / 28.0, model.getProbs().get(1, 2), 1e-12);  // (1 + 1) / (1 + 27)
+        }
+
+        @Test
+        @DisplayName("空白的單字被略過")
+        void testObserveEmptyWord() {
+            model.observe("");
+            model.observe("   ");
+            assertEquals(0.0, model.getCounts().sum());
+        }
+
+        @Test
+        @DisplayName("無效的單字不改變計數")
+        void testInvalidObservation() {
+            assertThrows(IllegalArgumentException.class, () -> model.observe("a1"));
+            assertEquals(0.0, model.getCounts().sum());
+            assertThrows(IllegalArgumentException.class, () -> model.update(new int[]{0}, new int[0]));
+        }
+    }
 }
@@ -0,0 +1,102 @@
+package com.micrograd.model;
+
+import com.micrograd.data.CorpusCache;
+import com.micrograd.data.DataLoader;
+import com.micrograd.data.Vocabulary;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BigramCounts 平行計數測試")
+class BigramCountsTest {
+
+    private static final int V = 27;
+
+    /** 超過平行門檻的隨機 bigram */
+    private static int[][] randomBigrams(int n, long seed) {
+        Random rng = new Random(seed);
+        int[][] bigrams = new int[2][n];
+        for (int i = 0; i < n; i++) {
+            bigrams[0][i] = rng.nextInt(V);
+            bigrams[1][i] = rng.nextInt(V);
+        }
+        return bigrams;
+    }
+
+    private static long[] serialCount(int[][] bigrams) {
+        long[] counts = new long[V * V];
+        for (int i = 0; i < bigrams[0].length; i++) {
+            counts[bigrams[0][i] * V + bigrams[1][i]]++;
+        }
+        return counts;
+    }
+
+    @Test
+    @DisplayName("不同執行緒數的結果完全相同")
+    void testDeterministic() {
+        int[][] bigrams = randomBigrams(BigramCounts.PARALLEL_THRESHOLD * 4 + 123, 1);
+        long[] expected = serialCount(bigrams);
+        for (int threads : new int[]{1, 2, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                assertArrayEquals(expected, BigramCounts.count(bigrams[0], bigrams[1], V, pool),
+                        "threads = " + threads);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("小資料在呼叫端執行緒上統計")
+    void testSmallInput() {
+        int[][] bigrams = {{0, 1, 1}, {1, 2, 2}};
+        long[] counts = BigramCounts.count(bigrams[0], bigrams[1], V);
+        assertEquals(1, counts[1]);
+        assertEquals(2, counts[V + 2]);
+        assertEquals(3, Arrays.stream(counts).sum());
+    }
+
+    @Test
+    @DisplayName("索引超出詞彙表或長度不符時丟出例外")
+    void testInvalidInput() {
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> BigramCounts.count(new int[]{0}, new int[]{V}, V));
+        assertThrows(IllegalArgumentException.class,
+                () -> BigramCounts.count(new int[]{0, 1}, new int[]{0}, V));
+    }
+
+    @Test
+    @DisplayName("在語料快取上統計與 bigram 陣列相同")
+    void testCorpusCache(@TempDir Path dir) throws IOException {
+        Path source = dir.resolve("names.txt");
+        StringBuilder sb = new StringBuilder();
+        Random rng = new Random(7);
+        for (int w = 0; w < 20000; w++) {
+            int len = 1 + rng.nextInt(8);
+            for (int i = 0; i < len; i++) {
+                sb.append((char) ('a' + rng.nextInt(26)));
+            }
+            sb.append('\n');
+        }
+        Files.writeString(source, sb);
+        Vocabulary vocab = new Vocabulary();
+        int[][] bigrams = new DataLoader(source.toString(), vocab).getBigrams();
+        CorpusCache cache = CorpusCache.openOrBuild(source, dir.resolve("names.cache"), vocab);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertArrayEquals(serialCount(bigrams), BigramCounts.count(cache, V, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -86,4 +86,59 @@ class BigramNeuralNetTest {
             assertEquals(1.0, rowSum, 1e-5, "Row " + i + " should sum to 1");
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("float32 訓練結果與 float64 接近")
+    void testFloat32Training() {
+        int[][] bigrams = {
+                {0, 1, 2, 0, 1, 3, 4, 5},
+                {1, 2, 0, 1, 3, 0, 5, 0}
+        };
+        BigramNeuralNet f64 = new BigramNeuralNet(vocab, 50.0, 50, new Random(42));
+        BigramNeuralNet f32 = new BigramNeuralNet(vocab, 50.0, 50, new Random(42), true);
+        assertTrue(f32.isFloat32());
+        assertFalse(f64.isFloat32());
+
+        double initialLoss = f32.loss(bigrams);
+        f64.train(bigrams);
+        f32.train(bigrams);
+        double finalLoss = f32.loss(bigrams);
+
+        assertTrue(finalLoss < initialLoss,
+                "Loss should decrease: " + initialLoss + " -> " + finalLoss);
+        assertEquals(f64.loss(bigrams), finalLoss, 1e-3);
+
+        var probs = f32.getProbs();
+        for (int i = 0; i < vocab.size(); i++) {
+            assertEquals(1.0, probs.getRow(i).sum(), 1e-5, "Row " + i + " should sum to 1");
+        }
+
+        Random rng = new Random(1);
+        for (int i = 0; i < 10; i++) {
+            for (char c : f32.sample(rng).toCharArray()) {
+                assertTrue(vocab.contains(c), "Invalid char: " + c);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("小批次訓練：損失下降，batchSize 等於樣本數時與全批次相同")
+    void testMiniBatchTraining() {
+        int[][] bigrams = {
+                {0, 1, 2, 0, 1, 3, 4, 5, 0, 2},
+                {1, 2, 0, 1, 3, 0, 5, 0, 2, 1}
+        };
+        for (boolean float32 : new boolean[]{false, true}) {
+            BigramNeuralNet mini = new BigramNeuralNet(vocab, 10.0, 20, new Random(42), float32);
+            double initialLoss = mini.loss(bigrams);
+            mini.train(bigrams, 3, new Random(1));
+            assertTrue(mini.loss(bigrams) < initialLoss);
+
+            BigramNeuralNet full = new BigramNeuralNet(vocab, 10.0, 20, new Random(42), float32);
+            BigramNeuralNet single = new BigramNeuralNet(vocab, 10.0, 20, new Random(42), float32);
+            full.train(bigrams);
+            single.train(bigrams, bigrams[0].length, new Random(1));
+            assertArrayEquals(full.getWeights().toArray(), single.getWeights().toArray(), 1e-6);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.micrograd.model;
+
+import com.micrograd.data.DataLoader;
+import com.micrograd.data.Vocabulary;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CountShard 計數分片測試")
+class CountShardTest {
+
+    @TempDir
+    Path dir;
+
+    private Vocabulary vocab;
+    private Path first;
+    private Path second;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        vocab = new Vocabulary();
+        first = dir.resolve("a.txt");
+        second = dir.resolve("b.txt");
+        Files.writeString(first, "emma\nolivia\nava\n");
+        Files.writeString(second, "Zoe\nbad word\nisabella\nmia\n");
+    }
+
+    private long[] countsOf(Path... files) throws IOException {
+        int v = vocab.size();
+        long[] counts = new long[v * v];
+        for (Path file : files) {
+            int[][] bigrams = new DataLoader(file.toString(), vocab).getBigrams();
+            for (int i = 0; i < bigrams[0].length; i++) {
+                counts[bigrams[0][i] * v + bigrams[1][i]]++;
+            }
+        }
+        return counts;
+    }
+
+    @Test
+    @DisplayName("統計結果與 DataLoader 的 bigram 相同")
+    void testCount() throws IOException {
+        CountShard shard = CountShard.count(second, vocab);
+        assertArrayEquals(countsOf(second), shard.getCounts());
+        assertEquals(3, shard.getWordCount());
+        assertEquals(3 + 8 + 3 + 3, shard.getBigramCount());
+        assertEquals(1, shard.count(vocab.encode('z'), vocab.encode('o')));
+        assertEquals(Files.size(second), shard.getSourceSize());
+    }
+
+    @Test
+    @DisplayName("寫出再讀回內容不變")
+    void testRoundTrip() throws IOException {
+        CountShard shard = CountShard.count(first, vocab);
+        Path file = dir.resolve("a.shard");
+        shard.write(file);
+
+        CountShard read = CountShard.read(file, vocab);
+        assertArrayEquals(shard.getCounts(), read.getCounts());
+        assertEquals(shard.getSource(), read.getSource());
+        assertEquals(shard.getSourceChecksum(), read.getSourceChecksum());
+        assertEquals(shard.getSourceModified(), read.getSourceModified());
+        assertEquals(shard.getWordCount(), read.getWordCount());
+        assertEquals(shard.getBigramCount(), read.getBigramCount());
+    }
+
+    @Test
+    @DisplayName("損壞或不是 shard 的檔案無法讀取")
+    void testCorrupted() throws IOException {
+        Path file = dir.resolve("a.shard");
+        CountShard.count(first, vocab).write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> CountShard.read(file, vocab));
+
+        Files.writeString(file, "not a shard");
+        assertThrows(IOException.class, () -> CountShard.read(file, vocab));
+    }
+
+    @Test
+    @DisplayName("合併 shard 等於一起統計；同一個來源不能重複")
+    void testMerge() throws IOException {
+        CountShard a = CountShard.count(first, vocab);
+        CountShard b = CountShard.count(second, vocab);
+        assertArrayEquals(countsOf(first, second), CountShard.merge(List.of(a, b), vocab));
+        assertThrows(IllegalArgumentException.class, () -> CountShard.merge(List.of(a, a), vocab));
+    }
+
+    @Test
+    @DisplayName("只有改變的來源檔會重新統計")
+    void testUpdate() throws IOException {
+        Path shardA = dir.resolve("a.shard");
+        Path shardB = dir.resolve("b.shard");
+        CountShard.update(first, shardA, vocab);
+        CountShard.update(second, shardB, vocab);
+        FileTime writtenB = Files.getLastModifiedTime(shardB);
+
+        Files.writeString(first, "ann\n");
+        Files.setLastModifiedTime(first, FileTime.fromMillis(0));
+        CountShard a = CountShard.update(first, shardA, vocab);
+        CountShard b = CountShard.update(second, shardB, vocab);
+        assertEquals(1, a.getWordCount());
+        assertTrue(b.isUpToDate(second));
+        assertEquals(writtenB, Files.getLastModifiedTime(shardB), "未改變的 shard 不應重寫");
+
+        BigramCounter model = new BigramCounter(vocab, 1.0);
+        model.train(List.of(a, b));
+        BigramCounter expected = new BigramCounter(vocab, 1.0);
+        int[][] ann = new DataLoader(first.toString(), vocab).getBigrams();
+        int[][] rest = new DataLoader(second.toString(), vocab).getBigrams();
+        expected.train(ann);
+        expected.train(rest);
+        for (int i = 0; i < vocab.size(); i++) {
+            for (int j = 0; j < vocab.size(); j++) {
+                assertEquals(expected.getProbs().get(i, j), model.getProbs().get(i, j), 1e-12);
+            }
+        }
+    }
+}
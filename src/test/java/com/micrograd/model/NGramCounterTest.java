@@ -0,0 +1,191 @@
+package com.micrograd.model;
+
+import com.micrograd.data.CorpusCache;
+import com.micrograd.data.DataLoader;
+import com.micrograd.data.Vocabulary;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("NGramCounter 稀疏 n-gram 模型測試")
+class NGramCounterTest {
+
+    private static final double TOL = 1e-12;
+
+    @TempDir
+    Path dir;
+
+    private Vocabulary vocab;
+    private Path source;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        vocab = new Vocabulary();
+        source = dir.resolve("names.txt");
+        Files.writeString(source, "emma\nolivia\nava\nisabella\nsophia\nmia\namelia\nella\nemily\nanna\n");
+    }
+
+    private DataLoader loader() throws IOException {
+        return new DataLoader(source.toString(), vocab);
+    }
+
+    private int[] tokens(String context) {
+        int[] result = new int[context.length()];
+        for (int i = 0; i < context.length(); i++) {
+            result[i] = vocab.encode(context.charAt(i));
+        }
+        return result;
+    }
+
+    @Nested
+    @DisplayName("機率")
+    class Probabilities {
+
+        @Test
+        @DisplayName("任何 context 的分佈總和為 1，且與 prob 一致")
+        void testDistributionNormalized() throws IOException {
+            NGramCounter model = new NGramCounter(vocab, 4);
+            model.train(loader().getNGrams(4));
+            for (String context : new String[]{"...", "..e", "emm", "lla", "zzz", "q.x"}) {
+                double[] dist = model.distribution(tokens(context));
+                assertEquals(1.0, Arrays.stream(dist).sum(), 1e-9, context);
+                for (int w = 0; w < vocab.size(); w++) {
+                    assertEquals(dist[w], model.prob(tokens(context), w), TOL, context);
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("n = 1 為 add-smoothing 的字元頻率")
+        void testUnigram() {
+            NGramCounter model = new NGramCounter(vocab, 1, 1.0);
+            int a = vocab.encode('a');
+            model.train(new int[][]{{a, a, 0}});
+            assertEquals(3.0 / 30.0, model.prob(new int[0], a), TOL);  // (2 + 1) / (3 + 27)
+            assertEquals(1.0 / 30.0, model.prob(new int[0], vocab.encode('z')), TOL);
+        }
+
+        @Test
+        @DisplayName("沒出現過的 context 退回較短的 context")
+        void testBackoff() throws IOException {
+            NGramCounter trigram = new NGramCounter(vocab, 3);
+            NGramCounter bigram = new NGramCounter(vocab, 2);
+            trigram.train(loader().getNGrams(3));
+            bigram.train(loader().getBigrams());
+
+            // "qe" 沒出現過，"e" 有：與 bigram 模型的 P(· | e) 相同
+            assertArrayEquals(bigram.distribution(tokens("e")), trigram.distribution(tokens("qe")), TOL);
+        }
+
+        @Test
+        @DisplayName("Witten–Bell 插值")
+        void testInterpolation() {
+            NGramCounter model = new NGramCounter(vocab, 2, 1.0);
+            int a = vocab.encode('a');
+            int b = vocab.encode('b');
+            // . → a 兩次、. → b 一次
+            model.train(new int[][]{{0, 0, 0}, {a, a, b}});
+            double unigramA = (2 + 1.0) / (3 + 27.0);
+            // c(.) = 3, T(.) = 2
+            assertEquals((2 + 2 * unigramA) / (3 + 2), model.prob(new int[]{0}, a), TOL);
+        }
+    }
+
+    @Nested
+    @DisplayName("訓練與取樣")
+    class Training {
+
+        @Test
+        @DisplayName("較長的 context 在訓練資料上的損失較低")
+        void testLongerContextLowersLoss() throws IOException {
+            DataLoader loader = loader();
+            double previous = Double.MAX_VALUE;
+            for (int n = 1; n <= 5; n++) {
+                NGramCounter model = new NGramCounter(vocab, n);
+                int[][] ngrams = loader.getNGrams(n);
+                model.train(ngrams);
+                double loss = model.loss(ngrams);
+                assertTrue(loss < previous, "n = " + n);
+                previous = loss;
+            }
+        }
+
+        @Test
+        @DisplayName("n = 2 接受 getBigrams() 的格式")
+        void testBigramFormat() throws IOException {
+            NGramCounter model = new NGramCounter(vocab, 2);
+            model.train(loader().getBigrams());
+            // 空 context、"." 與出現過的 13 個字母
+            assertEquals(1 + 1 + 13, model.getContextCount());
+        }
+
+        @Test
+        @DisplayName("在語料快取上訓練與 n-gram 陣列相同")
+        void testCorpusCache() throws IOException {
+            CorpusCache cache = CorpusCache.openOrBuild(source, dir.resolve("names.cache"), vocab);
+            for (int n : new int[]{1, 3}) {
+                NGramCounter fromCache = new NGramCounter(vocab, n);
+                fromCache.train(cache);
+                NGramCounter fromArrays = new NGramCounter(vocab, n);
+                fromArrays.train(loader().getNGrams(n));
+                assertEquals(fromArrays.getContextCount(), fromCache.getContextCount());
+                int[][] ngrams = loader().getNGrams(n);
+                assertEquals(fromArrays.loss(ngrams), fromCache.loss(ngrams), TOL);
+            }
+        }
+
+        @Test
+        @DisplayName("雜湊表成長後計數仍正確")
+        void testManyContexts() {
+            Random rng = new Random(5);
+            int n = 6;
+            int count = 50_000;
+            int[][] ngrams = new int[n][count];
+            for (int i = 0; i < count; i++) {
+                for (int k = 0; k < n; k++) {
+                    ngrams[k][i] = rng.nextInt(vocab.size());
+                }
+            }
+            NGramCounter model = new NGramCounter(vocab, n);
+            model.train(ngrams);
+            model.train(ngrams);  // 每個 n-gram 出現兩次
+            assertTrue(model.getContextCount() > count / 2);
+
+            int[] context = {ngrams[0][7], ngrams[1][7], ngrams[2][7], ngrams[3][7], ngrams[4][7]};
+            double[] dist = model.distribution(context);
+            assertEquals(1.0, Arrays.stream(dist).sum(), 1e-9);
+            assertTrue(dist[ngrams[5][7]] > 0.5, "看過的 5 字元 context 幾乎決定下一個字元");
+        }
+
+        @Test
+        @DisplayName("取樣只產生詞彙表內的字元，同一個種子結果相同")
+        void testSample() throws IOException {
+            NGramCounter model = new NGramCounter(vocab, 3);
+            model.train(loader().getNGrams(3));
+            String first = String.join(",", model.sampleMultiple(new Random(42), 10));
+            String second = String.join(",", model.sampleMultiple(new Random(42), 10));
+            assertEquals(first, second);
+            for (char c : first.replace(",", "").toCharArray()) {
+                assertTrue(c >= 'a' && c <= 'z', "Invalid char: " + c);
+            }
+        }
+
+        @Test
+        @DisplayName("無效的參數")
+        void testInvalidArguments() {
+            assertThrows(IllegalArgumentException.class, () -> new NGramCounter(vocab, 0));
+            assertThrows(IllegalArgumentException.class, () -> new NGramCounter(vocab, NGramCounter.MAX_ORDER + 1));
+            NGramCounter model = new NGramCounter(vocab, 3);
+            assertThrows(IllegalArgumentException.class, () -> model.train(new int[2][4]));
+            assertThrows(IllegalArgumentException.class, () -> model.prob(new int[]{0}, 0));
+            assertThrows(IndexOutOfBoundsException.class, () -> model.train(new int[][]{{0}, {0}, {27}}));
+        }
+    }
+}
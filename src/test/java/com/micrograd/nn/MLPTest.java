@@ -63,6 +63,63 @@ class MLPTest {
                 "損失應該下降: " + initialLoss + " -> " + finalLoss);
     }
 
+    @Test
+    @DisplayName("predict 與 forward 結果一致")
+    void testPredictMatchesForward() {
+        MLP mlp = new MLP(Arrays.asList(3, 5, 4, 2), new Random(7));
+        double[] x = {0.5, -1.5, 2.0};
+
+        List<Value> input = new ArrayList<>();
+        for (double v : x) {
+            input.add(new Value(v));
+        }
+        List<Value> expected = mlp.forward(input);
+        double[] actual = mlp.predict(x);
+
+        assertEquals(expected.size(), actual.length);
+        for (int i = 0; i < actual.length; i++) {
+            assertEquals(expected.get(i).getData(), actual[i], 1e-12);
+        }
+    }
+
+    @Test
+    @DisplayName("no-grad 模式下 forward 不建立計算圖")
+    void testForwardNoGrad() {
+        MLP mlp = new MLP(Arrays.asList(3, 4, 1), new Random(7));
+        List<Value> input = Arrays.asList(new Value(1.0), new Value(2.0), new Value(3.0));
+
+        Value expected = mlp.forwardSingle(input);
+        try (Value.NoGrad ignored = Value.noGrad()) {
+            Value out = mlp.forwardSingle(input);
+            assertEquals(expected.getData(), out.getData(), 1e-12);
+            assertTrue(out.getPrev().isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("JVP 與有限差分一致")
+    void testJvpMatchesFiniteDifference() {
+        MLP mlp = new MLP(Arrays.asList(3, 5, 2), new Random(7));
+        double[] x = {0.5, -1.5, 2.0};
+        double[] v = {1.0, 0.0, -2.0};
+        double h = 1e-6;
+
+        double[] plus = new double[3];
+        double[] minus = new double[3];
+        for (int i = 0; i < 3; i++) {
+            plus[i] = x[i] + h * v[i];
+            minus[i] = x[i] - h * v[i];
+        }
+        double[] yp = mlp.predict(plus);
+        double[] ym = mlp.predict(minus);
+        double[] jv = mlp.jvp(x, v);
+
+        assertEquals(2, jv.length);
+        for (int i = 0; i < jv.length; i++) {
+            assertEquals((yp[i] - ym[i]) / (2 * h), jv[i], 1e-6);
+        }
+    }
+
     private double computeLoss(MLP mlp, double[][] xs, double[] ys) {
         return computeLossValue(mlp, xs, ys).getData();
     }
@@ -80,4 +137,22 @@ class MLPTest {
         }
         return loss;
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("小批次 fit：損失下降且同一個種子結果相同")
+    void testFitMiniBatch() {
+        double[][] xs = {{0, 0}, {0, 1}, {1, 0}, {1, 1}, {0.5, 0.5}, {0.2, 0.9}};
+        double[][] ys = {{0}, {1}, {1}, {0}, {0.5}, {1}};
+
+        MLP a = new MLP(Arrays.asList(2, 8, 1), new Random(42));
+        double[] history = a.fit(xs, ys, 200, 2, 0.05, new Random(1));
+        assertEquals(200, history.length);
+        assertTrue(history[199] < history[0], "損失應該下降: " + history[0] + " -> " + history[199]);
+
+        MLP b = new MLP(Arrays.asList(2, 8, 1), new Random(42));
+        assertArrayEquals(history, b.fit(xs, ys, 200, 2, 0.05, new Random(1)), 0.0);
+
+        assertThrows(IllegalArgumentException.class, () -> a.fit(xs, new double[1][1], 1, 2, 0.1, null));
+        assertThrows(IllegalArgumentException.class, () -> a.fit(xs, new double[6][2], 1, 2, 0.1, null));
+    }
+}
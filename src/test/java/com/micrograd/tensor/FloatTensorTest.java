@@ -0,0 +1,214 @@
+package com.micrograd.tensor;
+
+import org.junit.jupiter.api.*;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("FloatTensor float32 張量測試")
+class FloatTensorTest {
+
+    private static final double TOL = 1e-5;
+
+    @Nested
+    @DisplayName("建構與轉換")
+    class ConversionTests {
+
+        @Test
+        @DisplayName("與 Tensor 互轉：數值捨入到 float")
+        void testRoundTrip() {
+            Tensor t = Tensor.randn(7, 5, new Random(42));
+            FloatTensor f = FloatTensor.from(t);
+            Tensor back = f.toTensor();
+            for (int i = 0; i < 7; i++) {
+                for (int j = 0; j < 5; j++) {
+                    assertEquals((float) t.get(i, j), f.get(i, j), 0.0);
+                    assertEquals(f.get(i, j), back.get(i, j), 0.0);
+                }
+            }
+            // 轉置的 view 也能直接轉換
+            assertArrayEquals(FloatTensor.from(t).transpose().toDoubleArray(),
+                    FloatTensor.from(t.transpose()).toDoubleArray(), 0.0);
+        }
+
+        @Test
+        @DisplayName("randn 與 Tensor.randn 使用同一串亂數")
+        void testRandnMatchesTensor() {
+            Tensor t = Tensor.randn(3, 4, new Random(7));
+            FloatTensor f = FloatTensor.randn(3, 4, new Random(7));
+            assertArrayEquals(FloatTensor.from(t).toArray(), f.toArray(), 0.0f);
+        }
+
+        @Test
+        @DisplayName("set 會捨入到 float")
+        void testSetRounds() {
+            FloatTensor f = new FloatTensor(1, 1);
+            f.set(0, 0, 0.1);
+            assertEquals(0.1f, f.get(0, 0), 0.0);
+            assertNotEquals(0.1, f.get(0, 0));
+        }
+    }
+
+    @Nested
+    @DisplayName("數學運算")
+    class MathTests {
+
+        private final FloatTensor a = FloatTensor.fromArray(new double[][]{{1, 2}, {3, 4}});
+        private final FloatTensor b = FloatTensor.fromArray(new double[][]{{5, 6}, {7, 8}});
+
+        @Test
+        @DisplayName("element-wise 與純量運算")
+        void testElementWise() {
+            assertArrayEquals(new float[]{6, 8, 10, 12}, a.add(b).toArray(), 0.0f);
+            assertArrayEquals(new float[]{-4, -4, -4, -4}, a.sub(b).toArray(), 0.0f);
+            assertArrayEquals(new float[]{5, 12, 21, 32}, a.mul(b).toArray(), 0.0f);
+            assertArrayEquals(new float[]{2, 3, 4, 5}, a.add(1.0).toArray(), 0.0f);
+            assertArrayEquals(new float[]{0.5f, 1, 1.5f, 2}, a.div(2.0).toArray(), 0.0f);
+            assertEquals(Math.E, a.div(a).exp().get(0, 0), TOL);
+            assertEquals(0.0, a.log().get(0, 0), TOL);
+        }
+
+        @Test
+        @DisplayName("矩陣乘法（含轉置的 view）與 Tensor 一致")
+        void testMatmul() {
+            Random rng = new Random(42);
+            int[][] shapes = {{1, 1, 1}, {3, 5, 7}, {70, 300, 600}, {27, 5000, 27}};
+            for (int[] s : shapes) {
+                FloatTensor x = FloatTensor.randn(s[0], s[1], rng);
+                FloatTensor w = FloatTensor.randn(s[1], s[2], rng);
+                Tensor expected = x.toTensor().matmul(w.toTensor());
+                assertClose(expected, x.matmul(w));
+
+                FloatTensor xt = x.transpose().copy().transpose();
+                assertClose(expected, xt.matmul(w));
+                assertClose(expected, x.matmul(w.transpose().copy().transpose()));
+            }
+        }
+
+        @Test
+        @DisplayName("B 含有 Inf / NaN 時 A 中的 0 不略過，結果為 NaN")
+        void testZeroTimesNonFinite() {
+            FloatTensor w = FloatTensor.randn(4, 3, new Random(1));
+            w.set(1, 0, Float.POSITIVE_INFINITY);
+            w.set(2, 1, Float.NaN);
+            FloatTensor x = new FloatTensor(2, 4);
+            x.set(0, 3, 1.0f);
+            x.set(1, 0, 1.0f);
+            for (FloatTensor a : new FloatTensor[]{x, x.transpose().copy().transpose()}) {
+                FloatTensor out = a.matmul(w);
+                for (int i = 0; i < 2; i++) {
+                    assertTrue(Double.isNaN(out.get(i, 0)), "0·Inf 應為 NaN");
+                    assertTrue(Double.isNaN(out.get(i, 1)), "0·NaN 應為 NaN");
+                    assertTrue(Double.isFinite(out.get(i, 2)));
+                }
+            }
+        }
+
+        private void assertClose(Tensor expected, FloatTensor actual) {
+            double[] e = expected.toArray();
+            double[] v = actual.toDoubleArray();
+            for (int i = 0; i < e.length; i++) {
+                // double 累加後只在寫回時捨入一次
+                assertEquals(e[i], v[i], 1e-6 * Math.max(1.0, Math.abs(e[i])), "index " + i);
+            }
+        }
+
+        @Test
+        @DisplayName("in-place 與寫入 out")
+        void testInPlace() {
+            FloatTensor c = a.copy();
+            c.addInPlace(b).mulInPlace(0.5).subInPlace(a);
+            assertArrayEquals(new float[]{2, 2, 2, 2}, c.toArray(), 0.0f);
+
+            FloatTensor t = a.copy();
+            t.add(t.transpose(), t);
+            assertArrayEquals(new float[]{2, 5, 5, 8}, t.toArray(), 0.0f);
+
+            FloatTensor out = new FloatTensor(2, 2);
+            assertSame(out, a.matmul(b, out));
+            assertArrayEquals(new float[]{19, 22, 43, 50}, out.toArray(), 0.0f);
+            assertThrows(IllegalArgumentException.class, () -> a.matmul(b, a));
+        }
+
+        @Test
+        @DisplayName("gatherRows / scatterAddRows 與 Tensor 一致，scatter 以 double 累加")
+        void testGatherScatterRows() {
+            FloatTensor w = FloatTensor.randn(27, 4, new Random(5));
+            int[] idx = {1, 26, 1, 0};
+            assertArrayEquals(w.toTensor().gatherRows(idx).toArray(), w.gatherRows(idx).toDoubleArray(), 0.0);
+
+            // 同一列累加一百萬次 0.1
+            int n = 1_000_000;
+            int[] same = new int[n];
+            FloatTensor acc = new FloatTensor(2, 1);
+            acc.scatterAddRows(same, new FloatTensor(n, 1).fill(0.1));
+            assertEquals(n * (double) 0.1f, acc.get(0, 0), 1e-2);
+            assertEquals(0.0, acc.get(1, 0), 0.0);
+        }
+    }
+
+    @Nested
+    @DisplayName("以 double 累加的歸約")
+    class ReductionTests {
+
+        @Test
+        @DisplayName("大量小數相加不會有 float 累加誤差")
+        void testSumAccumulatesInDouble() {
+            int n = 1_000_000;
+            FloatTensor t = new FloatTensor(1, n).fill(0.1);
+            double expected = n * (double) 0.1f;
+            assertEquals(expected, t.sum(), 1e-6);
+            assertEquals(expected, t.sum(1).get(0, 0), 1e-2);
+
+            // 對照：以 float 累加誤差遠大於此
+            float naive = 0;
+            for (int i = 0; i < n; i++) {
+                naive += 0.1f;
+            }
+            assertTrue(Math.abs(naive - expected) > 100);
+        }
+
+        @Test
+        @DisplayName("沿軸加總與 view")
+        void testSumAxis() {
+            FloatTensor t = FloatTensor.fromArray(new double[][]{{1, 2, 3}, {4, 5, 6}});
+            assertArrayEquals(new float[]{5, 7, 9}, t.sum(0).toArray(), 0.0f);
+            assertArrayEquals(new float[]{6, 15}, t.sum(1).toArray(), 0.0f);
+            assertArrayEquals(new float[]{5, 7, 9}, t.transpose().sum(1).toArray(), 0.0f);
+            assertEquals(3.5, t.mean(), TOL);
+            assertEquals(5, t.argmax());
+        }
+
+        @Test
+        @DisplayName("softmax、正規化與 NLL 與 double 版本一致")
+        void testSoftmaxAndNll() {
+            Tensor logits = Tensor.randn(50, 27, new Random(3)).mul(5.0);
+            FloatTensor f = FloatTensor.from(logits);
+            int[] targets = new int[50];
+            for (int i = 0; i < 50; i++) {
+                targets[i] = (i * 7) % 27;
+            }
+
+            Tensor expected = TensorOps.softmax(FloatTensor.from(logits).toTensor());
+            FloatTensor probs = TensorOps.softmax(f);
+            for (int i = 0; i < 50; i++) {
+                assertEquals(1.0, probs.getRow(i).sum(), 1e-6);
+            }
+            assertArrayEquals(expected.toArray(), probs.toDoubleArray(), 1e-6);
+            assertEquals(TensorOps.negativeLogLikelihood(expected, targets),
+                    TensorOps.negativeLogLikelihood(probs, targets), 1e-5);
+
+            // 交叉熵與梯度
+            double loss = TensorOps.crossEntropyWithLogits(logits, targets);
+            assertEquals(loss, TensorOps.crossEntropyWithLogits(f, targets), 1e-5);
+            Tensor grad = new Tensor(50, 27);
+            TensorOps.crossEntropyWithLogits(logits, targets, grad);
+            FloatTensor fgrad = f.copy();
+            assertEquals(loss, TensorOps.crossEntropyWithLogits(fgrad, targets, fgrad), 1e-5);
+            assertArrayEquals(grad.toArray(), fgrad.toDoubleArray(), 1e-7);
+
+            FloatTensor counts = FloatTensor.fromArray(new double[][]{{1, 3}, {0, 0}});
+            TensorOps.normalizeRows(counts, counts);
+            assertArrayEquals(new float[]{0.25f, 0.75f, 0, 0}, counts.toArray(), 0.0f);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.micrograd.tensor;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("OffHeapTensor 堆積外張量測試")
+class OffHeapTensorTest {
+
+    private static final double TOL = 1e-9;
+    // 每塊 16 個 double，讓小張量也會跨越分塊邊界
+    private static final int SMALL_CHUNKS = 4;
+
+    private TensorArena arena;
+
+    @BeforeEach
+    void setUp() {
+        arena = new TensorArena(SMALL_CHUNKS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        arena.close();
+    }
+
+    @Test
+    @DisplayName("配置的張量全為 0，讀寫跨越分塊邊界")
+    void testGetSet() {
+        OffHeapTensor t = arena.allocate(7, 5);
+        assertEquals(35L, t.size());
+        assertEquals(0.0, t.sum(), 0.0);
+
+        Tensor ref = Tensor.randn(7, 5, new Random(42));
+        t.copyFrom(ref);
+        assertArrayEquals(ref.toArray(), t.toTensor().toArray(), 0.0);
+        assertEquals(ref.get(3, 2), t.get(3, 2), 0.0);
+
+        t.increment(3, 1, 2.0);
+        assertEquals(ref.get(3, 1) + 2.0, t.get(3, 1), 0.0);
+        // 第 3 列橫跨第 0 塊與第 1 塊
+        t.setRow(3, ref.getRow(0));
+        assertArrayEquals(ref.getRow(0).toArray(), t.getRow(3).toArray(), 0.0);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> t.get(7, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> t.set(0, 5, 1.0));
+    }
+
+    @Test
+    @DisplayName("歸約與矩陣乘法與 Tensor 一致")
+    void testReductionsAndMatmul() {
+        Random rng = new Random(7);
+        Tensor ref = Tensor.randn(300, 27, rng);
+        OffHeapTensor t = arena.allocate(300, 27).copyFrom(ref);
+
+        assertEquals(ref.sum(), t.sum(), TOL);
+        assertEquals(ref.mean(), t.mean(), TOL);
+        assertArrayEquals(ref.sum(0).toArray(), t.sum(0).toArray(), TOL);
+        assertArrayEquals(ref.sum(1).toArray(), t.sum(1).toArray(), TOL);
+
+        Tensor w = Tensor.randn(27, 40, rng);
+        assertArrayEquals(ref.matmul(w).toArray(), t.matmul(w).toArray(), TOL);
+        assertArrayEquals(ref.matmul(w.transpose().copy().transpose()).toArray(),
+                t.matmul(w.transpose().copy().transpose()).toArray(), TOL);
+
+        Tensor out = new Tensor(40, 300).transpose();
+        assertSame(out, t.matmul(w, out));
+        assertArrayEquals(ref.matmul(w).toArray(), out.toArray(), TOL);
+
+        t.fill(0.5);
+        assertEquals(0.5 * 300 * 27, t.sum(), TOL);
+    }
+
+    @Test
+    @DisplayName("批次累加、列索引與逐列運算與 Tensor 一致")
+    void testBulkOps() {
+        Random rng = new Random(11);
+        OffHeapTensor counts = arena.allocate(6, 5);
+        int[] rows = {0, 3, 3, 5, 1, 3};
+        int[] cols = {4, 2, 2, 0, 1, 2};
+        counts.increment(rows, cols, 1.0);
+        assertEquals(3.0, counts.get(3, 2), 0.0);
+        assertEquals(6.0, counts.sum(), 0.0);
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> counts.increment(new int[]{0, 6}, new int[]{0, 0}, 1.0));
+        assertEquals(6.0, counts.sum(), 0.0);
+
+        Tensor ref = Tensor.rand(6, 5, rng);
+        counts.copyFrom(ref);
+        counts.addInPlace(1.0).mulInPlace(2.0);
+        ref = ref.add(1.0).mul(2.0);
+        assertArrayEquals(ref.toArray(), counts.toTensor().toArray(), TOL);
+        assertArrayEquals(TensorOps.normalizeRows(ref).toArray(),
+                TensorOps.normalizeRows(counts, counts).toTensor().toArray(), TOL);
+
+        Tensor logits = Tensor.randn(6, 5, rng);
+        OffHeapTensor probs = arena.allocate(6, 5);
+        TensorOps.softmax(arena.allocate(6, 5).copyFrom(logits), probs);
+        assertArrayEquals(TensorOps.softmax(logits).toArray(), probs.toTensor().toArray(), TOL);
+
+        int[] idx = {4, 0, 4};
+        Tensor emb = Tensor.randn(6, 5, rng);
+        OffHeapTensor table = arena.allocate(6, 5).copyFrom(emb);
+        assertArrayEquals(emb.gatherRows(idx).toArray(), table.gatherRows(idx).toArray(), 0.0);
+        Tensor grad = Tensor.randn(3, 5, rng);
+        table.scatterAddRows(idx, grad);
+        assertArrayEquals(emb.copy().scatterAddRows(idx, grad).toArray(), table.toTensor().toArray(), TOL);
+        assertThrows(IndexOutOfBoundsException.class, () -> table.gatherRows(new int[]{6}));
+    }
+
+    @Test
+    @DisplayName("左乘 left @ this 與 Tensor 一致")
+    void testLeftMatmul() {
+        Random rng = new Random(5);
+        Tensor ref = Tensor.randn(300, 27, rng);
+        OffHeapTensor t = arena.allocate(300, 27).copyFrom(ref);
+        Tensor left = Tensor.randn(300, 8, rng).transpose();
+        assertArrayEquals(left.matmul(ref).toArray(), t.leftMatmul(left).toArray(), TOL);
+        assertThrows(IllegalArgumentException.class, () -> t.leftMatmul(new Tensor(2, 27)));
+    }
+
+    @Test
+    @DisplayName("映射檔案：寫入後重新開啟仍在，唯讀映射不可寫入")
+    void testMapFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("counts.bin");
+        Tensor ref = Tensor.rand(10, 9, new Random(3));
+        try (TensorArena writer = new TensorArena(SMALL_CHUNKS)) {
+            writer.map(file, 10, 9).copyFrom(ref);
+        }
+        assertEquals(10 * 9 * Double.BYTES, Files.size(file));
+
+        OffHeapTensor t = arena.mapReadOnly(file, 10, 9);
+        assertArrayEquals(ref.toArray(), t.toTensor().toArray(), 0.0);
+        assertThrows(ReadOnlyBufferException.class, () -> t.set(0, 0, 1.0));
+
+        assertThrows(IOException.class, () -> arena.mapReadOnly(file, 11, 9));
+    }
+
+    @Test
+    @DisplayName("arena 關閉後存取丟出例外")
+    void testClosed() {
+        OffHeapTensor t = arena.allocate(4, 4);
+        arena.close();
+        arena.close();
+        assertTrue(arena.isClosed());
+        assertThrows(IllegalStateException.class, () -> t.get(0, 0));
+        assertThrows(IllegalStateException.class, t::sum);
+        assertThrows(IllegalStateException.class, () -> arena.allocate(1, 1));
+    }
+
+    @Test
+    @DisplayName("其他執行緒運算時 close() 等運算結束才釋放記憶體")
+    void testCloseWhileInUse() throws Exception {
+        OffHeapTensor t = arena.allocate(2000, 64).fill(1.0);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            started.countDown();
+            try {
+                while (true) {
+                    assertEquals(2000 * 64, t.sum(), 0.0);
+                }
+            } catch (IllegalStateException e) {
+                // arena 已關閉
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+        started.await();
+        Thread.sleep(20);
+        arena.close();
+        reader.join(10_000);
+        assertFalse(reader.isAlive());
+        assertNull(failure.get());
+    }
+}
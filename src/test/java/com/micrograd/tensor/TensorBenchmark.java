@@ -0,0 +1,98 @@
+package com.micrograd.tensor;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Tensor 運算的效能量測
+ *
+ * 執行方式（需要 incubator 模組才會使用 SIMD kernel）：
+ * mvn test-compile
+ * java --add-modules jdk.incubator.vector -cp target/classes:target/test-classes com.micrograd.tensor.TensorBenchmark
+ *
+ * 加上 -Dmicrograd.simd=false 可比較純量版本。
+ */
+public class TensorBenchmark {
+
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 1_000_000_000L;
+
+    private static Object sink;
+
+    public static void main(String[] args) {
+        System.out.println("kernel: " + TensorOps.kernelBackend());
+
+        Random rng = new Random(1);
+        Tensor a = Tensor.randn(512, 512, rng);
+        Tensor b = Tensor.rand(512, 512, rng).add(0.5);
+        Tensor logits = Tensor.randn(4096, 27, rng);
+
+        measure("add 512x512", () -> a.add(b));
+        measure("mul 512x512", () -> a.mul(b));
+        measure("div 512x512", () -> a.div(b));
+        measure("exp 512x512", a::exp);
+        measure("log 512x512", b::log);
+        measure("sum()", a::sum);
+        measure("sum(0)", () -> a.sum(0));
+        measure("sum(1)", () -> a.sum(1));
+        measure("softmax 4096x27", () -> TensorOps.softmax(logits));
+        measure("normalizeRows 512x512", () -> TensorOps.normalizeRows(b));
+
+        int[] idx = new int[200_000];
+        for (int i = 0; i < idx.length; i++) {
+            idx[i] = rng.nextInt(27);
+        }
+        Tensor xenc = TensorOps.oneHotBatch(idx, 27);
+        Tensor xencT = xenc.transpose();
+        Tensor w = Tensor.randn(27, 27, rng);
+        Tensor dlogits = Tensor.randn(idx.length, 27, rng);
+
+        measure("matmul 512x512", () -> a.matmul(b));
+        measure("xenc·W 200000x27", () -> xenc.matmul(w));
+        measure("xencT·dlogits", () -> xencT.matmul(dlogits));
+        measure("W.gatherRows 200000", () -> w.gatherRows(idx));
+        measure("scatterAddRows 200000", () -> new Tensor(27, 27).scatterAddRows(idx, dlogits));
+        Tensor big = dlogits.copy();
+        Tensor scratch = new Tensor(idx.length, 27);
+        measure("softmax+NLL 200000x27", () -> TensorOps.negativeLogLikelihood(TensorOps.softmax(big, scratch), idx));
+        measure("crossEntropy 200000x27", () -> TensorOps.crossEntropyWithLogits(big, idx));
+        measure("crossEntropy+grad", () -> TensorOps.crossEntropyWithLogits(big, idx, scratch));
+
+        // float32：同樣的資料捨入到 float
+        FloatTensor fa = FloatTensor.from(a);
+        FloatTensor fb = FloatTensor.from(b);
+        FloatTensor flogits = FloatTensor.from(logits);
+        FloatTensor fxenc = TensorOps.oneHotBatchFloat(idx, 27);
+        FloatTensor fxencT = fxenc.transpose();
+        FloatTensor fw = FloatTensor.from(w);
+        FloatTensor fdlogits = FloatTensor.from(dlogits);
+
+        measure("f32 add 512x512", () -> fa.add(fb));
+        measure("f32 exp 512x512", fa::exp);
+        measure("f32 sum()", fa::sum);
+        measure("f32 softmax 4096x27", () -> TensorOps.softmax(flogits));
+        measure("f32 matmul 512x512", () -> fa.matmul(fb));
+        measure("f32 xenc·W 200000x27", () -> fxenc.matmul(fw));
+        measure("f32 xencT·dlogits", () -> fxencT.matmul(fdlogits));
+        measure("f32 W.gatherRows 200000", () -> fw.gatherRows(idx));
+        measure("f32 scatterAddRows 200000", () -> new FloatTensor(27, 27).scatterAddRows(idx, fdlogits));
+    }
+
+    private static void measure(String name, Supplier<Object> op) {
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) {
+            sink = op.get();
+        }
+
+        long start = System.nanoTime();
+        long ops = 0;
+        long elapsed;
+        do {
+            sink = op.get();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+
+        System.out.printf("%-24s %10.1f us/op%n", name, elapsed / 1e3 / ops);
+    }
+}
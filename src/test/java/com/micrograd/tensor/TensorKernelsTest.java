@@ -0,0 +1,218 @@
+package com.micrograd.tensor;
+
+import org.junit.jupiter.api.*;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@DisplayName("TensorKernels SIMD / 純量一致性測試")
+class TensorKernelsTest {
+
+    private static final double TOL = 1e-12;
+    // 涵蓋空陣列、短於一個向量、剛好整除與有尾端的長度
+    private static final int[] LENGTHS = {0, 1, 3, 8, 27, 64, 101};
+    private static final int OFFSET = 5;
+
+    private final TensorKernels scalar = new ScalarKernels();
+    private TensorKernels vector;
+    private final Random rng = new Random(42);
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "需要 --add-modules jdk.incubator.vector");
+        vector = new VectorKernels();
+    }
+
+    private double[] random(int n, double lo, double hi) {
+        double[] a = new double[n + OFFSET];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = lo + (hi - lo) * rng.nextDouble();
+        }
+        return a;
+    }
+
+    private void assertClose(double[] expected, double[] actual, double tol) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], tol * Math.max(1.0, Math.abs(expected[i])), "index " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("啟動時選定的實作")
+    void testSelected() {
+        assertTrue(TensorKernels.get() instanceof VectorKernels);
+        assertTrue(TensorOps.kernelBackend().startsWith("vector"));
+    }
+
+    @Test
+    @DisplayName("Element-wise 運算結果一致（含位移與尾端）")
+    void testElementWise() {
+        for (int n : LENGTHS) {
+            double[] a = random(n, -3, 3);
+            double[] b = random(n, 0.5, 2);
+            double[] e = new double[n + OFFSET];
+            double[] v = new double[n + OFFSET];
+
+            scalar.add(a, OFFSET, b, 0, e, 1, n);
+            vector.add(a, OFFSET, b, 0, v, 1, n);
+            assertClose(e, v, TOL);
+
+            scalar.sub(a, 0, b, OFFSET, e, 0, n);
+            vector.sub(a, 0, b, OFFSET, v, 0, n);
+            assertClose(e, v, TOL);
+
+            scalar.mul(a, 2, b, 3, e, 4, n);
+            vector.mul(a, 2, b, 3, v, 4, n);
+            assertClose(e, v, TOL);
+
+            scalar.div(a, 1, b, 1, e, 1, n);
+            vector.div(a, 1, b, 1, v, 1, n);
+            assertClose(e, v, TOL);
+
+            scalar.add(a, OFFSET, 1.5, e, 0, n);
+            vector.add(a, OFFSET, 1.5, v, 0, n);
+            assertClose(e, v, TOL);
+
+            scalar.mul(a, 0, -2.0, e, OFFSET, n);
+            vector.mul(a, 0, -2.0, v, OFFSET, n);
+            assertClose(e, v, TOL);
+
+            double[] ye = random(n, -1, 1);
+            double[] yv = ye.clone();
+            scalar.axpy(0.75, a, OFFSET, ye, 1, n);
+            vector.axpy(0.75, a, OFFSET, yv, 1, n);
+            assertArrayEquals(ye, yv, 0.0);
+
+            scalar.exp(a, 1, e, 2, n);
+            vector.exp(a, 1, v, 2, n);
+            assertClose(e, v, TOL);
+
+            scalar.log(b, 3, e, 0, n);
+            vector.log(b, 3, v, 0, n);
+            assertClose(e, v, TOL);
+        }
+    }
+
+    @Test
+    @DisplayName("歸約與逐列運算結果一致")
+    void testReductions() {
+        for (int n : LENGTHS) {
+            double[] a = random(n, -3, 3);
+            assertEquals(scalar.sum(a, OFFSET, n), vector.sum(a, OFFSET, n), 1e-10);
+            assertEquals(scalar.max(a, 1, n), vector.max(a, 1, n), 0.0);
+            if (n == 0) {
+                continue;
+            }
+
+            double[] e = new double[n + OFFSET];
+            double[] v = new double[n + OFFSET];
+            scalar.softmax(a, OFFSET, e, 0, n);
+            vector.softmax(a, OFFSET, v, 0, n);
+            assertClose(e, v, TOL);
+            assertEquals(1.0, vector.sum(v, 0, n), 1e-10);
+
+            // online logSumExp 與「先取最大值」的寫法一致，大數值也不溢位
+            double naive = 0;
+            double max = scalar.max(a, OFFSET, n);
+            for (int i = 0; i < n; i++) {
+                naive += Math.exp(a[OFFSET + i] - max);
+            }
+            assertEquals(max + Math.log(naive), scalar.logSumExp(a, OFFSET, n), 1e-12);
+            assertEquals(max + Math.log(naive), vector.logSumExp(a, OFFSET, n), 1e-12);
+            double[] big = random(n, 700, 800);
+            assertEquals(scalar.logSumExp(big, 0, n), vector.logSumExp(big, 0, n), 1e-10);
+            assertTrue(Double.isFinite(scalar.logSumExp(big, 0, n)));
+
+            double[] counts = random(n, 0, 10);
+            assertEquals(scalar.normalize(counts, 0, e, 0, n), vector.normalize(counts, 0, v, 0, n), 1e-10);
+            assertClose(e, v, TOL);
+        }
+    }
+
+    private float[] randomFloat(int n, double lo, double hi) {
+        float[] a = new float[n + OFFSET];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = (float) (lo + (hi - lo) * rng.nextDouble());
+        }
+        return a;
+    }
+
+    private void assertClose(float[] expected, float[] actual, double tol) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], tol * Math.max(1.0, Math.abs(expected[i])), "index " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("float 運算結果一致，歸約以 double 累加")
+    void testFloat() {
+        for (int n : LENGTHS) {
+            float[] a = randomFloat(n, -3, 3);
+            float[] b = randomFloat(n, 0.5, 2);
+            float[] e = new float[n + OFFSET];
+            float[] v = new float[n + OFFSET];
+
+            scalar.add(a, OFFSET, b, 0, e, 1, n);
+            vector.add(a, OFFSET, b, 0, v, 1, n);
+            assertArrayEquals(e, v, 0.0f);
+
+            scalar.sub(a, 0, b, OFFSET, e, 0, n);
+            vector.sub(a, 0, b, OFFSET, v, 0, n);
+            assertArrayEquals(e, v, 0.0f);
+
+            scalar.mul(a, 2, b, 3, e, 4, n);
+            vector.mul(a, 2, b, 3, v, 4, n);
+            assertArrayEquals(e, v, 0.0f);
+
+            scalar.div(a, 1, b, 1, e, 1, n);
+            vector.div(a, 1, b, 1, v, 1, n);
+            assertArrayEquals(e, v, 0.0f);
+
+            scalar.add(a, OFFSET, 1.5f, e, 0, n);
+            vector.add(a, OFFSET, 1.5f, v, 0, n);
+            assertArrayEquals(e, v, 0.0f);
+
+            scalar.mul(a, 0, -2.0f, e, OFFSET, n);
+            vector.mul(a, 0, -2.0f, v, OFFSET, n);
+            assertArrayEquals(e, v, 0.0f);
+
+            scalar.exp(a, 1, e, 2, n);
+            vector.exp(a, 1, v, 2, n);
+            assertClose(e, v, 1e-6);
+
+            scalar.log(b, 3, e, 0, n);
+            vector.log(b, 3, v, 0, n);
+            assertClose(e, v, 1e-6);
+
+            double[] ye = random(n, -1, 1);
+            double[] yv = ye.clone();
+            scalar.axpy(0.75, a, OFFSET, ye, 1, n);
+            vector.axpy(0.75, a, OFFSET, yv, 1, n);
+            assertArrayEquals(ye, yv, 0.0);
+
+            assertEquals(scalar.sum(a, OFFSET, n), vector.sum(a, OFFSET, n), 1e-10);
+            assertEquals(scalar.max(a, 1, n), vector.max(a, 1, n), 0.0f);
+            assertEquals(scalar.dot(a, 0, b, OFFSET, n), vector.dot(a, 0, b, OFFSET, n), 1e-10);
+            if (n == 0) {
+                continue;
+            }
+
+            scalar.softmax(a, OFFSET, e, 0, n);
+            vector.softmax(a, OFFSET, v, 0, n);
+            assertClose(e, v, 1e-6);
+            assertEquals(1.0, vector.sum(v, 0, n), 1e-6);
+        }
+    }
+
+    @Test
+    @DisplayName("總和為 0 的列正規化後保持全 0")
+    void testNormalizeZeroRow() {
+        double[] zeros = new double[10];
+        double[] out = new double[10];
+        out[3] = 7.0;
+        assertEquals(0.0, vector.normalize(zeros, 0, out, 0, 10), 0.0);
+        assertArrayEquals(new double[10], out, 0.0);
+    }
+}
@@ -2,6 +2,7 @@ package com.micrograd.tensor;
 
 import org.junit.jupiter.api.*;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("Tensor 張量測試")
@@ -87,6 +88,101 @@ class TensorTest {
             assertEquals(22.0, c.get(0, 1), TOL);
         }
 
+        @Test
+        @DisplayName("分塊矩陣乘法與直接三重迴圈一致")
+        void testBlockedMatmul() {
+            Random rng = new Random(42);
+            int[][] shapes = {{1, 1, 1}, {3, 5, 7}, {70, 300, 600}, {300, 64, 270}, {27, 5000, 27}};
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                for (int[] s : shapes) {
+                    Tensor a = Tensor.randn(s[0], s[1], rng);
+                    Tensor b = Tensor.randn(s[1], s[2], rng);
+                    Tensor expected = naiveMatmul(a, b);
+
+                    assertArrayEquals(expected.toArray(), a.matmul(b).toArray(), 1e-9);
+
+                    double[] c = new double[s[0] * s[2]];
+                    Gemm.multiply(a.toArray(), b.toArray(), c, s[0], s[1], s[2], pool);
+                    assertArrayEquals(expected.toArray(), c, 1e-9);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        @Test
+        @DisplayName("one-hot 矩陣乘法等於取列")
+        void testOneHotMatmul() {
+            Tensor w = Tensor.randn(27, 27, new Random(1));
+            Tensor x = TensorOps.oneHotBatch(new int[]{3, 0, 26}, 27);
+            Tensor out = x.matmul(w);
+            for (int j = 0; j < 27; j++) {
+                assertEquals(w.get(3, j), out.get(0, j), 0.0);
+                assertEquals(w.get(26, j), out.get(2, j), 0.0);
+            }
+        }
+
+        @Test
+        @DisplayName("B 含有 Inf / NaN 時 A 中的 0 不略過，結果為 NaN")
+        void testZeroTimesNonFinite() {
+            Tensor w = Tensor.randn(27, 27, new Random(1));
+            w.set(5, 2, Double.POSITIVE_INFINITY);
+            w.set(7, 4, Double.NaN);
+            Tensor x = TensorOps.oneHotBatch(new int[]{3, 0, 26}, 27);
+            for (Tensor a : new Tensor[]{x, x.transpose().copy().transpose()}) {
+                Tensor out = a.matmul(w);
+                for (int i = 0; i < 3; i++) {
+                    assertTrue(Double.isNaN(out.get(i, 2)), "0·Inf 應為 NaN");
+                    assertTrue(Double.isNaN(out.get(i, 4)), "0·NaN 應為 NaN");
+                    assertTrue(Double.isFinite(out.get(i, 0)));
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("gatherRows 等於 one-hot 矩陣乘法，scatterAddRows 等於其轉置乘法")
+        void testGatherScatterRows() {
+            Random rng = new Random(2);
+            Tensor w = Tensor.randn(27, 5, rng);
+            int[] idx = {3, 0, 26, 3, 3};
+            Tensor x = TensorOps.oneHotBatch(idx, 27);
+            assertArrayEquals(x.matmul(w).toArray(), w.gatherRows(idx).toArray(), 0.0);
+            assertArrayEquals(x.matmul(w).toArray(), w.transpose().copy().transpose().gatherRows(idx).toArray(), 0.0);
+
+            // 重複的索引累加，沒出現的列不變
+            Tensor g = Tensor.randn(5, 5, rng);
+            Tensor acc = Tensor.ones(27, 5);
+            acc.scatterAddRows(idx, g);
+            assertArrayEquals(x.transpose().matmul(g).add(1.0).toArray(), acc.toArray(), 1e-12);
+
+            // 寫入 out 與轉置的 view
+            Tensor out = new Tensor(5, 5);
+            w.gatherRows(idx, out.transpose());
+            assertArrayEquals(w.gatherRows(idx).transpose().toArray(), out.toArray(), 0.0);
+            Tensor accT = new Tensor(5, 27);
+            accT.transpose().scatterAddRows(idx, g);
+            assertArrayEquals(x.transpose().matmul(g).transpose().toArray(), accT.toArray(), 1e-12);
+
+            assertThrows(IndexOutOfBoundsException.class, () -> w.gatherRows(new int[]{27}));
+            assertThrows(IllegalArgumentException.class, () -> w.gatherRows(idx, new Tensor(4, 5)));
+            assertThrows(IllegalArgumentException.class, () -> acc.scatterAddRows(idx, new Tensor(5, 4)));
+        }
+
+        private Tensor naiveMatmul(Tensor a, Tensor b) {
+            Tensor c = new Tensor(a.getRows(), b.getCols());
+            for (int i = 0; i < a.getRows(); i++) {
+                for (int j = 0; j < b.getCols(); j++) {
+                    double sum = 0;
+                    for (int k = 0; k < a.getCols(); k++) {
+                        sum += a.get(i, k) * b.get(k, j);
+                    }
+                    c.set(i, j, sum);
+                }
+            }
+            return c;
+        }
+
         @Test
         @DisplayName("轉置")
         void testTranspose() {
@@ -100,6 +196,234 @@ class TensorTest {
         }
     }
 
+    @Nested
+    @DisplayName("Strided view")
+    class ViewTests {
+
+        private final Tensor t = Tensor.fromArray(new double[][]{{1, 2, 3}, {4, 5, 6}, {7, 8, 9}});
+
+        @Test
+        @DisplayName("getRow / getCol 與原張量共用資料")
+        void testRowColShareData() {
+            Tensor row = t.getRow(1);
+            Tensor col = t.getCol(2);
+            assertArrayEquals(new double[]{4, 5, 6}, row.toArray(), TOL);
+            assertArrayEquals(new double[]{3, 6, 9}, col.toArray(), TOL);
+            assertEquals(15.0, row.sum(), TOL);
+            assertEquals(18.0, col.sum(), TOL);
+
+            row.set(0, 2, 60);
+            assertEquals(60.0, t.get(1, 2), TOL);
+            assertEquals(60.0, col.get(1, 0), TOL);
+        }
+
+        @Test
+        @DisplayName("轉置是 view，copy 是獨立的連續副本")
+        void testTransposeAndCopy() {
+            Tensor tt = t.transpose();
+            assertFalse(tt.isContiguous());
+            assertArrayEquals(new double[]{1, 4, 7, 2, 5, 8, 3, 6, 9}, tt.toArray(), TOL);
+            assertTrue(tt.transpose().isContiguous());
+
+            Tensor c = tt.copy();
+            assertTrue(c.isContiguous());
+            c.set(0, 1, -1);
+            assertEquals(4.0, t.get(1, 0), TOL);
+        }
+
+        @Test
+        @DisplayName("slice 的運算與 getRow 的邊界檢查")
+        void testSlice() {
+            Tensor s = t.slice(1, 3, 1, 3);  // [[5,6],[8,9]]
+            assertArrayEquals(new double[]{5, 6, 8, 9}, s.toArray(), TOL);
+            assertArrayEquals(new double[]{13, 15}, s.sum(0).toArray(), TOL);
+            assertArrayEquals(new double[]{11, 17}, s.sum(1).toArray(), TOL);
+            assertArrayEquals(new double[]{10, 12, 16, 18}, s.add(s).toArray(), TOL);
+            assertArrayEquals(new double[]{5, 8, 6, 9}, s.transpose().mul(1.0).toArray(), TOL);
+            assertEquals(3, s.argmax());
+            assertArrayEquals(new double[]{4, 5, 6, 7, 8, 9}, t.sliceRows(1, 3).toArray(), TOL);
+
+            assertThrows(IndexOutOfBoundsException.class, () -> t.getRow(3));
+            assertThrows(IndexOutOfBoundsException.class, () -> t.slice(0, 2, 2, 4));
+        }
+
+        @Test
+        @DisplayName("轉置運算元的矩陣乘法不需先複製")
+        void testTransposedMatmul() {
+            Random rng = new Random(7);
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                // {m, k, n}：小矩陣、多個 panel、切列平行、切 k 平行
+                int[][] shapes = {{3, 5, 7}, {40, 150, 300}, {300, 64, 270}, {27, 5000, 27}};
+                for (int[] sh : shapes) {
+                    Tensor x = Tensor.randn(sh[1], sh[0], rng);   // Aᵀ 的原始資料
+                    Tensor y = Tensor.randn(sh[2], sh[1], rng);   // Bᵀ 的原始資料
+                    Tensor a = x.transpose();
+                    Tensor b = y.transpose();
+                    double[] expected = a.copy().matmul(b.copy()).toArray();
+
+                    assertArrayEquals(expected, a.matmul(b.copy()).toArray(), 1e-9);
+                    assertArrayEquals(expected, a.copy().matmul(b).toArray(), 1e-9);
+                    assertArrayEquals(expected, a.matmul(b).toArray(), 1e-9);
+
+                    double[] ta = new double[sh[0] * sh[2]];
+                    new Gemm(x.toArray(), 0, sh[0], true, b.copy().toArray(), 0, sh[2], false,
+                            sh[0], sh[1], sh[2]).run(ta, pool);
+                    assertArrayEquals(expected, ta, 1e-9);
+
+                    double[] tb = new double[sh[0] * sh[2]];
+                    new Gemm(a.copy().toArray(), 0, sh[1], false, y.toArray(), 0, sh[1], true,
+                            sh[0], sh[1], sh[2]).run(tb, pool);
+                    assertArrayEquals(expected, tb, 1e-9);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        @Test
+        @DisplayName("子矩陣 view 的矩陣乘法")
+        void testSlicedMatmul() {
+            Random rng = new Random(3);
+            Tensor big = Tensor.randn(10, 12, rng);
+            Tensor a = big.slice(2, 7, 3, 9);          // 5×6，leading dimension 12
+            Tensor b = big.slice(1, 7, 0, 4);          // 6×4
+            double[] expected = a.copy().matmul(b.copy()).toArray();
+            assertArrayEquals(expected, a.matmul(b).toArray(), 1e-12);
+            assertArrayEquals(expected, b.transpose().matmul(a.transpose()).transpose().toArray(), 1e-12);
+        }
+    }
+
+    @Nested
+    @DisplayName("原地與寫入 out 的運算")
+    class InPlaceTests {
+
+        private Tensor a() {
+            return Tensor.fromArray(new double[][]{{1, 2}, {3, 4}});
+        }
+
+        private Tensor b() {
+            return Tensor.fromArray(new double[][]{{5, 6}, {7, 8}});
+        }
+
+        @Test
+        @DisplayName("原地運算回傳自己並與一般運算結果相同")
+        void testInPlace() {
+            Tensor t = a();
+            assertSame(t, t.addInPlace(b()));
+            assertArrayEquals(a().add(b()).toArray(), t.toArray(), TOL);
+
+            assertArrayEquals(new double[]{-2, -4, -6, -8},
+                    a().mulInPlace(2.0).subInPlace(a().mul(4.0)).toArray(), TOL);
+            assertArrayEquals(a().exp().log().toArray(), a().expInPlace().logInPlace().toArray(), TOL);
+            assertArrayEquals(new double[]{0.2, 1.0 / 3, 3.0 / 7, 0.5},
+                    a().divInPlace(b()).toArray(), TOL);
+            assertArrayEquals(new double[]{-0.5, -1, -1.5, -2},
+                    a().addInPlace(0.0).divInPlace(2.0).negInPlace().toArray(), TOL);
+        }
+
+        @Test
+        @DisplayName("寫入預先配置的 out，包含轉置的 view")
+        void testOut() {
+            Tensor out = new Tensor(2, 2);
+            assertSame(out, a().mul(b(), out));
+            assertArrayEquals(new double[]{5, 12, 21, 32}, out.toArray(), TOL);
+
+            Tensor outT = new Tensor(2, 2);
+            a().add(1.0, outT.transpose());
+            assertArrayEquals(new double[]{2, 4, 3, 5}, outT.toArray(), TOL);
+
+            // 輸入與 out 是同一塊資料的不同排列
+            Tensor t = a();
+            t.add(t.transpose(), t.transpose());
+            assertArrayEquals(new double[]{2, 5, 5, 8}, t.toArray(), TOL);
+        }
+
+        @Test
+        @DisplayName("矩陣乘法寫入 out")
+        void testMatmulOut() {
+            Tensor out = Tensor.ones(2, 2);
+            a().matmul(b(), out);
+            assertArrayEquals(new double[]{19, 22, 43, 50}, out.toArray(), TOL);
+
+            Tensor big = Tensor.ones(3, 3);
+            a().matmul(b(), big.slice(1, 3, 1, 3).transpose());
+            assertArrayEquals(new double[]{1, 1, 1, 1, 19, 43, 1, 22, 50}, big.toArray(), TOL);
+
+            Tensor t = a();
+            assertThrows(IllegalArgumentException.class, () -> t.matmul(b(), t));
+        }
+
+        @Test
+        @DisplayName("softmax 與正規化可原地執行")
+        void testRowOpsInPlace() {
+            Tensor logits = Tensor.randn(4, 5, new Random(1));
+            Tensor expected = TensorOps.softmax(logits);
+            assertSame(logits, TensorOps.softmax(logits, logits));
+            assertArrayEquals(expected.toArray(), logits.toArray(), 1e-12);
+
+            Tensor counts = Tensor.fromArray(new double[][]{{1, 3}, {0, 0}});
+            TensorOps.normalizeRows(counts, counts);
+            assertArrayEquals(new double[]{0.25, 0.75, 0, 0}, counts.toArray(), TOL);
+        }
+
+        @Test
+        @DisplayName("crossEntropyWithLogits 等於 softmax + NLL，梯度為 (probs − onehot)/n")
+        void testCrossEntropyWithLogits() {
+            Tensor logits = Tensor.randn(40, 27, new Random(9)).mul(4.0);
+            int[] targets = new int[40];
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = (i * 11) % 27;
+            }
+            Tensor probs = TensorOps.softmax(logits);
+            assertEquals(TensorOps.negativeLogLikelihood(probs, targets),
+                    TensorOps.crossEntropyWithLogits(logits, targets), 1e-12);
+
+            Tensor expected = probs.copy();
+            for (int i = 0; i < targets.length; i++) {
+                expected.increment(i, targets[i], -1.0);
+            }
+            expected.divInPlace(targets.length);
+            Tensor grad = new Tensor(40, 27);
+            double loss = TensorOps.crossEntropyWithLogits(logits, targets, grad);
+            assertEquals(TensorOps.negativeLogLikelihood(probs, targets), loss, 1e-12);
+            assertArrayEquals(expected.toArray(), grad.toArray(), 1e-15);
+
+            // 原地改寫 logits，以及寫入轉置的 view
+            Tensor inPlace = logits.copy();
+            assertEquals(loss, TensorOps.crossEntropyWithLogits(inPlace, targets, inPlace), 0.0);
+            assertArrayEquals(expected.toArray(), inPlace.toArray(), 1e-15);
+            Tensor gradT = new Tensor(27, 40);
+            TensorOps.crossEntropyWithLogits(logits.transpose().copy().transpose(), targets, gradT.transpose());
+            assertArrayEquals(expected.transpose().toArray(), gradT.toArray(), 1e-15);
+
+            assertThrows(IllegalArgumentException.class,
+                    () -> TensorOps.crossEntropyWithLogits(logits, new int[3]));
+            assertThrows(IndexOutOfBoundsException.class,
+                    () -> TensorOps.crossEntropyWithLogits(logits.getRow(0), new int[]{27}));
+        }
+
+        @Test
+        @DisplayName("極端 logits：機率小到捨入成 0 時損失仍是有限值")
+        void testCrossEntropyExtremeLogits() {
+            Tensor logits = Tensor.fromArray(new double[][]{{0, 800, -5}});
+            assertEquals(0.0, TensorOps.softmax(logits).get(0, 0), 0.0);
+            assertTrue(Double.isInfinite(TensorOps.negativeLogLikelihood(TensorOps.softmax(logits), new int[]{0})));
+            assertEquals(800.0, TensorOps.crossEntropyWithLogits(logits, new int[]{0}), 1e-9);
+            assertEquals(0.0, TensorOps.crossEntropyWithLogits(logits, new int[]{1}), 1e-12);
+        }
+
+        @Test
+        @DisplayName("形狀不符時拋出例外")
+        void testShapeChecks() {
+            assertThrows(IllegalArgumentException.class, () -> a().add(b(), new Tensor(2, 3)));
+            assertThrows(IllegalArgumentException.class, () -> a().exp(new Tensor(1, 4)));
+            assertThrows(IllegalArgumentException.class, () -> a().mulInPlace(Tensor.ones(1, 2)));
+            assertThrows(IllegalArgumentException.class, () -> TensorOps.softmax(a(), new Tensor(3, 2)));
+            assertThrows(IllegalArgumentException.class, () -> a().matmul(b(), new Tensor(2, 1)));
+        }
+    }
+
     @Nested
     @DisplayName("聚合運算")
     class AggregationTests {
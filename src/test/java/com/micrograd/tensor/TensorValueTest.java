@@ -0,0 +1,177 @@
+package com.micrograd.tensor;
+
+import com.micrograd.engine.Value;
+import org.junit.jupiter.api.*;
+import java.util.Random;
+import java.util.function.Function;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TensorValue 張量自動微分測試")
+class TensorValueTest {
+
+    private static final double TOL = 1e-6;
+    private static final double EPS = 1e-6;
+
+    /**
+     * 中央差分：對 param 的每個元素分別擾動，重新計算 f
+     */
+    private static Tensor numericalGrad(Tensor param, Function<Tensor, Double> f) {
+        Tensor grad = new Tensor(param.getRows(), param.getCols());
+        for (int i = 0; i < param.getRows(); i++) {
+            for (int j = 0; j < param.getCols(); j++) {
+                double orig = param.get(i, j);
+                param.set(i, j, orig + EPS);
+                double plus = f.apply(param);
+                param.set(i, j, orig - EPS);
+                double minus = f.apply(param);
+                param.set(i, j, orig);
+                grad.set(i, j, (plus - minus) / (2 * EPS));
+            }
+        }
+        return grad;
+    }
+
+    @Nested
+    @DisplayName("梯度與數值微分一致")
+    class GradientTests {
+
+        private final Random rng = new Random(42);
+        private final Tensor x = Tensor.randn(6, 4, rng);
+        private final Tensor w = Tensor.randn(4, 5, rng);
+        private final Tensor b = Tensor.randn(1, 5, rng);
+        private final int[] targets = {0, 4, 2, 2, 1, 3};
+
+        /** 交叉熵加上幾個額外項，涵蓋所有運算 */
+        private TensorValue loss(TensorValue xv, TensorValue wv, TensorValue bv) {
+            TensorValue logits = xv.matmul(wv).add(bv);
+            TensorValue nll = logits.softmax().gather(targets).log().mean().neg();
+            TensorValue extra = logits.mul(logits).sum(1).mean().mul(0.01)
+                    .add(wv.exp().sum(0).sum().mul(0.001))
+                    .sub(xv.sum(0).matmul(wv).sum().div(100.0))
+                    .add(wv.gatherRows(new int[]{3, 0, 3}).exp().sum().mul(0.01));
+            return nll.add(extra).add(1.0);
+        }
+
+        private double lossValue() {
+            try (Value.NoGrad ignored = Value.noGrad()) {
+                return loss(TensorValue.constant(x), TensorValue.constant(w), TensorValue.constant(b)).item();
+            }
+        }
+
+        @Test
+        @DisplayName("matmul、廣播加法、softmax、gather、gatherRows、log、sum、mean")
+        void testAgainstNumerical() {
+            TensorValue xv = new TensorValue(x);
+            TensorValue wv = new TensorValue(w);
+            TensorValue bv = new TensorValue(b);
+            loss(xv, wv, bv).backward();
+
+            assertArrayEquals(numericalGrad(x, t -> lossValue()).toArray(), xv.getGrad().toArray(), TOL);
+            assertArrayEquals(numericalGrad(w, t -> lossValue()).toArray(), wv.getGrad().toArray(), TOL);
+            assertArrayEquals(numericalGrad(b, t -> lossValue()).toArray(), bv.getGrad().toArray(), TOL);
+        }
+
+        @Test
+        @DisplayName("欄向量廣播加法")
+        void testColumnBroadcast() {
+            Tensor c = Tensor.randn(6, 1, rng);
+            TensorValue cv = new TensorValue(c);
+            TensorValue xv = TensorValue.constant(x);
+            xv.add(cv).exp().sum().backward();
+
+            Tensor expected = numericalGrad(c, t -> broadcastCols(x, t).exp().sum());
+            assertArrayEquals(expected.toArray(), cv.getGrad().toArray(), 1e-5);
+        }
+
+        private Tensor broadcastCols(Tensor a, Tensor col) {
+            Tensor r = a.copy();
+            for (int i = 0; i < a.getRows(); i++) {
+                for (int j = 0; j < a.getCols(); j++) {
+                    r.increment(i, j, col.get(i, 0));
+                }
+            }
+            return r;
+        }
+    }
+
+    @Test
+    @DisplayName("bigram 交叉熵的梯度等於 xencᵀ·(probs − onehot)/n")
+    void testMatchesManualBigramGradient() {
+        Random rng = new Random(1);
+        int[] inputs = {0, 1, 2, 0, 5, 3};
+        int[] targets = {1, 2, 0, 5, 3, 0};
+        Tensor xenc = TensorOps.oneHotBatch(inputs, 27);
+        Tensor w = Tensor.randn(27, 27, rng);
+
+        TensorValue wv = new TensorValue(w);
+        TensorValue loss = TensorValue.constant(xenc).matmul(wv).softmax().gather(targets).log().mean().neg();
+        loss.backward();
+
+        Tensor probs = TensorOps.softmax(xenc.matmul(w));
+        assertEquals(TensorOps.negativeLogLikelihood(probs, targets), loss.item(), 1e-12);
+        for (int i = 0; i < targets.length; i++) {
+            probs.increment(i, targets[i], -1.0);
+        }
+        Tensor expected = xenc.transpose().matmul(probs.div(targets.length));
+        assertArrayEquals(expected.toArray(), wv.getGrad().toArray(), 1e-12);
+
+        // embedding 查表的梯度與 one-hot matmul 相同
+        TensorValue wg = new TensorValue(w);
+        wg.gatherRows(inputs).softmax().gather(targets).log().mean().neg().backward();
+        assertArrayEquals(expected.toArray(), wg.getGrad().toArray(), 1e-12);
+
+        // 合併的 crossEntropy 與分開的運算相同；再次 backward 會重新計算梯度
+        TensorValue wc = new TensorValue(w);
+        TensorValue ce = wc.gatherRows(inputs).crossEntropy(targets);
+        assertEquals(loss.item(), ce.item(), 1e-12);
+        ce.backward();
+        assertArrayEquals(expected.toArray(), wc.getGrad().toArray(), 1e-12);
+        ce.backward();
+        assertArrayEquals(expected.mul(2.0).toArray(), wc.getGrad().toArray(), 1e-12);
+        wc.zeroGrad();
+        ce.mul(3.0).backward();
+        assertArrayEquals(expected.mul(3.0).toArray(), wc.getGrad().toArray(), 1e-12);
+    }
+
+    @Test
+    @DisplayName("梯度會累加，zeroGrad 歸零")
+    void testAccumulateAndZeroGrad() {
+        TensorValue a = new TensorValue(Tensor.fromArray(new double[][]{{1, 2}, {3, 4}}));
+        a.mul(a).sum().backward();
+        assertArrayEquals(new double[]{2, 4, 6, 8}, a.getGrad().toArray(), 0.0);
+        a.sum().backward();
+        assertArrayEquals(new double[]{3, 5, 7, 9}, a.getGrad().toArray(), 0.0);
+        a.zeroGrad();
+        assertArrayEquals(new double[4], a.getGrad().toArray(), 0.0);
+    }
+
+    @Test
+    @DisplayName("同一張圖可以再 backward 一次；中間節點的梯度用完即釋放")
+    void testBackwardTwice() {
+        TensorValue a = new TensorValue(Tensor.fromArray(new double[][]{{0.5, -1}, {2, 0}}));
+        TensorValue e = a.exp();
+        TensorValue loss = e.softmax().log().mul(3.0).sum();
+        loss.backward();
+        Tensor first = a.getGrad().copy();
+        loss.backward();
+        assertArrayEquals(first.mul(2.0).toArray(), a.getGrad().toArray(), 1e-12);
+        assertArrayEquals(new double[4], e.getGrad().toArray(), 0.0);
+    }
+
+    @Test
+    @DisplayName("常數與 no-grad 模式不記錄計算圖")
+    void testNoGraph() {
+        TensorValue c = TensorValue.constant(Tensor.ones(2, 2));
+        assertFalse(c.exp().requiresGrad());
+
+        TensorValue w = new TensorValue(Tensor.ones(2, 2));
+        assertTrue(c.matmul(w).requiresGrad());
+        try (Value.NoGrad ignored = Value.noGrad()) {
+            assertFalse(c.matmul(w).requiresGrad());
+        }
+
+        assertThrows(IllegalStateException.class, () -> w.exp().backward());
+        assertThrows(IllegalArgumentException.class,
+                () -> w.add(TensorValue.constant(Tensor.ones(3, 3))));
+    }
+}